@@ -0,0 +1,44 @@
+package org.unipop.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.unipop.process.BulkIterator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Partitions the starts of a step into bulks, growing from "bulk.start" by "bulk.multiplier" up to "bulk.max"
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BulkIteratorBenchmark {
+    @Param({"100000"})
+    private int starts;
+
+    @Param({"100", "1000"})
+    private int maxBulk;
+
+    @Param({"1", "100"})
+    private int startBulk;
+
+    private List<Integer> traversers;
+
+    @Setup
+    public void setup() {
+        traversers = new ArrayList<>(starts);
+        for (int i = 0; i < starts; i++) traversers.add(i);
+    }
+
+    @Benchmark
+    public void partition(Blackhole blackhole) {
+        BulkIterator<Integer> bulks = new BulkIterator<>(maxBulk, startBulk, 2, traversers.iterator());
+        while (bulks.hasNext())
+            blackhole.consume(bulks.next());
+    }
+}
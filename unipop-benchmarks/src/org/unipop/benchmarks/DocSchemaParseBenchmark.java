@@ -0,0 +1,58 @@
+package org.unipop.benchmarks;
+
+import org.apache.tinkerpop.gremlin.process.traversal.P;
+import org.apache.tinkerpop.gremlin.process.traversal.step.util.HasContainer;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.openjdk.jmh.annotations.*;
+import org.unipop.elastic.document.schema.DocVertexSchema;
+import org.unipop.query.predicates.PredicatesHolderFactory;
+import org.unipop.query.search.SearchQuery;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses an Elastic search response into vertices, with the vertex schema of the "elastic" provider configuration.
+ * "filtered" tests every vertex against a property predicate, that half of the hits fail.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DocSchemaParseBenchmark {
+    @Param({"100", "1000"})
+    private int hits;
+
+    @Param({"false", "true"})
+    private boolean filtered;
+
+    private DocVertexSchema schema;
+    private SearchQuery<Vertex> query;
+    private String response;
+
+    @Setup
+    public void setup() throws Exception {
+        schema = Fixtures.docVertexSchema(Fixtures.inMemoryGraph(0));
+        query = new SearchQuery<>(Vertex.class, filtered ?
+                PredicatesHolderFactory.predicate(new HasContainer("age", P.lt(50))) :
+                PredicatesHolderFactory.empty(), -1, null, null, null, null);
+
+        StringBuilder builder = new StringBuilder("{\"took\":3,\"timed_out\":false,")
+                .append("\"_shards\":{\"total\":5,\"successful\":5,\"failed\":0},")
+                .append("\"hits\":{\"total\":").append(hits).append(",\"max_score\":1.0,\"hits\":[");
+        for (int i = 0; i < hits; i++) {
+            if (i > 0) builder.append(',');
+            builder.append("{\"_index\":\"vertex\",\"_type\":\"person\",\"_id\":\"v").append(i)
+                    .append("\",\"_score\":1.0,\"_source\":{\"name\":\"name").append(i)
+                    .append("\",\"age\":").append(i % 100).append("}}");
+        }
+        response = builder.append("]}}").toString();
+    }
+
+    @Benchmark
+    public List<Vertex> parseResults() {
+        return schema.parseResults(response, query);
+    }
+}
@@ -0,0 +1,103 @@
+package org.unipop.benchmarks;
+
+import io.searchbox.core.Bulk;
+import io.searchbox.core.Index;
+import org.apache.commons.configuration.BaseConfiguration;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.unipop.elastic.common.ElasticClient;
+import org.unipop.structure.UniGraph;
+import org.unipop.util.ConversionUtils;
+import pl.allegro.tech.embeddedelasticsearch.EmbeddedElastic;
+import pl.allegro.tech.embeddedelasticsearch.PopularProperties;
+
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs g.V().out().out() end to end on a local Elastic node, with the "elastic" provider configuration.
+ * The node is started by embedded-elasticsearch, like the elastic test suites do, which downloads the distribution on
+ * the first run and, like Elastic itself, refuses to run as root.
+ * The graph has "vertices" vertices, each with "degree" out edges to random vertices.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ElasticTraversalBenchmark {
+    private static final int BULK_SIZE = 1000;
+
+    @Param({"1000"})
+    private int vertices;
+
+    @Param({"5"})
+    private int degree;
+
+    private EmbeddedElastic elastic;
+    private UniGraph graph;
+
+    @Setup
+    public void setup() throws Exception {
+        JSONObject provider = Fixtures.provider("elastic");
+        URL address = new URL(ConversionUtils.toStringList(provider, "addresses").get(0));
+        elastic = EmbeddedElastic.builder()
+                .withElasticVersion("5.3.1")
+                .withSetting(PopularProperties.HTTP_PORT, address.getPort())
+                .withSetting(PopularProperties.TRANSPORT_TCP_PORT, address.getPort() + 100)
+                .withSetting(PopularProperties.CLUSTER_NAME, provider.getString("clusterName"))
+                .build()
+                .start();
+
+        ElasticClient client = new ElasticClient(ConversionUtils.toStringList(provider, "addresses"));
+        // creates the indices with the mapping the controllers expect
+        client.validateIndex("vertex");
+        client.validateIndex("edge");
+        Bulk.Builder bulk = new Bulk.Builder();
+        int actions = 0;
+        Random random = new Random(vertices);
+        for (int i = 0; i < vertices; i++) {
+            Map<String, Object> vertex = new HashMap<>();
+            vertex.put("name", "name" + i);
+            vertex.put("age", i % 100);
+            bulk.addAction(new Index.Builder(vertex).index("vertex").type("person").id("v" + i).build());
+            for (int j = 0; j < degree; j++) {
+                Map<String, Object> edge = new HashMap<>();
+                edge.put("outId", "v" + i);
+                edge.put("outLabel", "person");
+                edge.put("inId", "v" + random.nextInt(vertices));
+                edge.put("inLabel", "person");
+                edge.put("weight", random.nextDouble());
+                bulk.addAction(new Index.Builder(edge).index("edge").type("knows").id("e" + i + "-" + j).build());
+            }
+            actions += degree + 1;
+            if (actions >= BULK_SIZE) {
+                client.execute(bulk.build());
+                bulk = new Bulk.Builder();
+                actions = 0;
+            }
+        }
+        client.execute(bulk.refresh(true).build());
+        client.close();
+
+        BaseConfiguration configuration = new BaseConfiguration();
+        configuration.setProperty("providers", Fixtures.providers("elastic").toString());
+        graph = new UniGraph(configuration);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        if (graph != null) graph.close();
+        if (elastic != null) elastic.stop();
+    }
+
+    @Benchmark
+    public void outOut(Blackhole blackhole) {
+        graph.traversal().V().out().out().forEachRemaining(blackhole::consume);
+    }
+}
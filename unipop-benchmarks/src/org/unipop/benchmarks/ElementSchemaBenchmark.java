@@ -0,0 +1,53 @@
+package org.unipop.benchmarks;
+
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.openjdk.jmh.annotations.*;
+import org.unipop.jdbc.schemas.RowVertexSchema;
+import org.unipop.query.predicates.PredicatesHolder;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Translates predicates from property keys to fields, and a row's fields back to properties,
+ * with the vertex schema of the "jdbc" provider configuration.
+ * getProperties is protected, it is measured through fromFields, which adds only the creation of the vertex.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ElementSchemaBenchmark {
+    @Param({"1", "100"})
+    private int ids;
+
+    private RowVertexSchema schema;
+    private PredicatesHolder predicates;
+    private Map<String, Object> fields;
+
+    @Setup
+    public void setup() throws Exception {
+        schema = Fixtures.rowVertexSchema(Fixtures.inMemoryGraph(0));
+        predicates = Fixtures.predicates(ids);
+        fields = new HashMap<>();
+        fields.put("ID", "v1");
+        fields.put("LABEL", "person");
+        fields.put("NAME", "marko");
+        fields.put("AGE", 29);
+    }
+
+    @Benchmark
+    public PredicatesHolder toPredicates() {
+        return schema.toPredicates(predicates);
+    }
+
+    @Benchmark
+    public Collection<Vertex> fromFields() {
+        // the schema may take ownership of the map
+        return schema.fromFields(new HashMap<>(fields));
+    }
+}
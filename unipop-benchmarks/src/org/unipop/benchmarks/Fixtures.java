@@ -0,0 +1,105 @@
+package org.unipop.benchmarks;
+
+import org.apache.commons.configuration.BaseConfiguration;
+import org.apache.commons.io.IOUtils;
+import org.apache.tinkerpop.gremlin.process.traversal.P;
+import org.apache.tinkerpop.gremlin.process.traversal.step.util.HasContainer;
+import org.apache.tinkerpop.gremlin.structure.T;
+import org.json.JSONObject;
+import org.unipop.elastic.ElasticSourceProvider;
+import org.unipop.elastic.common.ElasticClient;
+import org.unipop.elastic.document.schema.DocVertexSchema;
+import org.unipop.jdbc.JdbcSourceProvider;
+import org.unipop.jdbc.schemas.RowVertexSchema;
+import org.unipop.query.predicates.PredicatesHolder;
+import org.unipop.query.predicates.PredicatesHolderFactory;
+import org.unipop.structure.UniGraph;
+import org.unipop.util.ConversionUtils;
+import org.unipop.util.PropertySchemaFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Graphs, provider configurations and predicates shared by the benchmarks
+ */
+public class Fixtures {
+
+    /**
+     * @param vertices The number of vertices of the graph
+     * @return A graph whose controllers are held in memory, see {@link InMemoryControllerManager}
+     */
+    public static UniGraph inMemoryGraph(int vertices) throws Exception {
+        BaseConfiguration configuration = new BaseConfiguration();
+        configuration.setProperty("controllerManager", InMemoryControllerManager.class.getCanonicalName());
+        configuration.setProperty("benchmark.vertices", vertices);
+        return new UniGraph(configuration);
+    }
+
+    /**
+     * @param name The name of a provider configuration in the "configuration" resources, without its extension
+     * @return The provider configuration
+     */
+    public static JSONObject provider(String name) throws IOException {
+        try (InputStream stream = Fixtures.class.getResourceAsStream("/configuration/" + name + ".json")) {
+            return new JSONObject(IOUtils.toString(stream, StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Copies a provider configuration to a directory of its own, ConfigurationControllerManager reads its providers from a directory
+     * @param name The name of a provider configuration in the "configuration" resources, without its extension
+     * @return The directory
+     */
+    public static Path providers(String name) throws IOException {
+        Path directory = Files.createTempDirectory("unipop-benchmarks");
+        Files.write(directory.resolve(name + ".json"), provider(name).toString().getBytes(StandardCharsets.UTF_8));
+        directory.toFile().deleteOnExit();
+        directory.resolve(name + ".json").toFile().deleteOnExit();
+        return directory;
+    }
+
+    /**
+     * @param graph The graph of the schema
+     * @return The vertex schema of the "jdbc" provider configuration
+     */
+    public static RowVertexSchema rowVertexSchema(UniGraph graph) throws IOException {
+        PropertySchemaFactory.build(new JdbcSourceProvider().providerBuilders(), Collections.emptyList());
+        return new RowVertexSchema(provider("jdbc").getJSONArray("vertices").getJSONObject(0), graph);
+    }
+
+    /**
+     * The client isn't connected until a request is sent, so the schema can be used without a cluster as long as it only
+     * translates predicates and parses results
+     * @param graph The graph of the schema
+     * @return The vertex schema of the "elastic" provider configuration
+     */
+    public static DocVertexSchema docVertexSchema(UniGraph graph) throws IOException {
+        JSONObject provider = provider("elastic");
+        PropertySchemaFactory.build(new ElasticSourceProvider().providerBuilders(), Collections.emptyList());
+        ElasticClient client = new ElasticClient(ConversionUtils.toStringList(provider, "addresses"));
+        return new DocVertexSchema(provider.getJSONArray("vertices").getJSONObject(0), client, graph);
+    }
+
+    /**
+     * Predicates shaped like the ones a has() heavy traversal sends to a vertex schema:
+     * a label filter, an id list, property comparisons and a nested or.
+     * @param ids The number of ids in the id list
+     * @return The predicates
+     */
+    public static PredicatesHolder predicates(int ids) {
+        List<Object> idList = new ArrayList<>(ids);
+        for (int i = 0; i < ids; i++) idList.add("v" + i);
+        return PredicatesHolderFactory.and(
+                PredicatesHolderFactory.predicate(new HasContainer(T.label.getAccessor(), P.within("person", "software"))),
+                PredicatesHolderFactory.predicate(new HasContainer(T.id.getAccessor(), P.within(idList))),
+                PredicatesHolderFactory.and(new HasContainer("name", P.neq("marko")), new HasContainer("age", P.between(20, 40))),
+                PredicatesHolderFactory.or(new HasContainer("age", P.lt(30)), new HasContainer("name", P.eq("josh"))));
+    }
+}
@@ -0,0 +1,78 @@
+package org.unipop.benchmarks;
+
+import com.google.common.collect.Iterators;
+import org.apache.commons.configuration.Configuration;
+import org.apache.tinkerpop.gremlin.structure.Direction;
+import org.apache.tinkerpop.gremlin.structure.Edge;
+import org.apache.tinkerpop.gremlin.structure.T;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.unipop.query.controller.ControllerManager;
+import org.unipop.query.controller.UniQueryController;
+import org.unipop.query.search.SearchVertexQuery;
+import org.unipop.schema.property.PropertySchema;
+import org.unipop.structure.UniEdge;
+import org.unipop.structure.UniGraph;
+import org.unipop.structure.UniVertex;
+import org.unipop.structure.traversalfilter.TraversalFilter;
+
+import java.util.*;
+
+/**
+ * A generated graph that is held in memory, so benchmarks of the steps don't measure a backend.
+ * Has "benchmark.vertices" vertices (default 10000), each with "benchmark.degree" out edges (default 10).
+ */
+public class InMemoryControllerManager implements ControllerManager, SearchVertexQuery.SearchVertexController {
+    private final List<Vertex> vertices;
+    private final Map<Object, List<Edge>> outEdges = new HashMap<>();
+    private final Map<Object, List<Edge>> inEdges = new HashMap<>();
+
+    public InMemoryControllerManager(UniGraph graph, Configuration configuration, List<PropertySchema.PropertySchemaBuilder> thirdPartyPropertySchemas, TraversalFilter filter) {
+        int vertexCount = configuration.getInt("benchmark.vertices", 10000);
+        int degree = configuration.getInt("benchmark.degree", 10);
+        this.vertices = new ArrayList<>(vertexCount);
+        for (int i = 0; i < vertexCount; i++) {
+            Map<String, Object> properties = new HashMap<>();
+            properties.put(T.id.getAccessor(), "v" + i);
+            properties.put(T.label.getAccessor(), "vertex");
+            UniVertex vertex = new UniVertex(properties, null, graph);
+            vertices.add(vertex);
+            outEdges.put(vertex.id(), new ArrayList<>(degree));
+            inEdges.put(vertex.id(), new ArrayList<>(degree));
+        }
+        Random random = new Random(vertexCount);
+        for (Vertex outVertex : vertices) {
+            for (int i = 0; i < degree; i++) {
+                Vertex inVertex = vertices.get(random.nextInt(vertexCount));
+                Map<String, Object> properties = new HashMap<>();
+                properties.put(T.id.getAccessor(), outVertex.id() + "-" + i);
+                properties.put(T.label.getAccessor(), "edge");
+                UniEdge edge = new UniEdge(properties, outVertex, inVertex, null, graph);
+                outEdges.get(outVertex.id()).add(edge);
+                inEdges.get(inVertex.id()).add(edge);
+            }
+        }
+    }
+
+    public List<Vertex> getVertices() {
+        return vertices;
+    }
+
+    @Override
+    public Iterator<Edge> search(SearchVertexQuery uniQuery) {
+        List<Iterator<Edge>> edges = new ArrayList<>();
+        for (Vertex vertex : uniQuery.getVertices()) {
+            if (!uniQuery.getDirection().equals(Direction.IN)) edges.add(outEdges.get(vertex.id()).iterator());
+            if (!uniQuery.getDirection().equals(Direction.OUT)) edges.add(inEdges.get(vertex.id()).iterator());
+        }
+        return Iterators.concat(edges.iterator());
+    }
+
+    @Override
+    public Set<UniQueryController> getControllers() {
+        return Collections.singleton(this);
+    }
+
+    @Override
+    public void close() {
+    }
+}
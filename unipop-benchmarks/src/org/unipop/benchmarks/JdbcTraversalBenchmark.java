@@ -0,0 +1,88 @@
+package org.unipop.benchmarks;
+
+import org.apache.commons.configuration.BaseConfiguration;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.unipop.structure.UniGraph;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs g.V().out().out() end to end on an embedded H2 database, with the "jdbc" provider configuration.
+ * The graph has "vertices" vertices, each with "degree" out edges to random vertices.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JdbcTraversalBenchmark {
+    @Param({"1000"})
+    private int vertices;
+
+    @Param({"5"})
+    private int degree;
+
+    private Connection connection;
+    private UniGraph graph;
+
+    @Setup
+    public void setup() throws Exception {
+        Class.forName("org.h2.Driver");
+        // the database lives as long as this connection is open
+        connection = DriverManager.getConnection(Fixtures.provider("jdbc").getJSONArray("address").getString(0));
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS vertices");
+            statement.execute("DROP TABLE IF EXISTS edges");
+            statement.execute("CREATE TABLE vertices(ID VARCHAR(100) NOT NULL PRIMARY KEY, LABEL VARCHAR(100) NOT NULL, " +
+                    "NAME VARCHAR(100), AGE INT)");
+            statement.execute("CREATE TABLE edges(ID VARCHAR(100) NOT NULL PRIMARY KEY, LABEL VARCHAR(100) NOT NULL, " +
+                    "OUTID VARCHAR(100), OUTLABEL VARCHAR(100), INID VARCHAR(100), INLABEL VARCHAR(100), WEIGHT DOUBLE)");
+            statement.execute("CREATE INDEX edges_out ON edges(OUTID)");
+            statement.execute("CREATE INDEX edges_in ON edges(INID)");
+        }
+        try (PreparedStatement insert = connection.prepareStatement("INSERT INTO vertices VALUES (?, 'person', ?, ?)")) {
+            for (int i = 0; i < vertices; i++) {
+                insert.setString(1, "v" + i);
+                insert.setString(2, "name" + i);
+                insert.setInt(3, i % 100);
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+        Random random = new Random(vertices);
+        try (PreparedStatement insert = connection.prepareStatement("INSERT INTO edges VALUES (?, 'knows', ?, 'person', ?, 'person', ?)")) {
+            for (int i = 0; i < vertices; i++) {
+                for (int j = 0; j < degree; j++) {
+                    insert.setString(1, "e" + i + "-" + j);
+                    insert.setString(2, "v" + i);
+                    insert.setString(3, "v" + random.nextInt(vertices));
+                    insert.setDouble(4, random.nextDouble());
+                    insert.addBatch();
+                }
+            }
+            insert.executeBatch();
+        }
+
+        BaseConfiguration configuration = new BaseConfiguration();
+        configuration.setProperty("providers", Fixtures.providers("jdbc").toString());
+        graph = new UniGraph(configuration);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        graph.close();
+        connection.close();
+    }
+
+    @Benchmark
+    public void outOut(Blackhole blackhole) {
+        graph.traversal().V().out().out().forEachRemaining(blackhole::consume);
+    }
+}
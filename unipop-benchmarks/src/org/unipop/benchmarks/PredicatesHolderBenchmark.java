@@ -0,0 +1,59 @@
+package org.unipop.benchmarks;
+
+import org.apache.tinkerpop.gremlin.process.traversal.P;
+import org.apache.tinkerpop.gremlin.process.traversal.step.util.HasContainer;
+import org.openjdk.jmh.annotations.*;
+import org.unipop.query.predicates.PredicatesHolder;
+import org.unipop.query.predicates.PredicatesHolderFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Composes predicates the way the strategies do when they fold has() steps into a query
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PredicatesHolderBenchmark {
+    @Param({"2", "8"})
+    private int holders;
+
+    private PredicatesHolder[] andHolders;
+    private List<PredicatesHolder> orHolders;
+    private PredicatesHolder mixed;
+
+    @Setup
+    public void setup() {
+        andHolders = new PredicatesHolder[holders];
+        orHolders = new ArrayList<>(holders);
+        for (int i = 0; i < holders; i++) {
+            andHolders[i] = PredicatesHolderFactory.and(
+                    new HasContainer("key" + i, P.eq(i)),
+                    new HasContainer("range" + i, P.between(i, i + 10)));
+            orHolders.add(PredicatesHolderFactory.or(
+                    new HasContainer("key" + i, P.eq(i)),
+                    new HasContainer("key" + i, P.within(i + 1, i + 2, i + 3))));
+        }
+        mixed = Fixtures.predicates(holders);
+    }
+
+    @Benchmark
+    public PredicatesHolder and() {
+        return PredicatesHolderFactory.and(andHolders);
+    }
+
+    @Benchmark
+    public PredicatesHolder or() {
+        return PredicatesHolderFactory.or(orHolders);
+    }
+
+    @Benchmark
+    public PredicatesHolder andOfMixed() {
+        return PredicatesHolderFactory.and(mixed, PredicatesHolderFactory.or(orHolders));
+    }
+}
@@ -0,0 +1,49 @@
+package org.unipop.benchmarks;
+
+import org.elasticsearch.index.query.QueryBuilder;
+import org.jooq.Condition;
+import org.openjdk.jmh.annotations.*;
+import org.unipop.elastic.common.FilterHelper;
+import org.unipop.jdbc.utils.JdbcPredicatesTranslator;
+import org.unipop.query.predicates.PredicatesHolder;
+import org.unipop.structure.UniGraph;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Translates the same predicates to an Elastic query and to a jOOQ condition.
+ * The predicates are first mapped to fields by the vertex schema of each provider configuration, like the controllers do.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PredicatesTranslatorBenchmark {
+    @Param({"1", "100", "1000"})
+    private int ids;
+
+    private PredicatesHolder elasticPredicates;
+    private PredicatesHolder jdbcPredicates;
+    private JdbcPredicatesTranslator jdbcTranslator;
+
+    @Setup
+    public void setup() throws Exception {
+        UniGraph graph = Fixtures.inMemoryGraph(0);
+        PredicatesHolder predicates = Fixtures.predicates(ids);
+        elasticPredicates = Fixtures.docVertexSchema(graph).toPredicates(predicates);
+        jdbcPredicates = Fixtures.rowVertexSchema(graph).toPredicates(predicates);
+        jdbcTranslator = new JdbcPredicatesTranslator();
+    }
+
+    @Benchmark
+    public QueryBuilder elastic() {
+        return FilterHelper.createFilterBuilder(elasticPredicates);
+    }
+
+    @Benchmark
+    public Condition jdbc() {
+        return jdbcTranslator.translate(jdbcPredicates);
+    }
+}
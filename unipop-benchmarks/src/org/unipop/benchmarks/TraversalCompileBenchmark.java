@@ -0,0 +1,50 @@
+package org.unipop.benchmarks;
+
+import org.apache.commons.configuration.BaseConfiguration;
+import org.apache.tinkerpop.gremlin.process.traversal.Traversal;
+import org.apache.tinkerpop.gremlin.process.traversal.dsl.graph.GraphTraversalSource;
+import org.openjdk.jmh.annotations.*;
+import org.unipop.structure.UniGraph;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applies the strategies to a short traversal that is replayed with a different value every time, the way an API
+ * replays its traversal shapes. "planCache" is the size of the graph's plan cache, 0 compiles every traversal.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TraversalCompileBenchmark {
+    @Param({"0", "1000"})
+    private int planCache;
+
+    private UniGraph graph;
+    private GraphTraversalSource g;
+    private int next;
+
+    @Setup
+    public void setup() throws Exception {
+        BaseConfiguration configuration = new BaseConfiguration();
+        configuration.setProperty("controllerManager", InMemoryControllerManager.class.getCanonicalName());
+        configuration.setProperty("benchmark.vertices", 100);
+        configuration.setProperty("planCache.size", planCache);
+        graph = new UniGraph(configuration);
+        g = graph.traversal();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        graph.close();
+    }
+
+    @Benchmark
+    public Traversal.Admin<?, ?> hasOutValues() {
+        Traversal.Admin<?, ?> traversal = g.V(next++ % 100).has("name", "name" + next).out("knows").values("name").asAdmin();
+        traversal.applyStrategies();
+        return traversal;
+    }
+}
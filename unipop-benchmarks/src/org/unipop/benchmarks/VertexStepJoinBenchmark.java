@@ -0,0 +1,58 @@
+package org.unipop.benchmarks;
+
+import org.apache.tinkerpop.gremlin.process.traversal.Traversal;
+import org.apache.tinkerpop.gremlin.process.traversal.Traverser;
+import org.apache.tinkerpop.gremlin.process.traversal.util.TraversalHelper;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.unipop.process.vertex.UniGraphVertexStep;
+import org.unipop.structure.UniGraph;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Joins a bulk of traversers with the edges of their vertices, the way out() does for every bulk.
+ * "repeats" is the number of traversers of each vertex in the bulk.
+ * Run with "-prof gc" to see the allocations of the join.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VertexStepJoinBenchmark {
+    @Param({"100", "1000"})
+    private int bulk;
+
+    @Param({"1", "4"})
+    private int repeats;
+
+    private UniGraphVertexStep<Vertex> step;
+    private List<Traverser.Admin<Vertex>> traversers;
+
+    @Setup
+    public void setup() throws Exception {
+        UniGraph graph = Fixtures.inMemoryGraph(bulk);
+
+        Traversal.Admin<Vertex, Vertex> traversal = graph.traversal().V().out().asAdmin();
+        traversal.applyStrategies();
+        step = TraversalHelper.getLastStepOfAssignableClass(UniGraphVertexStep.class, traversal).get();
+
+        List<Vertex> vertices = ((InMemoryControllerManager) graph.getControllerManager()).getVertices();
+        traversers = new ArrayList<>(bulk);
+        for (int i = 0; i < bulk; i++)
+            traversers.add(traversal.getTraverserGenerator().generate(vertices.get(i / repeats), step, 1L));
+    }
+
+    @Benchmark
+    public void join(Blackhole blackhole) {
+        Iterator<Traverser.Admin<Vertex>> results = step.expand(traversers);
+        while (results.hasNext())
+            blackhole.consume(results.next());
+    }
+}
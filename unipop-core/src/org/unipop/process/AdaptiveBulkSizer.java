@@ -0,0 +1,89 @@
+package org.unipop.process;
+
+/**
+ * Tunes the bulk size of a step toward a target latency and/or a target number of results per bulk.
+ * After every full bulk the size is scaled by the ratio between the target and what was measured,
+ * limited to a factor of multiplier per bulk and to the range [minBulk, maxBulk].
+ */
+public class AdaptiveBulkSizer implements BulkSizer {
+    private final int minBulk;
+    private final int maxBulk;
+    private final int startBulk;
+    private final int multiplier;
+    private final long targetNanos;
+    private final int targetResults;
+
+    private int bulk;
+    private int smallest;
+    private int largest;
+    private long lastNanos;
+
+    public AdaptiveBulkSizer(int minBulk, int maxBulk, int startBulk, int multiplier, long targetNanos, int targetResults) {
+        this.minBulk = Math.max(1, minBulk);
+        this.maxBulk = Math.max(this.minBulk, maxBulk);
+        this.multiplier = Math.max(2, multiplier);
+        this.targetNanos = targetNanos;
+        this.targetResults = targetResults;
+        this.startBulk = startBulk;
+        this.bulk = clamp(startBulk);
+        this.smallest = bulk;
+        this.largest = bulk;
+    }
+
+    @Override
+    public synchronized int nextBulk() {
+        return bulk;
+    }
+
+    @Override
+    public synchronized void record(int bulkSize, int results, long nanos) {
+        // a partial bulk only means the previous step ran dry, it says nothing about the backend
+        if (bulkSize < bulk) return;
+        lastNanos = nanos;
+
+        double ratio = multiplier;
+        if (targetNanos > 0 && nanos > 0)
+            ratio = Math.min(ratio, (double) targetNanos / nanos);
+        if (targetResults > 0 && results > 0)
+            ratio = Math.min(ratio, (double) targetResults / results);
+        ratio = Math.max(ratio, 1.0 / multiplier);
+
+        bulk = clamp((int) Math.round(bulk * ratio));
+        smallest = Math.min(smallest, bulk);
+        largest = Math.max(largest, bulk);
+    }
+
+    /**
+     * @return A sizer with the same settings that starts over from the start bulk
+     */
+    public AdaptiveBulkSizer copy() {
+        return new AdaptiveBulkSizer(minBulk, maxBulk, startBulk, multiplier, targetNanos, targetResults);
+    }
+
+    private int clamp(int size) {
+        return Math.max(minBulk, Math.min(maxBulk, size));
+    }
+
+    public synchronized int getSmallest() {
+        return smallest;
+    }
+
+    public synchronized int getLargest() {
+        return largest;
+    }
+
+    public synchronized long getLastNanos() {
+        return lastNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "AdaptiveBulkSizer{" +
+                "bulk=" + bulk +
+                ", minBulk=" + minBulk +
+                ", maxBulk=" + maxBulk +
+                ", targetNanos=" + targetNanos +
+                ", targetResults=" + targetResults +
+                '}';
+    }
+}
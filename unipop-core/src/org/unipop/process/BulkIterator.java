@@ -10,16 +10,16 @@ import java.util.List;
 public class BulkIterator<S> implements Iterator<List<S>> {
 
     private Iterator<S> original;
-    private final int maxBulk;
-    private int bulk;
-    private int multiplier;
+    private final BulkSizer sizer;
     private List<S> current;
 
     public BulkIterator(final int maxBulk, int startBulk, int multiplier, Iterator<S> original) {
+        this(new GeometricBulkSizer(maxBulk, startBulk, multiplier), original);
+    }
+
+    public BulkIterator(BulkSizer sizer, Iterator<S> original) {
         this.original = original;
-        this.maxBulk = maxBulk;
-        this.bulk = startBulk;
-        this.multiplier = multiplier;
+        this.sizer = sizer;
     }
 
     @Override
@@ -27,12 +27,12 @@ public class BulkIterator<S> implements Iterator<List<S>> {
         if (!original.hasNext())
             return false;
         else {
+            int bulk = sizer.nextBulk();
             List<S> list = new ArrayList<>(bulk);
             for (int i = 0; i < bulk; i++) {
                 if (original.hasNext())
                     list.add(original.next());
             }
-            bulk = Math.min(bulk * multiplier, maxBulk);
             current = list;
             return current.size() > 0;
         }
@@ -0,0 +1,20 @@
+package org.unipop.process;
+
+/**
+ * Decides the size of the bulks a UniBulkStep sends to its controllers
+ */
+public interface BulkSizer {
+    /**
+     * Returns the size of the next bulk
+     * @return Bulk size
+     */
+    int nextBulk();
+
+    /**
+     * Records how a bulk performed
+     * @param bulkSize Number of traversers in the bulk
+     * @param results Number of results the bulk produced
+     * @param nanos Time spent processing the bulk
+     */
+    default void record(int bulkSize, int results, long nanos) {}
+}
@@ -0,0 +1,23 @@
+package org.unipop.process;
+
+/**
+ * Starts with startBulk and multiplies the bulk size after every bulk, up to maxBulk
+ */
+public class GeometricBulkSizer implements BulkSizer {
+    private final int maxBulk;
+    private final int multiplier;
+    private int bulk;
+
+    public GeometricBulkSizer(int maxBulk, int startBulk, int multiplier) {
+        this.maxBulk = maxBulk;
+        this.bulk = startBulk;
+        this.multiplier = multiplier;
+    }
+
+    @Override
+    public int nextBulk() {
+        int current = bulk;
+        bulk = Math.min(bulk * multiplier, maxBulk);
+        return current;
+    }
+}
@@ -1,28 +1,43 @@
 package org.unipop.process;
 
+import com.google.common.collect.Iterators;
 import org.apache.tinkerpop.gremlin.process.traversal.Traversal;
 import org.apache.tinkerpop.gremlin.process.traversal.Traverser;
+import org.apache.tinkerpop.gremlin.process.traversal.step.Profiling;
 import org.apache.tinkerpop.gremlin.process.traversal.step.util.AbstractStep;
 import org.apache.tinkerpop.gremlin.process.traversal.util.FastNoSuchElementException;
+import org.apache.tinkerpop.gremlin.process.traversal.util.MutableMetrics;
 import org.apache.tinkerpop.gremlin.util.iterator.EmptyIterator;
-import org.unipop.util.ConversionUtils;
+import org.unipop.query.controller.ControllerExecutor;
 import org.unipop.structure.UniGraph;
 
-import java.util.Iterator;
-import java.util.List;
-import java.util.NoSuchElementException;
+import java.util.*;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
-public abstract class UniBulkStep<S, E> extends AbstractStep<S, E> {
+public abstract class UniBulkStep<S, E> extends AbstractStep<S, E> implements Profiling {
     protected final int maxBulk;
     protected int startBulk;
     protected int multiplier;
+    protected final int pipeline;
+    protected final ControllerExecutor controllerExecutor;
     protected Iterator<Traverser.Admin<E>> results = EmptyIterator.instance();
+    private AdaptiveBulkSizer adaptiveSizer;
+    private PipelineIterator pipelineIterator;
+    private MutableMetrics bulkMetrics;
 
     public UniBulkStep(Traversal.Admin traversal, UniGraph graph) {
         super(traversal);
         this.maxBulk = graph.configuration().getInt("bulk.max", 100);
         this.startBulk = graph.configuration().getInt("bulk.start", this.maxBulk);
         this.multiplier = graph.configuration().getInt("bulk.multiplier", 2);
+        this.pipeline = graph.configuration().getInt("bulk.pipeline", 0);
+        this.controllerExecutor = graph.getControllerExecutor();
+        long targetLatency = graph.configuration().getLong("bulk.latency", 0);
+        int targetResults = graph.configuration().getInt("bulk.results", 0);
+        this.adaptiveSizer = targetLatency > 0 || targetResults > 0 ?
+                new AdaptiveBulkSizer(graph.configuration().getInt("bulk.min", 1), maxBulk, startBulk, multiplier,
+                        TimeUnit.MILLISECONDS.toNanos(targetLatency), targetResults) : null;
     }
 
     @Override
@@ -38,20 +53,161 @@ public abstract class UniBulkStep<S, E> extends AbstractStep<S, E> {
     }
 
     private Iterator<Traverser.Admin<E>> process() {
-        BulkIterator<Traverser.Admin<S>> partitionedTraversers = new BulkIterator<>(maxBulk, startBulk, multiplier, starts);
+        BulkIterator<Traverser.Admin<S>> partitionedTraversers = adaptiveSizer != null ?
+                new BulkIterator<>(adaptiveSizer, starts) :
+                new BulkIterator<>(maxBulk, startBulk, multiplier, starts);
 //        UnmodifiableIterator<List<Traverser.Admin<S>>> partitionedTraversers = Iterators.partition(starts, maxBulk);
-        return ConversionUtils.asStream(partitionedTraversers)
-                .<Iterator<Traverser.Admin<E>>>map(this::process)
-                .<Traverser.Admin<E>>flatMap(ConversionUtils::asStream).iterator();
+        if (pipeline > 0 && isPipelined()) {
+            pipelineIterator = new PipelineIterator(partitionedTraversers);
+            return pipelineIterator;
+        }
+        // a stream's flatMap reads all of a bulk's results before returning the first one, concat stays lazy
+        return Iterators.concat(Iterators.transform(partitionedTraversers, this::measure));
+    }
+
+    private Iterator<Traverser.Admin<E>> measure(List<Traverser.Admin<S>> bulk) {
+        if (adaptiveSizer == null) return process(bulk);
+        return new MeasuredIterator(bulk);
     }
 
     protected abstract Iterator<Traverser.Admin<E>> process(List<Traverser.Admin<S>> traversers);
 
+    /**
+     * Exposes the bulk sizes chosen by the adaptive sizer as annotations of the step's metrics
+     * @param metrics The step's metrics
+     */
+    @Override
+    public void setMetrics(MutableMetrics metrics) {
+        this.bulkMetrics = metrics;
+    }
+
+    private void record(int bulkSize, int results, long nanos) {
+        adaptiveSizer.record(bulkSize, results, nanos);
+        MutableMetrics metrics = this.bulkMetrics;
+        if (metrics == null) return;
+        synchronized (metrics) {
+            metrics.setAnnotation("bulkSize", adaptiveSizer.nextBulk());
+            metrics.setAnnotation("bulkSizeMin", adaptiveSizer.getSmallest());
+            metrics.setAnnotation("bulkSizeMax", adaptiveSizer.getLargest());
+            metrics.setAnnotation("bulkLatencyMs", TimeUnit.NANOSECONDS.toMillis(adaptiveSizer.getLastNanos()));
+        }
+    }
+
+    /**
+     * Whether process(List) only depends on its input bulk, so bulks can be processed in the background
+     * while the results of previous bulks are consumed.
+     * @return True if the step may be pipelined
+     */
+    protected boolean isPipelined() {
+        return false;
+    }
+
     @Override
     public void reset() {
         super.reset();
+        // a clone is reset while it still holds the pipeline of the step it was cloned from
+        if (pipelineIterator != null && pipelineIterator.isOf(this)) pipelineIterator.cancel();
+        pipelineIterator = null;
         this.results = EmptyIterator.instance();
     }
 
+    @Override
+    public UniBulkStep<S, E> clone() {
+        UniBulkStep<S, E> clone = (UniBulkStep<S, E>) super.clone();
+        // clones of a cached plan run concurrently, each one tunes its own bulks
+        if (adaptiveSizer != null) clone.adaptiveSizer = adaptiveSizer.copy();
+        clone.bulkMetrics = null;
+        return clone;
+    }
+
+    /**
+     * Keeps up to "bulk.pipeline" bulks processing in the background, in order.
+     * A new bulk is only pulled from the previous step when one of the in flight bulks is taken,
+     * so at most pipeline + 1 bulks of results are held in memory.
+     */
+    private class PipelineIterator implements Iterator<Traverser.Admin<E>> {
+        private final Iterator<List<Traverser.Admin<S>>> bulks;
+        private final Deque<Future<List<Traverser.Admin<E>>>> inFlight = new ArrayDeque<>(pipeline);
+        private Iterator<Traverser.Admin<E>> current = EmptyIterator.instance();
+
+        private PipelineIterator(Iterator<List<Traverser.Admin<S>>> bulks) {
+            this.bulks = bulks;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext()) {
+                fill();
+                if (inFlight.isEmpty()) return false;
+                current = ControllerExecutor.await(inFlight.poll()).iterator();
+                fill();
+            }
+            return true;
+        }
+
+        @Override
+        public Traverser.Admin<E> next() {
+            if (!hasNext()) throw FastNoSuchElementException.instance();
+            return current.next();
+        }
+
+        private void fill() {
+            while (inFlight.size() < pipeline && bulks.hasNext()) {
+                List<Traverser.Admin<S>> bulk = bulks.next();
+                inFlight.add(controllerExecutor.submit(() -> {
+                    List<Traverser.Admin<E>> results = new ArrayList<>(bulk.size());
+                    measure(bulk).forEachRemaining(results::add);
+                    return results;
+                }));
+            }
+        }
+
+        private void cancel() {
+            inFlight.forEach(future -> future.cancel(true));
+            inFlight.clear();
+        }
+
+        private boolean isOf(UniBulkStep<?, ?> step) {
+            return UniBulkStep.this == step;
+        }
+    }
+
+    /**
+     * Times a bulk from the call to process until its results are exhausted, and reports it to the adaptive sizer
+     */
+    private class MeasuredIterator implements Iterator<Traverser.Admin<E>> {
+        private final int bulkSize;
+        private final Iterator<Traverser.Admin<E>> iterator;
+        private long nanos;
+        private int count;
+        private boolean recorded;
+
+        private MeasuredIterator(List<Traverser.Admin<S>> bulk) {
+            this.bulkSize = bulk.size();
+            long start = System.nanoTime();
+            this.iterator = process(bulk);
+            this.nanos = System.nanoTime() - start;
+        }
+
+        @Override
+        public boolean hasNext() {
+            long start = System.nanoTime();
+            boolean hasNext = iterator.hasNext();
+            nanos += System.nanoTime() - start;
+            if (!hasNext && !recorded) {
+                recorded = true;
+                record(bulkSize, count, nanos);
+            }
+            return hasNext;
+        }
 
+        @Override
+        public Traverser.Admin<E> next() {
+            long start = System.nanoTime();
+            Traverser.Admin<E> next = iterator.next();
+            nanos += System.nanoTime() - start;
+            count++;
+            return next;
+        }
+    }
 }
@@ -16,6 +16,11 @@ public abstract class UniPredicatesStep<S, E> extends UniBulkStep<S, E> implemen
         this.propertyKeys = new HashSet<>();
     }
 
+    @Override
+    protected boolean isPipelined() {
+        return true;
+    }
+
     @Override
     public void addPropertyKey(String key) {
         if (propertyKeys != null)
@@ -31,4 +36,11 @@ public abstract class UniPredicatesStep<S, E> extends UniBulkStep<S, E> implemen
     public Set<String> getKeys() {
         return propertyKeys;
     }
+
+    @Override
+    public UniPredicatesStep<S, E> clone() {
+        UniPredicatesStep<S, E> clone = (UniPredicatesStep<S, E>) super.clone();
+        clone.propertyKeys = propertyKeys == null ? null : new HashSet<>(propertyKeys);
+        return clone;
+    }
 }
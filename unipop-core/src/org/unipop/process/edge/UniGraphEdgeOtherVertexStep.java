@@ -13,23 +13,28 @@ import org.apache.tinkerpop.gremlin.structure.util.ElementHelper;
 import org.javatuples.Pair;
 import org.unipop.process.UniPredicatesStep;
 import org.unipop.process.order.Orderable;
+import org.unipop.process.plan.PlanParameters;
+import org.unipop.process.plan.RebindableStep;
 import org.unipop.query.StepDescriptor;
 import org.unipop.query.controller.ControllerManager;
 import org.unipop.query.search.DeferredVertexQuery;
 import org.unipop.schema.reference.DeferredVertex;
+import org.unipop.schema.reference.DeferredVertexLoader;
 import org.unipop.structure.UniGraph;
 
 import java.util.*;
 import java.util.stream.Collectors;
 
-public class UniGraphEdgeOtherVertexStep extends UniPredicatesStep<Edge, Vertex> implements Orderable, Profiling {
+public class UniGraphEdgeOtherVertexStep extends UniPredicatesStep<Edge, Vertex> implements Orderable, Profiling, RebindableStep {
     private List<DeferredVertexQuery.DeferredVertexController> deferredVertexControllers;
+    private DeferredVertexLoader deferredVertexLoader;
     private StepDescriptor stepDescriptor;
     private List<Pair<String, Order>> orders;
 
     public UniGraphEdgeOtherVertexStep(Traversal.Admin traversal, UniGraph graph, ControllerManager controllerManager) {
         super(traversal, graph);
         this.deferredVertexControllers = controllerManager.getControllers(DeferredVertexQuery.DeferredVertexController.class);
+        this.deferredVertexLoader = graph.getDeferredVertexLoader();
         this.stepDescriptor = new StepDescriptor(this);
     }
 
@@ -54,7 +59,7 @@ public class UniGraphEdgeOtherVertexStep extends UniPredicatesStep<Edge, Vertex>
                     .collect(Collectors.toList());
             if (v.size() > 0) {
                 DeferredVertexQuery query = new DeferredVertexQuery(v, propertyKeys, orders, stepDescriptor, traversal);
-                deferredVertexControllers.forEach(deferredVertexController -> deferredVertexController.fetchProperties(query));
+                deferredVertexLoader.load(query, deferredVertexControllers);
             }
         }
 
@@ -68,6 +73,7 @@ public class UniGraphEdgeOtherVertexStep extends UniPredicatesStep<Edge, Vertex>
 
     @Override
     public void setMetrics(MutableMetrics metrics) {
+        super.setMetrics(metrics);
         this.stepDescriptor = new StepDescriptor(this, metrics);
     }
 
@@ -75,4 +81,16 @@ public class UniGraphEdgeOtherVertexStep extends UniPredicatesStep<Edge, Vertex>
     public void setOrders(List<Pair<String, Order>> orders) {
         this.orders = orders;
     }
+
+    @Override
+    public void rebind(PlanParameters parameters, ControllerManager controllerManager) {
+        this.deferredVertexControllers = controllerManager.getControllers(DeferredVertexQuery.DeferredVertexController.class);
+    }
+
+    @Override
+    public UniGraphEdgeOtherVertexStep clone() {
+        UniGraphEdgeOtherVertexStep clone = (UniGraphEdgeOtherVertexStep) super.clone();
+        clone.stepDescriptor = new StepDescriptor(clone);
+        return clone;
+    }
 }
@@ -14,19 +14,23 @@ import org.apache.tinkerpop.gremlin.structure.util.StringFactory;
 import org.javatuples.Pair;
 import org.unipop.process.UniPredicatesStep;
 import org.unipop.process.order.Orderable;
+import org.unipop.process.plan.PlanParameters;
+import org.unipop.process.plan.RebindableStep;
 import org.unipop.query.StepDescriptor;
 import org.unipop.query.controller.ControllerManager;
 import org.unipop.query.search.DeferredVertexQuery;
 import org.unipop.schema.reference.DeferredVertex;
+import org.unipop.schema.reference.DeferredVertexLoader;
 import org.unipop.structure.UniGraph;
 
 import java.util.*;
 import java.util.stream.Collectors;
 
-public class UniGraphEdgeVertexStep extends UniPredicatesStep<Edge, Vertex> implements Orderable, Profiling {
+public class UniGraphEdgeVertexStep extends UniPredicatesStep<Edge, Vertex> implements Orderable, Profiling, RebindableStep {
 
     private Direction direction;
     private List<DeferredVertexQuery.DeferredVertexController> deferredVertexControllers;
+    private DeferredVertexLoader deferredVertexLoader;
     private StepDescriptor stepDescriptor;
     private List<Pair<String, Order>> orders;
 
@@ -34,6 +38,7 @@ public class UniGraphEdgeVertexStep extends UniPredicatesStep<Edge, Vertex> impl
         super(traversal, graph);
         this.direction = direction;
         this.deferredVertexControllers = controllerManager.getControllers(DeferredVertexQuery.DeferredVertexController.class);
+        this.deferredVertexLoader = graph.getDeferredVertexLoader();
         this.stepDescriptor = new StepDescriptor(this);
     }
 
@@ -52,7 +57,7 @@ public class UniGraphEdgeVertexStep extends UniPredicatesStep<Edge, Vertex> impl
                     .collect(Collectors.toList());
             if(v.size() > 0) {
                 DeferredVertexQuery query = new DeferredVertexQuery(v, propertyKeys, orders, this.stepDescriptor, traversal);
-                deferredVertexControllers.forEach(deferredVertexController -> deferredVertexController.fetchProperties(query));
+                deferredVertexLoader.load(query, deferredVertexControllers);
             }
         }
 
@@ -71,6 +76,7 @@ public class UniGraphEdgeVertexStep extends UniPredicatesStep<Edge, Vertex> impl
 
     @Override
     public void setMetrics(MutableMetrics metrics) {
+        super.setMetrics(metrics);
         this.stepDescriptor = new StepDescriptor(this, metrics);
     }
 
@@ -78,4 +84,16 @@ public class UniGraphEdgeVertexStep extends UniPredicatesStep<Edge, Vertex> impl
     public void setOrders(List<Pair<String, Order>> orders) {
         this.orders = orders;
     }
+
+    @Override
+    public void rebind(PlanParameters parameters, ControllerManager controllerManager) {
+        this.deferredVertexControllers = controllerManager.getControllers(DeferredVertexQuery.DeferredVertexController.class);
+    }
+
+    @Override
+    public UniGraphEdgeVertexStep clone() {
+        UniGraphEdgeVertexStep clone = (UniGraphEdgeVertexStep) super.clone();
+        clone.stepDescriptor = new StepDescriptor(clone);
+        return clone;
+    }
 }
@@ -1,43 +1,52 @@
 package org.unipop.process.graph;
 
+import com.google.common.collect.Iterators;
 import org.apache.tinkerpop.gremlin.process.traversal.Order;
 import org.apache.tinkerpop.gremlin.process.traversal.step.Profiling;
 import org.apache.tinkerpop.gremlin.process.traversal.step.map.GraphStep;
 import org.apache.tinkerpop.gremlin.process.traversal.step.util.HasContainer;
 import org.apache.tinkerpop.gremlin.process.traversal.util.MutableMetrics;
 import org.apache.tinkerpop.gremlin.structure.Element;
+import org.apache.tinkerpop.gremlin.structure.util.ElementHelper;
 import org.javatuples.Pair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.unipop.process.order.Orderable;
-import org.unipop.util.ConversionUtils;
+import org.unipop.process.plan.PlanParameters;
+import org.unipop.process.plan.RebindableStep;
 import org.unipop.process.predicate.ReceivesPredicatesHolder;
 import org.unipop.process.properties.PropertyFetcher;
 import org.unipop.query.StepDescriptor;
+import org.unipop.query.controller.ControllerExecutor;
 import org.unipop.query.controller.ControllerManager;
 import org.unipop.query.predicates.PredicatesHolder;
 import org.unipop.query.predicates.PredicatesHolderFactory;
 import org.unipop.query.search.SearchQuery;
+import org.unipop.schema.reference.DeferredVertexLoader;
 import org.unipop.structure.UniGraph;
 
 import java.util.*;
 import java.util.stream.Stream;
 
-public class UniGraphStep<S,E extends Element> extends GraphStep<S,E> implements ReceivesPredicatesHolder<S, E>, PropertyFetcher, Orderable, Profiling{
+public class UniGraphStep<S,E extends Element> extends GraphStep<S,E> implements ReceivesPredicatesHolder<S, E>, PropertyFetcher, Orderable, Profiling, RebindableStep {
     private static final Logger logger = LoggerFactory.getLogger(UniGraphStep.class);
     private StepDescriptor stepDescriptor;
     private List<SearchQuery.SearchController>  controllers;
+    private ControllerExecutor controllerExecutor;
+    private DeferredVertexLoader deferredVertexLoader;
     private PredicatesHolder predicates = PredicatesHolderFactory.empty();
     private Set<String> propertyKeys;
     private int limit;
     private List<Pair<String, Order>> orders;
 
-    public UniGraphStep(GraphStep<S, E> originalStep, ControllerManager controllerManager) {
+    public UniGraphStep(GraphStep<S, E> originalStep, UniGraph graph, ControllerManager controllerManager) {
         super(originalStep.getTraversal(), originalStep.getReturnClass(), originalStep.isStartStep(), originalStep.getIds());
         originalStep.getLabels().forEach(this::addLabel);
         this.predicates = UniGraph.createIdPredicate(originalStep.getIds(), originalStep.getReturnClass());
         this.stepDescriptor = new StepDescriptor(this);
         this.controllers = controllerManager.getControllers(SearchQuery.SearchController.class);
+        this.controllerExecutor = graph.getControllerExecutor();
+        this.deferredVertexLoader = graph.getDeferredVertexLoader();
         this.setIteratorSupplier(this::query);
         limit = -1;
         this.propertyKeys = new HashSet<>();
@@ -53,7 +62,14 @@ public class UniGraphStep<S,E extends Element> extends GraphStep<S,E> implements
 
         SearchQuery<E> searchQuery = new SearchQuery<>(returnClass, predicates, limit, propertyKeys, orders, stepDescriptor, traversal);
         logger.debug("Executing query: ", searchQuery);
-        return controllers.stream().<Iterator<E>>map(controller -> controller.search(searchQuery)).flatMap(ConversionUtils::asStream).distinct().iterator();
+        Iterator<E> results = deferredVertexLoader.batch(controllerExecutor.search(controllers, controller -> controller.search(searchQuery)));
+        // the same element may be built from several rows or documents, or returned by several controllers,
+        // only its id is kept to drop the repetitions
+        Set<Object> ids = new HashSet<>();
+        Iterator<E> unique = Iterators.filter(results, element -> ids.add(element.id()));
+        // stops pulling from the controllers, and starting the next ones, once the limit is reached.
+        // ordered results are cut after the order step, every controller only returns its own first elements
+        return limit < 0 || orders != null ? unique : Iterators.limit(unique, limit);
     }
 
     @Override
@@ -72,6 +88,9 @@ public class UniGraphStep<S,E extends Element> extends GraphStep<S,E> implements
         this.limit = limit;
     }
 
+    public int getLimit() {
+        return limit;
+    }
 
     @Override
     public void addPropertyKey(String key) {
@@ -98,4 +117,26 @@ public class UniGraphStep<S,E extends Element> extends GraphStep<S,E> implements
     public void setOrders(List<Pair<String, Order>> orders) {
         this.orders = orders;
     }
+
+    public List<Pair<String, Order>> getOrders() {
+        return orders;
+    }
+
+    @Override
+    public void rebind(PlanParameters parameters, ControllerManager controllerManager) {
+        this.predicates = parameters.bind(predicates);
+        this.ids = parameters.bindIds(ids);
+        ElementHelper.validateMixedElementIds(returnClass, ids);
+        this.controllers = controllerManager.getControllers(SearchQuery.SearchController.class);
+    }
+
+    @Override
+    public UniGraphStep<S, E> clone() {
+        UniGraphStep<S, E> clone = (UniGraphStep<S, E>) super.clone();
+        // the query adds the predicates' keys to the property keys, a clone doesn't share them
+        clone.propertyKeys = propertyKeys == null ? null : new HashSet<>(propertyKeys);
+        clone.stepDescriptor = new StepDescriptor(clone);
+        clone.setIteratorSupplier(clone::query);
+        return clone;
+    }
 }
@@ -24,7 +24,7 @@ public class UniGraphStepStrategy extends AbstractTraversalStrategy<TraversalStr
 
         TraversalHelper.getStepsOfClass(GraphStep.class, traversal).forEach(graphStep -> {
 
-            final UniGraphStep<?,?> uniGraphStep = new UniGraphStep<>(graphStep, uniGraph.getControllerManager());
+            final UniGraphStep<?,?> uniGraphStep = new UniGraphStep<>(graphStep, uniGraph, uniGraph.getControllerManager().pin(traversal));
             TraversalHelper.replaceStep(graphStep, uniGraphStep, traversal);
             PredicatesUtil.collectPredicates(uniGraphStep, traversal);
         });
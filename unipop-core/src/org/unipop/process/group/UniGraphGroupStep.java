@@ -1,115 +1,169 @@
-//package org.unipop.process.group;
-//
-//import org.apache.tinkerpop.gremlin.process.traversal.Traversal;
-//import org.apache.tinkerpop.gremlin.process.traversal.step.util.ReducingBarrierStep;
-//import org.apache.tinkerpop.gremlin.structure.Direction;
-//import org.apache.tinkerpop.gremlin.structure.Element;
-//import org.unipop.query.UniQuery;
-//import org.unipop.query.controller.ControllerManager;
-//
-//import java.util.*;
-//
-///**
-// * Created by Gilad on 03/11/2015.
-// */
-//public class UniGraphGroupStep<E extends Element> extends ReducingBarrierStep<E, Map<String, Object>> {
-//    //region Constructor
-//    public UniGraphGroupStep(
-//            Traversal.Admin traversal,
-//            Class elementClass,
-//            UniQuery uniQuery,
-//            Object[] ids,
-//            String[] edgeLabels,
-//            Optional<Direction> direction,
-//            ControllerManager controllerManager) {
-//        super(traversal);
-//
-//        this.controllerManager = controllerManager;
-//        this.bulk = new ArrayList<>();
-//
-////        this.setSeedSupplier(() -> {
-////            return null;
-////            if (!this.previousStep.equals(EmptyStep.instance())) {
-////                return new HashMap<>();
-////            }
-////
-////            if (Vertex.class.isAssignableFrom(elementClass)) {
-////                return this.controllerManager.getControllers(GroupController.class).vertexGroupBy(
-////                        uniQuery,
-////                        keyTraversal,
-////                        valuesTraversal,
-////                        reducerTraversal);
-////            } else {
-////                return this.controllerManager.edgeGroupBy(
-////                        uniQuery,
-////                        keyTraversal,
-////                        valuesTraversal,
-////                        reducerTraversal);
-////            }
-////        });
-////
-////        this.setBiFunction((seed, traverser) -> {
-////            E element = traverser.getValue();
-////            bulk.add(element);
-////
-////            Map<String, Object> bulkGroupBy = null;
-////            //TODO: configure bulk size dynamically
-////            if (bulk.size() > 100 || !this.starts.hasNext()) {
-////                bulkGroupBy = this.controllerManager.edgeGroupBy(
-////                        (Vertex[]) bulk.toArray(),
-////                        direction.getValue(),
-////                        edgeLabels,
-////                        uniQuery,
-////                        keyTraversal,
-////                        valuesTraversal,
-////                        reducerTraversal);
-////
-////                bulk.clear();
-////            }
-////
-////            // merge the result with the seed
-////            for(Map.Entry<String, Object> entry : bulkGroupBy.entrySet()) {
-////                seed.getValue(entry.getKey())
-////                seed.put(entry.getKey(), entry.getValue());
-////            }
-////
-////            return seed;
-////        });
-//    }
-//    //endregion
-//
-//    //region Properties
-//    public Traversal getKeyTraversal() {
-//        return this.keyTraversal;
-//    }
-//
-//    public void setKeyTraversal(Traversal value) {
-//        this.keyTraversal = value;
-//    }
-//
-//    public Traversal getValuesTraversal() {
-//        return this.valuesTraversal;
-//    }
-//
-//    public void setValuesTraversal(Traversal value) {
-//        this.valuesTraversal = value;
-//    }
-//
-//    public Traversal getReducerTraversal() {
-//        return this.reducerTraversal;
-//    }
-//
-//    public void setReducerTraversal(Traversal value) {
-//        this.reducerTraversal = value;
-//    }
-//    //endregion
-//
-//    //region Fields
-//    private ControllerManager controllerManager;
-//    private Collection<E> bulk;
-//
-//    private Traversal keyTraversal;
-//    private Traversal valuesTraversal;
-//    private Traversal reducerTraversal;
-//    //endregion
-//}
+package org.unipop.process.group;
+
+import org.apache.tinkerpop.gremlin.process.traversal.Step;
+import org.apache.tinkerpop.gremlin.process.traversal.Traverser;
+import org.apache.tinkerpop.gremlin.process.traversal.step.Profiling;
+import org.apache.tinkerpop.gremlin.process.traversal.step.util.HasContainer;
+import org.apache.tinkerpop.gremlin.process.traversal.step.util.ReducingBarrierStep;
+import org.apache.tinkerpop.gremlin.process.traversal.util.MutableMetrics;
+import org.apache.tinkerpop.gremlin.structure.Element;
+import org.apache.tinkerpop.gremlin.structure.util.StringFactory;
+import org.javatuples.Pair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.unipop.process.graph.UniGraphStep;
+import org.unipop.process.group.traversal.SemanticKeyTraversal;
+import org.unipop.process.group.traversal.SemanticReducerTraversal;
+import org.unipop.process.group.traversal.SemanticValuesTraversal;
+import org.unipop.query.StepDescriptor;
+import org.unipop.query.aggregation.AggregateQuery;
+import org.unipop.query.controller.ControllerExecutor;
+import org.unipop.query.controller.ControllerManager;
+import org.unipop.query.predicates.PredicatesHolder;
+import org.unipop.query.search.SearchQuery;
+import org.unipop.structure.UniGraph;
+import org.unipop.util.ConversionUtils;
+
+import java.util.*;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Replaces g.V().has(...).groupCount().by(...) and g.V().has(...).group().by(...).by(...) and their g.E() counterparts.
+ * A controller that can aggregate the elements groups them in its data source. When more than one controller returns
+ * elements they are all fetched, without repetitions, and grouped like GroupStep would group them.
+ * Created by Gilad on 03/11/2015.
+ * @param <S> Start type
+ * @param <E> Element
+ */
+public class UniGraphGroupStep<S, E extends Element> extends ReducingBarrierStep<S, Map<Object, Object>> implements Profiling {
+    private static final Logger logger = LoggerFactory.getLogger(UniGraphGroupStep.class);
+
+    private final Class<E> returnClass;
+    private final PredicatesHolder predicates;
+    private final Set<String> propertyKeys;
+    private final SemanticKeyTraversal key;
+    private final SemanticValuesTraversal values;
+    private final SemanticReducerTraversal reduce;
+    private final List<SearchQuery.SearchController> controllers;
+    private final ControllerExecutor controllerExecutor;
+    private StepDescriptor stepDescriptor;
+    private boolean aggregated;
+
+    public UniGraphGroupStep(UniGraphStep<S, E> graphStep, SemanticKeyTraversal key, SemanticValuesTraversal values,
+                             SemanticReducerTraversal reduce, UniGraph graph, ControllerManager controllerManager) {
+        super(graphStep.getTraversal());
+        this.returnClass = graphStep.getReturnClass();
+        this.predicates = graphStep.getPredicates();
+        this.key = key;
+        this.values = values;
+        this.reduce = reduce;
+        this.propertyKeys = propertyKeys(predicates, key, reduce);
+        this.controllers = controllerManager.getControllers(SearchQuery.SearchController.class);
+        this.controllerExecutor = graph.getControllerExecutor();
+        this.stepDescriptor = new StepDescriptor(this);
+        this.setSeedSupplier(HashMap::new);
+        this.setReducingBiOperator((result, partial) -> {
+            reduce.merge(result, partial);
+            return result;
+        });
+    }
+
+    @Override
+    public void processAllStarts() {
+        if (!aggregated) {
+            aggregated = true;
+            this.addBarrier(aggregate());
+        }
+        super.processAllStarts();
+    }
+
+    private Map<Object, Object> aggregate() {
+        AggregateQuery<E> aggregateQuery = new AggregateQuery<>(returnClass, predicates, propertyKeys, key, values, reduce, stepDescriptor, traversal);
+        logger.debug("Executing query: {}", aggregateQuery);
+
+        Iterator<Pair<SearchQuery.SearchController, Map<Object, Object>>> partials = controllerExecutor.search(controllers, controller -> {
+            Map<Object, Object> partial = controller instanceof AggregateQuery.AggregateController ?
+                    ((AggregateQuery.AggregateController) controller).aggregate(aggregateQuery) : null;
+            return Collections.singleton(Pair.with(controller, partial)).iterator();
+        });
+        Map<Object, Object> result = new HashMap<>();
+        List<SearchQuery.SearchController> ungrouped = new ArrayList<>();
+        List<SearchQuery.SearchController> grouped = new ArrayList<>();
+        while (partials.hasNext()) {
+            Pair<SearchQuery.SearchController, Map<Object, Object>> partial = partials.next();
+            Map<Object, Object> value = partial.getValue1();
+            if (value == null) ungrouped.add(partial.getValue0());
+            else {
+                reduce.merge(result, value);
+                if (!value.isEmpty()) grouped.add(partial.getValue0());
+            }
+        }
+        if (ungrouped.isEmpty() && grouped.size() <= 1) return result;
+
+        // the same element may be returned by several controllers, UniGraphStep returns it once
+        List<SearchQuery.SearchController> searched = new ArrayList<>(ungrouped);
+        searched.addAll(grouped);
+        Iterator<E> results = controllerExecutor.search(searched, controller -> controller.search(aggregateQuery));
+        return aggregate(ConversionUtils.asStream(results).distinct().iterator(), key, reduce, element -> 1);
+    }
+
+    /**
+     * Groups and reduces elements in memory, for the controllers that can't aggregate them
+     * @param elements The elements
+     * @param bulk The number of times an element is aggregated
+     * @return The reduced value of every key
+     */
+    static Map<Object, Object> aggregate(Iterator<? extends Element> elements, SemanticKeyTraversal key,
+                                         SemanticReducerTraversal reduce, ToLongFunction<Element> bulk) {
+        Map<Object, Object> result = new HashMap<>();
+        elements.forEachRemaining(element -> {
+            Object elementKey = key.project(element);
+            long elementBulk = bulk.applyAsLong(element);
+            if (elementKey == null || elementBulk == 0) return;
+            Object value = reduce.multiply(reduce.project(element), elementBulk);
+            result.put(elementKey, result.containsKey(elementKey) ? reduce.reduce(result.get(elementKey), value) : value);
+        });
+        return result;
+    }
+
+    static Set<String> propertyKeys(PredicatesHolder predicates, SemanticKeyTraversal key, SemanticReducerTraversal reduce) {
+        Set<String> propertyKeys = Stream.concat(
+                predicates.getPredicates().stream(),
+                predicates.getChildren().stream()
+                        .map(PredicatesHolder::getPredicates)
+                        .flatMap(Collection::stream)
+        ).map(HasContainer::getKey).collect(Collectors.toSet());
+        propertyKeys.add(key.getKey());
+        if (reduce.getKey() != null) propertyKeys.add(reduce.getKey());
+        return propertyKeys;
+    }
+
+    @Override
+    public Map<Object, Object> projectTraverser(Traverser.Admin<S> traverser) {
+        return Collections.emptyMap();
+    }
+
+    @Override
+    public Map<Object, Object> generateFinalResult(Map<Object, Object> result) {
+        reduce.complete(result);
+        return result;
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        this.aggregated = false;
+    }
+
+    @Override
+    public void setMetrics(MutableMetrics metrics) {
+        this.stepDescriptor = new StepDescriptor((Step) this, metrics);
+    }
+
+    @Override
+    public String toString() {
+        return StringFactory.stepString(this, returnClass.getSimpleName().toLowerCase(), predicates.getPredicates(), key, reduce);
+    }
+}
@@ -1,230 +1,169 @@
-//package org.unipop.process.group;
-//
-//import org.apache.tinkerpop.gremlin.process.traversal.Step;
-//import org.apache.tinkerpop.gremlin.process.traversal.Traversal;
-//import org.apache.tinkerpop.gremlin.process.traversal.TraversalStrategy;
-//import org.apache.tinkerpop.gremlin.process.traversal.lambda.ElementValueTraversal;
-//import org.apache.tinkerpop.gremlin.process.traversal.lambda.TokenTraversal;
-//import org.apache.tinkerpop.gremlin.process.traversal.step.map.*;
-//import org.apache.tinkerpop.gremlin.process.traversal.step.sideEffect.StartStep;
-//import org.apache.tinkerpop.gremlin.process.traversal.step.util.EmptyStep;
-//import org.apache.tinkerpop.gremlin.process.traversal.strategy.AbstractTraversalStrategy;
-//import org.apache.tinkerpop.gremlin.process.traversal.util.TraversalHelper;
-//import org.apache.tinkerpop.gremlin.structure.*;
-//import org.unipop.process.predicate.UniGraphPredicatesStrategy;
-//import org.unipop.process.group.traversal.SemanticKeyTraversal;
-//import org.unipop.process.group.traversal.SemanticReducerTraversal;
-//import org.unipop.process.group.traversal.SemanticValuesTraversal;
-//import org.unipop.process.graph.UniGraphStep;
-//import org.unipop.process.vertex.UniGraphVertexStep;
-//import org.unipop.structure.UniGraph;
-//
-//import java.util.HashSet;
-//import java.util.List;
-//import java.util.Optional;
-//import java.util.Set;
-//
-///**
-// * Created by Gilad on 03/11/2015.
-// */
-//public class UniGraphGroupStepStrategy extends AbstractTraversalStrategy<TraversalStrategy.ProviderOptimizationStrategy> implements TraversalStrategy.ProviderOptimizationStrategy {
-//    //region AbstractTraversalStrategy Implementation
-//    @Override
-//    public Set<Class<? extends ProviderOptimizationStrategy>> applyPrior() {
-//        Set<Class<? extends TraversalStrategy.ProviderOptimizationStrategy>> priorStrategies = new HashSet<>();
-//        priorStrategies.add(UniGraphPredicatesStrategy.class);
-//        priorStrategies.add(UniGraphGroupCountStepStrategy.class);
-//        return priorStrategies;
-//    }
-//
-//    @Override
-//    public void apply(Traversal.Admin<?, ?> traversal) {
-//        if(traversal.getEngine().isComputer()) return;
-//
-//        Graph graph = traversal.getGraph().getValue();
-//        if(!(graph instanceof UniGraph)) return;
-//
-//        UniGraph elasticGraph = (UniGraph) graph;
-//
-//        TraversalHelper.getStepsOfAssignableClassRecursively(GroupStep.class, traversal).forEach(step -> {
-//            GroupStep groupStep = (GroupStep) step;
-//
-//            UniGraphGroupStep elasticGroupStep = null;
-//            if (UniGraphVertexStep.class.isAssignableFrom(step.getPreviousStep().getClass()) &&
-//                    Edge.class.isAssignableFrom(((UniGraphVertexStep) step.getPreviousStep()).getReturnClass())) {
-//                UniGraphVertexStep elasticVertexStep = (UniGraphVertexStep) step.getPreviousStep();
-//                elasticGroupStep = new UniGraphGroupStep(
-//                        traversal,
-//                        elasticVertexStep.getReturnClass(),
-//                        elasticVertexStep.getPredicates(),
-//                        new Object[0],
-//                        elasticVertexStep.getEdgeLabels(),
-//                        Optional.of(elasticVertexStep.getDirection()), elasticGraph.getControllerManager());
-//
-//            } else if (UniGraphStep.class.isAssignableFrom(step.getPreviousStep().getClass())) {
-//                UniGraphStep elasticGraphStep = (UniGraphStep) step.getPreviousStep();
-//                elasticGroupStep = new UniGraphGroupStep(
-//                        traversal,
-//                        elasticGraphStep.getReturnClass(),
-//                        elasticGraphStep.getPredicates(),
-//                        elasticGraphStep.getIds(),
-//                        new String[0],
-//                        Optional.empty(), elasticGraph.getControllerManager());
-//            }
-//
-//            if (elasticGroupStep != null) {
-//                List<Traversal> groupTraversals = groupStep.getLocalChildren();
-//
-//                //add conditions here
-//                Traversal keyTraversal = groupTraversals.size() > 0 ? groupTraversals.getValue(0) : null;
-//                Traversal valuesTraversal = groupTraversals.size() > 1 ? groupTraversals.getValue(1) : null;
-//                Traversal reducerTraversal = groupTraversals.size() > 2 ? groupTraversals.getValue(2) : null;
-//
-//                SemanticKeyTraversal semanticKeyTraversal = translateKeyTraversal(keyTraversal);
-//                SemanticValuesTraversal semanticValuesTraversal = translateValuesTraversal(valuesTraversal);
-//                SemanticReducerTraversal semanticReducerTraversal = translateReducerTraversal(reducerTraversal, semanticValuesTraversal);
-//
-//                boolean semanticKeyTranslationSuccess = keyTraversal != null && semanticKeyTraversal != null;
-//                boolean semanticValuesTranslationSuccess = valuesTraversal != null && semanticValuesTraversal != null;
-//                boolean semanticReducerTranslationSuccess = reducerTraversal != null && semanticReducerTraversal != null;
-//
-//                if (semanticKeyTranslationSuccess && semanticValuesTranslationSuccess && semanticReducerTranslationSuccess) {
-//                    elasticGroupStep.setKeyTraversal(semanticKeyTraversal);
-//                    elasticGroupStep.setValuesTraversal(semanticValuesTraversal);
-//                    elasticGroupStep.setReducerTraversal(semanticReducerTraversal);
-//
-//                    TraversalHelper.replaceStep(step.getPreviousStep(), elasticGroupStep, traversal);
-//                    traversal.removeStep(step);
-//
-//                    insertStartStepWhenTraversalIsInternal(traversal, elasticGroupStep);
-//                }
-//            }
-//        });
-//    }
-//
-//
-//    private SemanticKeyTraversal translateKeyTraversal(Traversal keyTraversal) {
-//        if (ElementValueTraversal.class.isAssignableFrom(keyTraversal.getClass())) {
-//            ElementValueTraversal elementValueTraversal = (ElementValueTraversal)keyTraversal;
-//            return new SemanticKeyTraversal(SemanticKeyTraversal.Type.property, elementValueTraversal.getPropertyKey());
-//        }
-//
-//        if (TokenTraversal.class.isAssignableFrom(keyTraversal.getClass())) {
-//            TokenTraversal tokenTraversal = (TokenTraversal)keyTraversal;
-//            switch (tokenTraversal.getToken()) {
-//                case id:
-//                    //not supported for elastic but cold be supported for other stores.
-//                    return null;
-//
-//                case label:
-//                    return new SemanticKeyTraversal(SemanticKeyTraversal.Type.property, T.label.toString());
-//            }
-//        }
-//
-//        if (Traversal.Admin.class.isAssignableFrom(keyTraversal.getClass())) {
-//            Traversal.Admin adminTraversal = (Traversal.Admin)keyTraversal;
-//            if (adminTraversal.getSteps().size() != 1 ||
-//                    !isTraversalStepAssignableFrom(adminTraversal, 0, PropertiesStep.class)) {
-//                return null;
-//            }
-//
-//            PropertiesStep propertiesStep = (PropertiesStep)adminTraversal.getSteps().getValue(0);
-//            if (propertiesStep.getReturnType() != PropertyType.VALUE ||
-//                    propertiesStep.getPropertyKeys() == null ||
-//                    propertiesStep.getPropertyKeys().length != 1) {
-//                return null;
-//            }
-//
-//            return new SemanticKeyTraversal(SemanticKeyTraversal.Type.property, propertiesStep.getPropertyKeys()[0]);
-//        }
-//
-//        return null;
-//    }
-//
-//    private SemanticValuesTraversal translateValuesTraversal(Traversal valuesTraversal) {
-//        if (valuesTraversal == null) {
-//            return null;
-//        }
-//
-//        if (ElementValueTraversal.class.isAssignableFrom(valuesTraversal.getClass())) {
-//            ElementValueTraversal elementValueTraversal = (ElementValueTraversal)valuesTraversal;
-//            return new SemanticValuesTraversal(SemanticValuesTraversal.Type.property, elementValueTraversal.getPropertyKey());
-//        } else if (TokenTraversal.class.isAssignableFrom(valuesTraversal.getClass())) {
-//            TokenTraversal tokenTraversal = (TokenTraversal)valuesTraversal;
-//            switch (tokenTraversal.getToken()) {
-//                case id:
-//                    //not supported for elastic but cold be supported for other stores.
-//                    return null;
-//
-//                case label:
-//                    return new SemanticValuesTraversal(SemanticValuesTraversal.Type.property, T.label.toString());
-//            }
-//        }
-//
-//        if (Traversal.Admin.class.isAssignableFrom(valuesTraversal.getClass())) {
-//            Traversal.Admin adminTraversal = (Traversal.Admin)valuesTraversal;
-//            if (adminTraversal.getSteps().size() != 1 ||
-//                    !isTraversalStepAssignableFrom(adminTraversal, 0, PropertiesStep.class)) {
-//                return null;
-//            }
-//
-//            PropertiesStep propertiesStep = (PropertiesStep)adminTraversal.getSteps().getValue(0);
-//            if (propertiesStep.getReturnType() != PropertyType.VALUE ||
-//                    propertiesStep.getPropertyKeys() == null ||
-//                    propertiesStep.getPropertyKeys().length != 1) {
-//                return null;
-//            }
-//
-//            return new SemanticValuesTraversal(SemanticValuesTraversal.Type.property, propertiesStep.getPropertyKeys()[0]);
-//        }
-//
-//        return null;
-//    }
-//
-//    private SemanticReducerTraversal translateReducerTraversal(Traversal reducerTraversal, SemanticValuesTraversal semanticValuesTraversal) {
-//        if (semanticValuesTraversal == null || reducerTraversal == null) {
-//            return null;
-//        }
-//
-//        if (Traversal.Admin.class.isAssignableFrom(reducerTraversal.getClass())) {
-//            Traversal.Admin adminTraversal = (Traversal.Admin)reducerTraversal;
-//            if (adminTraversal.getSteps().size() == 1 &&
-//                    isTraversalStepAssignableFrom(adminTraversal, 0, CountLocalStep.class)) {
-//                return new SemanticReducerTraversal(SemanticReducerTraversal.Type.count, semanticValuesTraversal.getKey());
-//            }
-//
-//            if (adminTraversal.getSteps().size() == 1 &&
-//                    isTraversalStepAssignableFrom(adminTraversal, 0, MaxLocalStep.class)) {
-//                return new SemanticReducerTraversal(SemanticReducerTraversal.Type.max, semanticValuesTraversal.getKey());
-//            }
-//
-//            if (adminTraversal.getSteps().size() == 1 &&
-//                    isTraversalStepAssignableFrom(adminTraversal, 0, MinLocalStep.class)) {
-//                return new SemanticReducerTraversal(SemanticReducerTraversal.Type.min, semanticValuesTraversal.getKey());
-//            }
-//
-//            if (adminTraversal.getSteps().size() == 2 &&
-//                    isTraversalStepAssignableFrom(adminTraversal, 0, DedupLocalStep.class) &&
-//                    isTraversalStepAssignableFrom(adminTraversal, 1, CountLocalStep.class)) {
-//                return new SemanticReducerTraversal(SemanticReducerTraversal.Type.cardinality, semanticValuesTraversal.getKey());
-//            }
-//        }
-//
-//        return null;
-//    }
-//
-//    private boolean isTraversalStepAssignableFrom(Traversal.Admin adminTraversal, int stepNumber, Class stepClass) {
-//        return stepClass.isAssignableFrom(adminTraversal.getSteps().getValue(stepNumber).getClass());
-//    }
-//
-//    //endregion
-//
-//    //region Private Methods
-//    private void insertStartStepWhenTraversalIsInternal(final Traversal.Admin<?, ?> traversal, Step step) {
-//        if (!traversal.getParent().equals(EmptyStep.instance())) {
-//            StartStep startStep = new StartStep(traversal);
-//            TraversalHelper.insertBeforeStep(startStep, step, traversal);
-//        }
-//    }
-//    //endregion
-//}
+package org.unipop.process.group;
+
+import com.google.common.collect.Sets;
+import org.apache.tinkerpop.gremlin.process.traversal.Step;
+import org.apache.tinkerpop.gremlin.process.traversal.Traversal;
+import org.apache.tinkerpop.gremlin.process.traversal.TraversalStrategy;
+import org.apache.tinkerpop.gremlin.process.traversal.lambda.ElementValueTraversal;
+import org.apache.tinkerpop.gremlin.process.traversal.lambda.TokenTraversal;
+import org.apache.tinkerpop.gremlin.process.traversal.step.map.*;
+import org.apache.tinkerpop.gremlin.process.traversal.step.sideEffect.GroupSideEffectStep;
+import org.apache.tinkerpop.gremlin.process.traversal.step.util.EmptyStep;
+import org.apache.tinkerpop.gremlin.process.traversal.step.util.ReducingBarrierStep;
+import org.apache.tinkerpop.gremlin.process.traversal.strategy.AbstractTraversalStrategy;
+import org.apache.tinkerpop.gremlin.process.traversal.util.TraversalHelper;
+import org.apache.tinkerpop.gremlin.structure.Edge;
+import org.apache.tinkerpop.gremlin.structure.Graph;
+import org.apache.tinkerpop.gremlin.structure.PropertyType;
+import org.apache.tinkerpop.gremlin.structure.T;
+import org.unipop.process.edge.EdgeStepsStrategy;
+import org.unipop.process.graph.UniGraphStep;
+import org.unipop.process.graph.UniGraphStepStrategy;
+import org.unipop.process.group.traversal.SemanticKeyTraversal;
+import org.unipop.process.group.traversal.SemanticReducerTraversal;
+import org.unipop.process.group.traversal.SemanticValuesTraversal;
+import org.unipop.process.order.UniGraphOrderStrategy;
+import org.unipop.process.properties.UniGraphPropertiesStrategy;
+import org.unipop.process.repeat.UniGraphRepeatStepStrategy;
+import org.unipop.process.vertex.UniGraphVertexStep;
+import org.unipop.process.vertex.UniGraphVertexStepStrategy;
+import org.unipop.structure.UniGraph;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Pushes groupCount().by(key) and group().by(key).by(count()|values(x).min()|max()|sum()) down to the controllers
+ * when they directly follow a UniGraphStep, or a UniGraphVertexStep returning edges, that has no labels, limit or order.
+ * The key is a single property or the label.
+ * Created by Gilad on 03/11/2015.
+ */
+public class UniGraphGroupStepStrategy extends AbstractTraversalStrategy<TraversalStrategy.ProviderOptimizationStrategy> implements TraversalStrategy.ProviderOptimizationStrategy {
+    //region AbstractTraversalStrategy Implementation
+    @Override
+    public Set<Class<? extends ProviderOptimizationStrategy>> applyPrior() {
+        return Sets.newHashSet(UniGraphStepStrategy.class, UniGraphVertexStepStrategy.class, EdgeStepsStrategy.class,
+                UniGraphRepeatStepStrategy.class, UniGraphPropertiesStrategy.class, UniGraphOrderStrategy.class);
+    }
+
+    @Override
+    public void apply(Traversal.Admin<?, ?> traversal) {
+        if (TraversalHelper.onGraphComputer(traversal)) return;
+
+        Graph graph = traversal.getGraph().get();
+        if (!(graph instanceof UniGraph)) return;
+
+        UniGraph uniGraph = (UniGraph) graph;
+
+        // group() keeps the first barrier of its value traversal, it must not be replaced
+        Step parent = traversal.getParent().asStep();
+        if (parent instanceof GroupStep || parent instanceof GroupSideEffectStep) return;
+
+        TraversalHelper.getStepsOfAssignableClass(ReducingBarrierStep.class, traversal).forEach(step -> {
+            List<? extends Traversal.Admin<?, ?>> children;
+            SemanticValuesTraversal values;
+            SemanticReducerTraversal reduce;
+            if (step instanceof GroupCountStep) {
+                children = ((GroupCountStep<?, ?>) step).getLocalChildren();
+                // a groupCount() without by() groups by the element itself
+                if (children.size() != 1) return;
+                values = new SemanticValuesTraversal(SemanticValuesTraversal.Type.element, null);
+                reduce = new SemanticReducerTraversal(SemanticReducerTraversal.Type.count, null);
+            } else if (step instanceof GroupStep) {
+                children = ((GroupStep<?, ?, ?>) step).getLocalChildren();
+                // a group() without by() has only a value traversal
+                if (children.size() != 2) return;
+                reduce = translateReducerTraversal(children.get(1));
+                if (reduce == null) return;
+                values = reduce.getKey() == null ?
+                        new SemanticValuesTraversal(SemanticValuesTraversal.Type.element, null) :
+                        new SemanticValuesTraversal(SemanticValuesTraversal.Type.property, reduce.getKey());
+            } else return;
+
+            SemanticKeyTraversal key = translateKeyTraversal(children.get(0));
+            if (key == null) return;
+
+            Step previousStep = step.getPreviousStep();
+            Step groupStep = null;
+            if (previousStep instanceof UniGraphStep && isAggregatable((UniGraphStep<?, ?>) previousStep, traversal)) {
+                groupStep = new UniGraphGroupStep<>((UniGraphStep<?, ?>) previousStep, key, values, reduce,
+                        uniGraph, uniGraph.getControllerManager().pin(traversal));
+            } else if (previousStep instanceof UniGraphVertexStep && isAggregatable((UniGraphVertexStep<?>) previousStep)) {
+                groupStep = new UniGraphVertexGroupStep((UniGraphVertexStep<?>) previousStep, key, values, reduce,
+                        uniGraph, uniGraph.getControllerManager().pin(traversal));
+            }
+            if (groupStep == null) return;
+
+            ((Set<String>) step.getLabels()).forEach(groupStep::addLabel);
+            TraversalHelper.replaceStep(previousStep, groupStep, traversal);
+            traversal.removeStep(step);
+        });
+    }
+    //endregion
+
+    //region Private Methods
+    private boolean isAggregatable(UniGraphStep<?, ?> graphStep, Traversal.Admin<?, ?> traversal) {
+        // only a g.V() that starts the root traversal, a mid traversal V() runs once for every incoming traverser
+        return graphStep.isStartStep() && traversal.getParent() instanceof EmptyStep &&
+                graphStep.getLabels().isEmpty() && graphStep.getLimit() < 0 && graphStep.getOrders() == null;
+    }
+
+    private boolean isAggregatable(UniGraphVertexStep<?> vertexStep) {
+        // the key of out() or in() would be a property of the adjacent vertices
+        return Edge.class.isAssignableFrom(vertexStep.getReturnClass()) &&
+                vertexStep.getLabels().isEmpty() && vertexStep.getLimit() < 0 && vertexStep.getOrders() == null;
+    }
+
+    private SemanticKeyTraversal translateKeyTraversal(Traversal.Admin<?, ?> keyTraversal) {
+        if (keyTraversal instanceof ElementValueTraversal) {
+            return new SemanticKeyTraversal(SemanticKeyTraversal.Type.property, ((ElementValueTraversal) keyTraversal).getPropertyKey());
+        }
+
+        if (keyTraversal instanceof TokenTraversal) {
+            // an id key is not supported, a data source can't group by the ids it generates
+            if (((TokenTraversal) keyTraversal).getToken().equals(T.label))
+                return new SemanticKeyTraversal(SemanticKeyTraversal.Type.property, T.label.getAccessor());
+            return null;
+        }
+
+        String propertyKey = getPropertyValueKey(keyTraversal);
+        return propertyKey == null ? null : new SemanticKeyTraversal(SemanticKeyTraversal.Type.property, propertyKey);
+    }
+
+    private SemanticReducerTraversal translateReducerTraversal(Traversal.Admin<?, ?> valueTraversal) {
+        List<Step> steps = valueTraversal.getSteps();
+        if (steps.size() == 1 && steps.get(0) instanceof CountGlobalStep) {
+            return new SemanticReducerTraversal(SemanticReducerTraversal.Type.count, null);
+        }
+
+        if (steps.size() != 2 || !(steps.get(0) instanceof PropertiesStep)) return null;
+        String propertyKey = getPropertyValueKey(steps.get(0));
+        if (propertyKey == null) return null;
+
+        Step reducerStep = steps.get(1);
+        if (reducerStep instanceof MinGlobalStep)
+            return new SemanticReducerTraversal(SemanticReducerTraversal.Type.min, propertyKey);
+        if (reducerStep instanceof MaxGlobalStep)
+            return new SemanticReducerTraversal(SemanticReducerTraversal.Type.max, propertyKey);
+        if (reducerStep instanceof SumGlobalStep)
+            return new SemanticReducerTraversal(SemanticReducerTraversal.Type.sum, propertyKey);
+        return null;
+    }
+
+    private String getPropertyValueKey(Traversal.Admin<?, ?> traversal) {
+        List<Step> steps = traversal.getSteps();
+        return steps.size() == 1 ? getPropertyValueKey(steps.get(0)) : null;
+    }
+
+    private String getPropertyValueKey(Step step) {
+        if (!(step instanceof PropertiesStep) || !step.getLabels().isEmpty()) return null;
+        PropertiesStep propertiesStep = (PropertiesStep) step;
+        if (propertiesStep.getReturnType() != PropertyType.VALUE ||
+                propertiesStep.getPropertyKeys() == null ||
+                propertiesStep.getPropertyKeys().length != 1) {
+            return null;
+        }
+        return propertiesStep.getPropertyKeys()[0];
+    }
+    //endregion
+}
@@ -0,0 +1,154 @@
+package org.unipop.process.group;
+
+import org.apache.tinkerpop.gremlin.process.traversal.Step;
+import org.apache.tinkerpop.gremlin.process.traversal.Traverser;
+import org.apache.tinkerpop.gremlin.process.traversal.step.Profiling;
+import org.apache.tinkerpop.gremlin.process.traversal.step.util.ReducingBarrierStep;
+import org.apache.tinkerpop.gremlin.process.traversal.traverser.TraverserRequirement;
+import org.apache.tinkerpop.gremlin.process.traversal.util.MutableMetrics;
+import org.apache.tinkerpop.gremlin.structure.Direction;
+import org.apache.tinkerpop.gremlin.structure.Edge;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.apache.tinkerpop.gremlin.structure.util.StringFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.unipop.process.group.traversal.SemanticKeyTraversal;
+import org.unipop.process.group.traversal.SemanticReducerTraversal;
+import org.unipop.process.group.traversal.SemanticValuesTraversal;
+import org.unipop.process.vertex.UniGraphVertexStep;
+import org.unipop.query.StepDescriptor;
+import org.unipop.query.aggregation.AggregateVertexQuery;
+import org.unipop.query.controller.ControllerExecutor;
+import org.unipop.query.controller.ControllerManager;
+import org.unipop.query.predicates.PredicatesHolder;
+import org.unipop.query.search.SearchVertexQuery;
+import org.unipop.structure.UniGraph;
+import org.unipop.util.ConversionUtils;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Replaces outE().groupCount().by(...), inE().group().by(...).by(...) etc.
+ * The incoming vertices are aggregated in bulks of "bulk.max", every controller that can aggregate the edges of a bulk
+ * groups them in its data source, the edges of the others are fetched and grouped like GroupStep would group them.
+ * Each edge is aggregated once for every traverser of its vertex.
+ */
+public class UniGraphVertexGroupStep extends ReducingBarrierStep<Vertex, Map<Object, Object>> implements Profiling {
+    private static final Logger logger = LoggerFactory.getLogger(UniGraphVertexGroupStep.class);
+
+    private final Direction direction;
+    private final String[] edgeLabels;
+    private final PredicatesHolder predicates;
+    private final Set<String> propertyKeys;
+    private final SemanticKeyTraversal key;
+    private final SemanticValuesTraversal values;
+    private final SemanticReducerTraversal reduce;
+    private final List<SearchVertexQuery.SearchVertexController> controllers;
+    private final ControllerExecutor controllerExecutor;
+    private final int maxBulk;
+    private StepDescriptor stepDescriptor;
+
+    public UniGraphVertexGroupStep(UniGraphVertexStep<?> vertexStep, SemanticKeyTraversal key, SemanticValuesTraversal values,
+                                   SemanticReducerTraversal reduce, UniGraph graph, ControllerManager controllerManager) {
+        super(vertexStep.getTraversal());
+        this.direction = vertexStep.getDirection();
+        this.edgeLabels = vertexStep.getEdgeLabels();
+        this.predicates = vertexStep.getPredicates();
+        this.key = key;
+        this.values = values;
+        this.reduce = reduce;
+        this.propertyKeys = UniGraphGroupStep.propertyKeys(predicates, key, reduce);
+        this.controllers = controllerManager.getControllers(SearchVertexQuery.SearchVertexController.class);
+        this.controllerExecutor = graph.getControllerExecutor();
+        this.maxBulk = graph.configuration().getInt("bulk.max", 100);
+        this.stepDescriptor = new StepDescriptor(this);
+        this.setSeedSupplier(HashMap::new);
+        this.setReducingBiOperator((result, partial) -> {
+            reduce.merge(result, partial);
+            return result;
+        });
+    }
+
+    @Override
+    public void processAllStarts() {
+        while (starts.hasNext()) {
+            List<Traverser.Admin<Vertex>> bulk = new ArrayList<>(maxBulk);
+            while (bulk.size() < maxBulk && starts.hasNext())
+                bulk.add(starts.next());
+            this.addBarrier(aggregate(bulk));
+        }
+        super.processAllStarts();
+    }
+
+    @Override
+    public Map<Object, Object> projectTraverser(Traverser.Admin<Vertex> traverser) {
+        return aggregate(Collections.singletonList(traverser));
+    }
+
+    private Map<Object, Object> aggregate(List<Traverser.Admin<Vertex>> traversers) {
+        Map<Object, Long> bulks = new HashMap<>(traversers.size());
+        Map<Object, Vertex> vertices = new LinkedHashMap<>(traversers.size());
+        traversers.forEach(traverser -> {
+            Vertex vertex = traverser.get();
+            bulks.merge(vertex.id(), traverser.bulk(), Long::sum);
+            vertices.putIfAbsent(vertex.id(), vertex);
+        });
+
+        // vertices with the same bulk share a query, usually all of them have a bulk of 1
+        Map<Long, List<Vertex>> groups = vertices.values().stream()
+                .collect(Collectors.groupingBy(vertex -> bulks.get(vertex.id()), Collectors.toList()));
+        Map<Object, Object> result = new HashMap<>();
+        groups.forEach((groupBulk, groupVertices) -> {
+            if (direction.equals(Direction.BOTH)) {
+                reduce.merge(result, aggregate(groupVertices, Direction.OUT, groupBulk));
+                reduce.merge(result, aggregate(groupVertices, Direction.IN, groupBulk));
+            } else reduce.merge(result, aggregate(groupVertices, direction, groupBulk));
+        });
+        return result;
+    }
+
+    private Map<Object, Object> aggregate(List<Vertex> vertices, Direction direction, long bulk) {
+        AggregateVertexQuery aggregateQuery = new AggregateVertexQuery(vertices, direction, predicates, propertyKeys,
+                key, values, reduce, stepDescriptor, traversal);
+        logger.debug("Executing query: {}", aggregateQuery);
+        Set<Object> ids = vertices.stream().map(Vertex::id).collect(Collectors.toSet());
+
+        Map<Object, Object> result = new HashMap<>();
+        controllerExecutor.search(controllers, controller -> {
+            Map<Object, Object> partial = controller instanceof AggregateVertexQuery.AggregateVertexController ?
+                    ((AggregateVertexQuery.AggregateVertexController) controller).aggregate(aggregateQuery) : null;
+            if (partial == null) {
+                Iterator<Edge> edges = controller.search(aggregateQuery);
+                partial = UniGraphGroupStep.aggregate(edges, key, reduce, edge ->
+                        ConversionUtils.asStream(((Edge) edge).vertices(direction))
+                                .filter(vertex -> ids.contains(vertex.id())).count());
+            }
+            return Collections.singleton(partial).iterator();
+        }).forEachRemaining(partial -> reduce.merge(result, partial));
+
+        if (bulk > 1) result.replaceAll((resultKey, value) -> reduce.multiply(value, bulk));
+        return result;
+    }
+
+    @Override
+    public Map<Object, Object> generateFinalResult(Map<Object, Object> result) {
+        reduce.complete(result);
+        return result;
+    }
+
+    @Override
+    public Set<TraverserRequirement> getRequirements() {
+        return Collections.singleton(TraverserRequirement.BULK);
+    }
+
+    @Override
+    public void setMetrics(MutableMetrics metrics) {
+        this.stepDescriptor = new StepDescriptor((Step) this, metrics);
+    }
+
+    @Override
+    public String toString() {
+        return StringFactory.stepString(this, this.direction, Arrays.asList(this.edgeLabels), key, reduce);
+    }
+}
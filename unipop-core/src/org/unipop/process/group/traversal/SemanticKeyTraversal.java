@@ -1,12 +1,14 @@
 package org.unipop.process.group.traversal;
 
-import org.apache.tinkerpop.gremlin.process.traversal.Traversal;
-import org.apache.tinkerpop.gremlin.process.traversal.util.FastNoSuchElementException;
+import org.apache.tinkerpop.gremlin.structure.Element;
+import org.apache.tinkerpop.gremlin.structure.Property;
+import org.apache.tinkerpop.gremlin.structure.T;
 
 /**
+ * The key of an aggregation that a controller can group by, translated from a by() modulator.
  * Created by Gilad on 02/11/2015.
  */
-public class SemanticKeyTraversal implements Traversal {
+public class SemanticKeyTraversal {
     public enum Type {
         property
     }
@@ -18,18 +20,6 @@ public class SemanticKeyTraversal implements Traversal {
     }
     //endregion
 
-    //region Traversal Implementation
-    @Override
-    public boolean hasNext() {
-        return false;
-    }
-
-    @Override
-    public Object next() {
-        throw FastNoSuchElementException.instance();
-    }
-    //endregion
-
     //region Properties
     public String getKey() {
         return this.key;
@@ -40,8 +30,25 @@ public class SemanticKeyTraversal implements Traversal {
     }
     //endregion
 
+    //region Projection
+    /**
+     * @param element An element
+     * @return The element's key, null if the element doesn't have one
+     */
+    public Object project(Element element) {
+        if (T.label.getAccessor().equals(key)) return element.label();
+        Property<Object> property = element.property(key);
+        return property.isPresent() ? property.value() : null;
+    }
+    //endregion
+
     //region Fields
     private String key;
     private SemanticKeyTraversal.Type type;
     //endregion
+
+    @Override
+    public String toString() {
+        return type + "(" + key + ")";
+    }
 }
@@ -1,17 +1,23 @@
 package org.unipop.process.group.traversal;
 
-import org.apache.tinkerpop.gremlin.process.traversal.Traversal;
-import org.apache.tinkerpop.gremlin.process.traversal.util.FastNoSuchElementException;
+import org.apache.tinkerpop.gremlin.structure.Element;
+import org.apache.tinkerpop.gremlin.structure.Property;
+import org.apache.tinkerpop.gremlin.util.NumberHelper;
+
+import java.util.Map;
+import java.util.Objects;
 
 /**
+ * The reduction of the values of every key of an aggregation, translated from a by() modulator.
+ * Partial results of the same key, e.g. from different controllers or bulks, are merged with reduce.
  * Created by Gilad on 02/11/2015.
  */
-public class SemanticReducerTraversal implements Traversal {
+public class SemanticReducerTraversal {
     public enum Type {
         count,
         min,
         max,
-        cardinality
+        sum
     }
 
     //region Constructor
@@ -21,18 +27,6 @@ public class SemanticReducerTraversal implements Traversal {
     }
     //endregion
 
-    //region Traversal Implementation
-    @Override
-    public boolean hasNext() {
-        return false;
-    }
-
-    @Override
-    public Object next() {
-        throw FastNoSuchElementException.instance();
-    }
-    //endregion
-
     //region Properties
     public String getKey() {
         return this.key;
@@ -43,8 +37,79 @@ public class SemanticReducerTraversal implements Traversal {
     }
     //endregion
 
+    //region Reduction
+    /**
+     * @param element An element of a key
+     * @return The element's value for the reduction, null if the element doesn't have one
+     */
+    public Object project(Element element) {
+        if (type.equals(Type.count)) return 1L;
+        Property<Object> property = element.property(key);
+        return property.isPresent() ? property.value() : null;
+    }
+
+    /**
+     * Merges two partial results of the same key, a null partial result is a key without values
+     */
+    public Object reduce(Object first, Object second) {
+        if (first == null) return second;
+        if (second == null) return first;
+        switch (type) {
+            case min:
+                return NumberHelper.min((Number) first, (Number) second);
+            case max:
+                return NumberHelper.max((Number) first, (Number) second);
+            default:
+                return NumberHelper.add((Number) first, (Number) second);
+        }
+    }
+
+    /**
+     * @return The partial result of a key with a bulk of traversers
+     */
+    public Object multiply(Object value, long bulk) {
+        if (value == null || bulk == 1 || type.equals(Type.min) || type.equals(Type.max)) return value;
+        return NumberHelper.mul((Number) value, bulk);
+    }
+
+    /**
+     * @return The result of a key whose elements have no values, null if the key has no result
+     */
+    public Object seed() {
+        switch (type) {
+            case count:
+                return 0L;
+            case min:
+            case max:
+                // there is no min or max of no values
+                return null;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Replaces the results of the keys without values with the seed, and leaves out the keys that have no result
+     */
+    public void complete(Map<Object, Object> result) {
+        Object seed = seed();
+        if (seed == null) result.values().removeIf(Objects::isNull);
+        else result.replaceAll((resultKey, value) -> value == null ? seed : value);
+    }
+
+    public void merge(Map<Object, Object> result, Map<Object, Object> partial) {
+        partial.forEach((partialKey, value) -> result.put(partialKey,
+                result.containsKey(partialKey) ? reduce(result.get(partialKey), value) : value));
+    }
+    //endregion
+
     //region Fields
     private String key;
     private SemanticReducerTraversal.Type type;
     //endregion
+
+    @Override
+    public String toString() {
+        return key == null ? type.toString() : type + "(" + key + ")";
+    }
 }
@@ -1,13 +1,13 @@
 package org.unipop.process.group.traversal;
 
-import org.apache.tinkerpop.gremlin.process.traversal.Traversal;
-import org.apache.tinkerpop.gremlin.process.traversal.util.FastNoSuchElementException;
-
 /**
+ * The values of an aggregation that a controller reduces, translated from a by() modulator.
+ * An element is its own value, a property value is the value of a single property.
  * Created by Gilad on 02/11/2015.
  */
-public class SemanticValuesTraversal implements Traversal {
+public class SemanticValuesTraversal {
     public enum Type {
+        element,
         property
     }
 
@@ -18,18 +18,6 @@ public class SemanticValuesTraversal implements Traversal {
     }
     //endregion
 
-    //region Traversal Implementation
-    @Override
-    public boolean hasNext() {
-        return false;
-    }
-
-    @Override
-    public Object next() {
-        throw FastNoSuchElementException.instance();
-    }
-    //endregion
-
     //region Properties
     public String getKey() {
         return this.key;
@@ -44,4 +32,9 @@ public class SemanticValuesTraversal implements Traversal {
     private String key;
     private SemanticValuesTraversal.Type type;
     //endregion
+
+    @Override
+    public String toString() {
+        return key == null ? type.toString() : type + "(" + key + ")";
+    }
 }
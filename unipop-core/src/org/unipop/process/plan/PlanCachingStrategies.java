@@ -0,0 +1,28 @@
+package org.unipop.process.plan;
+
+import org.apache.tinkerpop.gremlin.process.traversal.Traversal;
+import org.apache.tinkerpop.gremlin.process.traversal.TraversalStrategies;
+import org.apache.tinkerpop.gremlin.process.traversal.TraversalStrategy;
+import org.apache.tinkerpop.gremlin.process.traversal.util.DefaultTraversalStrategies;
+
+/**
+ * The graph's strategies, a root traversal whose shape has a cached plan gets the plan's steps instead of being
+ * compiled by the strategies.
+ */
+public class PlanCachingStrategies extends DefaultTraversalStrategies {
+    private final TraversalPlanCache planCache;
+
+    public PlanCachingStrategies(TraversalStrategies strategies, TraversalPlanCache planCache) {
+        this.addStrategies(strategies.toList().toArray(new TraversalStrategy[0]));
+        this.planCache = planCache;
+    }
+
+    @Override
+    public void applyStrategies(Traversal.Admin<?, ?> traversal) {
+        if (!planCache.apply(traversal)) super.applyStrategies(traversal);
+    }
+
+    public TraversalPlanCache getPlanCache() {
+        return planCache;
+    }
+}
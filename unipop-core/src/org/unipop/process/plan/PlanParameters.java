@@ -0,0 +1,137 @@
+package org.unipop.process.plan;
+
+import org.apache.tinkerpop.gremlin.process.traversal.P;
+import org.apache.tinkerpop.gremlin.process.traversal.step.util.HasContainer;
+import org.apache.tinkerpop.gremlin.process.traversal.util.AndP;
+import org.apache.tinkerpop.gremlin.process.traversal.util.ConnectiveP;
+import org.apache.tinkerpop.gremlin.process.traversal.util.OrP;
+import org.apache.tinkerpop.gremlin.structure.Element;
+import org.apache.tinkerpop.gremlin.structure.T;
+import org.unipop.query.predicates.PredicatesHolder;
+
+import java.util.*;
+
+/**
+ * The values of a traversal for the parameters of a cached plan.
+ * A plan is compiled with a {@link Parameter} in place of every value, binding replaces them with the traversal's values.
+ */
+public class PlanParameters {
+    private final Object[] values;
+    private final BitSet bound = new BitSet();
+
+    PlanParameters(Object[] values) {
+        this.values = values;
+    }
+
+    /**
+     * @param predicates The predicates of a plan's step
+     * @return The predicates with the traversal's values, the same predicates if they have no parameters
+     */
+    public PredicatesHolder bind(PredicatesHolder predicates) {
+        if (!hasParameters(predicates)) return predicates;
+        return predicates.map(this::bind);
+    }
+
+    public HasContainer bind(HasContainer has) {
+        if (!hasParameters(has.getPredicate())) return has;
+        return new HasContainer(has.getKey(), bind(has.getPredicate(), T.id.getAccessor().equals(has.getKey())));
+    }
+
+    /**
+     * @param ids The ids of a plan's graph step
+     * @return The traversal's ids, a collection value is flattened like GraphStep flattens it
+     */
+    public Object[] bindIds(Object[] ids) {
+        if (ids == null) return null;
+        List<Object> boundIds = new ArrayList<>(ids.length);
+        for (Object id : ids) {
+            Object value = bind(id, false);
+            if (id instanceof Parameter && value instanceof Collection) boundIds.addAll((Collection<?>) value);
+            else boundIds.add(value);
+        }
+        return boundIds.toArray();
+    }
+
+    private P<?> bind(P<?> predicate, boolean isId) {
+        if (predicate instanceof ConnectiveP) {
+            List<P<?>> predicates = new ArrayList<>();
+            ((ConnectiveP<?>) predicate).getPredicates().forEach(child -> predicates.add(bind(child, isId)));
+            return predicate instanceof AndP ? new AndP(predicates) : new OrP(predicates);
+        }
+        if (!hasParameters(predicate)) return predicate;
+        return new P(predicate.getBiPredicate(), bind(predicate.getValue(), isId));
+    }
+
+    private Object bind(Object value, boolean isId) {
+        if (value instanceof Parameter) {
+            int ordinal = ((Parameter) value).ordinal;
+            bound.set(ordinal);
+            return isId ? toId(values[ordinal]) : values[ordinal];
+        }
+        if (!(value instanceof Collection)) return value;
+        List<Object> boundValues = new ArrayList<>(((Collection<?>) value).size());
+        for (Object element : (Collection<?>) value) {
+            Object boundElement = bind(element, isId);
+            // V(ids) and hasId(ids) flatten a collection of ids
+            if (element instanceof Parameter && boundElement instanceof Collection) boundValues.addAll((Collection<?>) boundElement);
+            else boundValues.add(boundElement);
+        }
+        return boundValues;
+    }
+
+    private static Object toId(Object value) {
+        if (value instanceof Element) return ((Element) value).id();
+        if (!(value instanceof Collection)) return value;
+        List<Object> ids = new ArrayList<>(((Collection<?>) value).size());
+        for (Object element : (Collection<?>) value) ids.add(toId(element));
+        return ids;
+    }
+
+    /**
+     * @return The ordinals of the parameters that were bound so far
+     */
+    BitSet getBound() {
+        return bound;
+    }
+
+    static boolean hasParameters(PredicatesHolder predicates) {
+        for (HasContainer has : predicates.getPredicates())
+            if (hasParameters(has.getPredicate())) return true;
+        for (PredicatesHolder child : predicates.getChildren())
+            if (hasParameters(child)) return true;
+        return false;
+    }
+
+    static boolean hasParameters(P<?> predicate) {
+        if (predicate instanceof ConnectiveP) {
+            for (P<?> child : ((ConnectiveP<?>) predicate).getPredicates())
+                if (hasParameters(child)) return true;
+            return false;
+        }
+        return isParameter(predicate.getValue());
+    }
+
+    private static boolean isParameter(Object value) {
+        if (value instanceof Parameter) return true;
+        if (!(value instanceof Collection)) return false;
+        for (Object element : (Collection<?>) value)
+            if (element instanceof Parameter) return true;
+        return false;
+    }
+
+    /**
+     * Takes the place of a value while a plan is compiled
+     */
+    static class Parameter {
+        private final int ordinal;
+
+        Parameter(int ordinal) {
+            this.ordinal = ordinal;
+        }
+
+        @Override
+        public String toString() {
+            return "?" + ordinal;
+        }
+    }
+}
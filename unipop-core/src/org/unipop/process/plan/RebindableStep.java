@@ -0,0 +1,16 @@
+package org.unipop.process.plan;
+
+import org.unipop.query.controller.ControllerManager;
+
+/**
+ * A step that can be part of a cached traversal plan.
+ * A clone of the step is rebound to every traversal that reuses the plan.
+ */
+public interface RebindableStep {
+    /**
+     * Binds a clone of the step to a traversal of the plan's shape
+     * @param parameters The traversal's values of the plan's parameters
+     * @param controllerManager The controllers the traversal is pinned to
+     */
+    void rebind(PlanParameters parameters, ControllerManager controllerManager);
+}
@@ -0,0 +1,84 @@
+package org.unipop.process.plan;
+
+import org.apache.tinkerpop.gremlin.process.traversal.Step;
+import org.apache.tinkerpop.gremlin.process.traversal.Traversal;
+import org.apache.tinkerpop.gremlin.process.traversal.step.HasContainerHolder;
+import org.apache.tinkerpop.gremlin.process.traversal.step.TraversalParent;
+import org.apache.tinkerpop.gremlin.process.traversal.step.util.HasContainer;
+import org.unipop.query.controller.ControllerManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The compiled steps of a traversal shape. The steps are never executed, every traversal of the shape gets clones of
+ * them that are bound to its values and pinned to its controllers.
+ */
+public class TraversalPlan {
+    private final List<Step> steps;
+
+    private TraversalPlan(List<Step> steps) {
+        this.steps = steps;
+    }
+
+    /**
+     * @param template A traversal that was compiled with a {@link PlanParameters.Parameter} in place of every value
+     * @param parameters The number of parameters of the template
+     * @param controllerManager The graph's controllers, used to check that the template's steps can be rebound
+     * @return The template's plan, null if a clone of its steps can't be bound to other values
+     */
+    static TraversalPlan compile(Traversal.Admin<?, ?> template, int parameters, ControllerManager controllerManager) {
+        List<Step> steps = new ArrayList<>(template.getSteps().size());
+        for (Step<?, ?> step : template.getSteps()) {
+            // the strategies apply to every child traversal on its own, a compiled child can't be reused
+            if (step instanceof TraversalParent && (!((TraversalParent) step).getGlobalChildren().isEmpty() ||
+                    !((TraversalParent) step).getLocalChildren().isEmpty()))
+                return null;
+            if (!(step instanceof RebindableStep)) {
+                // the steps of unipop hold controllers, only the rebindable ones can be pinned again
+                if (step.getClass().getName().startsWith("org.unipop.")) return null;
+                if (step instanceof HasContainerHolder && hasParameters((HasContainerHolder) step)) return null;
+            }
+            steps.add(step.clone());
+        }
+
+        // every parameter must be bound by the steps, a value that a strategy copied elsewhere would be left unbound
+        Object[] values = new Object[parameters];
+        for (int i = 0; i < parameters; i++) values[i] = new PlanParameters.Parameter(i);
+        PlanParameters check = new PlanParameters(values);
+        for (Step step : steps) {
+            if (step instanceof RebindableStep) ((RebindableStep) step.clone()).rebind(check, controllerManager);
+        }
+        if (check.getBound().cardinality() != parameters) return null;
+        return new TraversalPlan(Collections.unmodifiableList(steps));
+    }
+
+    private static boolean hasParameters(HasContainerHolder step) {
+        for (HasContainer has : step.getHasContainers())
+            if (PlanParameters.hasParameters(has.getPredicate())) return true;
+        return false;
+    }
+
+    /**
+     * @param parameters The traversal's values
+     * @param controllerManager The controllers the traversal is pinned to
+     * @return Clones of the plan's steps, bound to the values and the controllers
+     */
+    List<Step> bind(PlanParameters parameters, ControllerManager controllerManager) {
+        List<Step> bound = new ArrayList<>(steps.size());
+        for (Step step : steps) {
+            Step clone = step.clone();
+            if (clone instanceof RebindableStep) ((RebindableStep) clone).rebind(parameters, controllerManager);
+            bound.add(clone);
+        }
+        return bound;
+    }
+
+    @Override
+    public String toString() {
+        return "TraversalPlan{" +
+                "steps=" + steps +
+                '}';
+    }
+}
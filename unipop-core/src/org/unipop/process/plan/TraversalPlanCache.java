@@ -0,0 +1,215 @@
+package org.unipop.process.plan;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import org.apache.commons.configuration.Configuration;
+import org.apache.tinkerpop.gremlin.jsr223.JavaTranslator;
+import org.apache.tinkerpop.gremlin.process.traversal.Bytecode;
+import org.apache.tinkerpop.gremlin.process.traversal.P;
+import org.apache.tinkerpop.gremlin.process.traversal.Step;
+import org.apache.tinkerpop.gremlin.process.traversal.Traversal;
+import org.apache.tinkerpop.gremlin.process.traversal.TraversalStrategies;
+import org.apache.tinkerpop.gremlin.process.traversal.dsl.graph.GraphTraversal;
+import org.apache.tinkerpop.gremlin.process.traversal.dsl.graph.GraphTraversalSource;
+import org.apache.tinkerpop.gremlin.process.traversal.step.util.EmptyStep;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.unipop.structure.UniGraph;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiPredicate;
+
+/**
+ * Caches the compiled steps of root traversals by their shape, so a traversal that is replayed with other values
+ * reuses the plan instead of applying the strategies again.
+ * The shape is the traversal's bytecode without the values of V(), E(), hasId() and has(), every other argument is
+ * part of the shape. A plan is compiled once per shape with a parameter in place of every value, and its steps are
+ * cloned and bound to the values of every traversal of the shape.
+ * Shapes whose plan has child traversals, or steps that can't be rebound, are remembered and compiled as usual.
+ * Disabled unless "planCache.size", the number of cached shapes, is positive.
+ */
+public class TraversalPlanCache {
+    private static final Logger logger = LoggerFactory.getLogger(TraversalPlanCache.class);
+    private static final Set<String> PARAMETERIZED = new HashSet<>(Arrays.asList(
+            GraphTraversal.Symbols.V, GraphTraversal.Symbols.E, GraphTraversal.Symbols.hasId, GraphTraversal.Symbols.has));
+
+    private final UniGraph graph;
+    private final TraversalStrategies strategies;
+    private final Cache<List<Object>, Optional<TraversalPlan>> cache;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param graph The graph
+     * @param configuration The graph's configuration
+     * @param strategies The strategies that compile the plans
+     */
+    public TraversalPlanCache(UniGraph graph, Configuration configuration, TraversalStrategies strategies) {
+        this.graph = graph;
+        this.strategies = strategies;
+        long maxSize = configuration == null ? 0 : configuration.getLong("planCache.size", 0);
+        this.cache = maxSize <= 0 ? null : CacheBuilder.newBuilder().maximumSize(maxSize).build();
+    }
+
+    public boolean isEnabled() {
+        return cache != null;
+    }
+
+    /**
+     * Replaces the steps of a root traversal with the bound steps of its shape's plan
+     * @param traversal A traversal whose strategies were not applied yet
+     * @return False if the traversal has no cached plan, and should be compiled by the strategies
+     */
+    public boolean apply(Traversal.Admin<?, ?> traversal) {
+        if (!(traversal.getParent() instanceof EmptyStep)) return false;
+        Shape shape = Shape.of(traversal.getBytecode());
+        if (shape == null) return false;
+
+        Optional<TraversalPlan> plan = cache.getIfPresent(shape.key);
+        if (plan == null) {
+            misses.incrementAndGet();
+            cache.put(shape.key, Optional.ofNullable(compile(shape)));
+            return false;
+        }
+        if (!plan.isPresent()) return false;
+        hits.incrementAndGet();
+
+        List<Step> steps = plan.get().bind(new PlanParameters(shape.values), graph.getControllerManager().pin(traversal));
+        for (int i = traversal.getSteps().size() - 1; i >= 0; i--)
+            traversal.removeStep(i);
+        steps.forEach(traversal::addStep);
+        return true;
+    }
+
+    private TraversalPlan compile(Shape shape) {
+        try {
+            // the template is dropped once its steps are cloned, so it doesn't keep its controllers pinned
+            Traversal.Admin<?, ?> template = JavaTranslator.of(new GraphTraversalSource(graph, strategies))
+                    .translate(shape.template()).asAdmin();
+            template.applyStrategies();
+            TraversalPlan plan = TraversalPlan.compile(template, shape.values.length, graph.getControllerManager());
+            logger.debug("compiled plan: {} for shape: {}", plan, shape.key);
+            return plan;
+        } catch (Exception e) {
+            logger.debug("shape: {} can't be compiled with parameters", shape.key, e);
+            return null;
+        }
+    }
+
+    public void invalidateAll() {
+        if (cache != null) cache.invalidateAll();
+    }
+
+    /**
+     * @return Hit and miss counts of the cache, a shape that can't be cached is a miss once
+     */
+    public CacheStats stats() {
+        long evictions = cache == null ? 0 : cache.stats().evictionCount();
+        return new CacheStats(hits.get(), misses.get(), 0, 0, 0, evictions);
+    }
+
+    /**
+     * The bytecode of a traversal split to its shape and its values
+     */
+    private static class Shape {
+        private final Bytecode bytecode;
+        private final List<Object> key;
+        private final Object[] values;
+
+        private Shape(Bytecode bytecode, List<Object> key, Object[] values) {
+            this.bytecode = bytecode;
+            this.key = key;
+            this.values = values;
+        }
+
+        /**
+         * @return The shape of the bytecode, null if it has source instructions or a profile() step
+         */
+        private static Shape of(Bytecode bytecode) {
+            // strategies and side effects of the source change the plan, they are not part of the shape
+            if (!bytecode.getSourceInstructions().isEmpty()) return null;
+            List<Object> key = new ArrayList<>();
+            List<Object> values = new ArrayList<>();
+            for (Bytecode.Instruction instruction : bytecode.getStepInstructions()) {
+                String operator = instruction.getOperator();
+                if (operator.equals(Traversal.Symbols.profile)) return null;
+                Object[] arguments = instruction.getArguments();
+                List<Object> instructionKey = new ArrayList<>(arguments.length + 1);
+                instructionKey.add(operator);
+                for (int i = 0; i < arguments.length; i++) {
+                    if (isParameter(operator, arguments, i)) {
+                        Object argument = arguments[i];
+                        instructionKey.add(new Placeholder(argument instanceof P ? ((P<?>) argument).getBiPredicate() : null));
+                        values.add(argument instanceof P ? ((P<?>) argument).getValue() : argument);
+                    } else instructionKey.add(arguments[i]);
+                }
+                key.add(instructionKey);
+            }
+            return new Shape(bytecode, key, values.toArray());
+        }
+
+        private static boolean isParameter(String operator, Object[] arguments, int index) {
+            if (!PARAMETERIZED.contains(operator)) return false;
+            // has(key, value) and has(label, key, value), the key and the label are part of the shape
+            if (operator.equals(GraphTraversal.Symbols.has) && (arguments.length < 2 || index != arguments.length - 1))
+                return false;
+            Object argument = arguments[index];
+            if (argument instanceof P) return argument.getClass().equals(P.class);
+            return !(argument instanceof Bytecode || argument instanceof Traversal);
+        }
+
+        /**
+         * @return The bytecode with a parameter in place of every value
+         */
+        private Bytecode template() {
+            Bytecode template = new Bytecode();
+            int ordinal = 0;
+            for (Bytecode.Instruction instruction : bytecode.getStepInstructions()) {
+                Object[] arguments = instruction.getArguments().clone();
+                for (int i = 0; i < arguments.length; i++) {
+                    if (!isParameter(instruction.getOperator(), arguments, i)) continue;
+                    PlanParameters.Parameter parameter = new PlanParameters.Parameter(ordinal++);
+                    arguments[i] = arguments[i] instanceof P ? new P(((P<?>) arguments[i]).getBiPredicate(), parameter) : parameter;
+                }
+                template.addStep(instruction.getOperator(), arguments);
+            }
+            return template;
+        }
+    }
+
+    /**
+     * A value in the key of a shape, values of different predicates have different plans
+     */
+    private static class Placeholder {
+        private final BiPredicate<?, ?> biPredicate;
+
+        private Placeholder(BiPredicate<?, ?> biPredicate) {
+            this.biPredicate = biPredicate;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Placeholder && Objects.equals(biPredicate, ((Placeholder) o).biPredicate);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(biPredicate);
+        }
+
+        @Override
+        public String toString() {
+            return "?" + (biPredicate == null ? "" : biPredicate);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "TraversalPlanCache{" +
+                "size=" + (cache == null ? 0 : cache.size()) +
+                ", stats=" + stats() +
+                '}';
+    }
+}
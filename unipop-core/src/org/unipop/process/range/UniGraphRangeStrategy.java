@@ -0,0 +1,48 @@
+package org.unipop.process.range;
+
+import com.google.common.collect.Sets;
+import org.apache.tinkerpop.gremlin.process.traversal.Step;
+import org.apache.tinkerpop.gremlin.process.traversal.Traversal;
+import org.apache.tinkerpop.gremlin.process.traversal.TraversalStrategy;
+import org.apache.tinkerpop.gremlin.process.traversal.step.filter.RangeGlobalStep;
+import org.apache.tinkerpop.gremlin.process.traversal.strategy.AbstractTraversalStrategy;
+import org.apache.tinkerpop.gremlin.process.traversal.util.TraversalHelper;
+import org.apache.tinkerpop.gremlin.structure.Graph;
+import org.unipop.process.graph.UniGraphStep;
+import org.unipop.process.graph.UniGraphStepStrategy;
+import org.unipop.process.order.UniGraphOrderStrategy;
+import org.unipop.structure.UniGraph;
+
+import java.util.Set;
+
+/**
+ * Pushes limit() and range() down to the controllers when they directly follow a UniGraphStep.
+ * Every controller returns at most the high end of the range, and UniGraphStep stops once it has that many
+ * unique elements. The range step is kept, it still skips the low end and cuts the results of all the
+ * UniGraphStep's runs, since an offset can't be applied to a single controller's results.
+ */
+public class UniGraphRangeStrategy extends AbstractTraversalStrategy<TraversalStrategy.ProviderOptimizationStrategy> implements TraversalStrategy.ProviderOptimizationStrategy {
+    @Override
+    public Set<Class<? extends ProviderOptimizationStrategy>> applyPrior() {
+        return Sets.newHashSet(UniGraphStepStrategy.class, UniGraphOrderStrategy.class);
+    }
+
+    @Override
+    public void apply(Traversal.Admin<?, ?> traversal) {
+        if (TraversalHelper.onGraphComputer(traversal)) return;
+
+        Graph graph = traversal.getGraph().get();
+        if (!(graph instanceof UniGraph)) return;
+
+        TraversalHelper.getStepsOfClass(RangeGlobalStep.class, traversal).forEach(rangeStep -> {
+            Step previousStep = rangeStep.getPreviousStep();
+            if (!(previousStep instanceof UniGraphStep)) return;
+            long highRange = rangeStep.getHighRange();
+            if (highRange < 0 || highRange > Integer.MAX_VALUE) return;
+
+            UniGraphStep<?, ?> graphStep = (UniGraphStep<?, ?>) previousStep;
+            int limit = graphStep.getLimit();
+            graphStep.setLimit(limit < 0 ? (int) highRange : Math.min(limit, (int) highRange));
+        });
+    }
+}
@@ -1,67 +1,144 @@
-//package org.unipop.process.count;
-//
-//import org.apache.tinkerpop.gremlin.process.traversal.Traversal;
-//import org.apache.tinkerpop.gremlin.process.traversal.step.util.EmptyStep;
-//import org.apache.tinkerpop.gremlin.process.traversal.step.util.HasContainer;
-//import org.apache.tinkerpop.gremlin.process.traversal.step.util.ReducingBarrierStep;
-//import org.apache.tinkerpop.gremlin.structure.Direction;
-//import org.apache.tinkerpop.gremlin.structure.Element;
-//import org.apache.tinkerpop.gremlin.structure.Vertex;
-//import org.unipop.query.UniQuery;
-//import org.unipop.query.controller.ControllerManager;
-//
-//import java.util.*;
-//import java.util.stream.Collectors;
-//
-///**
-// * Created by Gilad on 02/11/2015.
-// */
-//public class UniGraphCountStep<E extends Element> extends ReducingBarrierStep<E, Long> {
-//    //region Constructor
-//    public UniGraphCountStep(Traversal.Admin traversal, Class elementClass, List<HasContainer> hasContainers, Object[] ids, String[] edgeLabels, Optional<Direction> direction, ControllerManager controllerManager) {
-//        super(traversal);
-//        this.hasContainers = hasContainers;
-//        this.controllerManager = controllerManager;
-//        this.direction = direction.get();
-//        this.elementClass = elementClass;
-//        this.bulk = new ArrayList<>();
-//
-//        List<CountController> countControllers = controllerManager.getControllers(CountController.class);
-//        List<EdgeCountController> edgeCountControllers = controllerManager.getControllers(EdgeCountController.class);
-//        UniQuery uniQuery = new UniQuery(null, edgeLabels,ids, hasContainers, 0);
-//
-//        this.setSeedSupplier(() -> {
-//            if (!this.previousStep.equals(EmptyStep.instance())) {
-//                return 0L;
-//            }
-//            return countControllers.stream().collect(Collectors.summingLong(controller -> controller.count(uniQuery)));
-//        });
-//
-//
-//        this.setBiFunction((seed, traverser) -> {
-//            E element = traverser.get();
-//            bulk.add(element);
-//
-//
-//            Long bulkElementCount = 0L;
-//            //TODO: configure bulk size dynamically
-//            if (bulk.size() > 100 || !this.starts.hasNext()) {
-//                Vertex[] vertices = bulk.toArray(new Vertex[0]);
-//                bulkElementCount = edgeCountControllers.stream().collect(Collectors.summingLong(edgeController ->
-//                        edgeController.count(vertices, this.direction, edgeLabels, uniQuery)));
-//                bulk.clear();
-//            }
-//
-//            return seed + bulkElementCount;
-//        });
-//    }
-//    //endregion
-//
-//    private final List<HasContainer> hasContainers;
-//    //region Fields
-//    private ControllerManager controllerManager;
-//    private Direction direction;
-//    private Class elementClass;
-//    private Collection<E> bulk;
-//    //endregion
-//}
+package org.unipop.process.reduce;
+
+import org.apache.tinkerpop.gremlin.process.traversal.Step;
+import org.apache.tinkerpop.gremlin.process.traversal.Traverser;
+import org.apache.tinkerpop.gremlin.process.traversal.step.Profiling;
+import org.apache.tinkerpop.gremlin.process.traversal.step.util.HasContainer;
+import org.apache.tinkerpop.gremlin.process.traversal.step.util.ReducingBarrierStep;
+import org.apache.tinkerpop.gremlin.process.traversal.traverser.TraverserRequirement;
+import org.apache.tinkerpop.gremlin.process.traversal.util.MutableMetrics;
+import org.apache.tinkerpop.gremlin.structure.Element;
+import org.apache.tinkerpop.gremlin.structure.util.StringFactory;
+import org.apache.tinkerpop.gremlin.util.function.ConstantSupplier;
+import org.javatuples.Pair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.unipop.process.graph.UniGraphStep;
+import org.unipop.process.plan.PlanParameters;
+import org.unipop.process.plan.RebindableStep;
+import org.unipop.query.StepDescriptor;
+import org.unipop.query.aggregation.ReduceQuery;
+import org.unipop.query.controller.ControllerExecutor;
+import org.unipop.query.controller.ControllerManager;
+import org.unipop.query.predicates.PredicatesHolder;
+import org.unipop.query.search.SearchQuery;
+import org.unipop.structure.UniGraph;
+import org.unipop.util.ConversionUtils;
+
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Replaces g.V().has(...).count() and g.E().has(...).count().
+ * Every controller that can count the elements counts them in its data source. When more than one controller has
+ * elements, or some can't count them, the elements are fetched and counted once like UniGraphStep would return them.
+ * @param <S> Start type
+ * @param <E> Element
+ */
+public class UniGraphCountStep<S, E extends Element> extends ReducingBarrierStep<S, Long> implements Profiling, RebindableStep {
+    private static final Logger logger = LoggerFactory.getLogger(UniGraphCountStep.class);
+
+    private final Class<E> returnClass;
+    private PredicatesHolder predicates;
+    private final Set<String> propertyKeys;
+    private List<SearchQuery.SearchController> controllers;
+    private final ControllerExecutor controllerExecutor;
+    private StepDescriptor stepDescriptor;
+    private boolean counted;
+
+    public UniGraphCountStep(UniGraphStep<S, E> graphStep, UniGraph graph, ControllerManager controllerManager) {
+        super(graphStep.getTraversal());
+        this.returnClass = graphStep.getReturnClass();
+        this.predicates = graphStep.getPredicates();
+        this.propertyKeys = Stream.concat(
+                this.predicates.getPredicates().stream(),
+                this.predicates.getChildren().stream()
+                        .map(PredicatesHolder::getPredicates)
+                        .flatMap(Collection::stream)
+        ).map(HasContainer::getKey).collect(Collectors.toSet());
+        this.controllers = controllerManager.getControllers(SearchQuery.SearchController.class);
+        this.controllerExecutor = graph.getControllerExecutor();
+        this.stepDescriptor = new StepDescriptor(this);
+        this.setSeedSupplier(new ConstantSupplier<>(0L));
+        this.setReducingBiOperator(Long::sum);
+    }
+
+    @Override
+    public void processAllStarts() {
+        if (!counted) {
+            counted = true;
+            this.addBarrier(count());
+        }
+        super.processAllStarts();
+    }
+
+    private long count() {
+        ReduceQuery<E> reduceQuery = new ReduceQuery<>(returnClass, predicates, propertyKeys, stepDescriptor, traversal);
+        logger.debug("Executing query: {}", reduceQuery);
+
+        Iterator<Pair<SearchQuery.SearchController, Long>> counts = controllerExecutor.search(controllers, controller -> {
+            Long controllerCount = controller instanceof ReduceQuery.ReduceController ?
+                    ((ReduceQuery.ReduceController) controller).count(reduceQuery) : null;
+            return Collections.singleton(Pair.with(controller, controllerCount)).iterator();
+        });
+        long count = 0;
+        List<SearchQuery.SearchController> uncounted = new ArrayList<>();
+        List<SearchQuery.SearchController> counted = new ArrayList<>();
+        while (counts.hasNext()) {
+            Pair<SearchQuery.SearchController, Long> controllerCount = counts.next();
+            Long value = controllerCount.getValue1();
+            if (value == null) uncounted.add(controllerCount.getValue0());
+            else {
+                count += value;
+                if (value > 0) counted.add(controllerCount.getValue0());
+            }
+        }
+        if (uncounted.isEmpty() && counted.size() <= 1) return count;
+
+        // the same element may be returned by several controllers, UniGraphStep returns it once
+        List<SearchQuery.SearchController> searched = new ArrayList<>(uncounted);
+        searched.addAll(counted);
+        Iterator<E> results = controllerExecutor.search(searched, controller -> controller.search(reduceQuery));
+        return ConversionUtils.asStream(results).distinct().count();
+    }
+
+    @Override
+    public Long projectTraverser(Traverser.Admin<S> traverser) {
+        return traverser.bulk();
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        this.counted = false;
+    }
+
+    @Override
+    public Set<TraverserRequirement> getRequirements() {
+        return Collections.singleton(TraverserRequirement.BULK);
+    }
+
+    @Override
+    public void setMetrics(MutableMetrics metrics) {
+        this.stepDescriptor = new StepDescriptor((Step) this, metrics);
+    }
+
+    @Override
+    public String toString() {
+        return StringFactory.stepString(this, returnClass.getSimpleName().toLowerCase(), predicates.getPredicates());
+    }
+
+    @Override
+    public void rebind(PlanParameters parameters, ControllerManager controllerManager) {
+        this.predicates = parameters.bind(predicates);
+        this.controllers = controllerManager.getControllers(SearchQuery.SearchController.class);
+    }
+
+    @Override
+    public UniGraphCountStep<S, E> clone() {
+        UniGraphCountStep<S, E> clone = (UniGraphCountStep<S, E>) super.clone();
+        clone.stepDescriptor = new StepDescriptor((Step) clone);
+        return clone;
+    }
+}
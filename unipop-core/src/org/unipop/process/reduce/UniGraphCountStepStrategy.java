@@ -1,81 +1,75 @@
-//package org.unipop.process.count;
-//
-//import org.apache.tinkerpop.gremlin.process.traversal.Step;
-//import org.apache.tinkerpop.gremlin.process.traversal.Traversal;
-//import org.apache.tinkerpop.gremlin.process.traversal.TraversalStrategy;
-//import org.apache.tinkerpop.gremlin.process.traversal.step.map.CountGlobalStep;
-//import org.apache.tinkerpop.gremlin.process.traversal.step.sideEffect.StartStep;
-//import org.apache.tinkerpop.gremlin.process.traversal.step.util.EmptyStep;
-//import org.apache.tinkerpop.gremlin.process.traversal.strategy.AbstractTraversalStrategy;
-//import org.apache.tinkerpop.gremlin.process.traversal.util.TraversalHelper;
-//import org.apache.tinkerpop.gremlin.structure.Graph;
-//import org.unipop.process.predicate.PredicatesUtil;
-//import org.unipop.process.graph.UniGraphStep;
-//import org.unipop.process.vertex.UniGraphVertexStep;
-//import org.unipop.structure.UniGraph;
-//
-//import java.util.*;
-//
-///**
-// * Created by Gilad on 02/11/2015.
-// */
-//public class UniGraphCountStepStrategy extends AbstractTraversalStrategy<TraversalStrategy.ProviderOptimizationStrategy> implements TraversalStrategy.ProviderOptimizationStrategy {
-//    //region AbstractTraversalStrategy Implementation
-//    @Override
-//    public Set<Class<? extends TraversalStrategy.ProviderOptimizationStrategy>> applyPrior() {
-//        Set<Class<? extends TraversalStrategy.ProviderOptimizationStrategy>> priorStrategies = new HashSet<>();
-//        priorStrategies.add(PredicatesUtil.class);
-//        return priorStrategies;
-//    }
-//
-//    @Override
-//    public void apply(Traversal.Admin<?, ?> traversal) {
-//        if(traversal.getEngine().isComputer()) return;
-//
-//        Graph graph = traversal.getGraph().get();
-//        if(!(graph instanceof UniGraph)) return;
-//
-//        UniGraph elasticGraph = (UniGraph) graph;
-//
-//        TraversalHelper.getStepsOfAssignableClassRecursively(CountGlobalStep.class, traversal).forEach(step -> {
-//            UniGraphCountStep elasticCountStep = null;
-//            if (UniGraphVertexStep.class.isAssignableFrom(step.getPreviousStep().getClass())) {
-//                UniGraphVertexStep elasticVertexStep = (UniGraphVertexStep)step.getPreviousStep();
-//                elasticCountStep = new UniGraphCountStep(
-//                        traversal,
-//                        elasticVertexStep.getReturnClass(),
-//                        elasticVertexStep.getPredicates(),
-//                        new Object[0],
-//                        elasticVertexStep.getEdgeLabels(),
-//                        Optional.of(elasticVertexStep.getDirection()), elasticGraph.getControllerManager());
-//
-//            } else if (UniGraphStep.class.isAssignableFrom(step.getPreviousStep().getClass())) {
-//                UniGraphStep elasticGraphStep = (UniGraphStep)step.getPreviousStep();
-//                elasticCountStep = new UniGraphCountStep(
-//                        traversal,
-//                        elasticGraphStep.getReturnClass(),
-//                        elasticGraphStep.getPredicates(),
-//                        elasticGraphStep.getIds(),
-//                        new String[0],
-//                        Optional.empty(), elasticGraph.getControllerManager());
-//            }
-//
-//            if (elasticCountStep != null) {
-//                TraversalHelper.replaceStep(step.getPreviousStep(), elasticCountStep, traversal);
-//                traversal.removeStep(step);
-//
-//                insertStartStepWhenTraversalIsInternal(traversal, elasticCountStep);
-//            }
-//        });
-//    }
-//    //endregion
-//
-//    //region Private Methods
-//    private void insertStartStepWhenTraversalIsInternal(final Traversal.Admin<?, ?> traversal, Step step) {
-//        if (!traversal.getParent().equals(EmptyStep.instance())) {
-//            StartStep startStep = new StartStep(traversal);
-//            TraversalHelper.insertBeforeStep(startStep, step, traversal);
-//        }
-//    }
-//    //endregion
-//}
+package org.unipop.process.reduce;
+
+import com.google.common.collect.Sets;
+import org.apache.tinkerpop.gremlin.process.traversal.Step;
+import org.apache.tinkerpop.gremlin.process.traversal.Traversal;
+import org.apache.tinkerpop.gremlin.process.traversal.TraversalStrategy;
+import org.apache.tinkerpop.gremlin.process.traversal.step.map.CountGlobalStep;
+import org.apache.tinkerpop.gremlin.process.traversal.step.map.GroupStep;
+import org.apache.tinkerpop.gremlin.process.traversal.step.sideEffect.GroupSideEffectStep;
+import org.apache.tinkerpop.gremlin.process.traversal.step.util.EmptyStep;
+import org.apache.tinkerpop.gremlin.process.traversal.strategy.AbstractTraversalStrategy;
+import org.apache.tinkerpop.gremlin.process.traversal.util.TraversalHelper;
+import org.apache.tinkerpop.gremlin.structure.Graph;
+import org.unipop.process.edge.EdgeStepsStrategy;
+import org.unipop.process.graph.UniGraphStep;
+import org.unipop.process.graph.UniGraphStepStrategy;
+import org.unipop.process.order.UniGraphOrderStrategy;
+import org.unipop.process.properties.UniGraphPropertiesStrategy;
+import org.unipop.process.repeat.UniGraphRepeatStepStrategy;
+import org.unipop.process.vertex.UniGraphVertexStep;
+import org.unipop.process.vertex.UniGraphVertexStepStrategy;
+import org.unipop.structure.UniGraph;
+
+import java.util.Set;
+
+/**
+ * Pushes count() down to the controllers when it directly follows a UniGraphStep or a UniGraphVertexStep
+ * that has no labels, limit or order.
+ */
+public class UniGraphCountStepStrategy extends AbstractTraversalStrategy<TraversalStrategy.ProviderOptimizationStrategy> implements TraversalStrategy.ProviderOptimizationStrategy {
+    @Override
+    public Set<Class<? extends ProviderOptimizationStrategy>> applyPrior() {
+        return Sets.newHashSet(UniGraphStepStrategy.class, UniGraphVertexStepStrategy.class, EdgeStepsStrategy.class,
+                UniGraphRepeatStepStrategy.class, UniGraphPropertiesStrategy.class, UniGraphOrderStrategy.class);
+    }
+
+    @Override
+    public void apply(Traversal.Admin<?, ?> traversal) {
+        if (TraversalHelper.onGraphComputer(traversal)) return;
+
+        Graph graph = traversal.getGraph().get();
+        if (!(graph instanceof UniGraph)) return;
+
+        UniGraph uniGraph = (UniGraph) graph;
+
+        // group() keeps the first barrier of its value traversal, it must not be replaced
+        Step parent = traversal.getParent().asStep();
+        if (parent instanceof GroupStep || parent instanceof GroupSideEffectStep) return;
+
+        TraversalHelper.getStepsOfClass(CountGlobalStep.class, traversal).forEach(countStep -> {
+            Step previousStep = countStep.getPreviousStep();
+            Step reduceStep = null;
+            if (previousStep instanceof UniGraphStep && isCountable((UniGraphStep<?, ?>) previousStep, traversal)) {
+                reduceStep = new UniGraphCountStep<>((UniGraphStep<?, ?>) previousStep, uniGraph, uniGraph.getControllerManager().pin(traversal));
+            } else if (previousStep instanceof UniGraphVertexStep && isCountable((UniGraphVertexStep<?>) previousStep)) {
+                reduceStep = new UniGraphVertexCountStep((UniGraphVertexStep<?>) previousStep, uniGraph, uniGraph.getControllerManager().pin(traversal));
+            }
+            if (reduceStep == null) return;
+
+            ((Set<String>) countStep.getLabels()).forEach(reduceStep::addLabel);
+            TraversalHelper.replaceStep(previousStep, reduceStep, traversal);
+            traversal.removeStep(countStep);
+        });
+    }
+
+    private boolean isCountable(UniGraphStep<?, ?> graphStep, Traversal.Admin<?, ?> traversal) {
+        // only a g.V() that starts the root traversal, a mid traversal V() runs once for every incoming traverser
+        return graphStep.isStartStep() && traversal.getParent() instanceof EmptyStep &&
+                graphStep.getLabels().isEmpty() && graphStep.getLimit() < 0 && graphStep.getOrders() == null;
+    }
+
+    private boolean isCountable(UniGraphVertexStep<?> vertexStep) {
+        return vertexStep.getLabels().isEmpty() && vertexStep.getLimit() < 0 && vertexStep.getOrders() == null;
+    }
+}
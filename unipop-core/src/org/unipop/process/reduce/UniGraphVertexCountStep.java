@@ -0,0 +1,149 @@
+package org.unipop.process.reduce;
+
+import org.apache.tinkerpop.gremlin.process.traversal.Step;
+import org.apache.tinkerpop.gremlin.process.traversal.Traverser;
+import org.apache.tinkerpop.gremlin.process.traversal.step.Profiling;
+import org.apache.tinkerpop.gremlin.process.traversal.step.util.HasContainer;
+import org.apache.tinkerpop.gremlin.process.traversal.step.util.ReducingBarrierStep;
+import org.apache.tinkerpop.gremlin.process.traversal.traverser.TraverserRequirement;
+import org.apache.tinkerpop.gremlin.process.traversal.util.MutableMetrics;
+import org.apache.tinkerpop.gremlin.structure.Direction;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.apache.tinkerpop.gremlin.structure.util.StringFactory;
+import org.apache.tinkerpop.gremlin.util.function.ConstantSupplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.unipop.process.vertex.UniGraphVertexStep;
+import org.unipop.process.plan.PlanParameters;
+import org.unipop.process.plan.RebindableStep;
+import org.unipop.query.StepDescriptor;
+import org.unipop.query.aggregation.ReduceVertexQuery;
+import org.unipop.query.controller.ControllerExecutor;
+import org.unipop.query.controller.ControllerManager;
+import org.unipop.query.predicates.PredicatesHolder;
+import org.unipop.query.search.SearchVertexQuery;
+import org.unipop.structure.UniGraph;
+import org.unipop.util.ConversionUtils;
+
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Replaces out().count(), inE().count() etc.
+ * The incoming vertices are counted in bulks of "bulk.max", every controller that can count the edges of a bulk
+ * counts them in its data source, the edges of the others are fetched and counted like UniGraphVertexStep would
+ * return them. Each edge is counted once for every traverser of its vertex.
+ */
+public class UniGraphVertexCountStep extends ReducingBarrierStep<Vertex, Long> implements Profiling, RebindableStep {
+    private static final Logger logger = LoggerFactory.getLogger(UniGraphVertexCountStep.class);
+
+    private final Direction direction;
+    private final String[] edgeLabels;
+    private PredicatesHolder predicates;
+    private final Set<String> propertyKeys;
+    private List<SearchVertexQuery.SearchVertexController> controllers;
+    private final ControllerExecutor controllerExecutor;
+    private final int maxBulk;
+    private StepDescriptor stepDescriptor;
+
+    public UniGraphVertexCountStep(UniGraphVertexStep<?> vertexStep, UniGraph graph, ControllerManager controllerManager) {
+        super(vertexStep.getTraversal());
+        this.direction = vertexStep.getDirection();
+        this.edgeLabels = vertexStep.getEdgeLabels();
+        this.predicates = vertexStep.getPredicates();
+        this.propertyKeys = Stream.concat(
+                this.predicates.getPredicates().stream(),
+                this.predicates.getChildren().stream()
+                        .map(PredicatesHolder::getPredicates)
+                        .flatMap(Collection::stream)
+        ).map(HasContainer::getKey).collect(Collectors.toSet());
+        this.controllers = controllerManager.getControllers(SearchVertexQuery.SearchVertexController.class);
+        this.controllerExecutor = graph.getControllerExecutor();
+        this.maxBulk = graph.configuration().getInt("bulk.max", 100);
+        this.stepDescriptor = new StepDescriptor(this);
+        this.setSeedSupplier(new ConstantSupplier<>(0L));
+        this.setReducingBiOperator(Long::sum);
+    }
+
+    @Override
+    public void processAllStarts() {
+        while (starts.hasNext()) {
+            List<Traverser.Admin<Vertex>> bulk = new ArrayList<>(maxBulk);
+            while (bulk.size() < maxBulk && starts.hasNext())
+                bulk.add(starts.next());
+            this.addBarrier(count(bulk));
+        }
+        super.processAllStarts();
+    }
+
+    @Override
+    public Long projectTraverser(Traverser.Admin<Vertex> traverser) {
+        return count(Collections.singletonList(traverser));
+    }
+
+    private long count(List<Traverser.Admin<Vertex>> traversers) {
+        Map<Object, Long> bulks = new HashMap<>(traversers.size());
+        Map<Object, Vertex> vertices = new LinkedHashMap<>(traversers.size());
+        traversers.forEach(traverser -> {
+            Vertex vertex = traverser.get();
+            bulks.merge(vertex.id(), traverser.bulk(), Long::sum);
+            vertices.putIfAbsent(vertex.id(), vertex);
+        });
+
+        // vertices with the same bulk share a query, usually all of them have a bulk of 1
+        Map<Long, List<Vertex>> groups = vertices.values().stream()
+                .collect(Collectors.groupingBy(vertex -> bulks.get(vertex.id()), Collectors.toList()));
+        long count = 0;
+        for (Map.Entry<Long, List<Vertex>> group : groups.entrySet()) {
+            if (direction.equals(Direction.BOTH))
+                count += group.getKey() * (count(group.getValue(), Direction.OUT) + count(group.getValue(), Direction.IN));
+            else count += group.getKey() * count(group.getValue(), direction);
+        }
+        return count;
+    }
+
+    private long count(List<Vertex> vertices, Direction direction) {
+        ReduceVertexQuery reduceQuery = new ReduceVertexQuery(vertices, direction, predicates, propertyKeys, stepDescriptor, traversal);
+        logger.debug("Executing query: {}", reduceQuery);
+        Set<Object> ids = vertices.stream().map(Vertex::id).collect(Collectors.toSet());
+
+        return ConversionUtils.asStream(controllerExecutor.search(controllers, controller -> {
+            Long controllerCount = controller instanceof ReduceVertexQuery.ReduceVertexController ?
+                    ((ReduceVertexQuery.ReduceVertexController) controller).count(reduceQuery) : null;
+            if (controllerCount == null)
+                controllerCount = ConversionUtils.asStream(controller.search(reduceQuery))
+                        .flatMap(edge -> ConversionUtils.asStream(edge.vertices(direction)))
+                        .filter(vertex -> ids.contains(vertex.id())).count();
+            return Collections.singleton(controllerCount).iterator();
+        })).mapToLong(Long::longValue).sum();
+    }
+
+    @Override
+    public Set<TraverserRequirement> getRequirements() {
+        return Collections.singleton(TraverserRequirement.BULK);
+    }
+
+    @Override
+    public void setMetrics(MutableMetrics metrics) {
+        this.stepDescriptor = new StepDescriptor((Step) this, metrics);
+    }
+
+    @Override
+    public String toString() {
+        return StringFactory.stepString(this, this.direction, Arrays.asList(this.edgeLabels));
+    }
+
+    @Override
+    public void rebind(PlanParameters parameters, ControllerManager controllerManager) {
+        this.predicates = parameters.bind(predicates);
+        this.controllers = controllerManager.getControllers(SearchVertexQuery.SearchVertexController.class);
+    }
+
+    @Override
+    public UniGraphVertexCountStep clone() {
+        UniGraphVertexCountStep clone = (UniGraphVertexCountStep) super.clone();
+        clone.stepDescriptor = new StepDescriptor((Step) clone);
+        return clone;
+    }
+}
@@ -1,22 +1,33 @@
 package org.unipop.process.repeat;
 
+import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.Iterators;
+import org.apache.tinkerpop.gremlin.process.traversal.Step;
 import org.apache.tinkerpop.gremlin.process.traversal.Traversal;
 import org.apache.tinkerpop.gremlin.process.traversal.Traverser;
 import org.apache.tinkerpop.gremlin.process.traversal.step.TraversalParent;
 import org.apache.tinkerpop.gremlin.process.traversal.step.branch.RepeatStep;
 import org.apache.tinkerpop.gremlin.process.traversal.step.util.ComputerAwareStep;
 import org.apache.tinkerpop.gremlin.process.traversal.traverser.TraverserRequirement;
+import org.apache.tinkerpop.gremlin.process.traversal.traverser.util.TraverserSet;
+import org.apache.tinkerpop.gremlin.process.traversal.util.TraversalHelper;
 import org.apache.tinkerpop.gremlin.process.traversal.util.TraversalUtil;
+import org.apache.tinkerpop.gremlin.structure.Element;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
 import org.apache.tinkerpop.gremlin.structure.util.StringFactory;
+import org.apache.tinkerpop.gremlin.util.iterator.EmptyIterator;
 import org.apache.tinkerpop.gremlin.util.iterator.IteratorUtils;
 import org.unipop.process.UniBulkStep;
+import org.unipop.process.vertex.UniGraphVertexStep;
 import org.unipop.structure.UniGraph;
 
 import java.util.*;
 
 /**
  * Created by TechUser on 6/27/2016.
+ * With "repeat.frontier" a repeat(out()) whose traversers don't carry paths or sacks is executed breadth first:
+ * every level of an incoming bulk is merged by vertex (summing the bulks) and expanded in bulks of
+ * "repeat.frontier.bulk" vertices. "repeat.frontier.visited" also drops the vertices that an earlier level already reached.
  */
 public class UniGraphRepeatStep<S> extends UniBulkStep<S, S> implements TraversalParent {
     private Traversal.Admin<S, S> repeatTraversal = null;
@@ -28,6 +39,11 @@ public class UniGraphRepeatStep<S> extends UniBulkStep<S, S> implements Traversa
     private List<Traverser.Admin<S>> emits;
     private List<Traverser.Admin<S>> untils;
 
+    private final boolean frontier;
+    private final boolean visited;
+    private final int frontierBulk;
+    private Boolean frontierMode;
+
     @Override
     public Set<TraverserRequirement> getRequirements() {
         final Set<TraverserRequirement> requirements = this.getSelfAndChildRequirements(TraverserRequirement.BULK);
@@ -53,6 +69,9 @@ public class UniGraphRepeatStep<S> extends UniBulkStep<S, S> implements Traversa
 
         emits = new ArrayList<>();
         untils = new ArrayList<>();
+        this.frontier = graph.configuration().getBoolean("repeat.frontier", false);
+        this.visited = graph.configuration().getBoolean("repeat.frontier.visited", false);
+        this.frontierBulk = graph.configuration().getInt("repeat.frontier.bulk", 10000);
     }
 
     public final boolean doUntil(final Traverser.Admin<S> traverser, boolean utilFirst) {
@@ -85,6 +104,7 @@ public class UniGraphRepeatStep<S> extends UniBulkStep<S, S> implements Traversa
 
     @Override
     protected Iterator<Traverser.Admin<S>> process(List<Traverser.Admin<S>> traversers) {
+        if (isFrontierMode()) return processFrontier(traversers);
         Iterator<Traverser.Admin<S>> iterator = traversers.iterator();
         boolean lastIter = true;
         while (true) {
@@ -118,6 +138,29 @@ public class UniGraphRepeatStep<S> extends UniBulkStep<S, S> implements Traversa
         }
     }
 
+    private boolean isFrontierMode() {
+        if (frontierMode == null) {
+            List<Step> steps = repeatTraversal.getSteps();
+            // merging traversers of the same vertex loses their paths, sacks and outer loops
+            Set<TraverserRequirement> requirements = TraversalHelper.getRootTraversal(traversal).getTraverserRequirements();
+            frontierMode = frontier && steps.size() == 2 &&
+                    steps.get(0) instanceof UniGraphVertexStep && ((UniGraphVertexStep) steps.get(0)).returnsVertex() &&
+                    steps.get(1) instanceof RepeatEndStep &&
+                    Collections.disjoint(requirements, Arrays.asList(TraverserRequirement.PATH, TraverserRequirement.LABELED_PATH,
+                            TraverserRequirement.SACK, TraverserRequirement.NESTED_LOOP, TraverserRequirement.ONE_BULK));
+        }
+        return frontierMode;
+    }
+
+    /**
+     * Runs the repeat level by level, starting from the incoming bulk of traversers
+     */
+    private Iterator<Traverser.Admin<S>> processFrontier(List<Traverser.Admin<S>> traversers) {
+        TraverserSet<S> level = new TraverserSet<>();
+        traversers.forEach(level::add);
+        return new FrontierIterator(level);
+    }
+
     public Traversal.Admin<S, S> getRepeatTraversal() {
         return repeatTraversal;
     }
@@ -143,6 +186,76 @@ public class UniGraphRepeatStep<S> extends UniBulkStep<S, S> implements Traversa
         return list;
     }
 
+    /**
+     * Expands one level at a time, in bulks of frontierBulk vertices, and returns the traversers leaving the repeat
+     * as they are found. Only the next level is held, merged by vertex, so the results of the repeat are never
+     * buffered and a following limit() stops the expansion.
+     */
+    private class FrontierIterator extends AbstractIterator<Traverser.Admin<S>> {
+        private final UniGraphVertexStep<Vertex> vertexStep = (UniGraphVertexStep<Vertex>) repeatTraversal.getStartStep();
+        private final String loopId = repeatTraversal.getEndStep().getId();
+        private final Set<Object> visitedIds = visited ? new HashSet<>() : null;
+        private final Deque<Traverser.Admin<S>> leaving = new ArrayDeque<>();
+        private TraverserSet<S> next;
+        private Iterator<List<Traverser.Admin<S>>> bulks = EmptyIterator.instance();
+        private Iterator<Traverser.Admin<Vertex>> expanded = EmptyIterator.instance();
+
+        private FrontierIterator(TraverserSet<S> level) {
+            this.next = level;
+        }
+
+        @Override
+        protected Traverser.Admin<S> computeNext() {
+            while (true) {
+                if (!leaving.isEmpty()) return leaving.poll();
+                if (expanded.hasNext()) {
+                    Traverser.Admin<S> traverser = (Traverser.Admin<S>) expanded.next();
+                    traverser.incrLoops(loopId);
+                    if (doUntil(traverser, false)) {
+                        traverser.resetLoops();
+                        return traverser;
+                    }
+                    next.add(traverser);
+                    if (doEmit(traverser, false)) {
+                        Traverser.Admin<S> emitSplit = traverser.split();
+                        emitSplit.resetLoops();
+                        return emitSplit;
+                    }
+                } else if (bulks.hasNext()) {
+                    expanded = vertexStep.expand((List) bulks.next());
+                } else if (next.isEmpty()) {
+                    return endOfData();
+                } else {
+                    bulks = Iterators.partition(frontier(next), frontierBulk);
+                    next = new TraverserSet<>();
+                }
+            }
+        }
+
+        /**
+         * Checks the until and emit before the body on a level whose traversers of the same vertex are already merged,
+         * and drops the vertices an earlier level reached
+         */
+        private Iterator<Traverser.Admin<S>> frontier(TraverserSet<S> level) {
+            List<Traverser.Admin<S>> frontier = new ArrayList<>(level.size());
+            level.forEach(traverser -> {
+                if (doUntil(traverser, true)) {
+                    traverser.resetLoops();
+                    leaving.add(traverser);
+                    return;
+                }
+                if (doEmit(traverser, true)) {
+                    Traverser.Admin<S> emitSplit = traverser.split();
+                    emitSplit.resetLoops();
+                    leaving.add(emitSplit);
+                }
+                if (visitedIds == null || visitedIds.add(((Element) traverser.get()).id()))
+                    frontier.add(traverser);
+            });
+            return frontier.iterator();
+        }
+    }
+
     public static class RepeatEndStep<S> extends ComputerAwareStep<S, S> {
 
         UniGraphRepeatStep<S> repeatStep;
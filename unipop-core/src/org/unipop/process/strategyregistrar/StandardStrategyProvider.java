@@ -5,8 +5,11 @@ import org.apache.tinkerpop.gremlin.process.traversal.util.DefaultTraversalStrat
 import org.apache.tinkerpop.gremlin.structure.Graph;
 import org.unipop.process.coalesce.UniGraphCoalesceStepStrategy;
 import org.unipop.process.edge.EdgeStepsStrategy;
+import org.unipop.process.group.UniGraphGroupStepStrategy;
 import org.unipop.process.order.UniGraphOrderStrategy;
 import org.unipop.process.properties.UniGraphPropertiesStrategy;
+import org.unipop.process.range.UniGraphRangeStrategy;
+import org.unipop.process.reduce.UniGraphCountStepStrategy;
 import org.unipop.process.repeat.UniGraphRepeatStepStrategy;
 import org.unipop.process.graph.UniGraphStepStrategy;
 import org.unipop.process.vertex.UniGraphVertexStepStrategy;
@@ -24,7 +27,10 @@ public class StandardStrategyProvider implements StrategyProvider {
                 new UniGraphCoalesceStepStrategy(),
                 new UniGraphWhereStepStrategy(),
                 new UniGraphRepeatStepStrategy(),
-                new UniGraphOrderStrategy());
+                new UniGraphOrderStrategy(),
+                new UniGraphRangeStrategy(),
+                new UniGraphCountStepStrategy(),
+                new UniGraphGroupStepStrategy());
         TraversalStrategies.GlobalCache.getStrategies(Graph.class).toList().forEach(traversalStrategies::addStrategies);
         return traversalStrategies;
     }
@@ -0,0 +1,130 @@
+package org.unipop.process.vertex;
+
+import org.apache.tinkerpop.gremlin.process.traversal.Traverser;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An open addressing index from the vertex ids of a bulk to its traversers.
+ * The traversers of an id are chained by their position in the bulk, in the order they were added.
+ * The arrays are kept between bulks, so a step that reuses its index doesn't allocate for every bulk.
+ */
+class TraverserIndex {
+    private Object[] keys = new Object[0];
+    private int[] heads = new int[0];
+    private int[] tails = new int[0];
+    private int[] next = new int[0];
+    private Traverser.Admin<Vertex>[] traversers = new Traverser.Admin[0];
+    private int[] slots = new int[0];
+    private int mask;
+    private int size;
+    private int distinct;
+    private boolean inUse;
+
+    /**
+     * Prepares the index for a bulk, growing its arrays when needed
+     * @param capacity The number of traversers in the bulk
+     */
+    void reset(int capacity) {
+        // at most half of the table is used, so probes stay short
+        int tableSize = Integer.highestOneBit(Math.max(capacity, 1) * 2 - 1) << 1;
+        if (keys.length < tableSize) {
+            keys = new Object[tableSize];
+            heads = new int[tableSize];
+            tails = new int[tableSize];
+        }
+        if (traversers.length < capacity) {
+            traversers = new Traverser.Admin[capacity];
+            next = new int[capacity];
+            slots = new int[capacity];
+        }
+        mask = tableSize - 1;
+        Arrays.fill(heads, 0, tableSize, -1);
+        size = 0;
+        distinct = 0;
+        inUse = true;
+    }
+
+    boolean isInUse() {
+        return inUse;
+    }
+
+    /**
+     * Drops the references to the last bulk, so the index can be reused
+     */
+    void release() {
+        Arrays.fill(traversers, 0, size, null);
+        Arrays.fill(keys, 0, mask + 1, null);
+        inUse = false;
+    }
+
+    void add(Traverser.Admin<Vertex> traverser) {
+        Object id = traverser.get().id();
+        int slot = slot(id);
+        if (keys[slot] == null) {
+            keys[slot] = id;
+            heads[slot] = size;
+            slots[distinct++] = slot;
+        } else next[tails[slot]] = size;
+        tails[slot] = size;
+        next[size] = -1;
+        traversers[size++] = traverser;
+    }
+
+    /**
+     * @param id A vertex id
+     * @return The position of the first traverser of the id, -1 if there is none
+     */
+    int first(Object id) {
+        return heads[slot(id)];
+    }
+
+    /**
+     * @param position The position of a traverser
+     * @return The position of the next traverser of the same id, -1 if there is none
+     */
+    int next(int position) {
+        return next[position];
+    }
+
+    Traverser.Admin<Vertex> get(int position) {
+        return traversers[position];
+    }
+
+    int size() {
+        return size;
+    }
+
+    int distinct() {
+        return distinct;
+    }
+
+    /**
+     * @param index The index of a distinct id, in the order the ids were added
+     * @return The position of the first traverser of the id
+     */
+    int firstOfDistinct(int index) {
+        return heads[slots[index]];
+    }
+
+    /**
+     * @return The vertex of every id once, in the order the ids were added
+     */
+    List<Vertex> vertices() {
+        List<Vertex> vertices = new ArrayList<>(distinct);
+        for (int i = 0; i < distinct; i++)
+            vertices.add(traversers[heads[slots[i]]].get());
+        return vertices;
+    }
+
+    private int slot(Object id) {
+        int hash = id.hashCode();
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        while (keys[slot] != null && !keys[slot].equals(id))
+            slot = (slot + 1) & mask;
+        return slot;
+    }
+}
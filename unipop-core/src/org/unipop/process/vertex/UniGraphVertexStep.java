@@ -1,6 +1,8 @@
 package org.unipop.process.vertex;
 
+import com.google.common.collect.Iterators;
 import org.apache.tinkerpop.gremlin.process.traversal.step.Profiling;
+import org.apache.tinkerpop.gremlin.process.traversal.util.FastNoSuchElementException;
 import org.apache.tinkerpop.gremlin.process.traversal.util.MutableMetrics;
 import org.apache.tinkerpop.gremlin.structure.util.Attachable;
 import org.javatuples.Pair;
@@ -8,6 +10,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.unipop.process.UniPredicatesStep;
 import org.unipop.process.order.Orderable;
+import org.unipop.process.plan.PlanParameters;
+import org.unipop.process.plan.RebindableStep;
 import org.unipop.query.StepDescriptor;
 import org.unipop.process.predicate.ReceivesPredicatesHolder;
 import org.apache.tinkerpop.gremlin.process.traversal.*;
@@ -24,16 +28,18 @@ import org.unipop.query.predicates.PredicatesHolderFactory;
 import org.unipop.query.search.DeferredVertexQuery;
 import org.unipop.query.search.SearchVertexQuery;
 import org.unipop.schema.reference.DeferredVertex;
+import org.unipop.schema.reference.DeferredVertexLoader;
 import org.unipop.structure.UniGraph;
+import org.unipop.structure.cache.AdjacencyCache;
 import org.unipop.structure.UniVertex;
 
 import java.util.*;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
-public class UniGraphVertexStep<E extends Element> extends UniPredicatesStep<Vertex, E> implements ReceivesPredicatesHolder<Vertex, E>, Orderable, Profiling{
+public class UniGraphVertexStep<E extends Element> extends UniPredicatesStep<Vertex, E> implements ReceivesPredicatesHolder<Vertex, E>, Orderable, Profiling, RebindableStep {
     private static final Logger logger = LoggerFactory.getLogger(UniGraphVertexStep.class);
 
+    private final UniGraph graph;
     private final boolean returnsVertex;
     private final Direction direction;
     private Class<E> returnClass;
@@ -43,11 +49,15 @@ public class UniGraphVertexStep<E extends Element> extends UniPredicatesStep<Ver
     private StepDescriptor stepDescriptor;
     private List<SearchVertexQuery.SearchVertexController> controllers;
     private List<DeferredVertexQuery.DeferredVertexController> deferredVertexControllers;
+    private DeferredVertexLoader deferredVertexLoader;
+    private AdjacencyCache adjacencyCache;
+    private TraverserIndex index;
     private List<Pair<String, Order>> orders;
 
     public UniGraphVertexStep(VertexStep<E> vertexStep, UniGraph graph, ControllerManager controllerManager) {
         super(vertexStep.getTraversal(), graph);
         vertexStep.getLabels().forEach(this::addLabel);
+        this.graph = graph;
         this.direction = vertexStep.getDirection();
         this.returnClass = vertexStep.getReturnClass();
         this.returnsVertex = vertexStep.returnsVertex();
@@ -58,36 +68,113 @@ public class UniGraphVertexStep<E extends Element> extends UniPredicatesStep<Ver
         } else this.predicates = PredicatesHolderFactory.empty();
         this.controllers = controllerManager.getControllers(SearchVertexQuery.SearchVertexController.class);
         this.deferredVertexControllers = controllerManager.getControllers(DeferredVertexQuery.DeferredVertexController.class);
+        this.deferredVertexLoader = graph.getDeferredVertexLoader();
+        this.adjacencyCache = graph.getAdjacencyCache();
         this.stepDescriptor = new StepDescriptor(this);
         limit = -1;
     }
 
     @Override
     protected Iterator<Traverser.Admin<E>> process(List<Traverser.Admin<Vertex>> traversers) {
-        Map<Object, List<Traverser<Vertex>>> idToTraverser = new HashMap<>(traversers.size());
-        List<Vertex> vertices = new ArrayList<>(traversers.size());
-        traversers.forEach(traverser -> {
-            Vertex vertex = traverser.get();
-            List<Traverser<Vertex>> traverserList = idToTraverser.get(vertex.id());
-            if (traverserList == null) {
-                traverserList = new ArrayList<>(1);
-                idToTraverser.put(vertex.id(), traverserList);
-            }
-            traverserList.add(traverser);
-            vertices.add(vertex);
-        });
+        TraverserIndex index = acquireIndex(traversers.size());
+        for (Traverser.Admin<Vertex> traverser : traversers)
+            index.add(traverser);
+        // a limited or ordered query doesn't return all of the edges of each vertex
+        Object filterOutcome = adjacencyCache.isEnabled() ? graph.getTraversalFilter().outcome(traversal) : null;
+        Iterator<Traverser.Admin<E>> traversersIterator = filterOutcome != null && (returnsVertex || (limit < 0 && orders == null)) ?
+                processCached(index, filterOutcome) :
+                new TraverserJoin(search(index.vertices()), index);
+        if (!this.returnsVertex || (propertyKeys != null && propertyKeys.size() == 0))
+            return traversersIterator;
+        return getTraversersWithProperties(traversersIterator);
+    }
+
+    /**
+     * The step's index is reused by the next bulk once the results of the previous one are exhausted.
+     * Pipelined bulks are processed concurrently, each of them gets its own index.
+     */
+    private TraverserIndex acquireIndex(int capacity) {
+        TraverserIndex index;
+        if (pipeline > 0) index = new TraverserIndex();
+        else {
+            if (this.index == null || this.index.isInUse()) this.index = new TraverserIndex();
+            index = this.index;
+        }
+        index.reset(capacity);
+        return index;
+    }
+
+    private Iterator<Edge> search(List<Vertex> vertices) {
         SearchVertexQuery vertexQuery;
         if (!returnsVertex)
             vertexQuery = new SearchVertexQuery(Edge.class, vertices, direction, predicates, limit, propertyKeys, orders, stepDescriptor, traversal);
         else
             vertexQuery = new SearchVertexQuery(Edge.class, vertices, direction, predicates, -1, propertyKeys, null, stepDescriptor, traversal);
         logger.debug("Executing query: ", vertexQuery);
-        Iterator<Traverser.Admin<E>> traversersIterator = controllers.stream().<Iterator<Edge>>map(controller -> controller.search(vertexQuery))
-                .<Edge>flatMap(ConversionUtils::asStream)
-                .<Traverser.Admin<E>>flatMap(edge -> toTraversers(edge, idToTraverser)).iterator();
-        if (!this.returnsVertex || (propertyKeys != null && propertyKeys.size() == 0))
-            return traversersIterator;
-        return getTraversersWithProperties(traversersIterator);
+        return deferredVertexLoader.batch(controllerExecutor.search(controllers, controller -> controller.search(vertexQuery)));
+    }
+
+    /**
+     * Returns the cached edges of the vertices that have them, and searches the edges of the others.
+     * The edges of the misses are cached once the controllers' results are fully read.
+     */
+    private Iterator<Traverser.Admin<E>> processCached(TraverserIndex index, Object filterOutcome) {
+        AdjacencyCache.Shape shape = new AdjacencyCache.Shape(direction, predicates, propertyKeys, filterOutcome);
+        List<Pair<Integer, Edge>> hitEdges = new ArrayList<>();
+        TraverserIndex missIndex = new TraverserIndex();
+        missIndex.reset(index.size());
+        List<Vertex> misses = new ArrayList<>();
+        for (int i = 0; i < index.distinct(); i++) {
+            int first = index.firstOfDistinct(i);
+            Vertex vertex = index.get(first).get();
+            List<AdjacencyCache.CachedEdge> edges = adjacencyCache.get(vertex.id(), shape);
+            if (edges == null) {
+                misses.add(vertex);
+                for (int position = first; position >= 0; position = index.next(position))
+                    missIndex.add(index.get(position));
+            } else edges.forEach(edge -> hitEdges.add(Pair.with(first, edge.toEdge(graph))));
+        }
+        // the deferred vertices of the new edges are loaded together, like the ones of a search
+        Iterators.size(deferredVertexLoader.batch(hitEdges.stream().map(Pair::getValue1).iterator()));
+        List<Traverser.Admin<E>> hits = new ArrayList<>(hitEdges.size());
+        for (Pair<Integer, Edge> hit : hitEdges) {
+            Vertex vertex = index.get(hit.getValue0()).get();
+            for (int position = hit.getValue0(); position >= 0; position = index.next(position))
+                hits.add(index.get(position).split(getReturnElement(hit.getValue1(), vertex), this));
+        }
+        index.release();
+        if (misses.isEmpty()) return hits.iterator();
+
+        Map<Object, List<AdjacencyCache.CachedEdge>> missEdges = new HashMap<>(misses.size());
+        misses.forEach(vertex -> missEdges.put(vertex.id(), new ArrayList<>()));
+        Iterator<Edge> edges = search(misses);
+        Iterator<Edge> cachingEdges = new Iterator<Edge>() {
+            private boolean cached;
+
+            @Override
+            public boolean hasNext() {
+                boolean hasNext = edges.hasNext();
+                if (!hasNext && !cached) {
+                    cached = true;
+                    missEdges.forEach((id, vertexEdges) -> adjacencyCache.put(id, shape, vertexEdges));
+                }
+                return hasNext;
+            }
+
+            @Override
+            public Edge next() {
+                Edge edge = edges.next();
+                // an edge is kept for every end of it that is a miss, like TraverserJoin returns it.
+                // its data is taken before the traversal gets to change the edge
+                AdjacencyCache.CachedEdge cachedEdge = new AdjacencyCache.CachedEdge(edge);
+                edge.vertices(direction).forEachRemaining(vertex -> {
+                    List<AdjacencyCache.CachedEdge> vertexEdges = missEdges.get(vertex.id());
+                    if (vertexEdges != null) vertexEdges.add(cachedEdge);
+                });
+                return edge;
+            }
+        };
+        return Iterators.concat(hits.iterator(), new TraverserJoin(cachingEdges, missIndex));
     }
 
     private Iterator<Traverser.Admin<E>> getTraversersWithProperties(Iterator<Traverser.Admin<E>> traversers) {
@@ -99,21 +186,64 @@ public class UniGraphVertexStep<E extends Element> extends UniPredicatesStep<Ver
                 .collect(Collectors.toList());
         if (deferredVertices.size() > 0) {
             DeferredVertexQuery query = new DeferredVertexQuery(deferredVertices, propertyKeys, orders, this.stepDescriptor, traversal);
-            deferredVertexControllers.stream().forEach(controller -> controller.fetchProperties(query));
+            deferredVertexLoader.load(query, deferredVertexControllers);
         }
         return copyTraversers.iterator();
     }
 
-    private Stream<Traverser.Admin<E>> toTraversers(Edge edge, Map<Object, List<Traverser<Vertex>>> traversers) {
-        return ConversionUtils.asStream(edge.vertices(direction))
-                .<Traverser.Admin<E>>flatMap(originalVertex -> {
-                    List<Traverser<Vertex>> vertexTraversers = traversers.get(originalVertex.id());
-                    if (vertexTraversers == null) return null;
-                    return vertexTraversers.stream().map(vertexTraverser -> {
-                        E result = getReturnElement(edge, originalVertex);
-                        return vertexTraverser.asAdmin().split(result, this);
-                    });
-                }).filter(result -> result != null);
+    /**
+     * Joins the edges with the traversers of their vertices, a traverser is split for every edge of its vertex
+     */
+    private class TraverserJoin implements Iterator<Traverser.Admin<E>> {
+        private final Iterator<Edge> edges;
+        private final TraverserIndex index;
+        private Edge edge;
+        private Vertex vertex;
+        private boolean inVertexPending;
+        private int position = -1;
+        private Traverser.Admin<E> next;
+
+        private TraverserJoin(Iterator<Edge> edges, TraverserIndex index) {
+            this.edges = edges;
+            this.index = index;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) next = advance();
+            return next != null;
+        }
+
+        @Override
+        public Traverser.Admin<E> next() {
+            if (!hasNext()) throw FastNoSuchElementException.instance();
+            Traverser.Admin<E> result = next;
+            next = null;
+            return result;
+        }
+
+        private Traverser.Admin<E> advance() {
+            while (true) {
+                if (position >= 0) {
+                    Traverser.Admin<Vertex> traverser = index.get(position);
+                    position = index.next(position);
+                    return traverser.split(getReturnElement(edge, vertex), UniGraphVertexStep.this);
+                }
+                if (inVertexPending) {
+                    // both() joins an edge with the traversers of its out vertex and then of its in vertex
+                    inVertexPending = false;
+                    vertex = edge.inVertex();
+                } else if (edges.hasNext()) {
+                    edge = edges.next();
+                    vertex = direction.equals(Direction.IN) ? edge.inVertex() : edge.outVertex();
+                    inVertexPending = direction.equals(Direction.BOTH);
+                } else {
+                    index.release();
+                    return null;
+                }
+                position = index.first(vertex.id());
+            }
+        }
     }
 
     private E getReturnElement(Edge edge, Vertex originalVertex) {
@@ -152,8 +282,38 @@ public class UniGraphVertexStep<E extends Element> extends UniPredicatesStep<Ver
         this.limit = limit;
     }
 
+    public int getLimit() {
+        return limit;
+    }
+
+    public Direction getDirection() {
+        return direction;
+    }
+
+    public String[] getEdgeLabels() {
+        return edgeLabels;
+    }
+
+    public Class<E> getReturnClass() {
+        return returnClass;
+    }
+
+    public boolean returnsVertex() {
+        return returnsVertex;
+    }
+
+    /**
+     * Expands a bulk of traversers outside of the step's own iteration, used by the breadth first repeat
+     * @param traversers The traversers
+     * @return The traversers of the adjacent elements
+     */
+    public Iterator<Traverser.Admin<E>> expand(List<Traverser.Admin<Vertex>> traversers) {
+        return process(traversers);
+    }
+
     @Override
     public void setMetrics(MutableMetrics metrics) {
+        super.setMetrics(metrics);
         this.stepDescriptor = new StepDescriptor(this, metrics);
     }
 
@@ -162,10 +322,29 @@ public class UniGraphVertexStep<E extends Element> extends UniPredicatesStep<Ver
         this.orders = orders;
     }
 
+    public List<Pair<String, Order>> getOrders() {
+        return orders;
+    }
+
     @Override
     public void addPropertyKey(String key) {
         if (!returnsVertex)
             super.addPropertyKey(key);
         else super.fetchAllKeys();
     }
+
+    @Override
+    public void rebind(PlanParameters parameters, ControllerManager controllerManager) {
+        this.predicates = parameters.bind(predicates);
+        this.controllers = controllerManager.getControllers(SearchVertexQuery.SearchVertexController.class);
+        this.deferredVertexControllers = controllerManager.getControllers(DeferredVertexQuery.DeferredVertexController.class);
+    }
+
+    @Override
+    public UniGraphVertexStep<E> clone() {
+        UniGraphVertexStep<E> clone = (UniGraphVertexStep<E>) super.clone();
+        clone.index = null;
+        clone.stepDescriptor = new StepDescriptor(clone);
+        return clone;
+    }
 }
@@ -26,7 +26,7 @@ public class UniGraphVertexStepStrategy extends AbstractTraversalStrategy<Traver
 
         TraversalHelper.getStepsOfAssignableClassRecursively(VertexStep.class, traversal).forEach(vertexStep -> {
             if(TraversalHelper.stepIndex(vertexStep, traversal) != -1) {
-                UniGraphVertexStep uniGraphVertexStep = new UniGraphVertexStep<>(vertexStep, uniGraph, uniGraph.getControllerManager());
+                UniGraphVertexStep uniGraphVertexStep = new UniGraphVertexStep<>(vertexStep, uniGraph, uniGraph.getControllerManager().pin(traversal));
                 TraversalHelper.replaceStep(vertexStep, uniGraphVertexStep, traversal);
                 if (vertexStep.returnsEdge()) PredicatesUtil.collectPredicates(uniGraphVertexStep, traversal);
             }
@@ -34,14 +34,14 @@ public class UniGraphVertexStepStrategy extends AbstractTraversalStrategy<Traver
                 TraversalHelper.getStepsOfAssignableClass(TraversalParent.class, traversal).forEach(traversalParent -> {
                     traversalParent.getLocalChildren().forEach(child -> {
                         if(TraversalHelper.stepIndex(vertexStep, child) != -1) {
-                            UniGraphVertexStep uniGraphVertexStep = new UniGraphVertexStep<>(vertexStep, uniGraph, uniGraph.getControllerManager());
+                            UniGraphVertexStep uniGraphVertexStep = new UniGraphVertexStep<>(vertexStep, uniGraph, uniGraph.getControllerManager().pin(traversal));
                             TraversalHelper.replaceStep(vertexStep, uniGraphVertexStep, child);
                             if (vertexStep.returnsEdge()) PredicatesUtil.collectPredicates(uniGraphVertexStep, child);
                         }
                     });
                     traversalParent.getGlobalChildren().forEach(child -> {
                         if(TraversalHelper.stepIndex(vertexStep, child) != -1) {
-                            UniGraphVertexStep uniGraphVertexStep = new UniGraphVertexStep<>(vertexStep, uniGraph, uniGraph.getControllerManager());
+                            UniGraphVertexStep uniGraphVertexStep = new UniGraphVertexStep<>(vertexStep, uniGraph, uniGraph.getControllerManager().pin(traversal));
                             TraversalHelper.replaceStep(vertexStep, uniGraphVertexStep, child);
                             if (vertexStep.returnsEdge()) PredicatesUtil.collectPredicates(uniGraphVertexStep, child);
                         }
@@ -49,14 +49,14 @@ public class UniGraphVertexStepStrategy extends AbstractTraversalStrategy<Traver
                             TraversalHelper.getStepsOfAssignableClass(TraversalParent.class, child).forEach(traversalParent1 -> {
                                 traversalParent.getLocalChildren().forEach(child1 -> {
                                     if(TraversalHelper.stepIndex(vertexStep, child1) != -1) {
-                                        UniGraphVertexStep uniGraphVertexStep = new UniGraphVertexStep<>(vertexStep, uniGraph, uniGraph.getControllerManager());
+                                        UniGraphVertexStep uniGraphVertexStep = new UniGraphVertexStep<>(vertexStep, uniGraph, uniGraph.getControllerManager().pin(traversal));
                                         TraversalHelper.replaceStep(vertexStep, uniGraphVertexStep, child1);
                                         if (vertexStep.returnsEdge()) PredicatesUtil.collectPredicates(uniGraphVertexStep, child1);
                                     }
                                 });
                                 traversalParent.getGlobalChildren().forEach(child1 -> {
                                     if(TraversalHelper.stepIndex(vertexStep, child1) != -1) {
-                                        UniGraphVertexStep uniGraphVertexStep = new UniGraphVertexStep<>(vertexStep, uniGraph, uniGraph.getControllerManager());
+                                        UniGraphVertexStep uniGraphVertexStep = new UniGraphVertexStep<>(vertexStep, uniGraph, uniGraph.getControllerManager().pin(traversal));
                                         TraversalHelper.replaceStep(vertexStep, uniGraphVertexStep, child1);
                                         if (vertexStep.returnsEdge()) PredicatesUtil.collectPredicates(uniGraphVertexStep, child1);
                                     }
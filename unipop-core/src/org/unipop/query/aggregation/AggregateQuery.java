@@ -1,53 +1,68 @@
-//package org.unipop.query.aggregation;
-//
-//import org.unipop.process.group.traversal.SemanticKeyTraversal;
-//import org.unipop.process.group.traversal.SemanticReducerTraversal;
-//import org.unipop.process.group.traversal.SemanticValuesTraversal;
-//import org.unipop.query.predicates.PredicatesHolder;
-//import org.unipop.query.StepDescriptor;
-//import org.unipop.query.controller.UniQueryController;
-//import org.unipop.query.predicates.PredicateQuery;
-//
-//import java.util.Map;
-//
-//public class AggregateQuery extends PredicateQuery {
-//    private final SemanticKeyTraversal key;
-//    private final SemanticValuesTraversal values;
-//    private final SemanticReducerTraversal reduce;
-//
-//    public AggregateQuery(PredicatesHolder predicates,
-//                          SemanticKeyTraversal key,
-//                          SemanticValuesTraversal values,
-//                          SemanticReducerTraversal reduce,
-//                          StepDescriptor stepDescriptor) {
-//        super(predicates, stepDescriptor);
-//        this.key = key;
-//        this.values = values;
-//        this.reduce = reduce;
-//    }
-//
-//    public SemanticKeyTraversal getKey() {
-//        return key;
-//    }
-//
-//    public SemanticValuesTraversal getValues() {
-//        return values;
-//    }
-//
-//    public SemanticReducerTraversal getReduce() {
-//        return reduce;
-//    }
-//
-//    public interface AggregationController extends UniQueryController {
-//        Map<String, Object> query(AggregateQuery uniQuery);
-//    }
-//
-//    @Override
-//    public String toString() {
-//        return "AggregateQuery{" +
-//                "key=" + key +
-//                ", values=" + values +
-//                ", reduce=" + reduce +
-//                '}';
-//    }
-//}
+package org.unipop.query.aggregation;
+
+import org.apache.tinkerpop.gremlin.process.traversal.Traversal;
+import org.apache.tinkerpop.gremlin.structure.Element;
+import org.unipop.process.group.traversal.SemanticKeyTraversal;
+import org.unipop.process.group.traversal.SemanticReducerTraversal;
+import org.unipop.process.group.traversal.SemanticValuesTraversal;
+import org.unipop.query.StepDescriptor;
+import org.unipop.query.controller.UniQueryController;
+import org.unipop.query.predicates.PredicatesHolder;
+import org.unipop.query.search.SearchQuery;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Groups the elements of a search by a key and reduces the values of every key instead of returning the elements.
+ * A controller that can't aggregate the elements can still run it as a search, and they are aggregated by iterating.
+ * @param <E> Element
+ */
+public class AggregateQuery<E extends Element> extends SearchQuery<E> {
+    private final SemanticKeyTraversal key;
+    private final SemanticValuesTraversal values;
+    private final SemanticReducerTraversal reduce;
+
+    public AggregateQuery(Class<E> returnType, PredicatesHolder predicates, Set<String> propertyKeys,
+                          SemanticKeyTraversal key, SemanticValuesTraversal values, SemanticReducerTraversal reduce,
+                          StepDescriptor stepDescriptor, Traversal traversal) {
+        super(returnType, predicates, -1, propertyKeys, null, stepDescriptor, traversal);
+        this.key = key;
+        this.values = values;
+        this.reduce = reduce;
+    }
+
+    public SemanticKeyTraversal getKey() {
+        return key;
+    }
+
+    public SemanticValuesTraversal getValues() {
+        return values;
+    }
+
+    public SemanticReducerTraversal getReduce() {
+        return reduce;
+    }
+
+    public interface AggregateController extends UniQueryController {
+        /**
+         * Aggregates the elements matching a query in the data source
+         * @param uniQuery The query
+         * @param <E> Element
+         * @return The reduced value of every key, null for a key without values,
+         * or null if the controller can't aggregate the elements exactly
+         */
+        <E extends Element> Map<Object, Object> aggregate(AggregateQuery<E> uniQuery);
+    }
+
+    @Override
+    public String toString() {
+        return "AggregateQuery{" +
+                "returnType=" + getReturnType() +
+                ", predicates=" + getPredicates() +
+                ", key=" + key +
+                ", values=" + values +
+                ", reduce=" + reduce +
+                '}';
+    }
+}
@@ -1,53 +1,69 @@
-//package org.unipop.query.aggregation;
-//
-//import org.apache.tinkerpop.gremlin.structure.Direction;
-//import org.apache.tinkerpop.gremlin.structure.Vertex;
-//import org.unipop.process.group.traversal.SemanticKeyTraversal;
-//import org.unipop.process.group.traversal.SemanticReducerTraversal;
-//import org.unipop.process.group.traversal.SemanticValuesTraversal;
-//import org.unipop.query.predicates.PredicatesHolder;
-//import org.unipop.query.StepDescriptor;
-//import org.unipop.query.controller.UniQueryController;
-//import org.unipop.query.VertexQuery;
-//
-//import java.util.List;
-//
-//public class AggregateVertexQuery extends AggregateQuery implements VertexQuery {
-//
-//    private final List<Vertex> vertices;
-//    private final Direction direction;
-//
-//    public AggregateVertexQuery(List<Vertex> vertices,
-//                                Direction direction,
-//                                PredicatesHolder predicates,
-//                                SemanticKeyTraversal key,
-//                                SemanticValuesTraversal values,
-//                                SemanticReducerTraversal reduce,
-//                                StepDescriptor stepDescriptor) {
-//        super(predicates, key, values, reduce, stepDescriptor);
-//        this.vertices = vertices;
-//        this.direction = direction;
-//    }
-//
-//    @Override
-//    public List<Vertex> getVertices() {
-//        return vertices;
-//    }
-//
-//    @Override
-//    public Direction getDirection() {
-//        return direction;
-//    }
-//
-//    public interface AggregateVertexController extends UniQueryController {
-//        void query(AggregateVertexQuery uniQuery);
-//    }
-//
-//    @Override
-//    public String toString() {
-//        return "AggregateVertexQuery{" +
-//                "vertices=" + vertices +
-//                ", direction=" + direction +
-//                '}';
-//    }
-//}
+package org.unipop.query.aggregation;
+
+import org.apache.tinkerpop.gremlin.process.traversal.Traversal;
+import org.apache.tinkerpop.gremlin.structure.Direction;
+import org.apache.tinkerpop.gremlin.structure.Edge;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.unipop.process.group.traversal.SemanticKeyTraversal;
+import org.unipop.process.group.traversal.SemanticReducerTraversal;
+import org.unipop.process.group.traversal.SemanticValuesTraversal;
+import org.unipop.query.StepDescriptor;
+import org.unipop.query.controller.UniQueryController;
+import org.unipop.query.predicates.PredicatesHolder;
+import org.unipop.query.search.SearchVertexQuery;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Groups the edges of a list of vertices by a key and reduces the values of every key instead of returning the edges.
+ * The direction is always OUT or IN, so every edge is aggregated once.
+ */
+public class AggregateVertexQuery extends SearchVertexQuery {
+    private final SemanticKeyTraversal key;
+    private final SemanticValuesTraversal values;
+    private final SemanticReducerTraversal reduce;
+
+    public AggregateVertexQuery(List<Vertex> vertices, Direction direction, PredicatesHolder predicates, Set<String> propertyKeys,
+                                SemanticKeyTraversal key, SemanticValuesTraversal values, SemanticReducerTraversal reduce,
+                                StepDescriptor stepDescriptor, Traversal traversal) {
+        super(Edge.class, vertices, direction, predicates, -1, propertyKeys, null, stepDescriptor, traversal);
+        this.key = key;
+        this.values = values;
+        this.reduce = reduce;
+    }
+
+    public SemanticKeyTraversal getKey() {
+        return key;
+    }
+
+    public SemanticValuesTraversal getValues() {
+        return values;
+    }
+
+    public SemanticReducerTraversal getReduce() {
+        return reduce;
+    }
+
+    public interface AggregateVertexController extends UniQueryController {
+        /**
+         * Aggregates the edges matching a query in the data source
+         * @param uniQuery The query
+         * @return The reduced value of every key, null for a key without values,
+         * or null if the controller can't aggregate the edges exactly
+         */
+        Map<Object, Object> aggregate(AggregateVertexQuery uniQuery);
+    }
+
+    @Override
+    public String toString() {
+        return "AggregateVertexQuery{" +
+                "vertices=" + getVertices() +
+                ", direction=" + getDirection() +
+                ", key=" + key +
+                ", values=" + values +
+                ", reduce=" + reduce +
+                '}';
+    }
+}
@@ -1,18 +1,40 @@
-//package org.unipop.query.aggregation;
-//
-//import org.apache.tinkerpop.gremlin.structure.Element;
-//import org.unipop.query.predicates.PredicatesHolder;
-//import org.unipop.query.StepDescriptor;
-//import org.unipop.query.controller.UniQueryController;
-//import org.unipop.query.predicates.PredicateQuery;
-//
-//public class ReduceQuery extends PredicateQuery {
-//
-//    public ReduceQuery(PredicatesHolder predicates, StepDescriptor stepDescriptor) {
-//        super(predicates, stepDescriptor);
-//    }
-//
-//    public interface SearchController<E extends Element> extends UniQueryController {
-//        long count(ReduceQuery uniQuery);
-//    }
-//}
+package org.unipop.query.aggregation;
+
+import org.apache.tinkerpop.gremlin.process.traversal.Traversal;
+import org.apache.tinkerpop.gremlin.structure.Element;
+import org.unipop.query.StepDescriptor;
+import org.unipop.query.controller.UniQueryController;
+import org.unipop.query.predicates.PredicatesHolder;
+import org.unipop.query.search.SearchQuery;
+
+import java.util.Set;
+
+/**
+ * Counts the elements of a search instead of returning them.
+ * A controller that can't count the elements can still run it as a search, and they are counted by iterating.
+ * @param <E> Element
+ */
+public class ReduceQuery<E extends Element> extends SearchQuery<E> {
+
+    public ReduceQuery(Class<E> returnType, PredicatesHolder predicates, Set<String> propertyKeys, StepDescriptor stepDescriptor, Traversal traversal) {
+        super(returnType, predicates, -1, propertyKeys, null, stepDescriptor, traversal);
+    }
+
+    public interface ReduceController extends UniQueryController {
+        /**
+         * Counts the elements matching a query in the data source
+         * @param uniQuery The query
+         * @param <E> Element
+         * @return The number of elements, or null if the controller can't count them exactly
+         */
+        <E extends Element> Long count(ReduceQuery<E> uniQuery);
+    }
+
+    @Override
+    public String toString() {
+        return "ReduceQuery{" +
+                "returnType=" + getReturnType() +
+                ", predicates=" + getPredicates() +
+                '}';
+    }
+}
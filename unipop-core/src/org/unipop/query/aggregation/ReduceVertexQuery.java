@@ -1,44 +1,41 @@
-//package org.unipop.query.aggregation;
-//
-//import org.apache.tinkerpop.gremlin.structure.Direction;
-//import org.apache.tinkerpop.gremlin.structure.Vertex;
-//import org.unipop.query.predicates.PredicatesHolder;
-//import org.unipop.query.StepDescriptor;
-//import org.unipop.query.controller.UniQueryController;
-//import org.unipop.query.VertexQuery;
-//
-//import java.util.List;
-//
-//public class ReduceVertexQuery extends ReduceQuery implements VertexQuery {
-//
-//    private final List<Vertex> vertices;
-//    private final Direction direction;
-//
-//    public ReduceVertexQuery(List<Vertex> vertices, Direction direction, PredicatesHolder predicates, StepDescriptor stepDescriptor) {
-//        super(predicates, stepDescriptor);
-//        this.vertices = vertices;
-//        this.direction = direction;
-//    }
-//
-//    @Override
-//    public List<Vertex> getVertices() {
-//        return vertices;
-//    }
-//
-//    @Override
-//    public Direction getDirection() {
-//        return direction;
-//    }
-//
-//    public interface ReduceVertexController extends UniQueryController {
-//        void query(ReduceVertexQuery uniQuery);
-//    }
-//
-//    @Override
-//    public String toString() {
-//        return "ReduceVertexQuery{" +
-//                "vertices=" + vertices +
-//                ", direction=" + direction +
-//                '}';
-//    }
-//}
+package org.unipop.query.aggregation;
+
+import org.apache.tinkerpop.gremlin.process.traversal.Traversal;
+import org.apache.tinkerpop.gremlin.structure.Direction;
+import org.apache.tinkerpop.gremlin.structure.Edge;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.unipop.query.StepDescriptor;
+import org.unipop.query.controller.UniQueryController;
+import org.unipop.query.predicates.PredicatesHolder;
+import org.unipop.query.search.SearchVertexQuery;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Counts the edges of a list of vertices instead of returning them.
+ * The direction is always OUT or IN, so every edge is counted once.
+ */
+public class ReduceVertexQuery extends SearchVertexQuery {
+
+    public ReduceVertexQuery(List<Vertex> vertices, Direction direction, PredicatesHolder predicates, Set<String> propertyKeys, StepDescriptor stepDescriptor, Traversal traversal) {
+        super(Edge.class, vertices, direction, predicates, -1, propertyKeys, null, stepDescriptor, traversal);
+    }
+
+    public interface ReduceVertexController extends UniQueryController {
+        /**
+         * Counts the edges matching a query in the data source
+         * @param uniQuery The query
+         * @return The number of edges, or null if the controller can't count them exactly
+         */
+        Long count(ReduceVertexQuery uniQuery);
+    }
+
+    @Override
+    public String toString() {
+        return "ReduceVertexQuery{" +
+                "vertices=" + getVertices() +
+                ", direction=" + getDirection() +
+                '}';
+    }
+}
@@ -1,7 +1,14 @@
 package org.unipop.query.controller;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
 import org.apache.commons.configuration.Configuration;
+import org.apache.tinkerpop.gremlin.process.traversal.Traversal;
+import org.apache.tinkerpop.gremlin.process.traversal.util.TraversalHelper;
 import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.unipop.schema.property.PropertySchema;
 import org.unipop.structure.traversalfilter.TraversalFilter;
 import org.unipop.structure.UniGraph;
@@ -14,14 +21,37 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
+/**
+ * Loads the controllers of the provider files in the "providers" directory, and reloads them when the directory changes.
+ * A reload builds a complete new {@link ControllerGeneration} and swaps it in, so readers never see a partial set of
+ * controllers. Only the file that changed is reloaded, a file whose configuration didn't change is a no-op, and the
+ * providers of the other files are carried over to the new generation as they are.
+ * A traversal pins the generation its steps were created with, and an element read (graph.vertices(), vertex.edges())
+ * pins it for as long as its iterator is read. A replaced generation is released once nothing pins it and
+ * "controllerManager.retireDelay" milliseconds (default 1000) passed, which also covers the element operations that
+ * read the controllers just before the swap. A provider is closed once no unreleased generation holds it.
+ * A traversal, or a read's iterator, stops pinning its generation when it is garbage collected.
+ */
 public class ConfigurationControllerManager implements ControllerManager {
+    private static final Logger logger = LoggerFactory.getLogger(ConfigurationControllerManager.class);
 
-    protected Set<SourceProvider> sourceProviders = new HashSet<>();
-    protected Set<UniQueryController> controllers = new HashSet<>();
+    protected final AtomicReference<ControllerGeneration> generation = new AtomicReference<>();
+    protected final Cache<Object, ControllerGeneration> pins;
+    protected final Timer retireTimer = new Timer("unipop-controller-retire", true);
+    protected final long retireDelay;
+    protected final Set<ControllerGeneration> retired = ConcurrentHashMap.newKeySet();
+    protected final AtomicLong versions = new AtomicLong();
+    // the loaded provider files and the number of generations that hold each provider, both guarded by this
+    protected Map<Path, ProviderFile> providerFiles = new HashMap<>();
+    protected final Map<SourceProvider, Integer> providerGenerations = new HashMap<>();
     protected DirectoryWatcher watcher;
     protected Path path;
     protected UniGraph graph;
@@ -33,33 +63,133 @@ public class ConfigurationControllerManager implements ControllerManager {
         this.graph = graph;
         this.thirdPartyPropertySchemas = thirdPartyPropertySchemas;
         this.filter = filter;
-        this.watcher = new DirectoryWatcher(path, configuration.getInt("controllerManager.interval", 10000),
-                (newPath) -> loadControllers());
-        loadControllers();
+        this.retireDelay = configuration.getLong("controllerManager.retireDelay", 1000);
+        // traversals and reads are held weakly and compared by identity, a collected one unpins its generation
+        RemovalListener<Object, ControllerGeneration> unpin = notification -> notification.getValue().unpin();
+        this.pins = CacheBuilder.newBuilder().weakKeys().removalListener(unpin).build();
+        this.watcher = new DirectoryWatcher(path, configuration.getInt("controllerManager.interval", 10000), this::reload);
+        synchronized (this) {
+            swap(loadProviderFiles(path));
+        }
         this.watcher.start();
     }
 
-    private void loadControllers() throws IOException {
-        controllers.clear();
-        sourceProviders.forEach(SourceProvider::close);
-        sourceProviders.clear();
-        Files.walk(path).forEach(filePath -> {
-            if (Files.isRegularFile(filePath)){
-                String providerJson = readFile(filePath.toAbsolutePath().toString());
-                JSONObject providerConfig = new JSONObject(providerJson);
-                String providerClass = providerConfig.getString("class");
-                SourceProvider sourceProvider = null;
-                try {
-                    sourceProvider = Class.forName(providerClass).asSubclass(SourceProvider.class).newInstance();
-                    PropertySchemaFactory.build(sourceProvider.providerBuilders(), thirdPartyPropertySchemas);
-                    Set<UniQueryController> controllers = sourceProvider.init(graph, providerConfig, filter);
-                    this.controllers.addAll(controllers);
-                    this.sourceProviders.add(sourceProvider);
-                } catch (Exception e) {
-                    throw new RuntimeException("class: " + providerClass + " not found");
+    /**
+     * Reloads a changed provider file and swaps in a new generation, unless the file's configuration didn't change.
+     * A reload that fails keeps the current generation.
+     * @param changed The changed file, or a directory whose files are all compared with the loaded ones
+     */
+    protected synchronized void reload(Path changed) {
+        Map<Path, ProviderFile> files;
+        try {
+            files = loadProviderFiles(changed);
+        } catch (Exception e) {
+            logger.error("failed to reload providers from: {}, keeping the current controllers", changed, e);
+            return;
+        }
+        if (files == providerFiles) return;
+        swap(files);
+        logger.info("loaded controllers generation: {} after a change of: {}", generation.get().getVersion(), changed);
+    }
+
+    /**
+     * Loads the provider files that changed, and reuses the providers of the files that didn't
+     * @param changed A changed file, or a directory whose files are all compared with the loaded ones
+     * @return All of the provider files, the loaded ones if nothing changed
+     */
+    protected Map<Path, ProviderFile> loadProviderFiles(Path changed) throws IOException {
+        changed = changed.toAbsolutePath().normalize();
+        Set<Path> candidates = new HashSet<>();
+        if (Files.isRegularFile(changed) || providerFiles.containsKey(changed)) candidates.add(changed);
+        else {
+            // a directory, or a file that is not a provider, is compared file by file
+            try (Stream<Path> paths = Files.walk(path)) {
+                paths.filter(Files::isRegularFile).map(file -> file.toAbsolutePath().normalize()).forEach(candidates::add);
+            }
+            candidates.addAll(providerFiles.keySet());
+        }
+
+        Map<Path, ProviderFile> files = new HashMap<>(providerFiles);
+        List<ProviderFile> loaded = new ArrayList<>();
+        try {
+            for (Path file : candidates) {
+                if (!Files.isRegularFile(file)) {
+                    files.remove(file);
+                    continue;
+                }
+                JSONObject providerConfig = new JSONObject(readFile(file.toString()));
+                ProviderFile current = files.get(file);
+                if (current != null && current.configuration.similar(providerConfig)) continue;
+                ProviderFile providerFile = loadProviderFile(providerConfig);
+                loaded.add(providerFile);
+                files.put(file, providerFile);
+            }
+        } catch (RuntimeException e) {
+            // the providers of a reload that failed are not used by anyone
+            loaded.forEach(providerFile -> providerFile.sourceProvider.close());
+            throw e;
+        }
+        return loaded.isEmpty() && files.size() == providerFiles.size() ? providerFiles : files;
+    }
+
+    protected ProviderFile loadProviderFile(JSONObject providerConfig) {
+        String providerClass = providerConfig.getString("class");
+        try {
+            SourceProvider sourceProvider = Class.forName(providerClass).asSubclass(SourceProvider.class).newInstance();
+            PropertySchemaFactory.build(sourceProvider.providerBuilders(), thirdPartyPropertySchemas);
+            Set<UniQueryController> controllers = sourceProvider.init(graph, providerConfig, filter);
+            return new ProviderFile(providerConfig, sourceProvider, controllers);
+        } catch (Exception e) {
+            throw new RuntimeException("class: " + providerClass + " not found", e);
+        }
+    }
+
+    /**
+     * Swaps in a generation of the provider files and retires the current one
+     */
+    private void swap(Map<Path, ProviderFile> files) {
+        Set<SourceProvider> sourceProviders = new HashSet<>();
+        Set<UniQueryController> controllers = new HashSet<>();
+        files.values().forEach(providerFile -> {
+            sourceProviders.add(providerFile.sourceProvider);
+            controllers.addAll(providerFile.controllers);
+        });
+        sourceProviders.forEach(sourceProvider -> providerGenerations.merge(sourceProvider, 1, Integer::sum));
+        providerFiles = files;
+        ControllerGeneration previous = generation.getAndSet(new ControllerGeneration(versions.incrementAndGet(), sourceProviders, controllers));
+        if (previous != null) retire(previous);
+    }
+
+    /**
+     * Releases a replaced generation once it is no longer pinned
+     */
+    protected void retire(ControllerGeneration generation) {
+        generation.retire();
+        retired.add(generation);
+        retireTimer.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                // drops the pins of collected traversals
+                pins.cleanUp();
+                if (generation.tryRelease()) {
+                    release(generation);
+                    cancel();
                 }
             }
+        }, retireDelay, Math.max(retireDelay, 100));
+    }
+
+    /**
+     * Closes the providers of a released generation that no other generation holds
+     */
+    private synchronized void release(ControllerGeneration generation) {
+        if (!retired.remove(generation)) return;
+        generation.getSourceProviders().forEach(sourceProvider -> {
+            if (providerGenerations.merge(sourceProvider, -1, Integer::sum) > 0) return;
+            providerGenerations.remove(sourceProvider);
+            sourceProvider.close();
         });
+        logger.info("released controllers generation: {}", generation.getVersion());
     }
 
     private static String readFile(String filename) {
@@ -80,14 +210,80 @@ public class ConfigurationControllerManager implements ControllerManager {
         return result;
     }
 
+    public ControllerGeneration getGeneration() {
+        return generation.get();
+    }
+
     @Override
     public Set<UniQueryController> getControllers() {
-        return controllers;
+        return generation.get().getControllers();
+    }
+
+    @Override
+    public <T extends UniQueryController> List<T> getControllers(Class<? extends T> c) {
+        return generation.get().getControllers(c);
+    }
+
+    /**
+     * Pins the current generation for the root of the traversal, all of its child traversals share the pin
+     */
+    @Override
+    public ControllerManager pin(Traversal.Admin<?, ?> traversal) {
+        try {
+            return pins.get(TraversalHelper.getRootTraversal(traversal), this::pinCurrent);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Pins the current generation until the read's iterator is exhausted or garbage collected
+     */
+    @Override
+    public <E> Iterator<E> read(Function<ControllerManager, Iterator<E>> read) {
+        ControllerGeneration current = pinCurrent();
+        Iterator<E> results;
+        try {
+            results = read.apply(current);
+        } catch (RuntimeException e) {
+            current.unpin();
+            throw e;
+        }
+        Iterator<E> pinned = new Iterator<E>() {
+            @Override
+            public boolean hasNext() {
+                if (results.hasNext()) return true;
+                pins.invalidate(this);
+                return false;
+            }
+
+            @Override
+            public E next() {
+                return results.next();
+            }
+        };
+        pins.put(pinned, current);
+        return pinned;
+    }
+
+    private ControllerGeneration pinCurrent() {
+        while (true) {
+            // a generation that was closed between the read and the pin was already replaced, the next read is newer
+            ControllerGeneration current = generation.get();
+            if (current.tryPin()) return current;
+        }
     }
 
     @Override
-    public void close() {
-        sourceProviders.forEach(SourceProvider::close);
+    public synchronized void close() {
+        retireTimer.cancel();
+        pins.invalidateAll();
+        // the generations share providers, each one is closed once
+        retired.forEach(ControllerGeneration::release);
+        retired.clear();
+        generation.get().release();
+        providerGenerations.keySet().forEach(SourceProvider::close);
+        providerGenerations.clear();
 
         try {
             watcher.stop();
@@ -96,11 +292,25 @@ public class ConfigurationControllerManager implements ControllerManager {
         }
     }
 
+    /**
+     * A loaded provider file: its configuration, and the provider it created with its controllers
+     */
+    protected static class ProviderFile {
+        protected final JSONObject configuration;
+        protected final SourceProvider sourceProvider;
+        protected final Set<UniQueryController> controllers;
+
+        protected ProviderFile(JSONObject configuration, SourceProvider sourceProvider, Set<UniQueryController> controllers) {
+            this.configuration = configuration;
+            this.sourceProvider = sourceProvider;
+            this.controllers = controllers;
+        }
+    }
+
     @Override
     public String toString() {
         return "ConfigurationControllerManager{" +
-                "controllers=" + controllers +
-                ", sourceProviders=" + sourceProviders +
+                "generation=" + generation.get() +
                 '}';
     }
 }
@@ -0,0 +1,228 @@
+package org.unipop.query.controller;
+
+import com.google.common.collect.Iterators;
+import org.apache.commons.configuration.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Sends a query to a list of controllers, either one after the other or concurrently.
+ * The mode is configured with "controllers.executor":
+ * sequential (default), pool (a bounded thread pool sized by "controllers.executor.threads")
+ * or virtual (a virtual thread per controller call, falls back to pool when the JVM doesn't support it).
+ * In async mode a controller's results are read ahead in chunks of "controllers.executor.chunk" results, at most one
+ * chunk is read ahead of the one being consumed.
+ */
+public class ControllerExecutor {
+    private static final Logger logger = LoggerFactory.getLogger(ControllerExecutor.class);
+
+    public enum Mode {
+        sequential,
+        pool,
+        virtual
+    }
+
+    private final Mode mode;
+    private final ExecutorService executor;
+    private final int chunkSize;
+    private ExecutorService backgroundExecutor;
+
+    public ControllerExecutor(Configuration configuration) {
+        this.mode = configuration == null ? Mode.sequential :
+                Mode.valueOf(configuration.getString("controllers.executor", Mode.sequential.name()));
+        int threads = configuration == null ? 0 :
+                configuration.getInt("controllers.executor.threads", Runtime.getRuntime().availableProcessors() * 2);
+        this.executor = createExecutor(mode, threads);
+        this.chunkSize = configuration == null ? 500 : configuration.getInt("controllers.executor.chunk", 500);
+    }
+
+    private static ExecutorService createExecutor(Mode mode, int threads) {
+        switch (mode) {
+            case virtual:
+                try {
+                    return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+                } catch (ReflectiveOperationException e) {
+                    logger.info("virtual threads are not supported by this JVM, using a thread pool instead");
+                }
+                // falls through, Java 8 has no virtual threads
+            case pool:
+                AtomicInteger counter = new AtomicInteger();
+                return Executors.newFixedThreadPool(threads, runnable -> {
+                    Thread thread = new Thread(runnable, "unipop-controller-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            default:
+                return null;
+        }
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public boolean isAsync() {
+        return executor != null;
+    }
+
+    /**
+     * Runs a search on every controller and merges the results.
+     * In async mode each controller's results are read on the executor a chunk at a time, and chunks are returned in
+     * the order they are read. A controller's next chunk is read only once its previous one is consumed, so an
+     * unlimited search isn't held in memory, and a search that is abandoned stops reading.
+     * @param controllers The controllers to query
+     * @param search The search to run on each controller
+     * @param <C> Controller type
+     * @param <E> Result type
+     * @return An iterator over the results of all controllers
+     */
+    public <C, E> Iterator<E> search(List<C> controllers, Function<C, Iterator<E>> search) {
+        if (executor == null || controllers.size() < 2)
+            // concat keeps the controllers' iterators lazy, flatMap would drain each of them up front
+            return Iterators.concat(controllers.stream().map(search).iterator());
+
+        CompletionService<Chunk<E>> completionService = new ExecutorCompletionService<>(executor);
+        controllers.forEach(controller -> completionService.submit(() -> Chunk.read(search.apply(controller), chunkSize)));
+        return new CompletionIterator<>(completionService, controllers.size(), chunkSize);
+    }
+
+    /**
+     * Runs an action on every controller and waits for all of them to finish
+     * @param controllers The controllers
+     * @param action The action to run on each controller
+     * @param <C> Controller type
+     */
+    public <C> void forEach(List<C> controllers, Consumer<C> action) {
+        if (executor == null || controllers.size() < 2) {
+            controllers.forEach(action);
+            return;
+        }
+
+        List<Future<?>> futures = new ArrayList<>(controllers.size());
+        controllers.forEach(controller -> futures.add(executor.submit(() -> action.accept(controller))));
+        futures.forEach(ControllerExecutor::await);
+    }
+
+    /**
+     * Runs a task in the background, independently of the controller fan-out.
+     * Used by steps that prepare their next bulk while the current one is consumed.
+     * @param task The task
+     * @param <T> Result type
+     * @return The task's future
+     */
+    public <T> Future<T> submit(Callable<T> task) {
+        return getBackgroundExecutor().submit(task);
+    }
+
+    private synchronized ExecutorService getBackgroundExecutor() {
+        if (backgroundExecutor == null) {
+            // background tasks wait on the fan-out, sharing a bounded pool with it could deadlock
+            if (mode.equals(Mode.virtual) && executor != null && !(executor instanceof ThreadPoolExecutor))
+                backgroundExecutor = executor;
+            else {
+                AtomicInteger counter = new AtomicInteger();
+                backgroundExecutor = Executors.newCachedThreadPool(runnable -> {
+                    Thread thread = new Thread(runnable, "unipop-background-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+        }
+        return backgroundExecutor;
+    }
+
+    public synchronized void close() {
+        if (executor != null) executor.shutdownNow();
+        if (backgroundExecutor != null) backgroundExecutor.shutdownNow();
+    }
+
+    /**
+     * Waits for a future, rethrowing the failure of the task
+     * @param future The future
+     * @param <T> Result type
+     * @return The result of the task
+     */
+    public static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting for controllers", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw new IllegalStateException("controller failed", e.getCause());
+        }
+    }
+
+    /**
+     * The next results of a controller's iterator
+     */
+    private static class Chunk<E> {
+        private final Iterator<E> source;
+        private final List<E> results;
+        private final boolean last;
+
+        private Chunk(Iterator<E> source, List<E> results, boolean last) {
+            this.source = source;
+            this.results = results;
+            this.last = last;
+        }
+
+        private static <E> Chunk<E> read(Iterator<E> source, int size) {
+            List<E> results = new ArrayList<>(Math.min(size, 64));
+            while (results.size() < size && source.hasNext()) results.add(source.next());
+            // hasNext may fetch the next page, it is called here so the consumer doesn't wait on it
+            return new Chunk<>(source, results, !source.hasNext());
+        }
+    }
+
+    private static class CompletionIterator<E> implements Iterator<E> {
+        private final CompletionService<Chunk<E>> completionService;
+        private final int chunkSize;
+        private int pending;
+        private Iterator<E> current = Collections.emptyIterator();
+
+        private CompletionIterator(CompletionService<Chunk<E>> completionService, int pending, int chunkSize) {
+            this.completionService = completionService;
+            this.pending = pending;
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext() && pending > 0) {
+                Chunk<E> chunk;
+                try {
+                    chunk = await(completionService.take());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("interrupted while waiting for controllers", e);
+                }
+                // the controller's next chunk is read while this one is consumed
+                if (chunk.last) pending--;
+                else completionService.submit(() -> Chunk.read(chunk.source, chunkSize));
+                current = chunk.results.iterator();
+            }
+            return current.hasNext();
+        }
+
+        @Override
+        public E next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            return current.next();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ControllerExecutor{" +
+                "mode=" + mode +
+                '}';
+    }
+}
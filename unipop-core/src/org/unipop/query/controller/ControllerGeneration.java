@@ -0,0 +1,140 @@
+package org.unipop.query.controller;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A complete set of controllers and the source providers that created them, as loaded by one reload.
+ * A generation is never changed, a reload builds a new one and swaps it in.
+ * The traversals that run on a generation pin it, a replaced generation is released once it is no longer pinned.
+ * Consecutive generations share the providers of the files that didn't change.
+ */
+public class ControllerGeneration implements ControllerManager {
+    private final long version;
+    private final Set<SourceProvider> sourceProviders;
+    private final Set<UniQueryController> controllers;
+    // every class and interface of the controllers, to the controllers that are assignable to it
+    private final Map<Class<?>, List<UniQueryController>> controllersByType;
+    // the number of traversals that run on the generation, -1 once it is released or closed
+    private final AtomicInteger pins = new AtomicInteger();
+    private volatile boolean retired;
+
+    public ControllerGeneration(long version, Set<SourceProvider> sourceProviders, Set<UniQueryController> controllers) {
+        this.version = version;
+        this.sourceProviders = Collections.unmodifiableSet(sourceProviders);
+        this.controllers = Collections.unmodifiableSet(controllers);
+        this.controllersByType = indexByType(this.controllers);
+    }
+
+    private static Map<Class<?>, List<UniQueryController>> indexByType(Set<UniQueryController> controllers) {
+        Map<Class<?>, List<UniQueryController>> index = new HashMap<>();
+        for (UniQueryController controller : controllers) {
+            for (Class<?> type : supertypes(controller.getClass()))
+                index.computeIfAbsent(type, key -> new ArrayList<>()).add(controller);
+        }
+        index.replaceAll((type, typeControllers) -> Collections.unmodifiableList(typeControllers));
+        return index;
+    }
+
+    private static Set<Class<?>> supertypes(Class<?> c) {
+        Set<Class<?>> supertypes = new HashSet<>();
+        Deque<Class<?>> pending = new ArrayDeque<>();
+        pending.add(c);
+        while (!pending.isEmpty()) {
+            Class<?> type = pending.poll();
+            if (!supertypes.add(type)) continue;
+            if (type.getSuperclass() != null) pending.add(type.getSuperclass());
+            pending.addAll(Arrays.asList(type.getInterfaces()));
+        }
+        return supertypes;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public Set<SourceProvider> getSourceProviders() {
+        return sourceProviders;
+    }
+
+    @Override
+    public Set<UniQueryController> getControllers() {
+        return controllers;
+    }
+
+    /**
+     * Looks the controllers up in an index that is built with the generation, the lists are shared and can't be changed
+     */
+    @Override
+    public <T extends UniQueryController> List<T> getControllers(Class<? extends T> c) {
+        return (List<T>) controllersByType.getOrDefault(c, Collections.emptyList());
+    }
+
+    /**
+     * @return False if the generation is already released
+     */
+    boolean tryPin() {
+        while (true) {
+            int current = pins.get();
+            if (current < 0) return false;
+            if (pins.compareAndSet(current, current + 1)) return true;
+        }
+    }
+
+    void unpin() {
+        pins.decrementAndGet();
+    }
+
+    int getPins() {
+        return Math.max(pins.get(), 0);
+    }
+
+    /**
+     * Marks the generation as replaced, it is released by {@link #tryRelease()} once it is no longer pinned
+     */
+    void retire() {
+        retired = true;
+    }
+
+    public boolean isRetired() {
+        return retired;
+    }
+
+    /**
+     * Releases a retired generation that is no longer pinned. Its providers may be shared with newer generations,
+     * closing them is left to the controller manager.
+     * @return True if the generation was released by this call
+     */
+    boolean tryRelease() {
+        return retired && pins.compareAndSet(0, -1);
+    }
+
+    /**
+     * Releases the generation whether or not it is pinned, without closing its providers
+     */
+    void release() {
+        pins.set(-1);
+    }
+
+    public boolean isReleased() {
+        return pins.get() < 0;
+    }
+
+    /**
+     * Closes the source providers, whether or not the generation is pinned
+     */
+    @Override
+    public void close() {
+        if (pins.getAndSet(-1) >= 0) sourceProviders.forEach(SourceProvider::close);
+    }
+
+    @Override
+    public String toString() {
+        return "ControllerGeneration{" +
+                "version=" + version +
+                ", controllers=" + controllers +
+                ", pins=" + getPins() +
+                ", retired=" + retired +
+                '}';
+    }
+}
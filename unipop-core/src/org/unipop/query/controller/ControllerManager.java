@@ -1,7 +1,11 @@
 package org.unipop.query.controller;
 
+import org.apache.tinkerpop.gremlin.process.traversal.Traversal;
+
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -15,7 +19,7 @@ public interface ControllerManager {
     Set<UniQueryController> getControllers();
 
     /**
-     * Returns all controllers of class T
+     * Returns all controllers of class T, the returned list must not be changed
      * @param c Controller's class
      * @param <T> Extends UniQueryController
      * @return A list of controllers the type of c
@@ -27,6 +31,27 @@ public interface ControllerManager {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Returns the controllers a traversal runs on. A manager that reloads its controllers keeps the ones it returns
+     * here open for as long as the traversal may use them.
+     * @param traversal The traversal, or one of its child traversals
+     * @return A controller manager for the steps of the traversal
+     */
+    default ControllerManager pin(Traversal.Admin<?, ?> traversal) {
+        return this;
+    }
+
+    /**
+     * Reads elements outside of a traversal. A manager that reloads its controllers keeps the ones the read runs on
+     * open until the returned iterator is exhausted.
+     * @param read Searches the controllers of the manager it is given
+     * @param <E> Element type
+     * @return The results of the read
+     */
+    default <E> Iterator<E> read(Function<ControllerManager, Iterator<E>> read) {
+        return read.apply(this);
+    }
+
     /**
      * Closes all controllers
      */
@@ -0,0 +1,272 @@
+package org.unipop.query.predicates;
+
+import org.apache.tinkerpop.gremlin.process.traversal.Compare;
+import org.apache.tinkerpop.gremlin.process.traversal.Contains;
+import org.apache.tinkerpop.gremlin.process.traversal.P;
+import org.apache.tinkerpop.gremlin.process.traversal.step.util.HasContainer;
+import org.apache.tinkerpop.gremlin.structure.Element;
+import org.apache.tinkerpop.gremlin.structure.Property;
+import org.apache.tinkerpop.gremlin.structure.T;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.function.BiPredicate;
+import java.util.function.Predicate;
+
+/**
+ * The predicates of a query compiled once, to test the elements a backend returned.
+ * Nested clauses are flattened in the order they were tested, and every clause stops at its first decisive predicate.
+ * Compare and Contains predicates are specialized to their value, with the same results as
+ * {@link HasContainer#test(Element)}.
+ * Predicates on properties that are constant in a schema are decided when the evaluator is compiled.
+ */
+public class PredicateEvaluator {
+    private static final PredicateEvaluator TRUE = new PredicateEvaluator(new Constant(true));
+
+    private final Node root;
+
+    private PredicateEvaluator(Node root) {
+        this.root = root;
+    }
+
+    public static PredicateEvaluator compile(PredicatesHolder predicates) {
+        return compile(predicates, Collections.emptyMap());
+    }
+
+    /**
+     * @param predicates The predicates of a query
+     * @param constants Properties that every tested element has with these values, by their keys
+     * @return An evaluator of the predicates
+     */
+    public static PredicateEvaluator compile(PredicatesHolder predicates, Map<String, Object> constants) {
+        if (predicates == null) return TRUE;
+        return new PredicateEvaluator(compileClause(predicates, constants));
+    }
+
+    public boolean test(Element element) {
+        return root.test(element);
+    }
+
+    private static Node compileClause(PredicatesHolder predicates, Map<String, Object> constants) {
+        // like PredicateQuery always did, a clause that is not And is tested as Or
+        boolean and = predicates.getClause().equals(PredicatesHolder.Clause.And);
+        List<Node> nodes = new ArrayList<>();
+        for (HasContainer has : predicates.getPredicates()) {
+            if (add(nodes, compile(has, constants), and)) return new Constant(!and);
+        }
+        for (PredicatesHolder child : predicates.getChildren()) {
+            if (add(nodes, compileClause(child, constants), and)) return new Constant(!and);
+        }
+        if (nodes.isEmpty()) return new Constant(and);
+        if (nodes.size() == 1) return nodes.get(0);
+        return new Clause(and, nodes.toArray(new Node[nodes.size()]));
+    }
+
+    /**
+     * @return True if the node decides its clause, an Or clause with a true node or an And clause with a false one
+     */
+    private static boolean add(List<Node> nodes, Node node, boolean and) {
+        if (node instanceof Constant) return ((Constant) node).value != and;
+        if (node instanceof Clause && ((Clause) node).and == and) Collections.addAll(nodes, ((Clause) node).nodes);
+        else nodes.add(node);
+        return false;
+    }
+
+    private static Node compile(HasContainer has, Map<String, Object> constants) {
+        String key = has.getKey();
+        P<?> predicate = has.getPredicate();
+        // ~key and ~value test vertex properties, and a connective id predicate may hold string ids
+        if (key.equals(T.key.getAccessor()) || key.equals(T.value.getAccessor()) ||
+                (key.equals(T.id.getAccessor()) && !predicate.getClass().equals(P.class)))
+            return new Generic(has);
+
+        Predicate<Object> test = compile(predicate);
+        boolean idAsString = key.equals(T.id.getAccessor()) && isStringId(predicate.getValue());
+        if (constants.containsKey(key)) {
+            Object value = constants.get(key);
+            return new Constant(test.test(idAsString && value != null ? value.toString() : value));
+        }
+        if (key.equals(T.id.getAccessor())) return new Id(test, idAsString);
+        if (key.equals(T.label.getAccessor())) return new Label(test);
+        return new PropertyValue(key, test);
+    }
+
+    /**
+     * HasContainer tests the ids of elements as strings when its values are strings
+     */
+    private static boolean isStringId(Object value) {
+        if (value instanceof Collection) {
+            Iterator<?> iterator = ((Collection<?>) value).iterator();
+            return iterator.hasNext() && iterator.next() instanceof String;
+        }
+        return value instanceof String;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Predicate<Object> compile(P<?> predicate) {
+        Predicate<Object> generic = (Predicate<Object>) predicate;
+        if (!predicate.getClass().equals(P.class)) return generic;
+        BiPredicate<?, ?> biPredicate = predicate.getBiPredicate();
+        Object value = predicate.getValue();
+        if ((biPredicate == Contains.within || biPredicate == Contains.without) && value instanceof Collection) {
+            Set<Object> values = new HashSet<>((Collection<?>) value);
+            return biPredicate == Contains.within ? values::contains : element -> !values.contains(element);
+        }
+        if (biPredicate instanceof Compare && value != null) return new Comparison((Compare) biPredicate, value);
+        return generic;
+    }
+
+    private interface Node {
+        boolean test(Element element);
+    }
+
+    private static class Constant implements Node {
+        private final boolean value;
+
+        private Constant(boolean value) {
+            this.value = value;
+        }
+
+        @Override
+        public boolean test(Element element) {
+            return value;
+        }
+    }
+
+    private static class Clause implements Node {
+        private final boolean and;
+        private final Node[] nodes;
+
+        private Clause(boolean and, Node[] nodes) {
+            this.and = and;
+            this.nodes = nodes;
+        }
+
+        @Override
+        public boolean test(Element element) {
+            for (Node node : nodes) {
+                if (node.test(element) != and) return !and;
+            }
+            return and;
+        }
+    }
+
+    private static class Id implements Node {
+        private final Predicate<Object> test;
+        private final boolean asString;
+
+        private Id(Predicate<Object> test, boolean asString) {
+            this.test = test;
+            this.asString = asString;
+        }
+
+        @Override
+        public boolean test(Element element) {
+            return test.test(asString ? element.id().toString() : element.id());
+        }
+    }
+
+    private static class Label implements Node {
+        private final Predicate<Object> test;
+
+        private Label(Predicate<Object> test) {
+            this.test = test;
+        }
+
+        @Override
+        public boolean test(Element element) {
+            return test.test(element.label());
+        }
+    }
+
+    private static class PropertyValue implements Node {
+        private final String key;
+        private final Predicate<Object> test;
+
+        private PropertyValue(String key, Predicate<Object> test) {
+            this.key = key;
+            this.test = test;
+        }
+
+        @Override
+        public boolean test(Element element) {
+            if (element instanceof Vertex) {
+                Iterator<? extends Property<Object>> properties = element.properties(key);
+                while (properties.hasNext()) {
+                    if (test.test(properties.next().value())) return true;
+                }
+                return false;
+            }
+            Property<Object> property = element.property(key);
+            return property.isPresent() && test.test(property.value());
+        }
+    }
+
+    private static class Generic implements Node {
+        private final HasContainer has;
+
+        private Generic(HasContainer has) {
+            this.has = has;
+        }
+
+        @Override
+        public boolean test(Element element) {
+            return has.test(element);
+        }
+    }
+
+    /**
+     * A Compare predicate with a non null value. A value of the same class is compared directly, and a number of
+     * another class is compared as a BigDecimal like Compare does, with the predicate's value converted once.
+     */
+    private static class Comparison implements Predicate<Object> {
+        private final Compare compare;
+        private final Object value;
+        private final Class<?> type;
+        private final BigDecimal number;
+
+        private Comparison(Compare compare, Object value) {
+            this.compare = compare;
+            this.value = value;
+            this.type = value.getClass();
+            this.number = value instanceof Number ? number((Number) value) : null;
+        }
+
+        private static BigDecimal number(Number value) {
+            try {
+                return new BigDecimal(value.toString());
+            } catch (NumberFormatException e) {
+                // NaN and infinity have no BigDecimal, they are left to Compare
+                return null;
+            }
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean test(Object element) {
+            if (element == null) return compare.test(null, value);
+            if (element.getClass().equals(type)) {
+                if (compare == Compare.eq) return element.equals(value);
+                if (compare == Compare.neq) return !element.equals(value);
+                if (!(element instanceof Comparable)) return compare.test(element, value);
+                return test(((Comparable<Object>) element).compareTo(value));
+            }
+            if (number != null && element instanceof Number)
+                return test(new BigDecimal(element.toString()).compareTo(number));
+            return compare.test(element, value);
+        }
+
+        private boolean test(int comparison) {
+            switch (compare) {
+                case eq: return comparison == 0;
+                case neq: return comparison != 0;
+                case gt: return comparison > 0;
+                case gte: return comparison >= 0;
+                case lt: return comparison < 0;
+                case lte: return comparison <= 0;
+                default: throw new IllegalStateException("unknown compare: " + compare);
+            }
+        }
+    }
+}
@@ -1,14 +1,18 @@
 package org.unipop.query.predicates;
 
 import org.apache.tinkerpop.gremlin.process.traversal.Traversal;
-import org.apache.tinkerpop.gremlin.process.traversal.step.util.HasContainer;
 import org.apache.tinkerpop.gremlin.structure.Element;
 import org.unipop.query.StepDescriptor;
 import org.unipop.query.UniQuery;
 
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 public class PredicateQuery<E extends Element> extends UniQuery {
     private final PredicatesHolder predicates;
     private Traversal traversal;
+    private final Map<Map<String, Object>, PredicateEvaluator> evaluators = new ConcurrentHashMap<>();
 
     public PredicateQuery(PredicatesHolder predicates, StepDescriptor stepDescriptor, Traversal traversal) {
         super(stepDescriptor);
@@ -21,23 +25,20 @@ public class PredicateQuery<E extends Element> extends UniQuery {
     }
 
     public boolean test(E element, PredicatesHolder predicates) {
-        if(predicates.getClause().equals(PredicatesHolder.Clause.And)) {
-            if (!HasContainer.testAll(element, predicates.getPredicates())) return false;
-
-            for (PredicatesHolder child : predicates.getChildren()) {
-                if (!test(element, child)) return false;
-            }
-            return true;
-        }
-        else {
-            for(HasContainer has : predicates.getPredicates()) {
-                if (has.test(element)) return true;
-            }
-            for (PredicatesHolder child : predicates.getChildren()) {
-                if (test(element, child)) return true;
-            }
-            return false;
-        }
+        return test(element, predicates == this.predicates ?
+                getEvaluator(Collections.emptyMap()) : PredicateEvaluator.compile(predicates));
+    }
+
+    public boolean test(E element, PredicateEvaluator evaluator) {
+        return evaluator.test(element);
+    }
+
+    /**
+     * @param constants Properties that every element of a schema has, the predicates on them are decided once
+     * @return The query's predicates compiled for the elements of the schema
+     */
+    public PredicateEvaluator getEvaluator(Map<String, Object> constants) {
+        return evaluators.computeIfAbsent(constants, key -> PredicateEvaluator.compile(predicates, key));
     }
 
     public Traversal getTraversal() {
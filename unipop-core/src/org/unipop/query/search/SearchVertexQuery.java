@@ -9,6 +9,7 @@ import org.javatuples.Pair;
 import org.unipop.query.StepDescriptor;
 import org.unipop.query.VertexQuery;
 import org.unipop.query.controller.UniQueryController;
+import org.unipop.query.predicates.PredicateEvaluator;
 import org.unipop.query.predicates.PredicatesHolder;
 
 import java.util.Iterator;
@@ -41,8 +42,8 @@ public class SearchVertexQuery extends SearchQuery<Edge> implements VertexQuery
     }
 
     @Override
-    public boolean test(Edge element, PredicatesHolder predicates) {
-        boolean edgePredicates = super.test(element, predicates);
+    public boolean test(Edge element, PredicateEvaluator evaluator) {
+        boolean edgePredicates = super.test(element, evaluator);
         if (!edgePredicates) return false;
         if (direction.equals(Direction.OUT) || direction.equals(Direction.BOTH)) {
             if (vertices.contains(element.outVertex())) return true;
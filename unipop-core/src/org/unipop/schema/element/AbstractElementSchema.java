@@ -1,11 +1,17 @@
 package org.unipop.schema.element;
 
+import org.apache.tinkerpop.gremlin.process.traversal.Compare;
+import org.apache.tinkerpop.gremlin.process.traversal.Contains;
+import org.apache.tinkerpop.gremlin.process.traversal.P;
+import org.apache.tinkerpop.gremlin.process.traversal.step.util.HasContainer;
 import org.apache.tinkerpop.gremlin.structure.Element;
 import org.json.JSONObject;
 import org.unipop.query.predicates.PredicatesHolder;
 import org.unipop.query.predicates.PredicatesHolderFactory;
 import org.unipop.schema.property.AbstractPropertyContainer;
 import org.unipop.schema.property.NonDynamicPropertySchema;
+import org.unipop.schema.property.PropertySchema;
+import org.unipop.schema.property.StaticPropertySchema;
 import org.unipop.structure.UniElement;
 import org.unipop.structure.UniGraph;
 import org.unipop.util.ConversionUtils;
@@ -15,6 +21,7 @@ import java.util.stream.Collectors;
 
 public abstract class AbstractElementSchema<E extends Element> extends AbstractPropertyContainer implements ElementSchema<E> {
     protected UniGraph graph;
+    private Map<String, Object> staticProperties;
 
     public AbstractElementSchema(JSONObject configuration, UniGraph graph) {
         super(configuration, graph);
@@ -38,6 +45,24 @@ public abstract class AbstractElementSchema<E extends Element> extends AbstractP
         return prop1;
     }
 
+    /**
+     * @return The properties that every element of the schema has with the same value, the schema aborts queries
+     * that fail their predicates, so its elements don't need to be tested on them again
+     */
+    protected Map<String, Object> getStaticProperties() {
+        if (staticProperties != null) return staticProperties;
+        Map<String, Object> properties = new HashMap<>();
+        Set<String> keys = new HashSet<>();
+        for (PropertySchema schema : getPropertySchemas()) {
+            String key = schema.getKey();
+            if (key == null) continue;
+            // a key with more than one schema may be merged from another one
+            if (!keys.add(key)) properties.remove(key);
+            else if (schema instanceof StaticPropertySchema) properties.putAll(schema.toProperties(Collections.emptyMap()));
+        }
+        return staticProperties = Collections.unmodifiableMap(properties);
+    }
+
     @Override
     public Map<String, Object> toFields(E element) {
         return getFields(element);
@@ -73,6 +98,30 @@ public abstract class AbstractElementSchema<E extends Element> extends AbstractP
             else return key;
     }
 
+    @Override
+    public PropertySchema getPropertySchema(String key) {
+        Optional<PropertySchema> first = propertySchemas.stream().filter(s -> key.equals(s.getKey())).findFirst();
+        if (first.isPresent()) return first.get();
+        if (dynamicProperties instanceof NonDynamicPropertySchema) return null;
+        return dynamicProperties;
+    }
+
+    @Override
+    public boolean isExact(PredicatesHolder predicatesHolder) {
+        for (HasContainer has : predicatesHolder.getPredicates()) {
+            // comparisons of a property kept as is in a single field, or of a property every element has
+            P<?> predicate = has.getPredicate();
+            if (!predicate.getClass().equals(P.class) ||
+                    !(predicate.getBiPredicate() instanceof Compare || predicate.getBiPredicate() instanceof Contains))
+                return false;
+            PropertySchema propertySchema = getPropertySchema(has.getKey());
+            if (propertySchema == null) return false;
+            if (!(propertySchema instanceof StaticPropertySchema) && propertySchema.getValueField(has.getKey()) == null)
+                return false;
+        }
+        return predicatesHolder.getChildren().stream().allMatch(this::isExact);
+    }
+
     @Override
     public PredicatesHolder toPredicates(PredicatesHolder predicatesHolder) {
         Set<PredicatesHolder> predicates = getPropertySchemas().stream()
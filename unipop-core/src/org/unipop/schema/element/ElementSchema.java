@@ -2,6 +2,7 @@ package org.unipop.schema.element;
 
 import org.apache.tinkerpop.gremlin.structure.Element;
 import org.unipop.query.predicates.PredicatesHolder;
+import org.unipop.schema.property.PropertySchema;
 import org.unipop.structure.UniGraph;
 
 import java.util.*;
@@ -46,6 +47,20 @@ public interface ElementSchema<E extends Element> {
      */
     String getFieldByPropertyKey(String key);
 
+    /**
+     * Returns the schema of a property key
+     * @param key Property key
+     * @return The property schema, or null if the elements never have the property
+     */
+    default PropertySchema getPropertySchema(String key) { return null; }
+
+    /**
+     * Whether the data source matches the same elements the predicates test, so its matches need no filtering
+     * @param predicatesHolder The predicates of a query
+     * @return True if every predicate is translated exactly
+     */
+    default boolean isExact(PredicatesHolder predicatesHolder) { return false; }
+
     /**
      * Returns child schemas
      * @return A set of schemas
@@ -64,6 +64,12 @@ public class DateFieldPropertySchema extends FieldPropertySchema implements Date
         }
     }
 
+    @Override
+    public String getValueField(String key) {
+        // the source value is reformatted
+        return null;
+    }
+
     @Override
     public Set<Object> getValues(PredicatesHolder predicatesHolder) {
         Stream<PredicatesHolder> predicates = predicatesHolder.findKey(this.key).map(this::explodeConnective);
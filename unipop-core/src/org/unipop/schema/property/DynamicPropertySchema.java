@@ -49,6 +49,12 @@ public class DynamicPropertySchema implements PropertySchema {
                 .collect(Collectors.toSet());
     }
 
+    @Override
+    public String getValueField(String key) {
+        if (excludeProperties.contains(key) || excludeFields.contains(key)) return null;
+        return key;
+    }
+
     @Override
     public Set<Object> getValues(PredicatesHolder predicatesHolder) {
         return null;
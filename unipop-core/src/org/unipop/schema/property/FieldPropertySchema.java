@@ -69,6 +69,13 @@ public class FieldPropertySchema implements PropertySchema {
         return key;
     }
 
+    /**
+     * @return The type configured for the field, STRING if none was
+     */
+    public PropertyType getType() {
+        return type;
+    }
+
     @Override
     public Map<String, Object> toProperties(Map<String, Object> source) {
         Object value = source.get(this.field);
@@ -93,6 +100,12 @@ public class FieldPropertySchema implements PropertySchema {
         return Collections.emptySet();
     }
 
+    @Override
+    public String getValueField(String key) {
+        if (!this.key.equals(key) || include != null || exclude != null || alias != null) return null;
+        return this.field;
+    }
+
     @Override
     public Set<Object> getValues(PredicatesHolder predicatesHolder) {
         Stream<HasContainer> predicates = predicatesHolder.findKey(this.key);
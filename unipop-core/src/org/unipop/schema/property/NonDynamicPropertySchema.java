@@ -28,6 +28,11 @@ public class NonDynamicPropertySchema extends DynamicPropertySchema {
         return Collections.emptySet();
     }
 
+    @Override
+    public String getValueField(String key) {
+        return null;
+    }
+
     @Override
     public PredicatesHolder toPredicates(PredicatesHolder predicatesHolder) {
         PredicatesHolder newPredicatesHolder = super.toPredicates(predicatesHolder);
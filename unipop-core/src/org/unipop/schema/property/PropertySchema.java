@@ -80,6 +80,13 @@ public interface PropertySchema {
      */
     default Set<String> excludeDynamicProperties() { return Collections.singleton(getKey()); }
 
+    /**
+     * Returns the source field holding a property's value as is, so the data source can aggregate it
+     * @param key Property key
+     * @return Field name, or null if the value is computed, converted or filtered
+     */
+    default String getValueField(String key) { return null; }
+
     /**
      * Property schema builder
      */
@@ -3,6 +3,7 @@ package org.unipop.schema.reference;
 import org.apache.tinkerpop.gremlin.structure.*;
 import org.unipop.query.search.DeferredVertexQuery;
 import org.unipop.schema.element.ElementSchema;
+import org.unipop.structure.cache.CachedProperties;
 import org.unipop.structure.UniVertex;
 import org.unipop.structure.UniGraph;
 
@@ -15,24 +16,39 @@ public class DeferredVertex extends UniVertex {
     }
 
     boolean deferred = true;
+    private volatile DeferredVertexBatch batch;
 
     public boolean isDeferred() {
         return deferred;
     }
 
+    DeferredVertexBatch getBatch() {
+        return batch;
+    }
+
+    void setBatch(DeferredVertexBatch batch) {
+        this.batch = batch;
+    }
+
     private void validateProperties() {
-        if (deferred) {
-            DeferredVertexQuery query = new DeferredVertexQuery(Collections.singletonList(this), null, null, null, null);
-            this.graph.getControllerManager().getControllers(DeferredVertexQuery.DeferredVertexController.class).forEach(deferredController ->
-                    deferredController.fetchProperties(query));
-        }
+        if (!deferred) return;
+        // the first access to a batched vertex loads all of the vertices of its batch
+        DeferredVertexBatch batch = this.batch;
+        if (batch != null) batch.load();
+        if (deferred && batch == null)
+            this.graph.getDeferredVertexLoader().load(new DeferredVertexQuery(Collections.singletonList(this), null, null, null, null));
     }
 
-    public void loadProperties(Vertex vertex) {
+    public synchronized void loadProperties(Vertex vertex) {
         deferred = false;
         vertex.properties().forEachRemaining(prop -> addPropertyLocal(prop.key(), prop.value()));
     }
 
+    public synchronized void loadProperties(CachedProperties properties) {
+        deferred = false;
+        properties.getProperties().forEach((key, values) -> values.forEach(value -> addPropertyLocal(key, value)));
+    }
+
     @Override
     public <V> VertexProperty<V> property(VertexProperty.Cardinality cardinality, String key, V value, Object... keyValues) {
         validateProperties();
@@ -0,0 +1,40 @@
+package org.unipop.schema.reference;
+
+import org.unipop.query.search.DeferredVertexQuery;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Deferred vertices that were returned by the same query.
+ * The first vertex of the batch whose properties are accessed loads all of the batch's vertices in one query.
+ */
+class DeferredVertexBatch {
+    private final DeferredVertexLoader loader;
+    private List<DeferredVertex> vertices;
+
+    DeferredVertexBatch(DeferredVertexLoader loader, int size) {
+        this.loader = loader;
+        this.vertices = new ArrayList<>(size);
+    }
+
+    synchronized void add(DeferredVertex vertex) {
+        vertices.add(vertex);
+        vertex.setBatch(this);
+    }
+
+    synchronized int size() {
+        return vertices.size();
+    }
+
+    /**
+     * Loads the vertices of the batch, a vertex accessed while another one loads the batch waits for it
+     */
+    synchronized void load() {
+        List<DeferredVertex> pending = vertices;
+        vertices = new ArrayList<>(0);
+        pending.forEach(vertex -> vertex.setBatch(null));
+        if (pending.isEmpty()) return;
+        loader.load(new DeferredVertexQuery(pending, null, null, null, null));
+    }
+}
@@ -0,0 +1,112 @@
+package org.unipop.schema.reference;
+
+import com.google.common.collect.Iterators;
+import org.apache.tinkerpop.gremlin.structure.Edge;
+import org.apache.tinkerpop.gremlin.structure.Element;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.unipop.query.controller.ControllerExecutor;
+import org.unipop.query.search.DeferredVertexQuery;
+import org.unipop.structure.UniEdge;
+import org.unipop.structure.UniGraph;
+import org.unipop.structure.cache.CachedProperties;
+import org.unipop.structure.cache.PropertyCache;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Loads the properties of deferred vertices, from the graph's property cache when it has them
+ * and from the controllers when it doesn't.
+ * The deferred vertices returned by a query are batched in groups of "deferred.batch" (default "bulk.max"),
+ * accessing the properties of one of them loads its whole group.
+ */
+public class DeferredVertexLoader {
+    private final UniGraph graph;
+    private final PropertyCache cache;
+    private final ControllerExecutor controllerExecutor;
+    private final int batchSize;
+
+    public DeferredVertexLoader(UniGraph graph, PropertyCache cache) {
+        this.graph = graph;
+        this.cache = cache;
+        this.controllerExecutor = graph.getControllerExecutor();
+        this.batchSize = graph.configuration() == null ? 1 :
+                graph.configuration().getInt("deferred.batch", graph.configuration().getInt("bulk.max", 100));
+    }
+
+    public PropertyCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Batches the deferred vertices of a query's results, and the deferred vertices of its edges, as they are iterated
+     * @param elements The results of a query
+     * @param <E> Element type
+     * @return The same results
+     */
+    public <E extends Element> Iterator<E> batch(Iterator<E> elements) {
+        if (batchSize < 2) return elements;
+        Batcher batcher = new Batcher();
+        return Iterators.transform(elements, element -> {
+            if (element instanceof DeferredVertex) batcher.add((DeferredVertex) element);
+            else if (element instanceof UniEdge) {
+                Edge edge = (Edge) element;
+                batcher.add(edge.outVertex());
+                batcher.add(edge.inVertex());
+            }
+            return element;
+        });
+    }
+
+    /**
+     * Loads the vertices of a query with all of the graph's controllers
+     * @param query The query
+     */
+    public void load(DeferredVertexQuery query) {
+        load(query, graph.getControllerManager().getControllers(DeferredVertexQuery.DeferredVertexController.class));
+    }
+
+    /**
+     * Loads the vertices of a query, only the cache misses are sent to the controllers
+     * @param query The query
+     * @param controllers The controllers that fetch the misses
+     */
+    public void load(DeferredVertexQuery query, List<DeferredVertexQuery.DeferredVertexController> controllers) {
+        // the same vertex may be referenced by several edges, it is fetched once and copied to the others
+        Map<Object, List<DeferredVertex>> misses = query.getVertices().stream()
+                .filter(DeferredVertex::isDeferred)
+                .filter(vertex -> {
+                    CachedProperties properties = cache.get(vertex.id());
+                    if (properties == null || !properties.covers(query.getPropertyKeys())) return true;
+                    vertex.loadProperties(properties);
+                    return false;
+                }).collect(Collectors.groupingBy(DeferredVertex::id, LinkedHashMap::new, Collectors.toList()));
+        if (misses.isEmpty()) return;
+
+        List<DeferredVertex> fetched = misses.values().stream().map(vertices -> vertices.get(0)).collect(Collectors.toList());
+        DeferredVertexQuery missesQuery = fetched.size() == query.getVertices().size() ? query :
+                new DeferredVertexQuery(fetched, query.getPropertyKeys(), query.getOrders(), query.getStepDescriptor(), query.getTraversal());
+        controllerExecutor.forEach(controllers, controller -> controller.fetchProperties(missesQuery));
+
+        misses.values().forEach(vertices -> {
+            DeferredVertex vertex = vertices.get(0);
+            // a vertex that no controller found stays deferred, and is not cached
+            if (vertex.isDeferred()) return;
+            CachedProperties properties = new CachedProperties(query.getPropertyKeys(), vertex);
+            cache.put(vertex.id(), properties);
+            vertices.stream().skip(1).filter(DeferredVertex::isDeferred).forEach(other -> other.loadProperties(properties));
+        });
+    }
+
+    private class Batcher {
+        private DeferredVertexBatch batch;
+
+        private void add(Vertex vertex) {
+            if (!(vertex instanceof DeferredVertex)) return;
+            DeferredVertex deferredVertex = (DeferredVertex) vertex;
+            if (!deferredVertex.isDeferred() || deferredVertex.getBatch() != null) return;
+            if (batch == null || batch.size() >= batchSize) batch = new DeferredVertexBatch(DeferredVertexLoader.this, batchSize);
+            batch.add(deferredVertex);
+        }
+    }
+}
@@ -48,9 +48,22 @@ public class UniEdge extends UniElement implements Edge {
         PropertyQuery<UniElement> propertyQuery = new PropertyQuery<>(this, vertexProperty, PropertyQuery.Action.Add, null);
         this.graph.getControllerManager().getControllers(PropertyQuery.PropertyController.class).forEach(controller ->
                 controller.property(propertyQuery));
+        this.graph.getAdjacencyCache().invalidate(this);
         return vertexProperty;
     }
 
+    @Override
+    public void removeProperty(Property property) {
+        super.removeProperty(property);
+        this.graph.getAdjacencyCache().invalidate(this);
+    }
+
+    @Override
+    public void remove() {
+        super.remove();
+        this.graph.getAdjacencyCache().invalidate(this);
+    }
+
     @Override
     public Iterator<Vertex> vertices(Direction direction) {
         if(direction.equals(Direction.OUT)) return IteratorUtils.singletonIterator(outVertex);
@@ -10,16 +10,23 @@ import org.apache.tinkerpop.gremlin.process.traversal.step.util.HasContainer;
 import org.apache.tinkerpop.gremlin.structure.*;
 import org.apache.tinkerpop.gremlin.structure.util.ElementHelper;
 import org.apache.tinkerpop.gremlin.structure.util.StringFactory;
+import org.unipop.process.plan.PlanCachingStrategies;
+import org.unipop.process.plan.TraversalPlanCache;
 import org.unipop.process.strategyregistrar.StandardStrategyProvider;
 import org.unipop.process.strategyregistrar.StrategyProvider;
 import org.unipop.query.controller.ConfigurationControllerManager;
+import org.unipop.query.controller.ControllerExecutor;
 import org.unipop.query.controller.ControllerManager;
 import org.unipop.query.mutation.AddVertexQuery;
 import org.unipop.query.predicates.PredicatesHolder;
 import org.unipop.query.predicates.PredicatesHolderFactory;
 import org.unipop.query.search.SearchQuery;
 import org.unipop.schema.property.PropertySchema;
+import org.unipop.schema.reference.DeferredVertexLoader;
 import org.unipop.schema.property.type.*;
+import org.unipop.structure.cache.AdjacencyCache;
+import org.unipop.structure.cache.NoPropertyCache;
+import org.unipop.structure.cache.PropertyCache;
 import org.unipop.structure.traversalfilter.DefaultTraversalFilter;
 import org.unipop.structure.traversalfilter.TraversalFilter;
 import org.unipop.test.UnipopGraphProvider;
@@ -99,7 +106,11 @@ public class UniGraph implements Graph {
     private Configuration configuration;
     protected TraversalStrategies strategies;
     private ControllerManager controllerManager;
-    private List<SearchQuery.SearchController> queryControllers;
+    private ControllerExecutor controllerExecutor;
+    private DeferredVertexLoader deferredVertexLoader;
+    private AdjacencyCache adjacencyCache;
+    private TraversalPlanCache planCache;
+    private TraversalFilter traversalFilter = new DefaultTraversalFilter();
 
     public UniGraph(Configuration configuration) throws Exception {
         configuration.setProperty(Graph.GRAPH, UniGraph.class.getName());
@@ -124,6 +135,7 @@ public class UniGraph implements Graph {
 
         String traversalFilter = configuration.getString("traversalFilter", DefaultTraversalFilter.class.getCanonicalName());
         TraversalFilter filter = Class.forName(traversalFilter).asSubclass(TraversalFilter.class).newInstance();
+        this.traversalFilter = filter;
 
                 String configurationControllerManagerName = configuration.getString("controllerManager", ConfigurationControllerManager.class.getCanonicalName().toString());
         ControllerManager configurationControllerManager = Class.forName(configurationControllerManagerName)
@@ -143,9 +155,24 @@ public class UniGraph implements Graph {
     private void init(ControllerManager controllerManager, StrategyProvider strategyProvider) {
         this.strategies = strategyProvider.get();
         //TraversalStrategies.GlobalCache.registerStrategies(UniGraph.class, strategies);
+        this.planCache = new TraversalPlanCache(this, configuration, strategies);
+        if (planCache.isEnabled()) this.strategies = new PlanCachingStrategies(strategies, planCache);
 
         this.controllerManager = controllerManager;
-        this.queryControllers = controllerManager.getControllers(SearchQuery.SearchController.class);
+        this.controllerExecutor = new ControllerExecutor(configuration);
+        this.deferredVertexLoader = new DeferredVertexLoader(this, createPropertyCache(configuration));
+        this.adjacencyCache = new AdjacencyCache(configuration);
+    }
+
+    private PropertyCache createPropertyCache(Configuration configuration) {
+        if (configuration == null) return new NoPropertyCache();
+        String propertyCache = configuration.getString("propertyCache", NoPropertyCache.class.getCanonicalName());
+        try {
+            return Class.forName(propertyCache).asSubclass(PropertyCache.class)
+                    .getConstructor(Configuration.class).newInstance(configuration);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("property cache: " + propertyCache + " can't be created", e);
+        }
     }
 
     private StrategyProvider determineStrategyProvider(Configuration configuration) throws InstantiationException, IllegalAccessException, ClassNotFoundException {
@@ -168,6 +195,30 @@ public class UniGraph implements Graph {
         return controllerManager;
     }
 
+    public ControllerExecutor getControllerExecutor() {
+        return controllerExecutor;
+    }
+
+    public DeferredVertexLoader getDeferredVertexLoader() {
+        return deferredVertexLoader;
+    }
+
+    public PropertyCache getPropertyCache() {
+        return deferredVertexLoader.getCache();
+    }
+
+    public AdjacencyCache getAdjacencyCache() {
+        return adjacencyCache;
+    }
+
+    public TraversalFilter getTraversalFilter() {
+        return traversalFilter;
+    }
+
+    public TraversalPlanCache getPlanCache() {
+        return planCache;
+    }
+
     @Override
     public GraphTraversalSource traversal() {
         return new GraphTraversalSource(this, strategies);
@@ -186,6 +237,7 @@ public class UniGraph implements Graph {
     @Override
     public void close() {
         controllerManager.close();
+        controllerExecutor.close();
     }
 
     @Override
@@ -228,7 +280,8 @@ public class UniGraph implements Graph {
         PredicatesHolder idPredicate = createIdPredicate(ids, returnType);
 
         SearchQuery<E> uniQuery = new SearchQuery<>(returnType, idPredicate, -1, null, null, null, null);
-        return queryControllers.stream().<E>flatMap(controller -> ConversionUtils.asStream(controller.search(uniQuery))).iterator();
+        return controllerManager.read(controllers -> deferredVertexLoader.batch(controllerExecutor.search(
+                controllers.getControllers(SearchQuery.SearchController.class), controller -> controller.search(uniQuery))));
     }
 
     public static <E extends Element> PredicatesHolder createIdPredicate(Object[] ids, Class<E> returnType) {
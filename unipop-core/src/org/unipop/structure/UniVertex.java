@@ -1,5 +1,6 @@
 package org.unipop.structure;
 
+import com.google.common.collect.Iterators;
 import org.apache.commons.lang.NotImplementedException;
 import org.apache.tinkerpop.gremlin.process.traversal.P;
 import org.apache.tinkerpop.gremlin.process.traversal.step.util.HasContainer;
@@ -57,6 +58,7 @@ public class UniVertex extends UniElement implements Vertex {
         PropertyQuery<UniElement> propertyQuery = new PropertyQuery<>(this, property, PropertyQuery.Action.Remove, null);
         this.graph.getControllerManager().getControllers(PropertyQuery.PropertyController.class).forEach(controller ->
                 controller.property(propertyQuery));
+        this.graph.getPropertyCache().invalidate(this.id());
     }
 
     @Override
@@ -95,10 +97,13 @@ public class UniVertex extends UniElement implements Vertex {
                 PredicatesHolderFactory.predicate(new HasContainer(T.label.getAccessor(), P.within(edgeLabels)));
 
         SearchVertexQuery searchVertexQuery = new SearchVertexQuery(Edge.class, Arrays.asList(this), direction, predicatesHolder, -1, null, null, null, null);
-        return graph.getControllerManager().getControllers(SearchVertexQuery.SearchVertexController.class).stream()
-                .<Iterator<Edge>>map(controller -> controller.search(searchVertexQuery))
-                .flatMap(ConversionUtils::asStream)
-                .iterator();
+        return graph.getControllerManager().read(manager -> {
+            List<SearchVertexQuery.SearchVertexController> controllers = manager.getControllers(SearchVertexQuery.SearchVertexController.class);
+            if (controllers.size() == 1)
+                return graph.getDeferredVertexLoader().batch(controllers.get(0).search(searchVertexQuery));
+            return graph.getDeferredVertexLoader().batch(Iterators.concat(Iterators.transform(controllers.iterator(),
+                    controller -> controller.search(searchVertexQuery))));
+        });
     }
 
     @Override
@@ -134,6 +139,7 @@ public class UniVertex extends UniElement implements Vertex {
         PropertyQuery<UniVertex> propertyQuery = new PropertyQuery<UniVertex>(this, vertexProperty, PropertyQuery.Action.Add, null);
         graph.getControllerManager().getControllers(PropertyQuery.PropertyController.class).forEach(controller ->
                 controller.property(propertyQuery));
+        graph.getPropertyCache().invalidate(this.id());
         return vertexProperty;
     }
 
@@ -151,16 +157,22 @@ public class UniVertex extends UniElement implements Vertex {
         ElementHelper.validateLabel(label);
         Map<String, Object> stringObjectMap = ConversionUtils.asMap(keyValues);
         stringObjectMap.put(T.label.toString(), label);
-        return graph.getControllerManager().getControllers(AddEdgeQuery.AddEdgeController.class).stream()
-                .map(controller -> controller.addEdge(new AddEdgeQuery(this, vertex, new HashMap<>(stringObjectMap), null)))
-                .filter(e -> e != null)
-                .findFirst().get();
+        Edge edge = null;
+        for (AddEdgeQuery.AddEdgeController controller : graph.getControllerManager().getControllers(AddEdgeQuery.AddEdgeController.class)) {
+            edge = controller.addEdge(new AddEdgeQuery(this, vertex, new HashMap<>(stringObjectMap), null));
+            if (edge != null) break;
+        }
+        if (edge == null) throw new NoSuchElementException();
+        graph.getAdjacencyCache().invalidate(edge);
+        return edge;
     }
 
     @Override
     public void remove() {
         edges(Direction.BOTH).forEachRemaining(Element::remove);
         super.remove();
+        this.graph.getPropertyCache().invalidate(this.id());
+        this.graph.getAdjacencyCache().invalidate(this.id());
     }
 
     @Override
@@ -0,0 +1,233 @@
+package org.unipop.structure.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import org.apache.commons.configuration.Configuration;
+import org.apache.tinkerpop.gremlin.process.traversal.step.util.HasContainer;
+import org.apache.tinkerpop.gremlin.structure.Direction;
+import org.apache.tinkerpop.gremlin.structure.Edge;
+import org.apache.tinkerpop.gremlin.structure.T;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.unipop.query.predicates.PredicatesHolder;
+import org.unipop.schema.element.ElementSchema;
+import org.unipop.schema.reference.DeferredVertex;
+import org.unipop.structure.UniEdge;
+import org.unipop.structure.UniElement;
+import org.unipop.structure.UniGraph;
+import org.unipop.structure.UniVertex;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches the edges of a vertex for the shapes of the vertex queries that fetched them, so a vertex that is expanded
+ * again by the same out()/in()/both() doesn't go back to the controllers.
+ * Disabled unless "adjacencyCache.size", the number of cached edges, is positive.
+ * "adjacencyCache.ttl" expires entries in milliseconds (default 0, entries don't expire).
+ * Adding or removing an edge, or changing its properties, drops the entries of both of its vertices.
+ * The cache keeps the data of the edges, every hit is answered with new elements that the traversal may change.
+ */
+public class AdjacencyCache {
+    private final Cache<Object, Map<Shape, List<CachedEdge>>> cache;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public AdjacencyCache(Configuration configuration) {
+        this(configuration == null ? 0 : configuration.getLong("adjacencyCache.size", 0),
+                configuration == null ? 0 : configuration.getLong("adjacencyCache.ttl", 0));
+    }
+
+    public AdjacencyCache(long maxSize, long ttl) {
+        if (maxSize <= 0) {
+            this.cache = null;
+            return;
+        }
+        CacheBuilder<Object, Map<Shape, List<CachedEdge>>> builder = CacheBuilder.newBuilder()
+                .maximumWeight(maxSize)
+                .weigher((Object id, Map<Shape, List<CachedEdge>> shapes) ->
+                        shapes.values().stream().mapToInt(edges -> edges.size() + 1).sum())
+                .recordStats();
+        if (ttl > 0) builder.expireAfterWrite(ttl, TimeUnit.MILLISECONDS);
+        this.cache = builder.build();
+    }
+
+    public boolean isEnabled() {
+        return cache != null;
+    }
+
+    /**
+     * @param vertexId A vertex id
+     * @param shape The shape of the query
+     * @return The cached edges of the vertex, null on a miss
+     */
+    public List<CachedEdge> get(Object vertexId, Shape shape) {
+        Map<Shape, List<CachedEdge>> shapes = cache.getIfPresent(vertexId);
+        List<CachedEdge> edges = shapes == null ? null : shapes.get(shape);
+        (edges == null ? misses : hits).incrementAndGet();
+        return edges;
+    }
+
+    public void put(Object vertexId, Shape shape, List<CachedEdge> edges) {
+        // entries are replaced rather than changed, so their weight is recalculated
+        Map<Shape, List<CachedEdge>> shapes = cache.getIfPresent(vertexId);
+        Map<Shape, List<CachedEdge>> newShapes = shapes == null ? new HashMap<>(1) : new HashMap<>(shapes);
+        newShapes.put(shape, Collections.unmodifiableList(edges));
+        cache.put(vertexId, newShapes);
+    }
+
+    public void invalidate(Object vertexId) {
+        if (cache != null) cache.invalidate(vertexId);
+    }
+
+    public void invalidate(Edge edge) {
+        if (cache == null) return;
+        edge.vertices(Direction.BOTH).forEachRemaining(vertex -> cache.invalidate(vertex.id()));
+    }
+
+    public void invalidateAll() {
+        if (cache != null) cache.invalidateAll();
+    }
+
+    /**
+     * @return Hit and miss counts of the cache, a vertex that is cached for other shapes is a miss
+     */
+    public CacheStats stats() {
+        long evictions = cache == null ? 0 : cache.stats().evictionCount();
+        return new CacheStats(hits.get(), misses.get(), 0, 0, 0, evictions);
+    }
+
+    /**
+     * The data of an edge as a query returned it. Its vertices keep their properties unless they were deferred,
+     * a deferred vertex is loaded again.
+     */
+    public static class CachedEdge {
+        private final Map<String, Object> properties;
+        private final ElementSchema schema;
+        private final CachedVertex outVertex;
+        private final CachedVertex inVertex;
+
+        public CachedEdge(Edge edge) {
+            Map<String, Object> properties = new HashMap<>();
+            edge.properties().forEachRemaining(property -> properties.put(property.key(), property.value()));
+            properties.put(T.id.getAccessor(), edge.id());
+            properties.put(T.label.getAccessor(), edge.label());
+            this.properties = Collections.unmodifiableMap(properties);
+            this.schema = edge instanceof UniElement ? ((UniElement) edge).getSchema() : null;
+            this.outVertex = new CachedVertex(edge.outVertex());
+            this.inVertex = new CachedVertex(edge.inVertex());
+        }
+
+        public Edge toEdge(UniGraph graph) {
+            return new UniEdge(new HashMap<>(properties), outVertex.toVertex(graph), inVertex.toVertex(graph), schema, graph);
+        }
+    }
+
+    private static class CachedVertex {
+        private final Map<String, Object> properties;
+        private final ElementSchema schema;
+        private final boolean deferred;
+
+        private CachedVertex(Vertex vertex) {
+            // a vertex takes the values of a collection as the multi properties of its key
+            Map<String, List<Object>> values = new HashMap<>();
+            this.deferred = vertex instanceof DeferredVertex;
+            if (!deferred) vertex.properties().forEachRemaining(property ->
+                    values.computeIfAbsent(property.key(), key -> new ArrayList<>(1)).add(property.value()));
+            Map<String, Object> properties = new HashMap<>(values);
+            properties.put(T.id.getAccessor(), vertex.id());
+            properties.put(T.label.getAccessor(), vertex.label());
+            this.properties = Collections.unmodifiableMap(properties);
+            this.schema = vertex instanceof UniElement ? ((UniElement) vertex).getSchema() : null;
+        }
+
+        private Vertex toVertex(UniGraph graph) {
+            return deferred ? new DeferredVertex(new HashMap<>(properties), schema, graph) :
+                    new UniVertex(new HashMap<>(properties), schema, graph);
+        }
+    }
+
+    /**
+     * The shape of a vertex query: its direction, predicates (including the edge labels), property keys and the
+     * outcome of the graph's traversal filter, which decides the schemas the query runs on
+     */
+    public static class Shape {
+        private final Direction direction;
+        private final PredicatesHolder predicates;
+        private final Set<String> propertyKeys;
+        private final Object filterOutcome;
+        private final int hashCode;
+
+        public Shape(Direction direction, PredicatesHolder predicates, Set<String> propertyKeys, Object filterOutcome) {
+            this.direction = direction;
+            this.predicates = predicates;
+            this.propertyKeys = propertyKeys == null ? null : new HashSet<>(propertyKeys);
+            this.filterOutcome = filterOutcome;
+            this.hashCode = Objects.hash(direction, hashCode(predicates), this.propertyKeys, filterOutcome);
+        }
+
+        private static int hashCode(PredicatesHolder predicates) {
+            int hashCode = predicates.getClause().hashCode();
+            for (HasContainer has : predicates.getPredicates())
+                hashCode = 31 * hashCode + Objects.hash(has.getKey(), has.getPredicate());
+            for (PredicatesHolder child : predicates.getChildren())
+                hashCode = 31 * hashCode + hashCode(child);
+            return hashCode;
+        }
+
+        private static boolean equals(PredicatesHolder first, PredicatesHolder second) {
+            if (!first.getClause().equals(second.getClause()) ||
+                    first.getPredicates().size() != second.getPredicates().size() ||
+                    first.getChildren().size() != second.getChildren().size())
+                return false;
+            // HasContainer doesn't compare its predicate, P does
+            for (int i = 0; i < first.getPredicates().size(); i++) {
+                HasContainer firstHas = first.getPredicates().get(i);
+                HasContainer secondHas = second.getPredicates().get(i);
+                if (!Objects.equals(firstHas.getKey(), secondHas.getKey()) ||
+                        !Objects.equals(firstHas.getPredicate(), secondHas.getPredicate()))
+                    return false;
+            }
+            for (int i = 0; i < first.getChildren().size(); i++) {
+                if (!equals(first.getChildren().get(i), second.getChildren().get(i))) return false;
+            }
+            return true;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Shape)) return false;
+            Shape shape = (Shape) o;
+            return hashCode == shape.hashCode &&
+                    direction == shape.direction &&
+                    Objects.equals(propertyKeys, shape.propertyKeys) &&
+                    Objects.equals(filterOutcome, shape.filterOutcome) &&
+                    equals(predicates, shape.predicates);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public String toString() {
+            return "Shape{" +
+                    "direction=" + direction +
+                    ", predicates=" + predicates.getPredicates() +
+                    ", propertyKeys=" + propertyKeys +
+                    ", filterOutcome=" + filterOutcome +
+                    '}';
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "AdjacencyCache{" +
+                "size=" + (cache == null ? 0 : cache.size()) +
+                ", stats=" + stats() +
+                '}';
+    }
+}
@@ -0,0 +1,50 @@
+package org.unipop.structure.cache;
+
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+
+import java.util.*;
+
+/**
+ * The properties of a vertex as they were fetched by a DeferredVertexQuery.
+ * A query that asked for some of the property keys caches only them, and can't answer a query for other keys.
+ */
+public class CachedProperties {
+    private final Set<String> keys;
+    private final Map<String, List<Object>> properties;
+
+    /**
+     * @param keys The property keys that were fetched, null if all of them were fetched
+     * @param vertex The loaded vertex
+     */
+    public CachedProperties(Set<String> keys, Vertex vertex) {
+        this.keys = keys == null ? null : new HashSet<>(keys);
+        this.properties = new HashMap<>();
+        vertex.properties().forEachRemaining(property ->
+                properties.computeIfAbsent(property.key(), key -> new ArrayList<>(1)).add(property.value()));
+    }
+
+    /**
+     * @param propertyKeys The property keys a query asks for, null for all of them
+     * @return True if the cached properties answer the query
+     */
+    public boolean covers(Set<String> propertyKeys) {
+        if (keys == null) return true;
+        return propertyKeys != null && keys.containsAll(propertyKeys);
+    }
+
+    public Map<String, List<Object>> getProperties() {
+        return properties;
+    }
+
+    int weight() {
+        return properties.values().stream().mapToInt(List::size).sum() + 1;
+    }
+
+    @Override
+    public String toString() {
+        return "CachedProperties{" +
+                "keys=" + keys +
+                ", properties=" + properties +
+                '}';
+    }
+}
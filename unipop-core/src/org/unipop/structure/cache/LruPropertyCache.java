@@ -0,0 +1,64 @@
+package org.unipop.structure.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import org.apache.commons.configuration.Configuration;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A property cache bounded by the number of cached property values, evicting the least recently used vertices.
+ * Configured with "propertyCache.size" (default 100000 values) and "propertyCache.ttl" in milliseconds
+ * (default 0, entries don't expire). Entries expire after they are written, changes made directly to the data source
+ * are visible once the entry expires.
+ */
+public class LruPropertyCache implements PropertyCache {
+    private final Cache<Object, CachedProperties> cache;
+
+    public LruPropertyCache(Configuration configuration) {
+        this(configuration.getLong("propertyCache.size", 100000), configuration.getLong("propertyCache.ttl", 0));
+    }
+
+    public LruPropertyCache(long maxSize, long ttl) {
+        CacheBuilder<Object, CachedProperties> builder = CacheBuilder.newBuilder()
+                .maximumWeight(maxSize)
+                .weigher((Object id, CachedProperties properties) -> properties.weight())
+                .recordStats();
+        if (ttl > 0) builder.expireAfterWrite(ttl, TimeUnit.MILLISECONDS);
+        this.cache = builder.build();
+    }
+
+    @Override
+    public CachedProperties get(Object id) {
+        return cache.getIfPresent(id);
+    }
+
+    @Override
+    public void put(Object id, CachedProperties properties) {
+        cache.put(id, properties);
+    }
+
+    @Override
+    public void invalidate(Object id) {
+        cache.invalidate(id);
+    }
+
+    @Override
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    @Override
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    @Override
+    public String toString() {
+        return "LruPropertyCache{" +
+                "size=" + cache.size() +
+                ", stats=" + cache.stats() +
+                '}';
+    }
+}
@@ -0,0 +1,39 @@
+package org.unipop.structure.cache;
+
+import com.google.common.cache.CacheStats;
+import org.apache.commons.configuration.Configuration;
+
+/**
+ * The default property cache, caches nothing
+ */
+public class NoPropertyCache implements PropertyCache {
+    private static final CacheStats EMPTY_STATS = new CacheStats(0, 0, 0, 0, 0, 0);
+
+    public NoPropertyCache() {
+    }
+
+    public NoPropertyCache(Configuration configuration) {
+    }
+
+    @Override
+    public CachedProperties get(Object id) {
+        return null;
+    }
+
+    @Override
+    public void put(Object id, CachedProperties properties) {
+    }
+
+    @Override
+    public void invalidate(Object id) {
+    }
+
+    @Override
+    public void invalidateAll() {
+    }
+
+    @Override
+    public CacheStats stats() {
+        return EMPTY_STATS;
+    }
+}
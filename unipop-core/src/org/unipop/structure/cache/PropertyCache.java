@@ -0,0 +1,31 @@
+package org.unipop.structure.cache;
+
+import com.google.common.cache.CacheStats;
+
+/**
+ * Caches the properties of deferred vertices across traversals, so a vertex that was already fetched
+ * doesn't go back to the controllers.
+ * The implementation is configured with "propertyCache", a class with a (Configuration) constructor.
+ */
+public interface PropertyCache {
+    /**
+     * @param id A vertex id
+     * @return The cached properties of the vertex, null on a miss
+     */
+    CachedProperties get(Object id);
+
+    void put(Object id, CachedProperties properties);
+
+    /**
+     * Drops the properties of a vertex that was changed or removed
+     * @param id A vertex id
+     */
+    void invalidate(Object id);
+
+    void invalidateAll();
+
+    /**
+     * @return Hit and miss counts of the cache
+     */
+    CacheStats stats();
+}
@@ -8,4 +8,9 @@ public class DefaultTraversalFilter implements TraversalFilter{
     public boolean filter(ElementSchema schema, Traversal traversal) {
         return true;
     }
+
+    @Override
+    public Object outcome(Traversal traversal) {
+        return Boolean.TRUE;
+    }
 }
@@ -5,4 +5,14 @@ import org.unipop.schema.element.ElementSchema;
 
 public interface TraversalFilter {
     boolean filter(ElementSchema schema, Traversal traversal);
+
+    /**
+     * Results are cached by the outcome of the filter, traversals with equal outcomes are filtered the same for
+     * every schema.
+     * @param traversal The traversal of a query
+     * @return The outcome of the filter for the traversal, null if it isn't known and the results aren't cached
+     */
+    default Object outcome(Traversal traversal) {
+        return null;
+    }
 }
@@ -79,7 +79,7 @@ public class DirectoryWatcher {
                                 Path newPath = ((WatchEvent<Path>) watchEvent)
                                         .context();
                                 if (notSwap(newPath))
-                                    onFileChange.onFileChange(newPath);
+                                    onFileChange.onFileChange(path.resolve(newPath));
                             }
                         }
                     }
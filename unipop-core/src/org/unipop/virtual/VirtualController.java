@@ -100,6 +100,6 @@ public class VirtualController implements SimpleController {
 
         idsCol.forEach(id -> labelCol.forEach(label -> elements.add(createElement(id, label.toString()))));
 
-        return (Iterator<E>) elements.stream().flatMap(fields -> filteredSchemas.stream().flatMap(schema -> Stream.of(schema.createElement(fields)))).filter(v -> v != null).iterator();
+        return (Iterator<E>) elements.stream().flatMap(fields -> filteredSchemas.stream().flatMap(schema -> Stream.of(schema.createElement(fields)))).filter(v -> v != null).distinct().iterator();
     }
 }
@@ -0,0 +1,142 @@
+package org.unipop.process.plan;
+
+import org.apache.commons.configuration.BaseConfiguration;
+import org.apache.commons.configuration.Configuration;
+import org.apache.tinkerpop.gremlin.process.traversal.P;
+import org.apache.tinkerpop.gremlin.process.traversal.dsl.graph.GraphTraversal;
+import org.apache.tinkerpop.gremlin.process.traversal.dsl.graph.GraphTraversalSource;
+import org.apache.tinkerpop.gremlin.process.traversal.dsl.graph.__;
+import org.apache.tinkerpop.gremlin.structure.Edge;
+import org.apache.tinkerpop.gremlin.structure.Element;
+import org.apache.tinkerpop.gremlin.structure.T;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.apache.tinkerpop.gremlin.util.iterator.EmptyIterator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.unipop.process.predicate.Text;
+import org.unipop.query.controller.ControllerManager;
+import org.unipop.query.controller.UniQueryController;
+import org.unipop.query.search.SearchQuery;
+import org.unipop.query.search.SearchVertexQuery;
+import org.unipop.schema.property.PropertySchema;
+import org.unipop.structure.UniGraph;
+import org.unipop.structure.UniVertex;
+import org.unipop.structure.traversalfilter.TraversalFilter;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+
+public class TraversalPlanCacheTests {
+    private UniGraph graph;
+    private GraphTraversalSource g;
+
+    @Before
+    public void startUp() throws Exception {
+        BaseConfiguration configuration = new BaseConfiguration();
+        configuration.setProperty("controllerManager", ItemsControllerManager.class.getName());
+        configuration.setProperty("planCache.size", 100);
+        graph = new UniGraph(configuration);
+        g = graph.traversal();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        graph.close();
+    }
+
+    @Test
+    public void rebindsTheValuesOfAShape() {
+        assertEquals(ids("1"), ids(g.V().has("name", "item1")));
+        assertEquals(ids("2"), ids(g.V().has("name", "item2")));
+        assertEquals(ids("3"), ids(g.V("3")));
+        assertEquals(ids("4"), ids(g.V("4")));
+        assertEquals(ids("1", "2"), ids(g.V().has("name", P.within("item1", "item2"))));
+        assertEquals(ids("3"), ids(g.V().has("name", P.within("item3"))));
+        assertEquals(ids("4", "5"), ids(g.V().has("name", P.gt("item3"))));
+        assertEquals(ids("5"), ids(g.V().has("name", P.gt("item4"))));
+        assertEquals(ids("1"), ids(g.V().has("name", Text.prefix("item1"))));
+        assertEquals(ids("2"), ids(g.V().has("name", Text.prefix("item2"))));
+
+        assertEquals(5, graph.getPlanCache().stats().hitCount());
+        assertEquals(5, graph.getPlanCache().stats().missCount());
+    }
+
+    @Test
+    public void predicatesOfAShapeAreNotShared() {
+        // a predicate of another kind has its own plan
+        assertEquals(ids("2", "3", "4", "5"), ids(g.V().has("name", P.neq("item1"))));
+        assertEquals(ids("2"), ids(g.V().has("name", P.eq("item2"))));
+
+        assertEquals(0, graph.getPlanCache().stats().hitCount());
+        assertEquals(2, graph.getPlanCache().stats().missCount());
+    }
+
+    @Test
+    public void refusedShapesAreCompiledAsUsual() {
+        // child traversals and predicates that aren't a plain P are not bound
+        assertEquals(ids("1"), ids(g.V().has("name", "item1").filter(__.inE().count().is(0))));
+        // a refused shape is remembered, it isn't compiled with parameters again
+        assertEquals(ids("2"), ids(g.V().has("name", "item2").filter(__.inE().count().is(0))));
+        assertEquals(ids("2", "3"), ids(g.V().has("name", P.gt("item1").and(P.lt("item4")))));
+        assertEquals(ids("3", "4"), ids(g.V().has("name", P.gt("item2").and(P.lt("item5")))));
+        // a profiled traversal has no shape
+        g.V("3").profile().next();
+        g.V("4").profile().next();
+
+        assertEquals(0, graph.getPlanCache().stats().hitCount());
+        assertEquals(3, graph.getPlanCache().stats().missCount());
+    }
+
+    private static Set<Object> ids(String... ids) {
+        return new HashSet<>(Arrays.asList(ids));
+    }
+
+    private static Set<Object> ids(GraphTraversal<?, ?> traversal) {
+        return traversal.toList().stream().map(element -> ((Element) element).id()).collect(Collectors.toSet());
+    }
+
+    /**
+     * Five vertices held in memory, "1" to "5" named "item1" to "item5", and no edges
+     */
+    public static class ItemsControllerManager implements ControllerManager, SearchQuery.SearchController,
+            SearchVertexQuery.SearchVertexController {
+        private final List<Vertex> vertices = new ArrayList<>();
+
+        public ItemsControllerManager(UniGraph graph, Configuration configuration,
+                                      List<PropertySchema.PropertySchemaBuilder> thirdPartyPropertySchemas,
+                                      TraversalFilter filter) {
+            for (int i = 1; i <= 5; i++) {
+                Map<String, Object> properties = new HashMap<>();
+                properties.put(T.id.getAccessor(), Integer.toString(i));
+                properties.put(T.label.getAccessor(), "item");
+                properties.put("name", "item" + i);
+                vertices.add(new UniVertex(properties, null, graph));
+            }
+        }
+
+        @Override
+        public <E extends Element> Iterator<E> search(SearchQuery<E> uniQuery) {
+            if (!uniQuery.getReturnType().equals(Vertex.class)) return EmptyIterator.instance();
+            return vertices.stream().map(vertex -> (E) vertex)
+                    .filter(vertex -> uniQuery.test(vertex, uniQuery.getPredicates()))
+                    .iterator();
+        }
+
+        @Override
+        public Iterator<Edge> search(SearchVertexQuery uniQuery) {
+            return EmptyIterator.instance();
+        }
+
+        @Override
+        public Set<UniQueryController> getControllers() {
+            return Collections.singleton(this);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
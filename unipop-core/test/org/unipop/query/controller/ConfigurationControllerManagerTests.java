@@ -0,0 +1,175 @@
+package org.unipop.query.controller;
+
+import com.google.common.collect.Iterators;
+import org.apache.commons.configuration.BaseConfiguration;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.unipop.structure.UniGraph;
+import org.unipop.structure.traversalfilter.TraversalFilter;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.*;
+
+public class ConfigurationControllerManagerTests {
+    private static final long RETIRE_DELAY = 50;
+    // every provider that was created, in order
+    private static final List<NamedSourceProvider> providers = Collections.synchronizedList(new ArrayList<>());
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File directory;
+    private UniGraph graph;
+    private ConfigurationControllerManager manager;
+
+    @Before
+    public void startUp() throws Exception {
+        providers.clear();
+        directory = folder.newFolder();
+        write("a.json", provider("a", 1));
+        write("b.json", provider("b", 1));
+        BaseConfiguration configuration = new BaseConfiguration();
+        configuration.setProperty("providers", directory.getAbsolutePath());
+        configuration.setProperty("controllerManager.retireDelay", RETIRE_DELAY);
+        graph = new UniGraph(configuration);
+        manager = (ConfigurationControllerManager) graph.getControllerManager();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        graph.close();
+    }
+
+    @Test
+    public void unchangedFileIsANoOp() throws Exception {
+        ControllerGeneration first = manager.getGeneration();
+        Map<Path, ConfigurationControllerManager.ProviderFile> files = manager.providerFiles;
+
+        // the same configuration, written with its keys in another order
+        write("a.json", new JSONObject().put("version", 1).put("name", "a").put("class", NamedSourceProvider.class.getName()));
+        manager.reload(file("a.json"));
+        manager.reload(directory.toPath());
+
+        assertSame(files, manager.loadProviderFiles(file("a.json")));
+        assertSame(first, manager.getGeneration());
+        assertEquals(2, providers.size());
+        assertFalse(first.isRetired());
+    }
+
+    @Test
+    public void editedFileKeepsTheOtherProvidersOpen() throws Exception {
+        ControllerGeneration first = manager.getGeneration();
+        NamedSourceProvider a = provider("a");
+        NamedSourceProvider b = provider("b");
+
+        write("a.json", provider("a", 2));
+        manager.reload(file("a.json"));
+
+        ControllerGeneration second = manager.getGeneration();
+        assertNotSame(first, second);
+        assertEquals(3, providers.size());
+        assertEquals(new HashSet<>(Arrays.asList(providers.get(2), b)), second.getSourceProviders());
+        waitFor(first::isReleased);
+        assertTrue(a.closed);
+        assertFalse(b.closed);
+        assertFalse(providers.get(2).closed);
+    }
+
+    @Test
+    public void deletedFileIsClosedWithTheLastGenerationHoldingIt() throws Exception {
+        ControllerGeneration first = manager.getGeneration();
+        NamedSourceProvider b = provider("b");
+        // a read of the first generation that isn't finished yet
+        Iterator<Integer> read = manager.read(generation -> Iterators.forArray(1, 2));
+        read.next();
+
+        write("a.json", provider("a", 2));
+        manager.reload(file("a.json"));
+        ControllerGeneration second = manager.getGeneration();
+        Files.delete(file("b.json"));
+        manager.reload(file("b.json"));
+        ControllerGeneration third = manager.getGeneration();
+
+        assertNotSame(second, third);
+        assertFalse(third.getSourceProviders().contains(b));
+        waitFor(second::isReleased);
+        Thread.sleep(RETIRE_DELAY * 3);
+        assertFalse(first.isReleased());
+        assertFalse(b.closed);
+
+        Iterators.size(read);
+        waitFor(first::isReleased);
+        assertTrue(b.closed);
+        assertFalse(provider("a", 2, third).closed);
+    }
+
+    private Path file(String name) {
+        return new File(directory, name).toPath().toAbsolutePath().normalize();
+    }
+
+    /**
+     * Writes a provider file, moved in whole so the watcher doesn't read it half written
+     */
+    private void write(String name, JSONObject provider) throws Exception {
+        File written = folder.newFile();
+        Files.write(written.toPath(), provider.toString().getBytes());
+        Files.move(written.toPath(), new File(directory, name).toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static JSONObject provider(String name, int version) {
+        return new JSONObject().put("class", NamedSourceProvider.class.getName()).put("name", name).put("version", version);
+    }
+
+    /**
+     * @return The first provider created for the name
+     */
+    private static NamedSourceProvider provider(String name) {
+        return providers.stream().filter(provider -> provider.name.equals(name)).findFirst().get();
+    }
+
+    /**
+     * @return The provider of the name and version that the generation holds
+     */
+    private static NamedSourceProvider provider(String name, int version, ControllerGeneration generation) {
+        return generation.getSourceProviders().stream().map(provider -> (NamedSourceProvider) provider)
+                .filter(provider -> provider.name.equals(name) && provider.version == version).findFirst().get();
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        for (int i = 0; i < 200 && !condition.getAsBoolean(); i++) Thread.sleep(50);
+        assertTrue(condition.getAsBoolean());
+    }
+
+    /**
+     * A provider without controllers that remembers the name and version of its file, and whether it was closed
+     */
+    public static class NamedSourceProvider implements SourceProvider {
+        private String name;
+        private int version;
+        private volatile boolean closed;
+
+        @Override
+        public Set<UniQueryController> init(UniGraph graph, JSONObject configuration, TraversalFilter filter) {
+            this.name = configuration.getString("name");
+            this.version = configuration.getInt("version");
+            providers.add(this);
+            return Collections.emptySet();
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package org.unipop.query.controller;
+
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+import org.apache.commons.configuration.BaseConfiguration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ControllerExecutorTests {
+    private ControllerExecutor executor;
+
+    @Before
+    public void startUp() {
+        BaseConfiguration configuration = new BaseConfiguration();
+        configuration.setProperty("controllers.executor", "pool");
+        configuration.setProperty("controllers.executor.threads", 4);
+        configuration.setProperty("controllers.executor.chunk", 10);
+        executor = new ControllerExecutor(configuration);
+    }
+
+    @After
+    public void tearDown() {
+        executor.close();
+    }
+
+    @Test
+    public void mergesEveryResult() {
+        List<Integer> controllers = Arrays.asList(0, 1, 2);
+        Iterator<Integer> results = executor.search(controllers, controller ->
+                IntStream.range(controller * 100, controller * 100 + 25).iterator());
+
+        List<Integer> merged = Lists.newArrayList(results);
+        Collections.sort(merged);
+        List<Integer> expected = controllers.stream()
+                .flatMap(controller -> IntStream.range(controller * 100, controller * 100 + 25).boxed())
+                .collect(Collectors.toList());
+        assertEquals(expected, merged);
+    }
+
+    @Test
+    public void keepsControllerOrder() {
+        Iterator<Integer> results = executor.search(Arrays.asList(0, 1), controller ->
+                IntStream.range(0, 95).map(i -> i * 2 + controller).iterator());
+
+        int[] last = {-2, -1};
+        results.forEachRemaining(result -> {
+            assertTrue(result > last[result % 2]);
+            last[result % 2] = result;
+        });
+        assertEquals(188, last[0]);
+        assertEquals(189, last[1]);
+    }
+
+    @Test
+    public void readsUnlimitedSearchesAhead() throws InterruptedException {
+        List<AtomicInteger> read = Arrays.asList(new AtomicInteger(), new AtomicInteger());
+        Iterator<Integer> results = executor.search(Arrays.asList(0, 1), controller ->
+                Iterators.transform(Iterators.cycle(controller), value -> {
+                    read.get(value).incrementAndGet();
+                    return value;
+                }));
+
+        Iterators.advance(results, 15);
+        Thread.sleep(200);
+        // the chunk being consumed and the one read ahead of it
+        read.forEach(count -> assertTrue(count.get() <= 30));
+    }
+}
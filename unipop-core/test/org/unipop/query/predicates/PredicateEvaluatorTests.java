@@ -0,0 +1,140 @@
+package org.unipop.query.predicates;
+
+import org.apache.tinkerpop.gremlin.process.traversal.P;
+import org.apache.tinkerpop.gremlin.process.traversal.step.util.HasContainer;
+import org.apache.tinkerpop.gremlin.structure.Element;
+import org.junit.Test;
+import org.unipop.structure.UniVertex;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+
+import static org.junit.Assert.assertEquals;
+
+public class PredicateEvaluatorTests {
+    private static final String[] KEYS = {"~id", "~label", "name", "age", "score"};
+
+    private final Random random = new Random(7);
+
+    @Test
+    public void nonFiniteNumbersAreComparedLikeCompare() {
+        List<P<?>> predicates = Arrays.asList(P.eq(Double.NaN), P.gt(Double.POSITIVE_INFINITY),
+                P.neq(Double.NEGATIVE_INFINITY), P.lte(Float.NaN));
+        for (Object age : Arrays.asList(Double.NaN, 1.5, Double.NEGATIVE_INFINITY, Float.NaN)) {
+            Element element = vertex("1", Collections.singletonMap("age", age));
+            for (P<?> predicate : predicates) {
+                HasContainer has = new HasContainer("age", predicate);
+                assertEquals(predicate + " on " + age, outcome(() -> has.test(element)),
+                        outcome(() -> evaluator(has).test(element)));
+            }
+        }
+    }
+
+    @Test
+    public void evaluatesLikeHasContainers() {
+        List<Element> elements = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            Map<String, Object> properties = new HashMap<>();
+            if (random.nextInt(4) > 0) properties.put("name", "n" + random.nextInt(4));
+            if (random.nextInt(4) > 0) properties.put("age", value("age"));
+            if (random.nextInt(4) > 0) properties.put("score", value("age"));
+            elements.add(vertex("v" + (i % 6), properties));
+        }
+        Map<String, Object> constants = Collections.singletonMap("~label", "person");
+
+        for (int i = 0; i < 2000; i++) {
+            PredicatesHolder predicates = holder(0);
+            PredicateEvaluator evaluator = PredicateEvaluator.compile(predicates);
+            PredicateEvaluator constant = PredicateEvaluator.compile(predicates, constants);
+            for (Element element : elements) {
+                // HasContainer throws comparing some numbers of different classes, the evaluator may too
+                String expected = outcome(() -> test(element, predicates));
+                if (expected.equals("exception")) continue;
+                String message = predicates.getClause() + " " + predicates.getPredicates() + " " +
+                        predicates.getChildren() + " on " + element.properties();
+                assertEquals(message, expected, outcome(() -> evaluator.test(element)));
+                assertEquals(message, expected, outcome(() -> constant.test(element)));
+            }
+        }
+    }
+
+    private static boolean test(Element element, PredicatesHolder predicates) {
+        if (predicates.getClause().equals(PredicatesHolder.Clause.And)) {
+            if (!HasContainer.testAll(element, predicates.getPredicates())) return false;
+            for (PredicatesHolder child : predicates.getChildren()) if (!test(element, child)) return false;
+            return true;
+        }
+        for (HasContainer has : predicates.getPredicates()) if (has.test(element)) return true;
+        for (PredicatesHolder child : predicates.getChildren()) if (test(element, child)) return true;
+        return false;
+    }
+
+    private static String outcome(Callable<Boolean> test) {
+        try {
+            return String.valueOf(test.call());
+        } catch (Exception e) {
+            return "exception";
+        }
+    }
+
+    private static PredicateEvaluator evaluator(HasContainer has) {
+        return PredicateEvaluator.compile(new PredicatesHolder(PredicatesHolder.Clause.And,
+                Collections.singletonList(has), Collections.emptyList()));
+    }
+
+    private static Element vertex(String id, Map<String, Object> properties) {
+        Map<String, Object> keyValues = new HashMap<>(properties);
+        keyValues.put("~id", id);
+        keyValues.put("~label", "person");
+        return new UniVertex(keyValues, null, null);
+    }
+
+    private PredicatesHolder holder(int depth) {
+        PredicatesHolder.Clause[] clauses = PredicatesHolder.Clause.values();
+        PredicatesHolder.Clause clause = clauses[random.nextInt(depth == 0 ? 2 : 3)];
+        List<HasContainer> predicates = new ArrayList<>();
+        for (int i = random.nextInt(4); i > 0; i--) {
+            String key = KEYS[random.nextInt(KEYS.length)];
+            P<?> predicate = predicate(key.equals("score") ? "age" : key);
+            // HasContainer refuses ids of different classes in one predicate
+            try {
+                predicates.add(new HasContainer(key, predicate));
+            } catch (IllegalArgumentException ignored) {
+            }
+        }
+        List<PredicatesHolder> children = new ArrayList<>();
+        if (depth < 3) for (int i = random.nextInt(3); i > 0; i--) children.add(holder(depth + 1));
+        return new PredicatesHolder(clause, predicates, children);
+    }
+
+    private P<?> predicate(String key) {
+        switch (random.nextInt(10)) {
+            case 0: return P.eq(value(key));
+            case 1: return P.neq(value(key));
+            case 2: return P.gt(value(key));
+            case 3: return P.gte(value(key));
+            case 4: return P.lt(value(key));
+            case 5: return P.lte(value(key));
+            case 6: return P.within(value(key), value(key), value(key));
+            case 7: return P.without(value(key), value(key));
+            case 8: return P.eq(value(key)).or(P.gt(value(key)));
+            default: return P.lt(value(key)).negate();
+        }
+    }
+
+    private Object value(String key) {
+        switch (key) {
+            case "~id": return random.nextBoolean() ? "v" + random.nextInt(5) : random.nextInt(5);
+            case "~label": return random.nextBoolean() ? "person" : "software";
+            case "name": return "n" + random.nextInt(4);
+            default:
+                switch (random.nextInt(6)) {
+                    case 0: return (long) random.nextInt(5);
+                    case 1: return random.nextInt(5) + 0.5 * random.nextInt(2);
+                    case 2: return random.nextBoolean() ? Double.NaN : Double.POSITIVE_INFINITY;
+                    case 3: return Float.NEGATIVE_INFINITY;
+                    default: return random.nextInt(5);
+                }
+        }
+    }
+}
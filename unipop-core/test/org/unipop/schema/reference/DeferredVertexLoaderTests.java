@@ -0,0 +1,163 @@
+package org.unipop.schema.reference;
+
+import com.google.common.collect.Iterators;
+import org.apache.commons.configuration.BaseConfiguration;
+import org.apache.commons.configuration.Configuration;
+import org.apache.tinkerpop.gremlin.structure.T;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.unipop.query.controller.ControllerManager;
+import org.unipop.query.controller.UniQueryController;
+import org.unipop.query.search.DeferredVertexQuery;
+import org.unipop.schema.property.PropertySchema;
+import org.unipop.structure.UniGraph;
+import org.unipop.structure.UniVertex;
+import org.unipop.structure.traversalfilter.TraversalFilter;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class DeferredVertexLoaderTests {
+    // the number of vertices of every query the controller was asked to fetch
+    private static final List<Integer> fetched = Collections.synchronizedList(new ArrayList<>());
+
+    private UniGraph graph;
+
+    @Before
+    public void startUp() {
+        fetched.clear();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (graph != null) graph.close();
+    }
+
+    @Test
+    public void firstAccessLoadsTheWholeBatch() throws Exception {
+        open(10);
+        List<DeferredVertex> vertices = batch("1", "2", "3", "4", "5");
+
+        assertEquals("item3", vertices.get(2).value("name"));
+        assertEquals(Collections.singletonList(5), fetched);
+        for (DeferredVertex vertex : vertices) {
+            assertFalse(vertex.isDeferred());
+            assertNull(vertex.getBatch());
+        }
+        assertEquals("item1", vertices.get(0).value("name"));
+        assertEquals(Collections.singletonList(5), fetched);
+    }
+
+    @Test
+    public void batchesAreCutAtTheBatchSize() throws Exception {
+        open(2);
+        List<DeferredVertex> vertices = batch("1", "2", "3", "4", "5");
+
+        assertEquals("item1", vertices.get(0).value("name"));
+        assertEquals(Collections.singletonList(2), fetched);
+        assertTrue(vertices.get(2).isDeferred());
+        assertEquals("item5", vertices.get(4).value("name"));
+        assertEquals(Arrays.asList(2, 1), fetched);
+    }
+
+    @Test
+    public void batchSizeBelowTwoDisablesBatching() throws Exception {
+        open(1);
+        List<DeferredVertex> vertices = batch("1", "2", "3");
+
+        for (DeferredVertex vertex : vertices) assertNull(vertex.getBatch());
+        assertEquals("item2", vertices.get(1).value("name"));
+        assertEquals(Collections.singletonList(1), fetched);
+        assertTrue(vertices.get(0).isDeferred());
+        assertTrue(vertices.get(2).isDeferred());
+    }
+
+    @Test
+    public void referencesOfTheSameIdAreFetchedOnce() throws Exception {
+        open(10);
+        List<DeferredVertex> vertices = batch("1", "2", "1", "1");
+
+        assertEquals("item1", vertices.get(3).value("name"));
+        assertEquals(Collections.singletonList(2), fetched);
+        for (DeferredVertex vertex : vertices) assertFalse(vertex.isDeferred());
+        assertEquals("item1", vertices.get(0).value("name"));
+        assertEquals("item1", vertices.get(2).value("name"));
+    }
+
+    @Test
+    public void verticesNoControllerFoundStayDeferred() throws Exception {
+        open(10);
+        List<DeferredVertex> vertices = Arrays.asList(vertex("1"), vertex("9"), vertex("9"));
+
+        graph.getDeferredVertexLoader().load(new DeferredVertexQuery(vertices, null, null, null, null));
+        assertEquals(Collections.singletonList(2), fetched);
+        assertFalse(vertices.get(0).isDeferred());
+        assertTrue(vertices.get(1).isDeferred());
+        assertTrue(vertices.get(2).isDeferred());
+        assertFalse(vertices.get(1).properties("name").hasNext());
+    }
+
+    private void open(int batchSize) throws Exception {
+        BaseConfiguration configuration = new BaseConfiguration();
+        configuration.setProperty("controllerManager", ItemsControllerManager.class.getName());
+        configuration.setProperty("deferred.batch", batchSize);
+        graph = new UniGraph(configuration);
+    }
+
+    /**
+     * @return Deferred vertices of the ids, batched as the results of a single query
+     */
+    private List<DeferredVertex> batch(String... ids) {
+        List<DeferredVertex> vertices = Arrays.stream(ids).map(this::vertex).collect(Collectors.toList());
+        Iterators.size(graph.getDeferredVertexLoader().batch(vertices.iterator()));
+        return vertices;
+    }
+
+    private DeferredVertex vertex(String id) {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put(T.id.getAccessor(), id);
+        properties.put(T.label.getAccessor(), "item");
+        return new DeferredVertex(properties, null, graph);
+    }
+
+    /**
+     * Loads the properties of vertices "1" to "5", named "item1" to "item5", and finds no other vertex
+     */
+    public static class ItemsControllerManager implements ControllerManager, DeferredVertexQuery.DeferredVertexController {
+        private final Map<Object, Vertex> vertices = new HashMap<>();
+
+        public ItemsControllerManager(UniGraph graph, Configuration configuration,
+                                      List<PropertySchema.PropertySchemaBuilder> thirdPartyPropertySchemas,
+                                      TraversalFilter filter) {
+            for (int i = 1; i <= 5; i++) {
+                Map<String, Object> properties = new HashMap<>();
+                properties.put(T.id.getAccessor(), Integer.toString(i));
+                properties.put(T.label.getAccessor(), "item");
+                properties.put("name", "item" + i);
+                vertices.put(Integer.toString(i), new UniVertex(properties, null, graph));
+            }
+        }
+
+        @Override
+        public void fetchProperties(DeferredVertexQuery query) {
+            fetched.add(query.getVertices().size());
+            query.getVertices().forEach(deferred -> {
+                Vertex vertex = vertices.get(deferred.id());
+                if (vertex != null) deferred.loadProperties(vertex);
+            });
+        }
+
+        @Override
+        public Set<UniQueryController> getControllers() {
+            return Collections.singleton(this);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package org.unipop.structure.cache;
+
+import org.apache.commons.configuration.BaseConfiguration;
+import org.apache.commons.configuration.Configuration;
+import org.apache.tinkerpop.gremlin.structure.T;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.unipop.query.controller.ControllerManager;
+import org.unipop.query.controller.UniQueryController;
+import org.unipop.query.search.DeferredVertexQuery;
+import org.unipop.schema.property.PropertySchema;
+import org.unipop.schema.reference.DeferredVertex;
+import org.unipop.structure.UniGraph;
+import org.unipop.structure.UniVertex;
+import org.unipop.structure.traversalfilter.TraversalFilter;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class LruPropertyCacheTests {
+    // the number of vertices the controller was asked to fetch
+    private static final AtomicInteger fetched = new AtomicInteger();
+
+    private UniGraph graph;
+    private PropertyCache cache;
+
+    @Before
+    public void startUp() throws Exception {
+        fetched.set(0);
+        BaseConfiguration configuration = new BaseConfiguration();
+        configuration.setProperty("controllerManager", ItemsControllerManager.class.getName());
+        configuration.setProperty("propertyCache", LruPropertyCache.class.getName());
+        graph = new UniGraph(configuration);
+        cache = graph.getPropertyCache();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        graph.close();
+    }
+
+    @Test
+    public void loadedVerticesAreHits() {
+        DeferredVertex first = load("1", null);
+        DeferredVertex second = load("1", null);
+
+        assertEquals(1, fetched.get());
+        assertEquals("item1", first.value("name"));
+        assertEquals("item1", second.value("name"));
+        assertEquals(1, cache.stats().hitCount());
+        assertEquals(1, cache.stats().missCount());
+
+        load("2", null);
+        assertEquals(2, fetched.get());
+        assertEquals(2, cache.stats().missCount());
+    }
+
+    @Test
+    public void partialKeysDontAnswerWiderQueries() {
+        CachedProperties properties = new CachedProperties(Collections.singleton("name"), item("1"));
+        assertTrue(properties.covers(Collections.singleton("name")));
+        assertTrue(properties.covers(Collections.emptySet()));
+        assertFalse(properties.covers(new HashSet<>(Arrays.asList("name", "age"))));
+        assertFalse(properties.covers(null));
+        assertTrue(new CachedProperties(null, item("1")).covers(new HashSet<>(Arrays.asList("name", "age"))));
+
+        load("1", Collections.singleton("name"));
+        load("1", Collections.singleton("name"));
+        assertEquals(1, fetched.get());
+        // all of the keys are fetched again, and then answer the narrower query
+        load("1", null);
+        assertEquals(2, fetched.get());
+        load("1", Collections.singleton("name"));
+        assertEquals(2, fetched.get());
+    }
+
+    @Test
+    public void changedVerticesAreInvalidated() {
+        UniVertex vertex = item("1");
+
+        cache.put("1", new CachedProperties(null, vertex));
+        vertex.property("name", "renamed");
+        assertNull(cache.get("1"));
+
+        cache.put("1", new CachedProperties(null, vertex));
+        vertex.removeProperty(vertex.property("name"));
+        assertNull(cache.get("1"));
+
+        cache.put("1", new CachedProperties(null, vertex));
+        vertex.remove();
+        assertNull(cache.get("1"));
+    }
+
+    @Test
+    public void evictsByTheNumberOfValues() {
+        LruPropertyCache cache = new LruPropertyCache(10, 0);
+        for (int i = 0; i < 10; i++) {
+            CachedProperties properties = new CachedProperties(null, item(Integer.toString(i)));
+            // the name and the entry itself
+            assertEquals(2, properties.weight());
+            cache.put(i, properties);
+        }
+
+        int weight = 0;
+        for (int i = 0; i < 10; i++) {
+            CachedProperties properties = cache.get(i);
+            if (properties != null) weight += properties.weight();
+        }
+        assertTrue(weight <= 10);
+        assertTrue(cache.stats().evictionCount() >= 5);
+        assertNotNull(cache.get(9));
+    }
+
+    private DeferredVertex load(String id, Set<String> keys) {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put(T.id.getAccessor(), id);
+        properties.put(T.label.getAccessor(), "item");
+        DeferredVertex vertex = new DeferredVertex(properties, null, graph);
+        graph.getDeferredVertexLoader().load(new DeferredVertexQuery(Collections.singletonList(vertex), keys, null, null, null));
+        assertFalse(vertex.isDeferred());
+        return vertex;
+    }
+
+    private UniVertex item(String id) {
+        return ItemsControllerManager.item(id, graph);
+    }
+
+    /**
+     * Loads the properties of any vertex, named "item" and its id
+     */
+    public static class ItemsControllerManager implements ControllerManager, DeferredVertexQuery.DeferredVertexController {
+        private final UniGraph graph;
+
+        public ItemsControllerManager(UniGraph graph, Configuration configuration,
+                                      List<PropertySchema.PropertySchemaBuilder> thirdPartyPropertySchemas,
+                                      TraversalFilter filter) {
+            this.graph = graph;
+        }
+
+        private static UniVertex item(String id, UniGraph graph) {
+            Map<String, Object> properties = new HashMap<>();
+            properties.put(T.id.getAccessor(), id);
+            properties.put(T.label.getAccessor(), "item");
+            properties.put("name", "item" + id);
+            return new UniVertex(properties, null, graph);
+        }
+
+        @Override
+        public void fetchProperties(DeferredVertexQuery query) {
+            fetched.addAndGet(query.getVertices().size());
+            query.getVertices().forEach(deferred -> deferred.loadProperties(item(deferred.id().toString(), graph)));
+        }
+
+        @Override
+        public Set<UniQueryController> getControllers() {
+            return Collections.singleton(this);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
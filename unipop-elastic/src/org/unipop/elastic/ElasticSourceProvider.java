@@ -3,6 +3,7 @@ package org.unipop.elastic;
 import com.google.common.collect.Sets;
 import org.json.JSONException;
 import org.json.JSONObject;
+import org.unipop.elastic.common.BulkProcessor;
 import org.unipop.elastic.common.ElasticClient;
 import org.unipop.elastic.document.DocumentController;
 import org.unipop.elastic.document.DocumentSchema;
@@ -34,7 +35,9 @@ public class ElasticSourceProvider implements SourceProvider {
         this.graph = graph;
 
         List<String> addresses = ConversionUtils.toStringList(configuration, "addresses");
-        this.client = new ElasticClient(addresses);
+        this.client = new ElasticClient(addresses,
+                ElasticClient.Consistency.valueOf(configuration.optString("consistency", ElasticClient.Consistency.refresh.name())),
+                createBulkProcessor(configuration.optJSONObject("bulk")));
 
         Set<DocumentSchema> schemas = new HashSet<>();
         for(JSONObject json : getList(configuration, "vertices")) {
@@ -44,10 +47,23 @@ public class ElasticSourceProvider implements SourceProvider {
             schemas.add(createEdgeSchema(json));
         }
 
-        DocumentController documentController = new DocumentController(schemas, client, graph, traversalFilter);
+        DocumentController documentController = new DocumentController(schemas, client, graph, traversalFilter,
+                configuration.optInt("scrollSize", 1000), configuration.optString("scrollKeepAlive", "1m"));
         return Sets.newHashSet(documentController);
     }
 
+    protected BulkProcessor.Builder createBulkProcessor(JSONObject bulkJson) {
+        BulkProcessor.Builder builder = new BulkProcessor.Builder();
+        if (bulkJson == null) return builder;
+        if (bulkJson.has("actions")) builder.actions(bulkJson.optInt("actions"));
+        if (bulkJson.has("bytes")) builder.bytes(bulkJson.optLong("bytes"));
+        if (bulkJson.has("flushInterval")) builder.flushInterval(bulkJson.optLong("flushInterval"));
+        if (bulkJson.has("concurrentRequests")) builder.concurrentRequests(bulkJson.optInt("concurrentRequests"));
+        if (bulkJson.has("maxRetries")) builder.maxRetries(bulkJson.optInt("maxRetries"));
+        if (bulkJson.has("backoff")) builder.backoff(bulkJson.optLong("backoff"));
+        return builder;
+    }
+
     @Override
     public List<PropertySchema.PropertySchemaBuilder> providerBuilders() {
         return Arrays.asList(new IndexPropertySchema.Builder(), new InnerPropertySchema.Builder());
@@ -0,0 +1,331 @@
+package org.unipop.elastic.common;
+
+import com.google.gson.Gson;
+import io.searchbox.action.BulkableAction;
+import io.searchbox.core.Bulk;
+import io.searchbox.core.BulkResult;
+import io.searchbox.params.Parameters;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * Collects bulkable actions and sends them to ES in bulks.
+ * A bulk is sent once it reaches a number of actions, a payload size or an age.
+ * Actions are split to concurrentRequests lanes by their document id, each lane sends one bulk at a time in the
+ * background (0 sends them on the caller's thread), callers block while their lane's bulk is in flight.
+ * A lane takes its next batch only once its previous bulk is done, so the actions of a document reach ES in order.
+ * Items rejected by ES (429) are retried with exponential backoff, other failed items are reported to the failure listener.
+ */
+public class BulkProcessor {
+    private static final Logger logger = LoggerFactory.getLogger(BulkProcessor.class);
+
+    /**
+     * Notified of every action ES failed to execute
+     */
+    public interface FailureListener {
+        void onFailure(BulkableAction action, int status, String error);
+    }
+
+    private final ElasticClient client;
+    private final String refresh;
+    private final int actions;
+    private final long bytes;
+    private final long flushInterval;
+    private final int concurrentRequests;
+    private final int maxRetries;
+    private final long backoff;
+    private final Gson gson = new Gson();
+
+    private final Lane[] lanes;
+    private final ExecutorService executor;
+    private final ScheduledExecutorService scheduler;
+    private FailureListener failureListener = (action, status, error) ->
+            logger.error("failed to execute bulk item, action: {}, status: {}, error: {}", action, status, error);
+
+    private BulkProcessor(ElasticClient client, String refresh, Builder builder) {
+        this.client = client;
+        this.refresh = refresh;
+        this.actions = builder.actions;
+        this.bytes = builder.bytes;
+        this.flushInterval = builder.flushInterval;
+        this.concurrentRequests = builder.concurrentRequests;
+        this.maxRetries = builder.maxRetries;
+        this.backoff = builder.backoff;
+        this.lanes = new Lane[Math.max(1, concurrentRequests)];
+        for (int i = 0; i < lanes.length; i++) lanes[i] = new Lane();
+
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = concurrentRequests > 0 ? Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "unipop-elastic-bulk-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+        this.scheduler = flushInterval > 0 ? Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "unipop-elastic-bulk-flush");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+        if (scheduler != null)
+            scheduler.scheduleWithFixedDelay(this::flushExpired, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+    }
+
+    public void setFailureListener(FailureListener failureListener) {
+        this.failureListener = failureListener;
+    }
+
+    /**
+     * Adds an action, replacing a pending action on the same document
+     * @param key The document the action is for
+     * @param action The action
+     */
+    public void add(ElasticClient.DocumentIdentifier key, BulkableAction action) {
+        Lane lane = lanes.length == 1 ? lanes[0] : lanes[Math.floorMod(key.hashCode(), lanes.length)];
+        if (lane.add(key, action)) lane.send(this::isFull);
+    }
+
+    /**
+     * Sends the pending actions without waiting for them
+     */
+    public void flush() {
+        for (Lane lane : lanes) lane.send(batch -> true);
+    }
+
+    /**
+     * Waits for the bulks in flight, then sends the pending actions on the caller's thread
+     */
+    public void flushAndWait() {
+        for (Lane lane : lanes) lane.flushAndWait();
+    }
+
+    /**
+     * Whether any pending or in flight action writes to an index
+     * @param index An index name or pattern, empty or _all for all indices
+     * @return True if the index has writes that may not be visible yet
+     */
+    public boolean isPending(String index) {
+        List<Batch> batches = new ArrayList<>(lanes.length * 2);
+        for (Lane lane : lanes) lane.batches(batches);
+        if (index.isEmpty() || index.equals("_all"))
+            return batches.stream().anyMatch(pending -> !pending.indices.isEmpty());
+        if (!index.contains("*"))
+            return batches.stream().anyMatch(pending -> pending.indices.contains(index));
+        String pattern = index.replace(".", "\\.").replace("*", ".*");
+        return batches.stream().flatMap(pending -> pending.indices.stream()).anyMatch(pending -> pending.matches(pattern));
+    }
+
+    private void flushExpired() {
+        long now = System.currentTimeMillis();
+        for (Lane lane : lanes) {
+            if (lane.isExpired(now)) lane.send(batch -> now - batch.created >= flushInterval);
+        }
+    }
+
+    private boolean isFull(Batch batch) {
+        return batch.actions.size() >= actions || (bytes > 0 && batch.bytes >= bytes);
+    }
+
+    private void execute(Batch pending) {
+        List<BulkableAction> actions = new ArrayList<>(pending.actions.values());
+        for (int attempt = 0; !actions.isEmpty(); attempt++) {
+            Bulk.Builder builder = new Bulk.Builder().addAction(actions);
+            if (refresh != null) builder.setParameter(Parameters.REFRESH, refresh);
+            BulkResult result = client.execute(builder.build());
+
+            List<BulkableAction> rejected = new ArrayList<>();
+            if (result == null || result.getResponseCode() == 429) {
+                rejected = actions;
+            } else if (result.getItems().size() != actions.size()) {
+                actions.forEach(action -> failureListener.onFailure(action, result.getResponseCode(), result.getErrorMessage()));
+                return;
+            } else {
+                List<BulkResult.BulkResultItem> items = result.getItems();
+                for (int i = 0; i < items.size(); i++) {
+                    BulkResult.BulkResultItem item = items.get(i);
+                    if (item.status == 429) rejected.add(actions.get(i));
+                    else if (item.error != null) failureListener.onFailure(actions.get(i), item.status, item.error);
+                }
+            }
+
+            if (rejected.isEmpty()) return;
+            if (attempt >= maxRetries) {
+                String error = "bulk rejected after " + (attempt + 1) + " attempts";
+                rejected.forEach(action -> failureListener.onFailure(action, 429, error));
+                return;
+            }
+            long delay = backoff << attempt;
+            logger.debug("retrying {} rejected bulk items in {}ms", rejected.size(), delay);
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                rejected.forEach(action -> failureListener.onFailure(action, 429, "interrupted while retrying"));
+                return;
+            }
+            actions = rejected;
+        }
+    }
+
+    /**
+     * Sends the pending actions, waits for the bulks in flight and stops the background threads
+     */
+    public void close() {
+        if (scheduler != null) scheduler.shutdownNow();
+        flushAndWait();
+        if (executor != null) executor.shutdown();
+    }
+
+    /**
+     * The pending batch of a share of the documents, and the bulk of them in flight
+     */
+    private class Lane {
+        // fair, so batches leave in the order they were asked to
+        private final Semaphore permit = new Semaphore(1, true);
+        private Batch batch = new Batch();
+        private volatile Batch inFlight;
+
+        /**
+         * @return True if the batch is full
+         */
+        private synchronized boolean add(ElasticClient.DocumentIdentifier key, BulkableAction action) {
+            batch.add(key, action);
+            return isFull(batch);
+        }
+
+        private synchronized Batch take(Predicate<Batch> when) {
+            if (batch.actions.isEmpty() || !when.test(batch)) return null;
+            Batch taken = batch;
+            batch = new Batch();
+            return taken;
+        }
+
+        private synchronized boolean isExpired(long now) {
+            return !batch.actions.isEmpty() && now - batch.created >= flushInterval;
+        }
+
+        private synchronized void batches(List<Batch> batches) {
+            batches.add(batch);
+            Batch inFlight = this.inFlight;
+            if (inFlight != null) batches.add(inFlight);
+        }
+
+        /**
+         * Waits for the bulk in flight, and sends the batch in the background if it is still due
+         * @param when Whether the batch is due
+         */
+        private void send(Predicate<Batch> when) {
+            permit.acquireUninterruptibly();
+            // the batch is taken only after the previous bulk is done, another thread may have sent it meanwhile
+            Batch pending = take(when);
+            if (pending == null) {
+                permit.release();
+                return;
+            }
+            inFlight = pending;
+            if (executor == null || executor.isShutdown()) {
+                run(pending);
+                return;
+            }
+            try {
+                executor.submit(() -> run(pending));
+            } catch (RejectedExecutionException e) {
+                run(pending);
+            }
+        }
+
+        private void flushAndWait() {
+            permit.acquireUninterruptibly();
+            Batch pending = take(batch -> true);
+            if (pending == null) {
+                permit.release();
+                return;
+            }
+            inFlight = pending;
+            run(pending);
+        }
+
+        private void run(Batch pending) {
+            try {
+                execute(pending);
+            } finally {
+                inFlight = null;
+                permit.release();
+            }
+        }
+    }
+
+    private class Batch {
+        private final Map<ElasticClient.DocumentIdentifier, BulkableAction> actions = new LinkedHashMap<>();
+        private final Set<String> indices = new HashSet<>();
+        private final long created = System.currentTimeMillis();
+        private long bytes;
+
+        private void add(ElasticClient.DocumentIdentifier key, BulkableAction action) {
+            actions.put(key, action);
+            if (action.getIndex() != null) indices.add(action.getIndex());
+            if (BulkProcessor.this.bytes > 0) {
+                // the schemas hand over their documents already serialized, a string payload is returned as is
+                String data = action.getData(gson);
+                if (data != null) bytes += data.length();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "BulkProcessor{" +
+                "refresh='" + refresh + '\'' +
+                ", actions=" + actions +
+                ", bytes=" + bytes +
+                ", flushInterval=" + flushInterval +
+                ", concurrentRequests=" + concurrentRequests +
+                '}';
+    }
+
+    public static class Builder {
+        private int actions = 500;
+        private long bytes = 5 * 1024 * 1024;
+        private long flushInterval = 1000;
+        private int concurrentRequests = 1;
+        private int maxRetries = 3;
+        private long backoff = 100;
+
+        public Builder actions(int actions) {
+            this.actions = actions;
+            return this;
+        }
+
+        public Builder bytes(long bytes) {
+            this.bytes = bytes;
+            return this;
+        }
+
+        public Builder flushInterval(long flushInterval) {
+            this.flushInterval = flushInterval;
+            return this;
+        }
+
+        public Builder concurrentRequests(int concurrentRequests) {
+            this.concurrentRequests = concurrentRequests;
+            return this;
+        }
+
+        public Builder maxRetries(int maxRetries) {
+            this.maxRetries = maxRetries;
+            return this;
+        }
+
+        public Builder backoff(long backoff) {
+            this.backoff = backoff;
+            return this;
+        }
+
+        public BulkProcessor build(ElasticClient client, String refresh) {
+            return new BulkProcessor(client, refresh, this);
+        }
+    }
+}
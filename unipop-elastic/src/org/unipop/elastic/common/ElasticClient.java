@@ -7,7 +7,6 @@ import io.searchbox.client.JestClient;
 import io.searchbox.client.JestClientFactory;
 import io.searchbox.client.JestResult;
 import io.searchbox.client.config.HttpClientConfig;
-import io.searchbox.core.Bulk;
 import io.searchbox.indices.CreateIndex;
 import io.searchbox.indices.IndicesExists;
 import io.searchbox.indices.mapping.PutMapping;
@@ -17,24 +16,43 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.util.HashMap;
+import java.util.Collection;
 import java.util.List;
-import java.util.Map;
 
 public class ElasticClient {
 
+    /**
+     * How pending writes are made visible to searches:
+     * refresh - bulks are sent with refresh=true and flushed before every search (read your writes, the default),
+     * wait_for - bulks are sent with refresh=wait_for and flushed only before searches of indices with pending writes,
+     * async - bulks are sent without a refresh, searches only trigger a background flush
+     */
+    public enum Consistency {
+        refresh,
+        wait_for,
+        async
+    }
+
     Gson gson = new Gson();
     private final static Logger logger = LoggerFactory.getLogger(ElasticClient.class);
 
-    private Map<DocumentIdentifier, BulkableAction> bulk;
+    private final Consistency consistency;
+    private final BulkProcessor bulkProcessor;
     String STRING_NOT_ANALYZED = "{\"dynamic_templates\" : [{\"not_analyzed\" : {\"match\" : \"*\",\"match_mapping_type\" : \"string\", \"mapping\" : {\"type\" : \"keyword\",\"index\" : \"not_analyzed\", \"fielddata\": true}}}]}";
 
     private final JestClient client;
 
     public ElasticClient(List<String> addresses) {
+        this(addresses, Consistency.refresh, new BulkProcessor.Builder());
+    }
+
+    public ElasticClient(List<String> addresses, Consistency consistency, BulkProcessor.Builder bulk) {
+        this.consistency = consistency;
         JestClientFactory factory = new JestClientFactory();
         factory.setHttpClientConfig(new HttpClientConfig.Builder(addresses).multiThreaded(true).build());
         this.client = factory.getObject();
+        this.bulkProcessor = bulk.build(this, consistency.equals(Consistency.refresh) ? "true" :
+                consistency.equals(Consistency.wait_for) ? "wait_for" : null);
     }
 
     public void validateIndex(String indexName) {
@@ -71,25 +89,42 @@ public class ElasticClient {
     }
 
     public void bulk(Element element, BulkableAction action) {
-        if(bulk != null && bulk.size() >= 500) refresh();
-        if(bulk == null) bulk = new HashMap<>();
         DocumentIdentifier documentIdentifier = new DocumentIdentifier(element, action.getId(), action.getType(), action.getIndex());
-        bulk.put(documentIdentifier, action);
+        bulkProcessor.add(documentIdentifier, action);
     }
 
     public void refresh() {
-        if(bulk != null) {
-            Bulk bulkAction = new Bulk.Builder().addAction(this.bulk.values()).refresh(true).build();
-            JestResult res = execute(bulkAction);
-            bulk = null;
-        }
+        bulkProcessor.flushAndWait();
 //        Refresh refresh = new Refresh.Builder().refresh(true).allowNoIndices(true).build();
 //        execute(refresh);
     }
 
+    /**
+     * Makes pending writes visible to a search according to the consistency mode
+     * @param indices The indices (or index patterns) the search reads
+     */
+    public void refresh(Collection<String> indices) {
+        switch (consistency) {
+            case refresh:
+                refresh();
+                break;
+            case wait_for:
+                if (indices.stream().anyMatch(bulkProcessor::isPending)) refresh();
+                break;
+            case async:
+                bulkProcessor.flush();
+                break;
+        }
+    }
+
+    public BulkProcessor getBulkProcessor() {
+        return bulkProcessor;
+    }
+
     public <T extends JestResult> T execute(Action<T> action) {
         try {
-            logger.debug("executing action: {}, payload: {}", action, action.getData(gson));
+            if (logger.isDebugEnabled())
+                logger.debug("executing action: {}, payload: {}", action, action.getData(gson));
             T result = client.execute(action);
             if (!result.isSucceeded())
                 logger.error(result.getErrorMessage());
@@ -102,6 +137,7 @@ public class ElasticClient {
 
     public void close() {
         logger.info("shutting down client, client: {}", client);
+        bulkProcessor.close();
         client.shutdownClient();
     }
 
@@ -1,8 +1,12 @@
 package org.unipop.elastic.document;
 
+import com.google.common.collect.Iterators;
 import com.google.gson.Gson;
+import com.google.gson.JsonObject;
 import io.searchbox.action.BulkableAction;
+import io.searchbox.client.JestResult;
 import io.searchbox.core.*;
+import io.searchbox.params.Parameters;
 import org.apache.tinkerpop.gremlin.process.traversal.Order;
 import org.apache.tinkerpop.gremlin.process.traversal.util.MutableMetrics;
 import org.apache.tinkerpop.gremlin.process.traversal.util.TraversalMetrics;
@@ -17,6 +21,12 @@ import org.javatuples.Pair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.unipop.elastic.common.ElasticClient;
+import org.unipop.process.group.traversal.SemanticKeyTraversal;
+import org.unipop.process.group.traversal.SemanticReducerTraversal;
+import org.unipop.query.aggregation.AggregateQuery;
+import org.unipop.query.aggregation.AggregateVertexQuery;
+import org.unipop.query.aggregation.ReduceQuery;
+import org.unipop.query.aggregation.ReduceVertexQuery;
 import org.unipop.query.controller.SimpleController;
 import org.unipop.query.mutation.AddEdgeQuery;
 import org.unipop.query.mutation.AddVertexQuery;
@@ -47,7 +57,8 @@ import java.util.stream.Stream;
 //import org.elasticsearch.index.engine.DocumentAlreadyExistsException;
 
 
-public class DocumentController implements SimpleController {
+public class DocumentController implements SimpleController, ReduceQuery.ReduceController, ReduceVertexQuery.ReduceVertexController,
+        AggregateQuery.AggregateController, AggregateVertexQuery.AggregateVertexController {
     private static final Logger logger = LoggerFactory.getLogger(DocumentController.class);
 
     private final ElasticClient client;
@@ -55,16 +66,33 @@ public class DocumentController implements SimpleController {
 
     private Set<? extends DocumentVertexSchema> vertexSchemas = new HashSet<>();
     private Set<? extends DocumentEdgeSchema> edgeSchemas = new HashSet<>();
+    private Set<DocumentSchema> countableSchemas;
 
     private TraversalFilter traversalFilter;
 
+    private final int scrollSize;
+    private final String scrollKeepAlive;
+
     public DocumentController(Set<DocumentSchema> schemas, ElasticClient client, UniGraph graph, TraversalFilter traversalFilter) {
+        this(schemas, client, graph, traversalFilter, 1000, "1m");
+    }
+
+    /**
+     * @param scrollSize Page size of searches without a limit, which are streamed with the scroll api
+     * @param scrollKeepAlive How long elastic keeps a scroll context alive between pages
+     */
+    public DocumentController(Set<DocumentSchema> schemas, ElasticClient client, UniGraph graph, TraversalFilter traversalFilter,
+                              int scrollSize, String scrollKeepAlive) {
         this.client = client;
         this.graph = graph;
+        this.scrollSize = scrollSize;
+        this.scrollKeepAlive = scrollKeepAlive;
 
         this.traversalFilter = traversalFilter;
 
         Set<DocumentSchema> documentSchemas = collectSchemas(schemas);
+        // child schemas share their parent's documents, a document doesn't hold exactly one of their elements
+        this.countableSchemas = new HashSet<>(schemas);
         this.vertexSchemas = documentSchemas.stream().filter(schema -> schema instanceof DocumentVertexSchema)
                 .map(schema -> ((DocumentVertexSchema) schema)).collect(Collectors.toSet());
         this.edgeSchemas = documentSchemas.stream().filter(schema -> schema instanceof DocumentEdgeSchema)
@@ -132,6 +160,30 @@ public class DocumentController implements SimpleController {
         });
     }
 
+    @Override
+    public <E extends Element> Long count(ReduceQuery<E> uniQuery) {
+        Set<? extends DocumentSchema<E>> schemas = getSchemas(uniQuery.getReturnType());
+        return count(uniQuery, schemas, schema -> schema.getSearch(uniQuery), schema -> schema.getCount(uniQuery));
+    }
+
+    @Override
+    public Long count(ReduceVertexQuery uniQuery) {
+        return count(uniQuery, edgeSchemas, schema -> schema.getSearch(uniQuery), schema -> schema.getCount(uniQuery));
+    }
+
+    @Override
+    public <E extends Element> Map<Object, Object> aggregate(AggregateQuery<E> uniQuery) {
+        Set<? extends DocumentSchema<E>> schemas = getSchemas(uniQuery.getReturnType());
+        return aggregate(uniQuery, uniQuery.getKey(), uniQuery.getReduce(), schemas,
+                schema -> schema.getSearch(uniQuery), schema -> schema.getCount(uniQuery));
+    }
+
+    @Override
+    public Map<Object, Object> aggregate(AggregateVertexQuery uniQuery) {
+        return aggregate(uniQuery, uniQuery.getKey(), uniQuery.getReduce(), edgeSchemas,
+                schema -> schema.getSearch(uniQuery), schema -> schema.getCount(uniQuery));
+    }
+
     @Override
     public Edge addEdge(AddEdgeQuery uniQuery) {
         UniEdge edge = new UniEdge(uniQuery.getProperties(), uniQuery.getOutVertex(), uniQuery.getInVertex(), null, graph);
@@ -189,9 +241,9 @@ public class DocumentController implements SimpleController {
         }
     }
 
-    private <E extends Element, S extends DocumentSchema<E>> Pair<S, SearchSourceBuilder> createSearchBuilder(Map.Entry<S, QueryBuilder> kv, SearchQuery<E> query) {
+    private <E extends Element, S extends DocumentSchema<E>> Pair<S, SearchSourceBuilder> createSearchBuilder(Map.Entry<S, QueryBuilder> kv, SearchQuery<E> query, int limit) {
         SearchSourceBuilder searchSourceBuilder = new SearchSourceBuilder().query(kv.getValue())
-                .size(query.getLimit() == -1 ? 10000 : query.getLimit());
+                .size(limit == -1 ? scrollSize : limit);
         if (query.getPropertyKeys() == null) searchSourceBuilder.fetchSource(true);
         else {
             Set<String> fields = kv.getKey().toFields(query.getPropertyKeys());
@@ -217,13 +269,17 @@ public class DocumentController implements SimpleController {
                 }
             });
         }
+        // unordered scrolls are cheapest in index order
+        if (limit == -1 && (orders == null || orders.isEmpty()))
+            searchSourceBuilder.sort("_doc");
         return Pair.with(kv.getKey(), searchSourceBuilder);
     }
 
-    private <E extends Element, S extends DocumentSchema<E>> Pair<S, Search> createSearch(Pair<S, SearchSourceBuilder> kv, SearchQuery<E> query) {
+    private <E extends Element, S extends DocumentSchema<E>> Pair<S, Search> createSearch(Pair<S, SearchSourceBuilder> kv, SearchQuery<E> query, int limit) {
         Search.Builder builder = new Search.Builder(kv.getValue1().toString().replace("\n", ""))
                 .ignoreUnavailable(true).allowNoIndices(true);
         kv.getValue0().getIndex().getIndex(query.getPredicates()).forEach(builder::addIndex);
+        if (limit == -1) builder.setParameter(Parameters.SCROLL, scrollKeepAlive);
         return Pair.with(kv.getValue0(), builder.build());
     }
 
@@ -234,23 +290,170 @@ public class DocumentController implements SimpleController {
         if (schemas.size() == 0) return EmptyIterator.instance();
         logger.debug("Preparing search. Schemas: {}", schemas);
 
-        client.refresh();
-
-
+        // the schemas drop the hits their predicates don't match, a search is only cut at the limit by elastic
+        // when they translate exactly. otherwise it is scrolled until the limit of hits match.
+        // a child schema's element is repeated in many documents, its hits are never cut.
+        boolean unique = countableSchemas.containsAll(schemas.keySet());
+        int limit = unique && schemas.keySet().stream().allMatch(schema -> schema.isExact(query.getPredicates())) ?
+                query.getLimit() : -1;
         Map<Search, List<Pair<S, Search>>> groupedQueries = schemas.entrySet().parallelStream().filter(Objects::nonNull)
-                .map(kv -> createSearchBuilder(kv, query))
-                .map(kv -> createSearch(kv, query))
+                .map(kv -> createSearchBuilder(kv, query, limit))
+                .map(kv -> createSearch(kv, query, limit))
                 .collect(Collectors.groupingBy(Pair::getValue1
                 ));
 
-        return groupedQueries.entrySet().stream().flatMap(entry -> {
-            Search search = entry.getKey();
-            List<S> searchSchemas = entry.getValue().stream().map(Pair::getValue0).collect(Collectors.toList());
-            SearchResult results = client.execute(search);
-            if (results == null || !results.isSucceeded()) return Stream.empty();
-            return searchSchemas.stream().map(s -> s.parseResults(results.getJsonString(), query));
-        }).flatMap(Collection::stream).iterator();
+        refresh(groupedQueries.keySet());
+
+        if (limit == -1)
+            return Iterators.concat(groupedQueries.entrySet().stream()
+                    .map(entry -> new ScrollIterator<>(entry.getKey(), schemas(entry.getValue()), query))
+                    .map(scroll -> query.getLimit() == -1 || !unique ? scroll : Iterators.limit(scroll, query.getLimit()))
+                    .iterator());
+
+        if (groupedQueries.size() == 1) {
+            Map.Entry<Search, List<Pair<S, Search>>> entry = groupedQueries.entrySet().iterator().next();
+            SearchResult results = client.execute(entry.getKey());
+            if (results == null || !results.isSucceeded()) return EmptyIterator.instance();
+            return parseResults(schemas(entry.getValue()), results.getJsonString(), query);
+        }
+
+        // one round trip for all the schemas, responses come back in the order of the searches
+        List<Map.Entry<Search, List<Pair<S, Search>>>> entries = new ArrayList<>(groupedQueries.entrySet());
+        MultiSearch multiSearch = new MultiSearch.Builder(entries.stream().map(Map.Entry::getKey)
+                .collect(Collectors.toList())).build();
+        MultiSearchResult results = client.execute(multiSearch);
+        if (results == null || !results.isSucceeded()) return EmptyIterator.instance();
+        List<MultiSearchResult.MultiSearchResponse> responses = results.getResponses();
+
+        List<Iterator<E>> elements = new ArrayList<>(responses.size());
+        for (int i = 0; i < entries.size() && i < responses.size(); i++) {
+            MultiSearchResult.MultiSearchResponse response = responses.get(i);
+            if (valid(response))
+                elements.add(parseResults(schemas(entries.get(i).getValue()), response.searchResult.getJsonString(), query));
+        }
+        return Iterators.concat(elements.iterator());
+    }
+
+    /**
+     * Counts the documents of every schema with a size 0 search, all the schemas in one round trip
+     * @return The total of the hits, or null if one of the schemas can't be counted
+     */
+    private <E extends Element, S extends DocumentSchema<E>> Long count(SearchQuery<E> query, Set<? extends S> schemas,
+                                                                        Function<S, QueryBuilder> toSearch,
+                                                                        Function<S, QueryBuilder> toCount) {
+        Map<S, SearchSourceBuilder> sources = getReduceSources(query, schemas, toSearch, schema -> {
+            QueryBuilder queryBuilder = toCount.apply(schema);
+            return queryBuilder == null ? null : new SearchSourceBuilder().query(queryBuilder).size(0);
+        });
+        if (sources == null) return null;
+        if (sources.size() == 0) return 0L;
+        logger.debug("Counting documents. Searches: {}", sources.values());
+
+        List<MultiSearchResult.MultiSearchResponse> responses = reduce(query, sources);
+        if (responses == null) return null;
+        long count = 0;
+        for (MultiSearchResult.MultiSearchResponse response : responses) {
+            if (response.searchResult.getTotal() == null) return null;
+            count += response.searchResult.getTotal();
+        }
+        return count;
+    }
+
+    /**
+     * Aggregates the documents of every schema with a size 0 search, all the schemas in one round trip
+     * @return The reduced value of every key, or null if one of the schemas can't be aggregated
+     */
+    private <E extends Element, S extends DocumentSchema<E>> Map<Object, Object> aggregate(SearchQuery<E> query, SemanticKeyTraversal key,
+                                                                                           SemanticReducerTraversal reduce, Set<? extends S> schemas,
+                                                                                           Function<S, QueryBuilder> toSearch,
+                                                                                           Function<S, QueryBuilder> toCount) {
+        Map<S, SearchSourceBuilder> sources = getReduceSources(query, schemas, toSearch, schema ->
+                schema.getAggregate(toCount.apply(schema), key, reduce));
+        if (sources == null) return null;
+        Map<Object, Object> aggregate = new HashMap<>();
+        if (sources.size() == 0) return aggregate;
+        logger.debug("Aggregating documents. Searches: {}", sources.values());
+
+        List<MultiSearchResult.MultiSearchResponse> responses = reduce(query, sources);
+        if (responses == null) return null;
+        Iterator<S> schemaIterator = sources.keySet().iterator();
+        for (MultiSearchResult.MultiSearchResponse response : responses) {
+            Map<Object, Object> partial = schemaIterator.next().parseAggregate(response.searchResult.getJsonString(), key, reduce);
+            if (partial == null) return null;
+            reduce.merge(aggregate, partial);
+        }
+        return aggregate;
+    }
+
+    /**
+     * @return The size 0 search of the schema the query may return elements from, or null if it can't be reduced
+     * exactly (its hits are filtered after the search) or more than one schema may return the same element
+     */
+    private <E extends Element, S extends DocumentSchema<E>> Map<S, SearchSourceBuilder> getReduceSources(SearchQuery<E> query, Set<? extends S> schemas,
+                                                                                                          Function<S, QueryBuilder> toSearch,
+                                                                                                          Function<S, SearchSourceBuilder> toSource) {
+        Map<S, SearchSourceBuilder> sources = new LinkedHashMap<>();
+        for (S schema : schemas) {
+            if (!this.traversalFilter.filter(schema, query.getTraversal())) continue;
+            if (toSearch.apply(schema) == null) continue;
+            SearchSourceBuilder source = countableSchemas.contains(schema) && schema.isExact(query.getPredicates()) ?
+                    toSource.apply(schema) : null;
+            if (source == null) return null;
+            sources.put(schema, source);
+        }
+        // the elements of different schemas may be the same, UniGraphStep returns them once
+        return sources.size() > 1 ? null : sources;
+    }
+
+    /**
+     * Runs the size 0 searches of the schemas in one multi search
+     * @return A response for every search, in the same order, or null if one of them failed
+     */
+    private <S extends DocumentSchema<?>> List<MultiSearchResult.MultiSearchResponse> reduce(SearchQuery<?> query, Map<S, SearchSourceBuilder> sources) {
+        List<Search> searches = new ArrayList<>(sources.size());
+        sources.forEach((schema, source) -> {
+            Search.Builder builder = new Search.Builder(source.toString().replace("\n", ""))
+                    .ignoreUnavailable(true).allowNoIndices(true);
+            schema.getIndex().getIndex(query.getPredicates()).forEach(builder::addIndex);
+            searches.add(builder.build());
+        });
 
+        refresh(searches);
+        MultiSearchResult results = client.execute(new MultiSearch.Builder(searches).build());
+        if (results == null || !results.isSucceeded()) return null;
+        List<MultiSearchResult.MultiSearchResponse> responses = results.getResponses();
+        if (responses.size() != searches.size()) return null;
+        for (MultiSearchResult.MultiSearchResponse response : responses) {
+            if (!valid(response)) return null;
+        }
+        return responses;
+    }
+
+    private void refresh(Collection<Search> searches) {
+        client.refresh(searches.stream()
+                .map(search -> search.getIndex() == null ? "" : search.getIndex())
+                .flatMap(index -> Stream.of(index.split(",")))
+                .collect(Collectors.toSet()));
+    }
+
+    private <S> List<S> schemas(List<Pair<S, Search>> searches) {
+        return searches.stream().map(Pair::getValue0).collect(Collectors.toList());
+    }
+
+    /**
+     * Lazily parses a search response, each hit is read once and handed to every schema of the search
+     */
+    private <E extends Element, S extends DocumentSchema<E>> Iterator<E> parseResults(List<S> schemas, String json, SearchQuery<E> query) {
+        Iterator<Document> hits = new HitsIterator(json);
+        if (schemas.size() == 1) {
+            S schema = schemas.get(0);
+            return Iterators.concat(Iterators.transform(hits, document -> schema.parseResults(document, query).iterator()));
+        }
+        // schemas add their own fields to the document, so each one gets a copy
+        return Iterators.concat(Iterators.transform(hits, document -> schemas.stream()
+                .flatMap(schema -> schema.parseResults(new Document(document.getIndex(), document.getType(),
+                        document.getId(), new HashMap<>(document.getFields())), query).stream())
+                .iterator()));
     }
 
     private boolean valid(MultiSearchResult.MultiSearchResponse multiSearchResponse) {
@@ -285,6 +488,60 @@ public class DocumentController implements SimpleController {
 
     //endregion
 
+    /**
+     * Streams the results of a search without a limit page by page with the scroll api,
+     * so only one page is held in memory and the first results are available after the first page.
+     * The scroll context is cleared after the last page, an abandoned scroll expires after scrollKeepAlive.
+     */
+    private class ScrollIterator<E extends Element, S extends DocumentSchema<E>> implements Iterator<E> {
+        private final Search search;
+        private final List<S> schemas;
+        private final SearchQuery<E> query;
+        private String scrollId;
+        private Iterator<E> page = EmptyIterator.instance();
+        private boolean done;
+
+        private ScrollIterator(Search search, List<S> schemas, SearchQuery<E> query) {
+            this.search = search;
+            this.schemas = schemas;
+            this.query = query;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!page.hasNext() && !done) nextPage();
+            return page.hasNext();
+        }
+
+        @Override
+        public E next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            return page.next();
+        }
+
+        private void nextPage() {
+            JestResult result = scrollId == null ? client.execute(search) :
+                    client.execute(new SearchScroll.Builder(scrollId, scrollKeepAlive).build());
+            if (result == null || !result.isSucceeded()) {
+                close();
+                return;
+            }
+            JsonObject json = result.getJsonObject();
+            if (json.has("_scroll_id")) scrollId = json.get("_scroll_id").getAsString();
+            int hits = json.getAsJsonObject("hits").getAsJsonArray("hits").size();
+            page = parseResults(schemas, result.getJsonString(), query);
+            if (hits < scrollSize) close();
+        }
+
+        private void close() {
+            done = true;
+            if (scrollId != null) {
+                client.execute(new ClearScroll.Builder().addScrollId(scrollId).build());
+                scrollId = null;
+            }
+        }
+    }
+
     private class SearchCollector<K extends DocumentSchema, V extends QueryBuilder> implements Collector<K, Map<K, V>, Map<K, V>> {
 
         private final Function<? super K, ? extends V> valueMapper;
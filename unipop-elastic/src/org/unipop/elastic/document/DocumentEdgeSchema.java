@@ -16,4 +16,13 @@ public interface DocumentEdgeSchema extends DocumentSchema<Edge>, EdgeSchema {
      * @return A query builder
      */
     QueryBuilder getSearch(SearchVertexQuery query);
+
+    /**
+     * Converts a Search vertex query to a query builder that matches exactly one document per edge
+     * @param query The search vertex query
+     * @return A query builder, or null if the documents can't be counted as edges
+     */
+    default QueryBuilder getCount(SearchVertexQuery query) {
+        return null;
+    }
 }
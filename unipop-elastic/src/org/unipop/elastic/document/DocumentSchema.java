@@ -6,12 +6,17 @@ import io.searchbox.core.DocumentResult;
 
 import org.apache.tinkerpop.gremlin.structure.Element;
 import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
 import org.unipop.elastic.document.schema.property.IndexPropertySchema;
+import org.unipop.process.group.traversal.SemanticKeyTraversal;
+import org.unipop.process.group.traversal.SemanticReducerTraversal;
 import org.unipop.query.predicates.PredicateQuery;
 import org.unipop.query.search.SearchQuery;
 import org.unipop.schema.element.ElementSchema;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
  * A schema that is represented by a document in ES.
@@ -32,6 +37,37 @@ public interface DocumentSchema<E extends Element> extends ElementSchema<E>{
      */
     QueryBuilder getSearch(SearchQuery<E> query);
 
+    /**
+     * Converts a Search query to a Query builder that matches exactly one document per element
+     * @param query A search query
+     * @return A query builder, or null if the documents can't be counted as elements
+     */
+    default QueryBuilder getCount(SearchQuery<E> query) {
+        return null;
+    }
+
+    /**
+     * Groups the documents matched by a count query by a key and reduces every group
+     * @param query A query matching exactly one document per element, as returned by getCount
+     * @param key The key elements are grouped by
+     * @param reduce The reduction of every group
+     * @return A size 0 search with the aggregations, or null if the schema can't aggregate the elements
+     */
+    default SearchSourceBuilder getAggregate(QueryBuilder query, SemanticKeyTraversal key, SemanticReducerTraversal reduce) {
+        return null;
+    }
+
+    /**
+     * Returns the reduced value of every key
+     * @param result The result of the aggregate search
+     * @param key The key elements are grouped by
+     * @param reduce The reduction of every group
+     * @return A map of keys to their reduced values, or null if the result can't be converted exactly
+     */
+    default Map<Object, Object> parseAggregate(String result, SemanticKeyTraversal key, SemanticReducerTraversal reduce) {
+        return null;
+    }
+
     /**
      * Return a list of elements
      * @param result The result of the ES query
@@ -40,6 +76,14 @@ public interface DocumentSchema<E extends Element> extends ElementSchema<E>{
      */
     List<E> parseResults(String result, PredicateQuery query);
 
+    /**
+     * Return the elements of a single hit
+     * @param document A hit of the ES query
+     * @param query The UniQuery itself
+     * @return The elements of the hit that pass the query's predicates
+     */
+    Collection<E> parseResults(Document document, PredicateQuery query);
+
     /**
      * Returns an action to insert or update a document
      * @param element The element to add or update
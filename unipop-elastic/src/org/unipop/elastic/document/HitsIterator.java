@@ -0,0 +1,116 @@
+package org.unipop.elastic.document;
+
+import org.apache.tinkerpop.shaded.jackson.core.JsonParser;
+import org.apache.tinkerpop.shaded.jackson.core.JsonToken;
+import org.apache.tinkerpop.shaded.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads the hits of an ES search response one at a time with a streaming parser,
+ * without building a tree of the whole response.
+ */
+public class HitsIterator implements Iterator<Document> {
+    private static final Logger logger = LoggerFactory.getLogger(HitsIterator.class);
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private JsonParser parser;
+    private Document next;
+
+    public HitsIterator(String response) {
+        try {
+            this.parser = mapper.getFactory().createParser(response);
+            if (!seekHits()) close();
+        } catch (IOException e) {
+            logger.error("failed to parse search response", e);
+            close();
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null && parser != null) {
+            try {
+                next = readHit();
+            } catch (IOException e) {
+                logger.error("failed to parse search hit", e);
+                close();
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public Document next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        Document document = next;
+        next = null;
+        return document;
+    }
+
+    /**
+     * Moves the parser into the hits.hits array
+     */
+    private boolean seekHits() throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) return false;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if (field.equals("hits") && token == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String innerField = parser.getCurrentName();
+                    if (parser.nextToken() == JsonToken.START_ARRAY && innerField.equals("hits")) return true;
+                    parser.skipChildren();
+                }
+                return false;
+            }
+            parser.skipChildren();
+        }
+        return false;
+    }
+
+    private Document readHit() throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            close();
+            return null;
+        }
+        String index = null, type = null, id = null;
+        Map<String, Object> source = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            switch (field) {
+                case "_index":
+                    index = parser.getText();
+                    break;
+                case "_type":
+                    type = parser.getText();
+                    break;
+                case "_id":
+                    id = parser.getText();
+                    break;
+                case "_source":
+                    if (token == JsonToken.START_OBJECT) source = parser.readValueAs(Map.class);
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        return new Document(index, type, id, source != null ? source : new HashMap<>());
+    }
+
+    private void close() {
+        if (parser == null) return;
+        try {
+            parser.close();
+        } catch (IOException ignored) {
+        }
+        parser = null;
+    }
+}
@@ -1,5 +1,7 @@
 package org.unipop.elastic.document.schema;
 
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
 import io.searchbox.action.BulkableAction;
 import io.searchbox.core.Delete;
 import io.searchbox.core.DocumentResult;
@@ -7,24 +9,36 @@ import io.searchbox.core.Index;
 import org.apache.commons.lang3.ObjectUtils;
 import org.apache.tinkerpop.gremlin.process.traversal.Order;
 import org.apache.tinkerpop.gremlin.structure.Element;
-import org.apache.tinkerpop.shaded.jackson.databind.JsonNode;
 import org.apache.tinkerpop.shaded.jackson.databind.ObjectMapper;
 import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.aggregations.AggregationBuilder;
+import org.elasticsearch.search.aggregations.AggregationBuilders;
+import org.elasticsearch.search.aggregations.bucket.terms.TermsAggregationBuilder;
 import org.elasticsearch.search.builder.SearchSourceBuilder;
 import org.elasticsearch.search.sort.SortOrder;
 import org.javatuples.Pair;
 import org.json.JSONException;
 import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.unipop.elastic.common.ElasticClient;
 import org.unipop.elastic.common.FilterHelper;
 import org.unipop.elastic.document.Document;
 import org.unipop.elastic.document.DocumentSchema;
+import org.unipop.elastic.document.HitsIterator;
 import org.unipop.elastic.document.schema.property.IndexPropertySchema;
+import org.unipop.process.group.traversal.SemanticKeyTraversal;
+import org.unipop.process.group.traversal.SemanticReducerTraversal;
+import org.unipop.query.predicates.PredicateEvaluator;
 import org.unipop.query.predicates.PredicateQuery;
 import org.unipop.query.predicates.PredicatesHolder;
 import org.unipop.query.search.SearchQuery;
 import org.unipop.schema.element.AbstractElementSchema;
+import org.unipop.schema.property.FieldPropertySchema;
+import org.unipop.schema.property.PropertySchema;
+import org.unipop.schema.property.StaticPropertySchema;
+import org.unipop.schema.property.type.PropertyType;
 import org.unipop.structure.UniGraph;
 import org.unipop.util.PropertySchemaFactory;
 
@@ -32,6 +46,13 @@ import java.io.IOException;
 import java.util.*;
 
 public abstract class AbstractDocSchema<E extends Element> extends AbstractElementSchema<E> implements DocumentSchema<E> {
+    private static final Logger logger = LoggerFactory.getLogger(AbstractDocSchema.class);
+    // the number of keys a single aggregation returns, more keys are aggregated by iterating the elements
+    private static final int MAX_TERMS = 10000;
+    private static final Set<String> NUMBER_TYPES = new HashSet<>(Arrays.asList("INT", "LONG", "FLOAT", "DOUBLE"));
+    // the date format Jest serializes documents with
+    private static final Gson gson = new GsonBuilder().setDateFormat("yyyy-MM-dd'T'HH:mm:ssZ").create();
+
     protected final ElasticClient client;
     protected String type;
     protected IndexPropertySchema index;
@@ -54,6 +75,133 @@ public abstract class AbstractDocSchema<E extends Element> extends AbstractEleme
 //        return createSearch(query, queryBuilder);
     }
 
+    @Override
+    public QueryBuilder getCount(SearchQuery<E> query) {
+        return filterType(getSearch(query));
+    }
+
+    @Override
+    public SearchSourceBuilder getAggregate(QueryBuilder query, SemanticKeyTraversal key, SemanticReducerTraversal reduce) {
+        if (query == null) return null;
+        String keyField = getAggregateField(key.getKey());
+        if (keyField == null && !isConstant(key.getKey())) return null;
+
+        // elements without the property have no values to reduce, only their count is needed
+        AggregationBuilder valueAggregation = null;
+        if (reduce.getKey() != null && getPropertySchema(reduce.getKey()) != null) {
+            String valueField = getAggregateField(reduce.getKey());
+            // elastic reduces to a double, it's only turned back into the property's value when its type is known
+            if (valueField == null || getNumberType(reduce.getKey()) == null) return null;
+            switch (reduce.getType()) {
+                case min:
+                    valueAggregation = AggregationBuilders.min("value").field(valueField);
+                    break;
+                case max:
+                    valueAggregation = AggregationBuilders.max("value").field(valueField);
+                    break;
+                case sum:
+                    valueAggregation = AggregationBuilders.sum("value").field(valueField);
+                    break;
+                default:
+                    return null;
+            }
+        }
+
+        SearchSourceBuilder searchSourceBuilder = new SearchSourceBuilder().query(query).size(0);
+        if (keyField != null) {
+            TermsAggregationBuilder terms = AggregationBuilders.terms("key").field(keyField).size(MAX_TERMS);
+            if (valueAggregation != null) terms.subAggregation(valueAggregation);
+            searchSourceBuilder.aggregation(terms);
+        } else if (valueAggregation != null) searchSourceBuilder.aggregation(valueAggregation);
+        return searchSourceBuilder;
+    }
+
+    @Override
+    public Map<Object, Object> parseAggregate(String result, SemanticKeyTraversal key, SemanticReducerTraversal reduce) {
+        Map<String, Object> response;
+        try {
+            response = mapper.readValue(result, Map.class);
+        } catch (IOException e) {
+            logger.error("failed to parse aggregations: {}", result, e);
+            return null;
+        }
+        Map<String, Object> aggregations = (Map<String, Object>) response.get("aggregations");
+        Map<Object, Object> aggregate = new HashMap<>();
+
+        if (getAggregateField(key.getKey()) == null) {
+            PropertySchema keySchema = getPropertySchema(key.getKey());
+            Object constantKey = keySchema == null ? null : keySchema.toProperties(Collections.emptyMap()).get(key.getKey());
+            long count = ((Number) ((Map<String, Object>) response.get("hits")).get("total")).longValue();
+            if (constantKey != null && count > 0) aggregate.put(constantKey, getValue(aggregations, count, reduce));
+            return aggregate;
+        }
+
+        Map<String, Object> terms = (Map<String, Object>) aggregations.get("key");
+        // the buckets are only exact if every key was returned
+        if (((Number) terms.get("sum_other_doc_count")).longValue() > 0) return null;
+        for (Map<String, Object> bucket : (List<Map<String, Object>>) terms.get("buckets")) {
+            Object bucketKey = bucket.get("key");
+            Object keyAsString = bucket.get("key_as_string");
+            if (keyAsString != null) {
+                // boolean keys are returned as 1 and 0, other formatted keys are not the values of the source
+                if (!keyAsString.equals("true") && !keyAsString.equals("false")) return null;
+                bucketKey = Boolean.valueOf(keyAsString.toString());
+            }
+            long count = ((Number) bucket.get("doc_count")).longValue();
+            aggregate.put(bucketKey, getValue(bucket, count, reduce));
+        }
+        return aggregate;
+    }
+
+    private Object getValue(Map<String, Object> aggregations, long count, SemanticReducerTraversal reduce) {
+        if (reduce.getType().equals(SemanticReducerTraversal.Type.count)) return count;
+        Map<String, Object> value = aggregations == null ? null : (Map<String, Object>) aggregations.get("value");
+        Number number = value == null ? null : (Number) value.get("value");
+        if (number == null) return null;
+        switch (getNumberType(reduce.getKey())) {
+            case "INT":
+                return number.intValue();
+            case "LONG":
+                return number.longValue();
+            case "FLOAT":
+                return number.floatValue();
+            default:
+                return number.doubleValue();
+        }
+    }
+
+    /**
+     * @param key Property key
+     * @return The numeric type configured for the property's field, null if its values aren't known to be numbers
+     */
+    private String getNumberType(String key) {
+        PropertySchema propertySchema = getPropertySchema(key);
+        if (!(propertySchema instanceof FieldPropertySchema)) return null;
+        PropertyType type = ((FieldPropertySchema) propertySchema).getType();
+        if (type == null || !NUMBER_TYPES.contains(type.getType())) return null;
+        return type.getType();
+    }
+
+    /**
+     * @param key Property key
+     * @return The field holding the property's value, null if there is none
+     */
+    private String getAggregateField(String key) {
+        PropertySchema propertySchema = getPropertySchema(key);
+        return propertySchema == null ? null : propertySchema.getValueField(key);
+    }
+
+    private boolean isConstant(String key) {
+        PropertySchema propertySchema = getPropertySchema(key);
+        return propertySchema == null || propertySchema instanceof StaticPropertySchema;
+    }
+
+    protected QueryBuilder filterType(QueryBuilder queryBuilder) {
+        // documents of other types are only dropped when the hits are parsed
+        if (queryBuilder == null || type == null) return queryBuilder;
+        return QueryBuilders.boolQuery().filter(queryBuilder).filter(QueryBuilders.termQuery("_type", type));
+    }
+
     protected QueryBuilder createQueryBuilder(PredicatesHolder predicatesHolder) {
         if (predicatesHolder.isAborted()) return null;
         return FilterHelper.createFilterBuilder(predicatesHolder);
@@ -93,23 +241,20 @@ public abstract class AbstractDocSchema<E extends Element> extends AbstractEleme
     @Override
     public List<E> parseResults(String result, PredicateQuery query) {
         List<E> results = new ArrayList<>();
-        try {
-            JsonNode hits = mapper.readTree(result).get("hits").get("hits");
-            for (JsonNode hit : hits) {
-                Map<String, Object> source = hit.has("_source") ? mapper.readValue(hit.get("_source").toString(), Map.class) : new HashMap<>();
-                Document document = new Document(hit.get("_index").asText(), hit.get("_type").asText(), hit.get("_id").asText(), source);
-                Collection<E> elements = fromDocument(document);
-                if(elements != null) {
-                    elements.forEach(element -> {
-                        if(element != null && query.test(element, query.getPredicates()))
-                            results.add(element);
-                    });
-                }
-            }
-        }
-        catch (IOException e) {
-            e.printStackTrace();
-        }
+        new HitsIterator(result).forEachRemaining(document -> results.addAll(parseResults(document, query)));
+        return results;
+    }
+
+    @Override
+    public Collection<E> parseResults(Document document, PredicateQuery query) {
+        Collection<E> elements = fromDocument(document);
+        if (elements == null) return Collections.emptyList();
+        List<E> results = new ArrayList<>(elements.size());
+        PredicateEvaluator evaluator = query.getEvaluator(getStaticProperties());
+        elements.forEach(element -> {
+            if (element != null && query.test(element, evaluator))
+                results.add(element);
+        });
         return results;
     }
 
@@ -117,7 +262,8 @@ public abstract class AbstractDocSchema<E extends Element> extends AbstractEleme
     public BulkableAction<DocumentResult> addElement(E element, boolean create) {
         Document document = toDocument(element);
         if (document == null) return null;
-        Index.Builder builder = new Index.Builder(document.getFields())
+        // serialized once here, the bulk measures and sends this same string
+        Index.Builder builder = new Index.Builder(gson.toJson(document.getFields()))
                 .index(document.getIndex())
                 .type(document.getType())
                 .id(document.getId());
@@ -85,6 +85,11 @@ public class DocEdgeSchema extends AbstractDocSchema<Edge> implements DocumentEd
 //        return createSearch(query, queryBuilder);
     }
 
+    @Override
+    public QueryBuilder getCount(SearchVertexQuery query) {
+        return filterType(getSearch(query));
+    }
+
     protected PredicatesHolder getVertexPredicates(List<Vertex> vertices, Direction direction) {
         PredicatesHolder outPredicates = this.outVertexSchema.toPredicates(vertices);
         PredicatesHolder inPredicates = this.inVertexSchema.toPredicates(vertices);
@@ -0,0 +1,86 @@
+package org.unipop.elastic.tests;
+
+import org.apache.commons.configuration.BaseConfiguration;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.unipop.elastic.ElasticSourceProvider;
+import org.unipop.elastic.common.ElasticClient;
+import org.unipop.elastic.document.schema.DocVertexSchema;
+import org.unipop.process.group.traversal.SemanticKeyTraversal;
+import org.unipop.process.group.traversal.SemanticReducerTraversal;
+import org.unipop.structure.UniGraph;
+import org.unipop.util.PropertySchemaFactory;
+
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class AggregateTests {
+    // elastic returns every min, max and sum as a double
+    private static final String RESPONSE = "{\"hits\":{\"total\":2},\"aggregations\":{\"key\":{\"sum_other_doc_count\":0," +
+            "\"buckets\":[{\"key\":\"a\",\"doc_count\":2,\"value\":{\"value\":3.0}}]}}}";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private UniGraph graph;
+    private ElasticClient client;
+    private DocVertexSchema schema;
+
+    @Before
+    public void startUp() throws Exception {
+        BaseConfiguration configuration = new BaseConfiguration();
+        configuration.setProperty("providers", folder.newFolder().getAbsolutePath());
+        graph = new UniGraph(configuration);
+        client = new ElasticClient(Collections.singletonList("http://localhost:9200"));
+        PropertySchemaFactory.build(new ElasticSourceProvider().providerBuilders(), Collections.emptyList());
+        JSONObject vertices = new JSONObject()
+                .put("index", "items")
+                .put("id", "@_id")
+                .put("label", "item")
+                .put("properties", new JSONObject()
+                        .put("name", "@name")
+                        .put("count", new JSONObject().put("field", "@count").put("type", "int"))
+                        .put("size", new JSONObject().put("field", "@size").put("type", "long"))
+                        .put("score", new JSONObject().put("field", "@score").put("type", "double")))
+                .put("dynamicProperties", false);
+        schema = new DocVertexSchema(vertices, client, graph);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        graph.close();
+        client.close();
+    }
+
+    @Test
+    public void reductionsAreReturnedInThePropertysType() {
+        assertEquals(Collections.singletonMap("a", 3), aggregate(SemanticReducerTraversal.Type.max, "count"));
+        assertEquals(Collections.singletonMap("a", 3L), aggregate(SemanticReducerTraversal.Type.sum, "size"));
+        assertEquals(Collections.singletonMap("a", 3.0), aggregate(SemanticReducerTraversal.Type.min, "score"));
+        assertEquals(Collections.singletonMap("a", 2L), aggregate(SemanticReducerTraversal.Type.count, null));
+    }
+
+    @Test
+    public void untypedPropertiesAreNotReducedByElastic() {
+        SemanticKeyTraversal key = new SemanticKeyTraversal(SemanticKeyTraversal.Type.property, "name");
+
+        assertNull(schema.getAggregate(QueryBuilders.matchAllQuery(), key,
+                new SemanticReducerTraversal(SemanticReducerTraversal.Type.max, "name")));
+        assertNotNull(schema.getAggregate(QueryBuilders.matchAllQuery(), key,
+                new SemanticReducerTraversal(SemanticReducerTraversal.Type.max, "count")));
+    }
+
+    private Map<Object, Object> aggregate(SemanticReducerTraversal.Type type, String property) {
+        SemanticKeyTraversal key = new SemanticKeyTraversal(SemanticKeyTraversal.Type.property, "name");
+        return schema.parseAggregate(RESPONSE, key, new SemanticReducerTraversal(type, property));
+    }
+}
@@ -0,0 +1,124 @@
+package org.unipop.elastic.tests;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import io.searchbox.action.Action;
+import io.searchbox.client.JestResult;
+import io.searchbox.core.Bulk;
+import io.searchbox.core.BulkResult;
+import io.searchbox.core.Index;
+import io.searchbox.core.Update;
+import org.apache.tinkerpop.gremlin.structure.Element;
+import org.apache.tinkerpop.gremlin.structure.util.detached.DetachedVertex;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.unipop.elastic.common.BulkProcessor;
+import org.unipop.elastic.common.ElasticClient;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BulkProcessorTests {
+
+    private RecordingClient client;
+
+    @Before
+    public void startUp() {
+        client = new RecordingClient();
+    }
+
+    @After
+    public void tearDown() {
+        client.close();
+    }
+
+    @Test
+    public void updateAfterIndexAcrossFlush() {
+        BulkProcessor processor = new BulkProcessor.Builder().flushInterval(0).build(client, null);
+        Element vertex = new DetachedVertex("1", "vertex", Collections.emptyMap());
+
+        processor.add(key(vertex), new Index.Builder("{\"name\":\"a\"}").index("i").type("vertex").id("1").build());
+        processor.flush();
+        processor.add(key(vertex), new Update.Builder("{\"doc\":{\"name\":\"b\"}}").index("i").type("vertex").id("1").build());
+        processor.flushAndWait();
+
+        assertEquals(Arrays.asList("index 1", "update 1"), client.executed);
+        processor.close();
+    }
+
+    @Test
+    public void updatesAfterIndicesOnEveryLane() {
+        BulkProcessor processor = new BulkProcessor.Builder().flushInterval(0).concurrentRequests(4).build(client, null);
+        List<Element> vertices = new ArrayList<>();
+        for (int i = 0; i < 20; i++) vertices.add(new DetachedVertex(Integer.toString(i), "vertex", Collections.emptyMap()));
+
+        vertices.forEach(vertex -> processor.add(key(vertex),
+                new Index.Builder("{\"name\":\"a\"}").index("i").type("vertex").id(vertex.id().toString()).build()));
+        processor.flush();
+        vertices.forEach(vertex -> processor.add(key(vertex),
+                new Update.Builder("{\"doc\":{\"name\":\"b\"}}").index("i").type("vertex").id(vertex.id().toString()).build()));
+        processor.flushAndWait();
+
+        assertEquals(40, client.executed.size());
+        vertices.forEach(vertex -> {
+            int index = client.executed.indexOf("index " + vertex.id());
+            int update = client.executed.indexOf("update " + vertex.id());
+            assertTrue(index >= 0 && index < update);
+        });
+        processor.close();
+    }
+
+    private ElasticClient.DocumentIdentifier key(Element vertex) {
+        return client.new DocumentIdentifier(vertex, vertex.id().toString(), vertex.label(), "i");
+    }
+
+    /**
+     * Records the bulk items it executes, a bulk of indices is slow to answer
+     */
+    private static class RecordingClient extends ElasticClient {
+        private final Gson gson = new Gson();
+        private final List<String> executed = Collections.synchronizedList(new ArrayList<>());
+
+        private RecordingClient() {
+            super(Collections.singletonList("http://localhost:9200"));
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T extends JestResult> T execute(Action<T> action) {
+            List<String> items = new ArrayList<>();
+            StringBuilder json = new StringBuilder("{\"items\":[");
+            String[] lines = ((Bulk) action).getData(gson).split("\n");
+            for (int i = 0; i < lines.length; i += 2) {
+                Map.Entry<String, JsonElement> item = new JsonParser().parse(lines[i])
+                        .getAsJsonObject().entrySet().iterator().next();
+                JsonObject metadata = item.getValue().getAsJsonObject();
+                items.add(item.getKey() + " " + metadata.get("_id").getAsString());
+                metadata.addProperty("status", 200);
+                if (i > 0) json.append(",");
+                json.append("{\"").append(item.getKey()).append("\":").append(metadata).append("}");
+            }
+            if (items.stream().allMatch(item -> item.startsWith("index"))) sleep();
+            executed.addAll(items);
+
+            BulkResult result = new BulkResult(gson);
+            result.setJsonObject(new JsonParser().parse(json.append("]}").toString()).getAsJsonObject());
+            result.setResponseCode(200);
+            result.setSucceeded(true);
+            return (T) result;
+        }
+
+        private static void sleep() {
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
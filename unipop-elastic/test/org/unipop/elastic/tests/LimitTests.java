@@ -0,0 +1,147 @@
+package org.unipop.elastic.tests;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParser;
+import io.searchbox.action.Action;
+import io.searchbox.client.JestResult;
+import io.searchbox.core.Search;
+import io.searchbox.core.SearchResult;
+import io.searchbox.core.SearchScroll;
+import org.apache.commons.configuration.BaseConfiguration;
+import org.apache.commons.configuration.Configuration;
+import org.apache.tinkerpop.gremlin.process.traversal.dsl.graph.GraphTraversalSource;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.unipop.elastic.ElasticSourceProvider;
+import org.unipop.elastic.common.ElasticClient;
+import org.unipop.elastic.document.DocumentController;
+import org.unipop.elastic.document.DocumentSchema;
+import org.unipop.elastic.document.schema.DocVertexSchema;
+import org.unipop.process.predicate.Text;
+import org.unipop.query.controller.ControllerManager;
+import org.unipop.query.controller.UniQueryController;
+import org.unipop.schema.property.PropertySchema;
+import org.unipop.structure.UniGraph;
+import org.unipop.structure.traversalfilter.TraversalFilter;
+import org.unipop.util.PropertySchemaFactory;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+
+public class LimitTests {
+    private static final int SCROLL_SIZE = 2;
+    private static FakeClient client;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private UniGraph graph;
+
+    @Before
+    public void startUp() throws Exception {
+        client = new FakeClient();
+        BaseConfiguration configuration = new BaseConfiguration();
+        configuration.setProperty("providers", folder.newFolder().getAbsolutePath());
+        configuration.setProperty("controllerManager", SingleControllerManager.class.getName());
+        graph = new UniGraph(configuration);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        graph.close();
+        client.close();
+    }
+
+    @Test
+    public void unfilteredSearchIsCutByElastic() {
+        GraphTraversalSource g = graph.traversal();
+
+        assertEquals(3, g.V().limit(3).toList().size());
+        assertEquals(Collections.singletonList(3), client.sizes);
+    }
+
+    @Test
+    public void filteredHitsAreScrolledUntilTheLimit() {
+        GraphTraversalSource g = graph.traversal();
+
+        // only every other hit starts with an "a"
+        assertEquals(3, g.V().has("name", Text.prefix("a")).limit(3).toList().size());
+        assertEquals(Collections.singletonList(SCROLL_SIZE), client.sizes);
+        assertEquals(4, g.V().has("name", Text.prefix("a")).limit(10).toList().size());
+    }
+
+    public static class SingleControllerManager implements ControllerManager {
+        private final DocumentController controller;
+
+        public SingleControllerManager(UniGraph graph, Configuration configuration, List<PropertySchema.PropertySchemaBuilder> propertySchemas,
+                                       TraversalFilter filter) throws Exception {
+            PropertySchemaFactory.build(new ElasticSourceProvider().providerBuilders(), propertySchemas);
+            JSONObject vertices = new JSONObject()
+                    .put("index", "items")
+                    .put("id", "@_id")
+                    .put("label", "item")
+                    .put("properties", new JSONObject().put("name", "@name"))
+                    .put("dynamicProperties", false);
+            Set<DocumentSchema> schemas = Collections.singleton(new DocVertexSchema(vertices, client, graph));
+            controller = new DocumentController(schemas, client, graph, filter, SCROLL_SIZE, "1m");
+        }
+
+        @Override
+        public Set<UniQueryController> getControllers() {
+            return Collections.singleton(controller);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * Answers every search with the same 8 documents, whatever the query, so only the post filter drops hits
+     */
+    private static class FakeClient extends ElasticClient {
+        private final Gson gson = new Gson();
+        private final List<Integer> sizes = new ArrayList<>();
+        private int offset;
+        private int size;
+
+        private FakeClient() {
+            super(Collections.singletonList("http://localhost:9200"));
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T extends JestResult> T execute(Action<T> action) {
+            if (action instanceof Search) {
+                size = new JsonParser().parse(action.getData(gson)).getAsJsonObject().get("size").getAsInt();
+                sizes.add(size);
+                offset = 0;
+            } else if (!(action instanceof SearchScroll)) {
+                JestResult result = new JestResult(gson);
+                result.setSucceeded(true);
+                return (T) result;
+            }
+
+            StringBuilder hits = new StringBuilder();
+            for (int i = offset; i < Math.min(offset + size, 8); i++) {
+                if (hits.length() > 0) hits.append(",");
+                String name = (i % 2 == 0 ? "a" : "b") + i;
+                hits.append("{\"_index\":\"items\",\"_type\":\"item\",\"_id\":\"").append(i)
+                        .append("\",\"_source\":{\"name\":\"").append(name).append("\"}}");
+            }
+            offset += size;
+            String json = "{\"_scroll_id\":\"scroll\",\"hits\":{\"total\":8,\"hits\":[" + hits + "]}}";
+
+            SearchResult result = new SearchResult(gson);
+            result.setJsonString(json);
+            result.setJsonObject(new JsonParser().parse(json).getAsJsonObject());
+            result.setSucceeded(true);
+            return (T) result;
+        }
+    }
+}
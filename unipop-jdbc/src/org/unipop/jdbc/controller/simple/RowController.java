@@ -1,5 +1,7 @@
 package org.unipop.jdbc.controller.simple;
 
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Maps;
 import org.apache.commons.collections4.keyvalue.DefaultMapEntry;
 import org.apache.tinkerpop.gremlin.process.traversal.P;
@@ -19,8 +21,13 @@ import org.unipop.jdbc.schemas.RowVertexSchema;
 import org.unipop.jdbc.schemas.jdbc.JdbcEdgeSchema;
 import org.unipop.jdbc.schemas.jdbc.JdbcSchema;
 import org.unipop.jdbc.utils.ContextManager;
-import org.unipop.jdbc.utils.TimingExecuterListener;
+import org.unipop.process.group.traversal.SemanticKeyTraversal;
+import org.unipop.process.group.traversal.SemanticReducerTraversal;
 import org.unipop.query.UniQuery;
+import org.unipop.query.aggregation.AggregateQuery;
+import org.unipop.query.aggregation.AggregateVertexQuery;
+import org.unipop.query.aggregation.ReduceQuery;
+import org.unipop.query.aggregation.ReduceVertexQuery;
 import org.unipop.query.controller.SimpleController;
 import org.unipop.query.mutation.AddEdgeQuery;
 import org.unipop.query.mutation.AddVertexQuery;
@@ -52,7 +59,8 @@ import static org.jooq.impl.DSL.table;
  * @author Gur Ronen
  * @since 6/12/2016
  */
-public class RowController implements SimpleController {
+public class RowController implements SimpleController, ReduceQuery.ReduceController, ReduceVertexQuery.ReduceVertexController,
+        AggregateQuery.AggregateController, AggregateVertexQuery.AggregateVertexController {
     protected final static Logger logger = LoggerFactory.getLogger(RowController.class);
 
     private final ContextManager contextManager;
@@ -60,6 +68,7 @@ public class RowController implements SimpleController {
 
     protected Set<? extends RowVertexSchema> vertexSchemas;
     protected Set<? extends RowEdgeSchema> edgeSchemas;
+    private Set<JdbcSchema> countableSchemas;
 
     protected List<Query> bulk;
     private final PredicatesTranslator<Condition> predicatesTranslator;
@@ -71,6 +80,9 @@ public class RowController implements SimpleController {
         this.contextManager = contextManager;
 
         extractRowSchemas(schemaSet);
+        // a vertex of a child schema is repeated in the rows of its parent's table, only edges can always be counted or aggregated
+        this.countableSchemas = new HashSet<>(schemaSet);
+        this.countableSchemas.addAll(this.edgeSchemas);
         this.predicatesTranslator = predicatesTranslator;
         bulk = new ArrayList<>();
 
@@ -83,7 +95,11 @@ public class RowController implements SimpleController {
         SelectCollector<JdbcSchema<E>, Select, E> collector = new SelectCollector<>(
                 schema -> schema.getSearch(uniQuery,
                         schema.toPredicates(uniQuery.getPredicates())),
-                (schema, results) -> schema.parseResults(results, uniQuery)
+                (schema, results) -> schema.parseResults(results, uniQuery),
+                schema -> {
+                    PredicatesHolder predicates = schema.toPredicates(uniQuery.getPredicates());
+                    return (afterId, pageSize) -> schema.getSearch(uniQuery, predicates, afterId, pageSize);
+                }
         );
         Set<? extends JdbcSchema<E>> schemas = this.getSchemas(uniQuery.getReturnType());
 
@@ -99,7 +115,11 @@ public class RowController implements SimpleController {
         SelectCollector<JdbcSchema<Vertex>, Select, Vertex> collector = new SelectCollector<>(
                 schema -> schema.getSearch(uniQuery,
                         schema.toPredicates(uniQuery.getPredicates())),
-                (schema, results) -> schema.parseResults(results, uniQuery)
+                (schema, results) -> schema.parseResults(results, uniQuery),
+                schema -> {
+                    PredicatesHolder predicates = schema.toPredicates(uniQuery.getPredicates());
+                    return (afterId, pageSize) -> schema.getSearch(uniQuery, predicates, afterId, pageSize);
+                }
         );
 
         Map<JdbcSchema<Vertex>, Select> selects = vertexSchemas.stream()
@@ -121,7 +141,11 @@ public class RowController implements SimpleController {
         SelectCollector<JdbcSchema<Edge>, Select, Edge> collector = new SelectCollector<>(
                 schema -> schema.getSearch(uniQuery,
                         ((JdbcEdgeSchema) schema).toPredicates(uniQuery.getVertices(), uniQuery.getDirection(), uniQuery.getPredicates())),
-                (schema, results) -> schema.parseResults(results, uniQuery)
+                (schema, results) -> schema.parseResults(results, uniQuery),
+                schema -> {
+                    PredicatesHolder predicates = ((JdbcEdgeSchema) schema).toPredicates(uniQuery.getVertices(), uniQuery.getDirection(), uniQuery.getPredicates());
+                    return (afterId, pageSize) -> schema.getSearch(uniQuery, predicates, afterId, pageSize);
+                }
         );
 
         Map<JdbcSchema<Edge>, Select> selects = edgeSchemas.stream()
@@ -130,6 +154,91 @@ public class RowController implements SimpleController {
         return this.search(uniQuery, selects, collector);
     }
 
+    @Override
+    public <E extends Element> Long count(ReduceQuery<E> uniQuery) {
+        Set<? extends JdbcSchema<E>> schemas = this.getSchemas(uniQuery.getReturnType());
+        return this.count(uniQuery, schemas, schema -> schema.toPredicates(uniQuery.getPredicates()));
+    }
+
+    @Override
+    public Long count(ReduceVertexQuery uniQuery) {
+        return this.count(uniQuery, edgeSchemas, schema ->
+                schema.toPredicates(uniQuery.getVertices(), uniQuery.getDirection(), uniQuery.getPredicates()));
+    }
+
+    private <E extends Element, S extends JdbcSchema<E>> Long count(SearchQuery<E> uniQuery, Set<? extends S> schemas,
+                                                                    Function<S, PredicatesHolder> toPredicates) {
+        Map<S, PredicatesHolder> predicates = getReducePredicates(uniQuery, schemas, toPredicates);
+        if (predicates == null) return null;
+
+        flushBulk();
+        long count = 0;
+        for (Map.Entry<S, PredicatesHolder> entry : predicates.entrySet()) {
+            Select select = entry.getKey().getCount(uniQuery, entry.getValue());
+            if (select == null) return null;
+            List<Map<String, Object>> rows = contextManager.fetch(select);
+            logger.debug("counted schema, schema: {}, command: {}, result: {}", entry.getKey(), select, rows);
+            if (rows.isEmpty()) continue;
+            Object value = rows.get(0).values().iterator().next();
+            if (value != null) count += ((Number) value).longValue();
+        }
+        return count;
+    }
+
+    @Override
+    public <E extends Element> Map<Object, Object> aggregate(AggregateQuery<E> uniQuery) {
+        Set<? extends JdbcSchema<E>> schemas = this.getSchemas(uniQuery.getReturnType());
+        return this.aggregate(uniQuery, uniQuery.getKey(), uniQuery.getReduce(), schemas,
+                schema -> schema.toPredicates(uniQuery.getPredicates()));
+    }
+
+    @Override
+    public Map<Object, Object> aggregate(AggregateVertexQuery uniQuery) {
+        return this.aggregate(uniQuery, uniQuery.getKey(), uniQuery.getReduce(), edgeSchemas, schema ->
+                schema.toPredicates(uniQuery.getVertices(), uniQuery.getDirection(), uniQuery.getPredicates()));
+    }
+
+    private <E extends Element, S extends JdbcSchema<E>> Map<Object, Object> aggregate(SearchQuery<E> uniQuery, SemanticKeyTraversal key,
+                                                                                       SemanticReducerTraversal reduce, Set<? extends S> schemas,
+                                                                                       Function<S, PredicatesHolder> toPredicates) {
+        Map<S, PredicatesHolder> predicates = getReducePredicates(uniQuery, schemas, toPredicates);
+        if (predicates == null) return null;
+
+        Map<S, Select> selects = new HashMap<>();
+        for (Map.Entry<S, PredicatesHolder> entry : predicates.entrySet()) {
+            Select select = entry.getKey().getAggregate(uniQuery, entry.getValue(), key, reduce);
+            if (select == null) return null;
+            selects.put(entry.getKey(), select);
+        }
+
+        flushBulk();
+        Map<Object, Object> aggregate = new HashMap<>();
+        selects.forEach((schema, select) -> {
+            List<Map<String, Object>> rows = contextManager.fetch(select);
+            logger.debug("aggregated schema, schema: {}, command: {}, result: {}", schema, select, rows);
+            reduce.merge(aggregate, schema.parseAggregate(rows, key, reduce));
+        });
+        return aggregate;
+    }
+
+    /**
+     * @return The predicates of the schema the query may return elements from,
+     * or null if it can't be reduced exactly or more than one schema may return the same element
+     */
+    private <E extends Element, S extends JdbcSchema<E>> Map<S, PredicatesHolder> getReducePredicates(SearchQuery<E> uniQuery, Set<? extends S> schemas,
+                                                                                                      Function<S, PredicatesHolder> toPredicates) {
+        Map<S, PredicatesHolder> predicates = new HashMap<>();
+        for (S schema : schemas) {
+            if (!this.traversalFilter.filter(schema, uniQuery.getTraversal())) continue;
+            PredicatesHolder schemaPredicates = toPredicates.apply(schema);
+            if (schemaPredicates.isAborted()) continue;
+            if (!countableSchemas.contains(schema) || !schema.isExact(uniQuery.getPredicates())) return null;
+            predicates.put(schema, schemaPredicates);
+        }
+        // search dedups the elements of all the schemas
+        return predicates.size() > 1 ? null : predicates;
+    }
+
     @Override
     public Edge addEdge(AddEdgeQuery uniQuery) {
         UniEdge edge = new UniEdge(uniQuery.getProperties(), uniQuery.getOutVertex(), uniQuery.getInVertex(), null, this.graph);
@@ -188,19 +297,19 @@ public class RowController implements SimpleController {
         }
     }
 
-    private <E extends Element, S extends JdbcSchema<E>> void fillChildren(List<MutableMetrics> children, Map<S, Select> schemas) {
-        List<org.javatuples.Pair<Long, Integer>> timing = TimingExecuterListener.timing.values().stream().collect(Collectors.toList());
-        List<Map.Entry<S, Select>> sqls = schemas.entrySet().stream().collect(Collectors.toList());
-        for (int i = 0; i < sqls.size(); i++) {
-            org.javatuples.Pair<Long, Integer> timingCount = timing.get(i);
-            if (i < children.size()) {
-                MutableMetrics child = children.get(i);
-                if (timingCount != null) {
-                    child.setCount(TraversalMetrics.ELEMENT_COUNT_ID, timingCount.getValue1());
-                    child.setDuration(timingCount.getValue0(), TimeUnit.NANOSECONDS);
-                }
-            }
-            timing.remove(sqls.get(i).getValue().getSQL());
+    private void fillChildren(List<MutableMetrics> children, List<org.javatuples.Pair<Long, Integer>> timings) {
+        for (int i = 0; i < timings.size() && i < children.size(); i++) {
+            MutableMetrics child = children.get(i);
+            child.setCount(TraversalMetrics.ELEMENT_COUNT_ID, timings.get(i).getValue1());
+            child.setDuration(timings.get(i).getValue0(), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private <K extends JdbcSchema<?>, R> void fillPageChildren(List<MutableMetrics> children, List<PageIterator<K, R>> pages) {
+        for (int i = 0; i < pages.size() && i < children.size(); i++) {
+            MutableMetrics child = children.get(i);
+            child.setCount(TraversalMetrics.ELEMENT_COUNT_ID, pages.get(i).rows);
+            child.setDuration(pages.get(i).duration, TimeUnit.NANOSECONDS);
         }
     }
 
@@ -208,24 +317,44 @@ public class RowController implements SimpleController {
     protected <E extends Element, R> Iterator<R> search(UniQuery query, Map<JdbcSchema<E>, Select> selects,
                                                         SelectCollector<JdbcSchema<E>, Select, R> collector) {
 
-        if (bulk.size() != 0) {
-            contextManager.batch(bulk);
-            bulk.clear();
-        }
+        flushBulk();
         MetricsRunner metrics = new MetricsRunner(this, query,
                 selects.keySet().stream().map(s -> ((ElementSchema) s)).collect(Collectors.toList()));
 
         logger.info("mapped schemas for search, schemas: {}", selects);
         if (selects.size() == 0) return EmptyIterator.instance();
 
-        Iterator<JdbcSchema<E>> schemaIterator = selects.keySet().iterator();
-        Set<R> collect = selects.values().stream()
-                .map(select -> this.getContextManager().fetch(select))
-                .flatMap(res -> collector.parse.apply(schemaIterator.next(), res).stream())
-                .collect(Collectors.toSet());
+        if (contextManager.getFetchSize() > 0 && collector.pageMapper != null) {
+            // each schema is read page by page once the previous one is exhausted
+            List<PageIterator<JdbcSchema<E>, R>> pages = selects.entrySet().stream()
+                    .map(entry -> new PageIterator<>(entry.getKey(), entry.getValue(), query, collector))
+                    .collect(Collectors.toList());
+            Iterator<R> concatenated = Iterators.concat(pages.iterator());
+            // only several schemas can return the same element twice, their ids are all that's kept
+            Set<Object> returned = new HashSet<>();
+            Iterator<R> results = selects.size() > 1 ?
+                    Iterators.filter(concatenated, result -> returned.add(((Element) result).id())) : concatenated;
+            return new AbstractIterator<R>() {
+                @Override
+                protected R computeNext() {
+                    if (results.hasNext()) return results.next();
+                    metrics.stop(children -> fillPageChildren(children, pages));
+                    return endOfData();
+                }
+            };
+        }
 
+        // the duration and row count of each schema's fetch, kept by this search so concurrent ones don't mix
+        List<org.javatuples.Pair<Long, Integer>> timings = new ArrayList<>();
+        Set<R> collect = new HashSet<>();
+        selects.forEach((schema, select) -> {
+            long start = System.nanoTime();
+            List<Map<String, Object>> rows = this.getContextManager().fetch(select);
+            timings.add(new org.javatuples.Pair<>(System.nanoTime() - start, rows.size()));
+            collect.addAll(collector.parse.apply(schema, rows));
+        });
 
-        metrics.stop((children) -> fillChildren(children, selects));
+        metrics.stop((children) -> fillChildren(children, timings));
 
         logger.info("results: {}", collect);
         return collect.iterator();
@@ -242,11 +371,7 @@ public class RowController implements SimpleController {
 //                logger.error("no rows changed on insertion. query: {}, element: {}", contextManager.render(query), element);
 //            }
 //            else {
-            bulk.add(query);
-            if (bulk.size() >= 1000) {
-                contextManager.batch(bulk);
-                bulk.clear();
-            }
+            addToBulk(query);
             return true;
 //            }
         }
@@ -268,11 +393,22 @@ public class RowController implements SimpleController {
 //            this.getContextManager().execute(step);
             logger.info("executed update statement with following parameters, step: {}, element: {}, schema: {}", this.getContextManager().render(step), element, schema);
 //            contextManager.execute("commit;");
-            bulk.add(step);
-            if (bulk.size() >= 1000) {
-                contextManager.batch(bulk);
-                bulk.clear();
-            }
+            addToBulk(step);
+        }
+    }
+
+    private synchronized void addToBulk(Query query) {
+        bulk.add(query);
+        if (bulk.size() >= 1000) {
+            contextManager.batch(bulk);
+            bulk.clear();
+        }
+    }
+
+    private synchronized void flushBulk() {
+        if (bulk.size() != 0) {
+            contextManager.batch(bulk);
+            bulk.clear();
         }
     }
 
@@ -330,15 +466,105 @@ public class RowController implements SimpleController {
                 '}';
     }
 
+    /**
+     * Reads the results of a schema's search one page of fetchSize rows at a time, each page is a separate
+     * query ordered by the schema's id field and starting after the last id of the previous page.
+     * Only one page is held in memory and no connection is held between pages, so an abandoned iterator costs nothing.
+     * Falls back to a single fetch when the schema can't page the query.
+     */
+    private class PageIterator<K extends JdbcSchema<?>, R> implements Iterator<R> {
+        private final K schema;
+        private final Select select;
+        private final SelectCollector<K, Select, R> collector;
+        private final String pageField;
+        private PageMapper<? extends Select> pager;
+        private long remaining;
+        private Object lastId;
+        private boolean done;
+        private Iterator<R> page = EmptyIterator.instance();
+        private long rows;
+        private long duration;
+
+        private PageIterator(K schema, Select select, UniQuery query, SelectCollector<K, Select, R> collector) {
+            this.schema = schema;
+            this.select = select;
+            this.collector = collector;
+            this.pageField = schema.getPageField();
+            int limit = query instanceof SearchQuery ? ((SearchQuery) query).getLimit() : -1;
+            this.remaining = limit < 0 ? Long.MAX_VALUE : limit;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!page.hasNext() && !done) nextPage();
+            return page.hasNext();
+        }
+
+        @Override
+        public R next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            return page.next();
+        }
+
+        private void nextPage() {
+            long start = System.nanoTime();
+            int pageSize = (int) Math.min(contextManager.getFetchSize(), remaining);
+            if (pager == null && pageField != null) pager = collector.pageMapper.apply(schema);
+            Select pageSelect = pager == null ? null : pager.apply(lastId, pageSize);
+            if (pageSelect == null) {
+                done = true;
+                List<Map<String, Object>> rows = contextManager.fetch(select);
+                count(rows, start);
+                page = collector.parse.apply(schema, rows).iterator();
+                return;
+            }
+
+            List<Map<String, Object>> rows = contextManager.fetch(pageSelect);
+            count(rows, start);
+            remaining -= rows.size();
+            if (rows.size() < pageSize || remaining <= 0) done = true;
+            else lastId = getPageId(rows.get(rows.size() - 1));
+            if (lastId == null) done = true;
+            page = collector.parse.apply(schema, rows).iterator();
+        }
+
+        private void count(List<Map<String, Object>> rows, long start) {
+            this.rows += rows.size();
+            this.duration += System.nanoTime() - start;
+        }
+
+        private Object getPageId(Map<String, Object> row) {
+            if (row.containsKey(pageField)) return row.get(pageField);
+            return row.entrySet().stream().filter(entry -> entry.getKey().equalsIgnoreCase(pageField))
+                    .map(Map.Entry::getValue).findFirst().orElse(null);
+        }
+    }
+
+    /**
+     * Creates the select of a page from the last id of the previous page and the page size
+     */
+    @FunctionalInterface
+    public interface PageMapper<V> {
+        V apply(Object afterId, int pageSize);
+    }
+
     public class SelectCollector<K, V, R> implements Collector<K, Map<K, V>, Map<K, V>> {
 
         private final Function<? super K, ? extends V> valueMapper;
 
         private final BiFunction<? super K, List<Map<String, Object>>, ? extends Collection<R>> parse;
 
+        private final Function<? super K, ? extends PageMapper<? extends V>> pageMapper;
+
         public SelectCollector(Function<? super K, ? extends V> valueMapper, BiFunction<? super K, List<Map<String, Object>>, Collection<R>> parse) {
+            this(valueMapper, parse, null);
+        }
+
+        public SelectCollector(Function<? super K, ? extends V> valueMapper, BiFunction<? super K, List<Map<String, Object>>, Collection<R>> parse,
+                               Function<? super K, ? extends PageMapper<? extends V>> pageMapper) {
             this.valueMapper = valueMapper;
             this.parse = parse;
+            this.pageMapper = pageMapper;
         }
 
         @Override
@@ -3,17 +3,23 @@ package org.unipop.jdbc.schemas;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.tinkerpop.gremlin.process.traversal.Order;
 import org.apache.tinkerpop.gremlin.structure.Element;
+import org.apache.tinkerpop.gremlin.structure.T;
 import org.javatuples.Pair;
 import org.jooq.*;
 import org.jooq.impl.DSL;
 import org.json.JSONObject;
 import org.unipop.jdbc.schemas.jdbc.JdbcSchema;
+import org.unipop.process.group.traversal.SemanticKeyTraversal;
+import org.unipop.process.group.traversal.SemanticReducerTraversal;
 import org.unipop.jdbc.utils.ContextManager;
 import org.unipop.jdbc.utils.JdbcPredicatesTranslator;
 import org.unipop.query.predicates.PredicateQuery;
 import org.unipop.query.predicates.PredicatesHolder;
 import org.unipop.query.search.SearchQuery;
 import org.unipop.schema.element.AbstractElementSchema;
+import org.unipop.schema.property.DynamicPropertySchema;
+import org.unipop.schema.property.PropertySchema;
+import org.unipop.schema.property.StaticPropertySchema;
 import org.unipop.structure.UniGraph;
 
 import java.util.*;
@@ -76,7 +82,8 @@ public abstract class AbstractRowSchema<E extends Element> extends AbstractEleme
         }
 
         Condition conditions = new JdbcPredicatesTranslator().translate(predicatesHolder);
-        int finalLimit = query.getLimit() < 0 ? Integer.MAX_VALUE : query.getLimit();
+        // the limit counts rows, it's only the number of elements when every row holds a different element
+        int finalLimit = query.getLimit() < 0 || !isRowPerElement() ? Integer.MAX_VALUE : query.getLimit();
 
         SelectConditionStep<Record> where = createSqlQuery(query.getPropertyKeys())
                 .where(conditions);
@@ -96,16 +103,149 @@ public abstract class AbstractRowSchema<E extends Element> extends AbstractEleme
 
     }
 
+    @Override
+    public Select getSearch(SearchQuery<E> query, PredicatesHolder predicatesHolder, Object afterId, int pageSize) {
+        String pageField = getPageField();
+        if (predicatesHolder.isAborted() || pageField == null) {
+            return null;
+        }
+        // keyset paging keeps the id order, it can't keep any other order
+        List<Pair<String, Order>> orders = query.getOrders();
+        if (orders != null && orders.stream().anyMatch(order -> !order.getValue1().equals(Order.shuffle))) {
+            return null;
+        }
+
+        Condition conditions = new JdbcPredicatesTranslator().translate(predicatesHolder);
+        if (afterId != null) conditions = conditions.and(field(pageField).gt(afterId));
+
+        Set<String> columns = null;
+        if (query.getPropertyKeys() != null) {
+            columns = new HashSet<>(this.toFields(query.getPropertyKeys()));
+            columns.add(pageField);
+        }
+        return createSqlQueryFromFields(columns).where(conditions)
+                .orderBy(field(pageField).asc()).limit(pageSize);
+    }
+
+    @Override
+    public Select getCount(SearchQuery<E> query, PredicatesHolder predicatesHolder) {
+        String idField = getIdField();
+        if (predicatesHolder.isAborted() || idField == null) {
+            return null;
+        }
+
+        Condition conditions = new JdbcPredicatesTranslator().translate(predicatesHolder);
+        return DSL.select(DSL.countDistinct(field(idField))).from(this.getTable()).where(conditions);
+    }
+
+    @Override
+    public Select getAggregate(SearchQuery<E> query, PredicatesHolder predicatesHolder, SemanticKeyTraversal key, SemanticReducerTraversal reduce) {
+        String idField = getIdField();
+        if (predicatesHolder.isAborted() || idField == null) {
+            return null;
+        }
+
+        List<Field<?>> fields = new ArrayList<>();
+        String keyField = getAggregateField(key.getKey());
+        if (keyField != null) fields.add(field(keyField).as("group_key"));
+        else if (!isConstant(key.getKey())) return null;
+        fields.add(DSL.countDistinct(field(idField)).as("group_count"));
+
+        // elements without the property have no values to reduce, only their count is needed
+        if (reduce.getKey() != null && getPropertySchema(reduce.getKey()) != null) {
+            String valueField = getAggregateField(reduce.getKey());
+            if (valueField == null) return null;
+            switch (reduce.getType()) {
+                case min:
+                    fields.add(DSL.min(field(valueField)).as("group_value"));
+                    break;
+                case max:
+                    fields.add(DSL.max(field(valueField)).as("group_value"));
+                    break;
+                case sum:
+                    // DSL.sum would convert the database's sum to a BigDecimal
+                    fields.add(DSL.field("sum({0})", field(valueField)).as("group_value"));
+                    break;
+                default:
+                    return null;
+            }
+        }
+
+        Condition conditions = new JdbcPredicatesTranslator().translate(predicatesHolder);
+        SelectConditionStep<Record> select = DSL.select(fields).from(this.getTable()).where(conditions);
+        return keyField == null ? select : select.groupBy(field(keyField));
+    }
+
+    @Override
+    public Map<Object, Object> parseAggregate(List<Map<String, Object>> result, SemanticKeyTraversal key, SemanticReducerTraversal reduce) {
+        boolean grouped = getAggregateField(key.getKey()) != null;
+        PropertySchema keySchema = getPropertySchema(key.getKey());
+        Object constantKey = grouped || keySchema == null ? null :
+                keySchema.toProperties(Collections.emptyMap()).get(key.getKey());
+
+        Map<Object, Object> aggregate = new HashMap<>();
+        result.forEach(row -> {
+            // the columns are read in the order they were selected
+            Iterator<Object> values = row.values().iterator();
+            Object rowKey = grouped ? values.next() : constantKey;
+            Object count = values.next();
+            if (rowKey == null || count == null || ((Number) count).longValue() == 0) return;
+            if (reduce.getType().equals(SemanticReducerTraversal.Type.count))
+                aggregate.put(rowKey, ((Number) count).longValue());
+            else aggregate.put(rowKey, values.hasNext() ? values.next() : null);
+        });
+        return aggregate;
+    }
+
+    /**
+     * @param key Property key
+     * @return The column holding the property's value, null if there is none or it may not exist in the table
+     */
+    private String getAggregateField(String key) {
+        PropertySchema propertySchema = getPropertySchema(key);
+        if (propertySchema == null || propertySchema instanceof DynamicPropertySchema) return null;
+        return propertySchema.getValueField(key);
+    }
+
+    private boolean isConstant(String key) {
+        PropertySchema propertySchema = getPropertySchema(key);
+        return propertySchema == null || propertySchema instanceof StaticPropertySchema;
+    }
+
+    /**
+     * @return Whether every row of the table holds a different element of the schema
+     */
+    protected boolean isRowPerElement() {
+        return true;
+    }
+
+    @Override
+    public String getPageField() {
+        // keyset paging needs the id in a single column, a concatenated id isn't ordered by any of its columns
+        return getIdField();
+    }
+
+    /**
+     * @return The column holding the id, or null if the id is built from more than one column
+     */
+    private String getIdField() {
+        PropertySchema idSchema = getPropertySchema(T.id.getAccessor());
+        if (idSchema == null || idSchema instanceof DynamicPropertySchema) return null;
+        return idSchema.getValueField(T.id.getAccessor());
+    }
 
     private <E extends Element> SelectJoinStep<Record> createSqlQuery(Set<String> columnsToRetrieve) {
-        if (columnsToRetrieve == null) {
+        return createSqlQueryFromFields(columnsToRetrieve == null ? null : this.toFields(columnsToRetrieve));
+    }
+
+    private SelectJoinStep<Record> createSqlQueryFromFields(Set<String> fields) {
+        if (fields == null) {
             return DSL.select().from(this.getTable());
 
         }
 
-        Set<String> props = this.toFields(columnsToRetrieve);
         return DSL
-                .select(props.stream().map(DSL::field).collect(Collectors.toList()))
+                .select(fields.stream().map(DSL::field).collect(Collectors.toList()))
                 .from(this.getTable());
     }
 
@@ -35,4 +35,15 @@ public class InnerRowVertexSchema extends RowVertexSchema{
     public Query getInsertStatement(Vertex element) {
         return null;
     }
+
+    @Override
+    protected boolean isRowPerElement() {
+        return false;
+    }
+
+    @Override
+    public String getPageField() {
+        // the same vertex is repeated in many rows, its id can't be used to page them
+        return null;
+    }
 }
@@ -5,12 +5,15 @@ import org.jooq.DSLContext;
 import org.jooq.Query;
 import org.jooq.Result;
 import org.jooq.Select;
+import org.unipop.process.group.traversal.SemanticKeyTraversal;
+import org.unipop.process.group.traversal.SemanticReducerTraversal;
 import org.unipop.jdbc.utils.ContextManager;
 import org.unipop.query.predicates.PredicateQuery;
 import org.unipop.query.predicates.PredicatesHolder;
 import org.unipop.query.search.SearchQuery;
 import org.unipop.schema.element.ElementSchema;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -30,6 +33,58 @@ public interface JdbcSchema<E extends Element> extends ElementSchema<E> {
      */
     Select getSearch(SearchQuery<E> query, PredicatesHolder predicates);
 
+    /**
+     * Converts a SearchQuery to a select statement that returns one page of the results, ordered by id
+     * @param query A search query
+     * @param predicates A predicates holder
+     * @param afterId The id of the last row of the previous page, null for the first page
+     * @param pageSize Number of rows in a page
+     * @return A select statement, or null if the query can't be paged
+     */
+    default Select getSearch(SearchQuery<E> query, PredicatesHolder predicates, Object afterId, int pageSize) {
+        return null;
+    }
+
+    /**
+     * Converts a SearchQuery to a select statement that counts its distinct elements
+     * @param query A search query
+     * @param predicates A predicates holder
+     * @return A select statement returning a single count, or null if the schema can't count the elements
+     */
+    default Select getCount(SearchQuery<E> query, PredicatesHolder predicates) {
+        return null;
+    }
+
+    /**
+     * Converts a SearchQuery to a select statement that groups its distinct elements by a key and reduces every group
+     * @param query A search query
+     * @param predicates A predicates holder
+     * @param key The key elements are grouped by
+     * @param reduce The reduction of every group
+     * @return A select statement, or null if the schema can't aggregate the elements
+     */
+    default Select getAggregate(SearchQuery<E> query, PredicatesHolder predicates, SemanticKeyTraversal key, SemanticReducerTraversal reduce) {
+        return null;
+    }
+
+    /**
+     * Returns the reduced value of every key
+     * @param result The results of the aggregate select statement
+     * @param key The key elements are grouped by
+     * @param reduce The reduction of every group
+     * @return A map of keys to their reduced values
+     */
+    default Map<Object, Object> parseAggregate(List<Map<String, Object>> result, SemanticKeyTraversal key, SemanticReducerTraversal reduce) {
+        return Collections.emptyMap();
+    }
+
+    /**
+     * @return The column rows are paged by, or null if the schema can't be paged
+     */
+    default String getPageField() {
+        return null;
+    }
+
     /**
      * Returns a list of elements
      * @param result The query results
@@ -5,9 +5,9 @@ import org.apache.tinkerpop.shaded.jackson.databind.ObjectMapper;
 import org.jooq.*;
 import org.jooq.conf.RenderNameStyle;
 import org.jooq.conf.Settings;
+import org.jooq.exception.DataAccessException;
 import org.jooq.impl.DSL;
 import org.jooq.impl.DefaultConfiguration;
-import org.jooq.impl.DefaultExecuteListenerProvider;
 import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -15,24 +15,49 @@ import org.slf4j.LoggerFactory;
 import javax.naming.NamingException;
 import java.io.IOException;
 import java.sql.SQLException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 
 /**
  * Created by sbarzilay on 27/12/16.
+ *
+ * Runs queries on a pool of connections configured by the provider's "pool" object:
+ * initialSize, minIdle, maxIdle and maxActive connections, maxWait - the acquire timeout in ms (-1 waits forever),
+ * validationQuery - checked when a connection is borrowed, maxRetries and retryBackoff (ms) for transient errors,
+ * statementCacheSize - the number of PreparedStatements cached per connection (0 disables the cache).
+ * A failed statement only fails its own traversal, the pool is kept.
+ * A batch runs in a single transaction, so a failed attempt is rolled back before it is retried.
  */
 public class ContextManager {
     private final static Logger logger = LoggerFactory.getLogger(ContextManager.class);
-    private DSLContext context;
+    private final DSLContext context;
+    private final PooledConnectionProvider connectionProvider;
     private JSONObject conf;
+    private final int fetchSize;
+    private final int maxRetries;
+    private final long retryBackoff;
 
     public ContextManager(JSONObject conf) throws SQLException, IOException, ClassNotFoundException, NamingException {
         this.conf = conf;
-        reloadContexts();
-    }
+        this.fetchSize = conf.optInt("fetchSize", 0);
+        JSONObject pool = conf.optJSONObject("pool");
+        if (pool == null) pool = new JSONObject();
+        this.maxRetries = pool.optInt("maxRetries", 3);
+        this.retryBackoff = pool.optLong("retryBackoff", 50);
+        this.connectionProvider = new PooledConnectionProvider(createDataSource(pool));
 
-    private void reloadContexts() throws IOException {
         SQLDialect dialect = SQLDialect.valueOf(this.conf.getString("sqlDialect"));
+        Settings settings = new Settings();
+        settings.setRenderNameStyle(RenderNameStyle.AS_IS);
+        Configuration configuration = new DefaultConfiguration().set(connectionProvider).set(dialect)
+                .set(settings);
+        this.context = DSL.using(configuration);
+    }
+
+    private BasicDataSource createDataSource(JSONObject pool) throws IOException {
         BasicDataSource ds = new BasicDataSource();
         ds.setUrl(new ObjectMapper()
                 .readValue(conf.getJSONArray("address").toString(), List.class).get(0).toString());
@@ -41,93 +66,121 @@ public class ContextManager {
         String password = conf.optString("password");
         if (!user.isEmpty()) ds.setUsername(user);
         if (!password.isEmpty()) ds.setPassword(password);
-        Settings settings = new Settings();
-        settings.setRenderNameStyle(RenderNameStyle.AS_IS);
-        Configuration conf = new DefaultConfiguration().set(ds).set(dialect)
-                .set(settings)
-                .set(new DefaultExecuteListenerProvider(new TimingExecuterListener()));
-        this.context = DSL.using(conf);
-    }
-
-    public List<Map<String, Object>> fetch(ResultQuery query) {
-        return fetch(query, 0);
-    }
 
-    private List<Map<String, Object>> fetch(ResultQuery query, int count) {
-        if (count > 3) {
-            throw new IllegalArgumentException("query can't be fetched");
+        ds.setInitialSize(pool.optInt("initialSize", 0));
+        ds.setMinIdle(pool.optInt("minIdle", 0));
+        ds.setMaxIdle(pool.optInt("maxIdle", 8));
+        ds.setMaxActive(pool.optInt("maxActive", 8));
+        ds.setMaxWait(pool.optLong("maxWait", 30000));
+        String validationQuery = pool.optString("validationQuery");
+        if (!validationQuery.isEmpty()) {
+            ds.setValidationQuery(validationQuery);
+            ds.setValidationQueryTimeout(pool.optInt("validationQueryTimeout", 5));
+            ds.setTestOnBorrow(true);
         }
-        try {
-            return context.fetch(query).intoMaps();
-        } catch (Exception e) {
-            context.close();
+        // statements render bind variables and padded IN lists, so a query shape maps to one cached PreparedStatement
+        int statementCacheSize = pool.optInt("statementCacheSize", 128);
+        if (statementCacheSize > 0) {
+            ds.setPoolPreparedStatements(true);
+            ds.setMaxOpenPreparedStatements(statementCacheSize);
         }
-        try {
-            reloadContexts();
-        } catch (IOException e) {
-            e.printStackTrace();
+        long evictionInterval = pool.optLong("timeBetweenEvictionRunsMillis", -1);
+        if (evictionInterval > 0) {
+            ds.setTimeBetweenEvictionRunsMillis(evictionInterval);
+            ds.setMinEvictableIdleTimeMillis(pool.optLong("minEvictableIdleTimeMillis", 1000 * 60 * 30));
+            ds.setTestWhileIdle(!validationQuery.isEmpty());
         }
-        return fetch(query, ++count);
+        return ds;
+    }
+
+    /**
+     * @return The number of rows fetched per page when results are streamed, 0 when results are fetched all at once
+     */
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    /**
+     * @return The connection pool, with its metrics
+     */
+    public PooledConnectionProvider getConnectionPool() {
+        return connectionProvider;
+    }
+
+    public List<Map<String, Object>> fetch(ResultQuery query) {
+        return withRetry(() -> context.fetch(query).intoMaps(), query);
     }
 
     public int execute(Query query) {
-        try {
-            return context.execute(query);
-        } catch (Exception e) {
-            context.close();
-        }
-        try {
-            reloadContexts();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        return execute(query);
+        return withRetry(() -> context.execute(query), query);
     }
 
     public int execute(String query) {
-        try {
-            return context.execute(query);
-        } catch (Exception e) {
-            context.close();
-        }
-        try {
-            reloadContexts();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        return execute(query);
+        return withRetry(() -> context.execute(query), query);
     }
 
     public void close() {
         context.close();
+        try {
+            connectionProvider.close();
+        } catch (SQLException e) {
+            logger.error("failed to close connection pool", e);
+        }
     }
 
     public Object render(Query query) {
-        try {
-            return context.render(query);
-        } catch (Exception e) {
-            context.close();
-        }
-        try {
-            reloadContexts();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        return render(query);
+        return context.render(query);
     }
 
     public void batch(List<Query> bulk) {
-        try {
-            context.batch(bulk).execute();
-            return;
-        } catch (Exception e) {
-            context.close();
+        // under auto-commit a retry would repeat the statements that were committed before the failure
+        withRetry(() -> context.transactionResult(configuration -> DSL.using(configuration).batch(bulk).execute()), bulk);
+    }
+
+    /**
+     * Runs a statement, retrying it up to maxRetries times with exponential backoff if it failed with a transient error.
+     * Any other error is thrown to the caller.
+     */
+    private <T> T withRetry(Supplier<T> statement, Object query) {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                return statement.get();
+            } catch (DataAccessException e) {
+                if (attempt >= maxRetries || !isTransient(e)) throw e;
+                long delay = retryBackoff << attempt;
+                logger.warn("transient error executing query, retrying in {}ms, query: {}, error: {}", delay, query, e.getMessage());
+                connectionProvider.retried();
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
         }
-        try {
-            reloadContexts();
-        } catch (IOException e) {
-            e.printStackTrace();
+    }
+
+    /**
+     * Transient errors are connection failures (SQLState class 08) and transaction rollbacks such as
+     * deadlocks and serialization failures (class 40), which may succeed when retried.
+     */
+    private static boolean isTransient(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLTransientException || cause instanceof SQLRecoverableException) return true;
+            if (cause instanceof SQLException) {
+                String state = ((SQLException) cause).getSQLState();
+                if (state != null && (state.startsWith("08") || state.startsWith("40"))) return true;
+            }
+            if (cause.getCause() == cause) break;
         }
-        batch(bulk);
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "ContextManager{" +
+                "pool=" + connectionProvider +
+                ", fetchSize=" + fetchSize +
+                '}';
     }
 }
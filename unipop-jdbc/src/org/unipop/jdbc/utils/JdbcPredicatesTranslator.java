@@ -29,13 +29,38 @@ import static org.jooq.impl.DSL.field;
  * @since 6/14/2016
  */
 public class JdbcPredicatesTranslator implements PredicatesTranslator<Condition> {
+    private static final int[] IN_LIST_BUCKETS = {8, 32, 128, 512};
+
+    /**
+     * Pads the values of an IN list up to the next bucket size (8, 32, 128, 512 or a multiple of 512)
+     * by repeating the last value, so id lists of different sizes render the same few statements
+     * and reuse their cached PreparedStatements and query plans.
+     * @param values The values of the IN list
+     * @return The padded values
+     */
+    public static Object[] padInList(Collection<?> values) {
+        Object[] array = values.toArray();
+        if (array.length == 0) return array;
+        int bucket = IN_LIST_BUCKETS[IN_LIST_BUCKETS.length - 1];
+        bucket = ((array.length + bucket - 1) / bucket) * bucket;
+        for (int size : IN_LIST_BUCKETS) {
+            if (size >= array.length) {
+                bucket = size;
+                break;
+            }
+        }
+        Object[] padded = Arrays.copyOf(array, bucket);
+        Arrays.fill(padded, array.length, bucket, array[array.length - 1]);
+        return padded;
+    }
 
     @Override
     public Condition translate(PredicatesHolder predicatesHolder) {
+        // keeps the order of the predicates, so the same query always renders the same statement
         Set<Condition> predicateFilters = predicatesHolder.getPredicates().stream()
-                .map(this::extractCondition).collect(Collectors.toSet());
+                .map(this::extractCondition).collect(Collectors.toCollection(LinkedHashSet::new));
         Set<Condition> childFilters = predicatesHolder.getChildren().stream()
-                .map(this::translate).collect(Collectors.toSet());
+                .map(this::translate).collect(Collectors.toCollection(LinkedHashSet::new));
         predicateFilters.addAll(childFilters);
 
         if (predicateFilters.size() == 0) return DSL.trueCondition();
@@ -131,13 +156,13 @@ public class JdbcPredicatesTranslator implements PredicatesTranslator<Condition>
                 List<java.sql.Date> dates = new ArrayList<>();
                 for (Object o : v)
                     dates.add(convertToSqlDate(o.toString()));
-                return field.in(dates);
+                return field.in(padInList(dates));
             case ("without"):
                 List v2 = (List) value;
                 List<java.sql.Date> dates2 = new ArrayList<>();
                 for (Object o : v2)
                     dates2.add(convertToSqlDate(o.toString()));
-                return field.notIn(dates2);
+                return field.notIn(padInList(dates2));
             default:
                 throw new IllegalArgumentException("predicate not supported in has step: " + biPredicate.toString());
         }
@@ -179,13 +204,13 @@ public class JdbcPredicatesTranslator implements PredicatesTranslator<Condition>
             if (value == null) {
                 return field.isNull();
             } else {
-                return field.notIn(value);
+                return value instanceof Collection ? field.notIn(padInList((Collection) value)) : field.notIn(value);
             }
         } else if (biPredicate == Contains.within) {
             if (value == null) {
                 return field.isNotNull();
             } else {
-                return field.in(((Collection) value).toArray());
+                return field.in(padInList((Collection) value));
             }
         }
         return null;
@@ -0,0 +1,130 @@
+package org.unipop.jdbc.utils;
+
+import org.apache.commons.dbcp.BasicDataSource;
+import org.jooq.ConnectionProvider;
+import org.jooq.exception.DataAccessException;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hands out connections of a DBCP pool to jOOQ and keeps the pool metrics:
+ * active and idle connections, time spent waiting for a connection and the number of acquire timeouts.
+ */
+public class PooledConnectionProvider implements ConnectionProvider {
+    private final BasicDataSource dataSource;
+
+    private final LongAdder acquired = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+
+    public PooledConnectionProvider(BasicDataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    @Override
+    public Connection acquire() throws DataAccessException {
+        long start = System.nanoTime();
+        try {
+            Connection connection = dataSource.getConnection();
+            acquired.increment();
+            return connection;
+        } catch (SQLException e) {
+            if (e.getCause() instanceof NoSuchElementException) {
+                timeouts.increment();
+                throw new DataAccessException("timed out waiting for a connection, " + this, e);
+            }
+            throw new DataAccessException("failed to get a connection", e);
+        } finally {
+            long wait = System.nanoTime() - start;
+            waitNanos.add(wait);
+            maxWaitNanos.accumulateAndGet(wait, Math::max);
+        }
+    }
+
+    @Override
+    public void release(Connection connection) throws DataAccessException {
+        try {
+            // returns the connection to the pool
+            connection.close();
+        } catch (SQLException e) {
+            throw new DataAccessException("failed to release a connection", e);
+        }
+    }
+
+    void retried() {
+        retries.increment();
+    }
+
+    public void close() throws SQLException {
+        dataSource.close();
+    }
+
+    /**
+     * @return The number of connections currently borrowed from the pool
+     */
+    public int getActive() {
+        return dataSource.getNumActive();
+    }
+
+    /**
+     * @return The number of connections currently idle in the pool
+     */
+    public int getIdle() {
+        return dataSource.getNumIdle();
+    }
+
+    /**
+     * @return The number of connections acquired since the pool was created
+     */
+    public long getAcquired() {
+        return acquired.sum();
+    }
+
+    /**
+     * @return The total time spent waiting for connections, in milliseconds
+     */
+    public long getWaitTime() {
+        return waitNanos.sum() / 1000000;
+    }
+
+    /**
+     * @return The longest time spent waiting for a single connection, in milliseconds
+     */
+    public long getMaxWaitTime() {
+        return maxWaitNanos.get() / 1000000;
+    }
+
+    /**
+     * @return The number of times no connection was available within the acquire timeout
+     */
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    /**
+     * @return The number of statements retried after a transient error
+     */
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "PooledConnectionProvider{" +
+                "active=" + getActive() +
+                ", idle=" + getIdle() +
+                ", maxActive=" + dataSource.getMaxActive() +
+                ", acquired=" + getAcquired() +
+                ", waitTime=" + getWaitTime() +
+                ", maxWaitTime=" + getMaxWaitTime() +
+                ", timeouts=" + getTimeouts() +
+                ", retries=" + getRetries() +
+                '}';
+    }
+}
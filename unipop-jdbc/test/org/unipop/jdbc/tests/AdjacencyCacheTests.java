@@ -0,0 +1,89 @@
+package org.unipop.jdbc.tests;
+
+import org.apache.commons.configuration.BaseConfiguration;
+import org.apache.tinkerpop.gremlin.process.traversal.Traversal;
+import org.apache.tinkerpop.gremlin.process.traversal.dsl.graph.GraphTraversalSource;
+import org.apache.tinkerpop.gremlin.structure.Edge;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.unipop.schema.element.EdgeSchema;
+import org.unipop.schema.element.ElementSchema;
+import org.unipop.structure.UniGraph;
+import org.unipop.structure.traversalfilter.TraversalFilter;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+public class AdjacencyCacheTests {
+    @Rule
+    public H2Fixture h2 = new H2Fixture("adjacency");
+
+    private UniGraph graph;
+
+    @Before
+    public void startUp() throws Exception {
+        h2.createItemsAndParts();
+        h2.createLinks("01", "02");
+        EdgeFilter.edges = true;
+        JSONObject provider = h2.provider(new JSONArray().put(H2Fixture.vertices("ITEMS", "@ID", "item")),
+                new JSONArray().put(H2Fixture.links()));
+
+        BaseConfiguration configuration = new BaseConfiguration();
+        configuration.setProperty("adjacencyCache.size", 100);
+        configuration.setProperty("traversalFilter", EdgeFilter.class.getName());
+        graph = h2.open(configuration, provider);
+    }
+
+    @Test
+    public void hitsReturnNewElements() {
+        GraphTraversalSource g = graph.traversal();
+        List<Edge> fetched = g.V("0").outE().toList();
+        List<Edge> cached = g.V("0").outE().toList();
+
+        assertEquals(1, graph.getAdjacencyCache().stats().hitCount());
+        assertEquals(2, cached.size());
+        for (int i = 0; i < cached.size(); i++) {
+            assertNotSame(fetched.get(i), cached.get(i));
+            assertNotSame(fetched.get(i).inVertex(), cached.get(i).inVertex());
+            assertEquals(fetched.get(i).id(), cached.get(i).id());
+            assertEquals(fetched.get(i).<Integer>value("weight"), cached.get(i).<Integer>value("weight"));
+        }
+        assertEquals(new HashSet<>(Arrays.asList("item1", "item2")), new HashSet<>(g.V("0").out().values("name").toList()));
+    }
+
+    @Test
+    public void filterOutcomeIsPartOfTheShape() {
+        GraphTraversalSource g = graph.traversal();
+
+        assertEquals(2, g.V("0").out().toList().size());
+        EdgeFilter.edges = false;
+        assertEquals(0, g.V("0").out().toList().size());
+        EdgeFilter.edges = true;
+        assertEquals(2, g.V("0").out().toList().size());
+        assertEquals(1, graph.getAdjacencyCache().stats().hitCount());
+    }
+
+    /**
+     * Hides the edge schemas while edges is false
+     */
+    public static class EdgeFilter implements TraversalFilter {
+        private static volatile boolean edges = true;
+
+        @Override
+        public boolean filter(ElementSchema schema, Traversal traversal) {
+            return edges || !(schema instanceof EdgeSchema);
+        }
+
+        @Override
+        public Object outcome(Traversal traversal) {
+            return edges;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package org.unipop.jdbc.tests;
+
+import org.jooq.Query;
+import org.jooq.exception.DataAccessException;
+import org.jooq.impl.DSL;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.unipop.jdbc.utils.ContextManager;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.jooq.impl.DSL.field;
+import static org.jooq.impl.DSL.table;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class ContextManagerTests {
+    private ContextManager contextManager;
+
+    @Before
+    public void startUp() throws Exception {
+        JSONObject conf = new JSONObject()
+                .put("driver", "org.h2.Driver")
+                .put("address", new JSONArray().put("jdbc:h2:mem:context;DB_CLOSE_DELAY=-1"))
+                .put("sqlDialect", "H2");
+        contextManager = new ContextManager(conf);
+        contextManager.execute("CREATE TABLE ROWS_TABLE(ID VARCHAR(100) NOT NULL PRIMARY KEY)");
+    }
+
+    @After
+    public void tearDown() {
+        contextManager.execute("DROP TABLE ROWS_TABLE");
+        contextManager.close();
+    }
+
+    @Test
+    public void failedBatchIsRolledBack() {
+        List<Query> bulk = Arrays.asList(insert("1"), insert("2"), insert("1"));
+        try {
+            contextManager.batch(bulk);
+            fail("a duplicate id should fail the batch");
+        } catch (DataAccessException e) {
+            assertEquals(0, contextManager.fetch(DSL.selectFrom(table("ROWS_TABLE"))).size());
+        }
+    }
+
+    @Test
+    public void batchIsCommitted() {
+        contextManager.batch(Arrays.asList(insert("1"), insert("2")));
+        assertEquals(2, contextManager.fetch(DSL.selectFrom(table("ROWS_TABLE"))).size());
+    }
+
+    private static Query insert(String id) {
+        return DSL.insertInto(table("ROWS_TABLE"), field("ID")).values(id);
+    }
+}
@@ -0,0 +1,62 @@
+package org.unipop.jdbc.tests;
+
+import org.apache.tinkerpop.gremlin.process.traversal.P;
+import org.apache.tinkerpop.gremlin.process.traversal.dsl.graph.GraphTraversal;
+import org.apache.tinkerpop.gremlin.process.traversal.dsl.graph.GraphTraversalSource;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.unipop.process.predicate.Text;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+
+public class CountTests {
+    @Rule
+    public H2Fixture h2 = new H2Fixture("count");
+
+    @Before
+    public void startUp() throws Exception {
+        h2.createItemsAndParts();
+    }
+
+    @Test
+    public void singleColumnId() throws Exception {
+        assertCounts(h2.provider(H2Fixture.vertices("ITEMS", "@ID", "item")));
+    }
+
+    @Test
+    public void concatenatedId() throws Exception {
+        JSONObject id = new JSONObject().put("fields", new JSONArray().put("@GRP").put("@NUM")).put("delimiter", "_");
+        assertCounts(h2.provider(H2Fixture.vertices("PARTS", id, "item")));
+    }
+
+    @Test
+    public void schemasWithTheSameIds() throws Exception {
+        assertCounts(h2.provider(H2Fixture.vertices("ITEMS", "@ID", "item"), H2Fixture.vertices("PARTS", "@NUM", "item")));
+    }
+
+    @Test
+    public void controllersWithTheSameIds() throws Exception {
+        assertCounts(h2.provider(H2Fixture.vertices("ITEMS", "@ID", "item")),
+                h2.provider(H2Fixture.vertices("PARTS", "@NUM", "item")));
+    }
+
+    private void assertCounts(JSONObject... providers) throws Exception {
+        GraphTraversalSource g = h2.open(providers).traversal();
+        List<Function<GraphTraversalSource, GraphTraversal<?, ?>>> traversals = Arrays.asList(
+                source -> source.V(),
+                source -> source.V().has("group", "a"),
+                source -> source.V().has("group", P.neq("a")),
+                source -> source.V().has("name", P.within("item1", "part1", "item6")),
+                source -> source.V().has("name", P.gte("item3")),
+                source -> source.V().has("name", Text.prefix("item")));
+        traversals.forEach(traversal -> assertEquals(traversal.apply(g).toString(),
+                (long) traversal.apply(g).toList().size(), traversal.apply(g).count().next().longValue()));
+    }
+}
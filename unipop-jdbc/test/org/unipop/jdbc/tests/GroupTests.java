@@ -0,0 +1,67 @@
+package org.unipop.jdbc.tests;
+
+import org.apache.tinkerpop.gremlin.process.traversal.P;
+import org.apache.tinkerpop.gremlin.process.traversal.dsl.graph.GraphTraversal;
+import org.apache.tinkerpop.gremlin.process.traversal.dsl.graph.GraphTraversalSource;
+import org.apache.tinkerpop.gremlin.process.traversal.dsl.graph.__;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+
+public class GroupTests {
+    @Rule
+    public H2Fixture h2 = new H2Fixture("group");
+
+    @Before
+    public void startUp() throws Exception {
+        h2.createItemsAndParts();
+    }
+
+    @Test
+    public void singleController() throws Exception {
+        assertGroups(h2.provider(H2Fixture.vertices("ITEMS", "@ID", "item")));
+    }
+
+    @Test
+    public void schemasWithTheSameIds() throws Exception {
+        assertGroups(h2.provider(H2Fixture.vertices("ITEMS", "@ID", "item"), H2Fixture.vertices("PARTS", "@NUM", "item")));
+    }
+
+    @Test
+    public void controllersWithTheSameIds() throws Exception {
+        assertGroups(h2.provider(H2Fixture.vertices("ITEMS", "@ID", "item")),
+                h2.provider(H2Fixture.vertices("PARTS", "@NUM", "item")));
+    }
+
+    @Test
+    public void controllersWithOtherIds() throws Exception {
+        assertGroups(h2.provider(H2Fixture.vertices("ITEMS", "@ID", "item")),
+                h2.provider(H2Fixture.vertices("PARTS", "@NAME", "item")));
+    }
+
+    private void assertGroups(JSONObject... providers) throws Exception {
+        GraphTraversalSource g = h2.open(providers).traversal();
+        List<Function<GraphTraversalSource, GraphTraversal<?, Vertex>>> traversals = Arrays.asList(
+                source -> source.V(),
+                source -> source.V().has("group", "a"),
+                source -> source.V().has("name", P.gte("item3")));
+        traversals.forEach(traversal -> {
+            // the elements UniGraphStep returns, grouped in memory
+            Map<Object, Long> expected = traversal.apply(g).toList().stream()
+                    .collect(Collectors.groupingBy(vertex -> vertex.value("group"), Collectors.counting()));
+            String message = traversal.apply(g).toString();
+            assertEquals(message, expected, traversal.apply(g).groupCount().by("group").next());
+            assertEquals(message, expected, traversal.apply(g).group().by("group").by(__.count()).next());
+        });
+    }
+}
@@ -0,0 +1,162 @@
+package org.unipop.jdbc.tests;
+
+import org.apache.commons.configuration.BaseConfiguration;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.rules.ExternalResource;
+import org.junit.rules.TemporaryFolder;
+import org.unipop.structure.UniGraph;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An in memory H2 database for one test class, and graphs opened on provider files written in a temporary folder.
+ * The graphs are closed and every table is dropped after each test.
+ */
+public class H2Fixture extends ExternalResource {
+    private final String address;
+    private final TemporaryFolder folder = new TemporaryFolder();
+    private final List<UniGraph> graphs = new ArrayList<>();
+    private Connection connection;
+    private File providers;
+
+    public H2Fixture(String name) {
+        this.address = "jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1";
+    }
+
+    @Override
+    protected void before() throws Throwable {
+        folder.create();
+        Class.forName("org.h2.Driver");
+        connection = DriverManager.getConnection(address);
+    }
+
+    @Override
+    protected void after() {
+        try {
+            for (UniGraph graph : graphs) graph.close();
+            execute("DROP ALL OBJECTS");
+            connection.close();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        } finally {
+            folder.delete();
+        }
+    }
+
+    public void execute(String... statements) throws Exception {
+        try (Statement statement = connection.createStatement()) {
+            for (String sql : statements) statement.execute(sql);
+        }
+    }
+
+    /**
+     * Creates ITEMS, with a single column id, and PARTS, with an id of two columns, each with 7 rows.
+     * The first 5 rows are in group "a" and the last 2 in group "b", a page of 2 ends inside every run of equal groups.
+     */
+    public void createItemsAndParts() throws Exception {
+        execute("CREATE TABLE ITEMS(ID VARCHAR(100) NOT NULL PRIMARY KEY, GRP VARCHAR(100), NAME VARCHAR(100))",
+                "CREATE TABLE PARTS(GRP VARCHAR(100) NOT NULL, NUM VARCHAR(100) NOT NULL, NAME VARCHAR(100))");
+        for (int i = 0; i < 7; i++) {
+            String group = i < 5 ? "a" : "b";
+            execute("INSERT INTO ITEMS VALUES('" + i + "', '" + group + "', 'item" + i + "')",
+                    "INSERT INTO PARTS VALUES('" + group + "', '" + i + "', 'part" + i + "')");
+        }
+    }
+
+    /**
+     * @return A vertex schema of the ITEMS or PARTS table, with the group and name properties
+     */
+    public static JSONObject vertices(String table, Object id, String label) {
+        return new JSONObject()
+                .put("table", table)
+                .put("id", id)
+                .put("label", label)
+                .put("properties", new JSONObject().put("group", "@GRP").put("name", "@NAME"))
+                .put("dynamicProperties", false);
+    }
+
+    /**
+     * Creates LINKS, with an edge from the first to the second item of every pair, weighted by its position
+     */
+    public void createLinks(String... pairs) throws Exception {
+        execute("CREATE TABLE LINKS(ID VARCHAR(100) NOT NULL PRIMARY KEY, OUTID VARCHAR(100), INID VARCHAR(100), WEIGHT INT)");
+        for (int i = 0; i < pairs.length; i++)
+            execute("INSERT INTO LINKS VALUES('" + pairs[i] + "', '" + pairs[i].charAt(0) + "', '" + pairs[i].charAt(1) + "', " + i + ")");
+    }
+
+    /**
+     * @return An edge schema of the LINKS table, between vertices of the ITEMS table
+     */
+    public static JSONObject links() {
+        return new JSONObject()
+                .put("table", "LINKS")
+                .put("id", "@ID")
+                .put("label", "link")
+                .put("properties", new JSONObject().put("weight", "@WEIGHT"))
+                .put("dynamicProperties", false)
+                .put("outVertex", item("@OUTID"))
+                .put("inVertex", item("@INID"));
+    }
+
+    private static JSONObject item(String id) {
+        return new JSONObject()
+                .put("ref", true)
+                .put("id", id)
+                .put("label", "item")
+                .put("properties", new JSONObject());
+    }
+
+    public JSONObject provider(JSONArray vertices, JSONArray edges) {
+        return new JSONObject()
+                .put("class", "org.unipop.jdbc.JdbcSourceProvider")
+                .put("driver", "org.h2.Driver")
+                .put("address", new JSONArray().put(address))
+                .put("sqlDialect", "H2")
+                .put("vertices", vertices)
+                .put("edges", edges);
+    }
+
+    public JSONObject provider(JSONObject... vertices) {
+        return provider(new JSONArray(Arrays.asList(vertices)), new JSONArray());
+    }
+
+    public UniGraph open(JSONObject... providers) throws Exception {
+        return open(new BaseConfiguration(), providers);
+    }
+
+    /**
+     * Writes every provider to its own file, provider0.json and on, in a new folder and opens a graph on it
+     */
+    public UniGraph open(BaseConfiguration configuration, JSONObject... providers) throws Exception {
+        this.providers = folder.newFolder();
+        for (int i = 0; i < providers.length; i++) write("provider" + i + ".json", providers[i]);
+
+        configuration.setProperty("providers", this.providers.getAbsolutePath());
+        UniGraph graph = new UniGraph(configuration);
+        graphs.add(graph);
+        return graph;
+    }
+
+    /**
+     * Writes a provider file in the folder of the last opened graph, moved in whole so a watcher doesn't read it half written
+     */
+    public void write(String name, JSONObject provider) throws Exception {
+        File written = folder.newFile();
+        Files.write(written.toPath(), provider.toString().getBytes());
+        Files.move(written.toPath(), new File(providers, name).toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public void delete(String name) throws Exception {
+        Files.delete(new File(providers, name).toPath());
+    }
+}
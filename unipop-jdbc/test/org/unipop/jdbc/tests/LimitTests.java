@@ -0,0 +1,53 @@
+package org.unipop.jdbc.tests;
+
+import org.apache.tinkerpop.gremlin.process.traversal.dsl.graph.GraphTraversalSource;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class LimitTests {
+    @Rule
+    public H2Fixture h2 = new H2Fixture("limit");
+
+    private GraphTraversalSource g;
+
+    @Before
+    public void startUp() throws Exception {
+        h2.execute("CREATE TABLE ORDERS(ID VARCHAR(100) NOT NULL PRIMARY KEY, SHOP VARCHAR(100), SHOPNAME VARCHAR(100))");
+        // every shop is an inner vertex repeated in two rows
+        for (int i = 0; i < 6; i++)
+            h2.execute("INSERT INTO ORDERS VALUES('" + i + "', 's" + i / 2 + "', 'shop" + i / 2 + "')");
+
+        JSONObject shop = new JSONObject()
+                .put("ref", false)
+                .put("id", "@SHOP")
+                .put("label", "shop")
+                .put("properties", new JSONObject().put("name", "@SHOPNAME"));
+        JSONObject soldBy = new JSONObject()
+                .put("id", "@ID")
+                .put("label", "soldBy")
+                .put("direction", "OUT")
+                .put("properties", new JSONObject())
+                .put("vertex", shop);
+        JSONObject orders = new JSONObject()
+                .put("table", "ORDERS")
+                .put("id", "@ID")
+                .put("label", "order")
+                .put("properties", new JSONObject())
+                .put("dynamicProperties", false)
+                .put("edges", new JSONArray().put(soldBy));
+        g = h2.open(h2.provider(orders)).traversal();
+    }
+
+    @Test
+    public void innerVerticesAreCutAfterTheirRepetitions() {
+        assertEquals(3, g.V().hasLabel("shop").toList().size());
+        assertEquals(2, g.V().hasLabel("shop").limit(2).toList().size());
+        assertEquals(3, g.V().hasLabel("shop").limit(5).toList().size());
+        assertEquals(2, g.V().hasLabel("order").limit(2).toList().size());
+    }
+}
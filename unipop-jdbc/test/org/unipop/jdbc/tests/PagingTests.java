@@ -0,0 +1,65 @@
+package org.unipop.jdbc.tests;
+
+import org.apache.tinkerpop.gremlin.process.traversal.dsl.graph.GraphTraversalSource;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+
+public class PagingTests {
+    @Rule
+    public H2Fixture h2 = new H2Fixture("paging");
+
+    @Before
+    public void startUp() throws Exception {
+        h2.createItemsAndParts();
+    }
+
+    @Test
+    public void pagesBySingleColumnId() throws Exception {
+        Set<Object> fetched = ids(open(0, "ITEMS", "@ID").V().toList());
+        GraphTraversalSource g = open(2, "ITEMS", "@ID");
+
+        assertEquals(7, g.V().toList().size());
+        assertEquals(5, g.V().has("group", "a").toList().size());
+        assertEquals(fetched, ids(g.V().toList()));
+    }
+
+    @Test
+    public void concatenatedIdIsNotPaged() throws Exception {
+        JSONObject id = new JSONObject().put("fields", new JSONArray().put("@GRP").put("@NUM")).put("delimiter", "_");
+        GraphTraversalSource g = open(2, "PARTS", id);
+
+        List<Vertex> vertices = g.V().toList();
+        assertEquals(7, vertices.size());
+        assertEquals(7, ids(vertices).size());
+        assertEquals(5, g.V().has("group", "a").toList().size());
+    }
+
+    @Test
+    public void schemasOfTheSameElementsArePagedOnce() throws Exception {
+        // PARTS numbers are the ids of ITEMS
+        GraphTraversalSource g = h2.open(h2.provider(H2Fixture.vertices("ITEMS", "@ID", "item"),
+                H2Fixture.vertices("PARTS", "@NUM", "item")).put("fetchSize", 2)).traversal();
+
+        assertEquals(7, g.V().toList().size());
+        assertEquals(7, g.V().count().next().longValue());
+        assertEquals(2, g.V().has("group", "b").toList().size());
+    }
+
+    private GraphTraversalSource open(int fetchSize, String table, Object id) throws Exception {
+        return h2.open(h2.provider(H2Fixture.vertices(table, id, "item")).put("fetchSize", fetchSize)).traversal();
+    }
+
+    private static Set<Object> ids(List<Vertex> vertices) {
+        return vertices.stream().map(Vertex::id).collect(Collectors.toSet());
+    }
+}
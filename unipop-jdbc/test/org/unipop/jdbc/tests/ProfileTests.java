@@ -0,0 +1,69 @@
+package org.unipop.jdbc.tests;
+
+import org.apache.tinkerpop.gremlin.process.traversal.dsl.graph.GraphTraversalSource;
+import org.apache.tinkerpop.gremlin.process.traversal.util.Metrics;
+import org.apache.tinkerpop.gremlin.process.traversal.util.TraversalMetrics;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+
+public class ProfileTests {
+    @Rule
+    public H2Fixture h2 = new H2Fixture("profile");
+
+    private GraphTraversalSource g;
+
+    @Before
+    public void startUp() throws Exception {
+        h2.createItemsAndParts();
+        g = h2.open(h2.provider(H2Fixture.vertices("ITEMS", "@ID", "item"))).traversal();
+    }
+
+    @Test
+    public void schemaMetricsCountTheRowsOfTheirFetch() {
+        assertEquals(7, rows(g.V().profile().next()));
+        assertEquals(5, rows(g.V().has("group", "a").profile().next()));
+    }
+
+    @Test
+    public void queriesOfTheSameShapeAreTimedApart() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            // both groups run the same sql with different bind values
+            List<Future<Long>> a = new ArrayList<>();
+            List<Future<Long>> b = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                a.add(executor.submit(() -> rows(g.V().has("group", "a").profile().next())));
+                b.add(executor.submit(() -> rows(g.V().has("group", "b").profile().next())));
+            }
+            for (Future<Long> rows : a) assertEquals(5L, rows.get().longValue());
+            for (Future<Long> rows : b) assertEquals(2L, rows.get().longValue());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * @return The rows counted by the schemas' metrics, the innermost metrics of the profile
+     */
+    private static long rows(TraversalMetrics metrics) {
+        return metrics.getMetrics().stream().mapToLong(ProfileTests::leaves).sum();
+    }
+
+    private static long leaves(Metrics metrics) {
+        if (metrics.getNested().isEmpty()) return 0;
+        long rows = 0;
+        for (Metrics nested : metrics.getNested()) {
+            rows += nested.getNested().isEmpty() ? nested.getCount(TraversalMetrics.ELEMENT_COUNT_ID) : leaves(nested);
+        }
+        return rows;
+    }
+}
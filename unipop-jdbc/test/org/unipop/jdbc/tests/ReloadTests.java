@@ -0,0 +1,66 @@
+package org.unipop.jdbc.tests;
+
+import org.apache.commons.configuration.BaseConfiguration;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.unipop.query.controller.ConfigurationControllerManager;
+import org.unipop.query.controller.ControllerGeneration;
+import org.unipop.structure.UniGraph;
+
+import java.util.Iterator;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ReloadTests {
+    private static final long RETIRE_DELAY = 100;
+
+    @Rule
+    public H2Fixture h2 = new H2Fixture("reload");
+
+    private UniGraph graph;
+
+    @Before
+    public void startUp() throws Exception {
+        h2.createItemsAndParts();
+        BaseConfiguration configuration = new BaseConfiguration();
+        configuration.setProperty("controllerManager.interval", 50);
+        configuration.setProperty("controllerManager.retireDelay", RETIRE_DELAY);
+        graph = h2.open(configuration, provider("item"));
+    }
+
+    @Test
+    public void elementReadKeepsItsGenerationOpen() throws Exception {
+        ConfigurationControllerManager manager = (ConfigurationControllerManager) graph.getControllerManager();
+        ControllerGeneration first = manager.getGeneration();
+        // pages of 2 rows, the rest of the rows are read after the reload
+        Iterator<Vertex> vertices = graph.vertices();
+        assertTrue(vertices.hasNext());
+        vertices.next();
+
+        h2.write("provider0.json", provider("thing"));
+        waitFor(() -> manager.getGeneration() != first);
+        Thread.sleep(RETIRE_DELAY * 3);
+        assertFalse(first.isReleased());
+
+        int read = 1;
+        for (; vertices.hasNext(); read++) assertEquals("item", vertices.next().label());
+        assertEquals(7, read);
+        waitFor(first::isReleased);
+        assertEquals("thing", graph.vertices().next().label());
+    }
+
+    private JSONObject provider(String label) {
+        return h2.provider(H2Fixture.vertices("ITEMS", "@ID", label)).put("fetchSize", 2);
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        for (int i = 0; i < 200 && !condition.getAsBoolean(); i++) Thread.sleep(50);
+        assertTrue(condition.getAsBoolean());
+    }
+}
@@ -0,0 +1,125 @@
+package org.unipop.jdbc.tests;
+
+import org.apache.commons.configuration.BaseConfiguration;
+import org.apache.tinkerpop.gremlin.process.traversal.Traversal;
+import org.apache.tinkerpop.gremlin.process.traversal.dsl.graph.GraphTraversalSource;
+import org.apache.tinkerpop.gremlin.process.traversal.dsl.graph.__;
+import org.apache.tinkerpop.gremlin.structure.Element;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+
+public class RepeatTests {
+    @Rule
+    public H2Fixture h2 = new H2Fixture("repeat");
+
+    private JSONObject provider;
+    private GraphTraversalSource plain;
+
+    @Before
+    public void startUp() throws Exception {
+        h2.createItemsAndParts();
+        // two paths from 0 meet at 3, and 4 leads back to 0
+        h2.createLinks("01", "02", "13", "23", "34", "40");
+        provider = h2.provider(new JSONArray().put(H2Fixture.vertices("ITEMS", "@ID", "item")),
+                new JSONArray().put(H2Fixture.links()));
+        plain = h2.open(provider).traversal();
+    }
+
+    @Test
+    public void times() throws Exception {
+        GraphTraversalSource g = frontier(false);
+
+        assertEquals(ids("3", "3"), ids(g.V("0").repeat(__.out()).times(2)));
+        assertSame(g, source -> source.V("0").repeat(__.out()).times(4));
+        assertSame(g, source -> source.V().repeat(__.out()).times(3));
+    }
+
+    @Test
+    public void until() throws Exception {
+        GraphTraversalSource g = frontier(false);
+
+        assertEquals(ids("4", "4"), ids(g.V("0").repeat(__.out()).until(__.has("name", "item4"))));
+        assertEquals(ids("3", "3"), ids(g.V("0").until(__.has("name", "item3")).repeat(__.out())));
+        assertEquals(ids("4", "4"), ids(g.V("1", "3").until(__.has("name", "item4")).repeat(__.out())));
+    }
+
+    @Test
+    public void emit() throws Exception {
+        GraphTraversalSource g = frontier(false);
+
+        // after the body
+        assertEquals(ids("1", "2", "3", "3", "4", "4"), ids(g.V("0").repeat(__.out()).emit().times(3)));
+        assertSame(g, source -> source.V("0").repeat(__.out()).emit(__.has("name", "item3")).times(4));
+        // before the body
+        assertEquals(ids("0", "1", "2", "3", "3"), ids(g.V("0").emit().repeat(__.out()).times(2)));
+        assertSame(g, source -> source.V("0").emit(__.has("name", "item0")).repeat(__.out()).times(5));
+    }
+
+    @Test(timeout = 30000)
+    public void emitIsLazy() throws Exception {
+        GraphTraversalSource g = frontier(false);
+
+        // the cycle never ends, only the limit stops the expansion
+        assertEquals(3, g.V("0").repeat(__.out()).emit().limit(3).toList().size());
+    }
+
+    @Test
+    public void bulksOfTheSameVertexAreMerged() throws Exception {
+        GraphTraversalSource g = frontier(false);
+
+        // both paths through 3 are counted after they are merged
+        assertEquals(2L, g.V("0").repeat(__.out()).times(3).count().next().longValue());
+        assertEquals(4L, g.V("0").repeat(__.out()).times(6).count().next().longValue());
+        assertSame(g, source -> source.V("0", "1", "2").repeat(__.out()).times(5));
+    }
+
+    @Test
+    public void visitedVerticesAreNotExpandedAgain() throws Exception {
+        GraphTraversalSource g = frontier(true);
+
+        // 3 is reached twice in the same level and keeps both bulks, 0 is reached again and isn't expanded
+        assertEquals(ids("1", "2", "3", "3", "4", "4", "0", "0"), ids(g.V("0").repeat(__.out()).emit().times(6)));
+    }
+
+    @Test
+    public void pathsAndSacksAreNotMerged() throws Exception {
+        GraphTraversalSource g = frontier(true);
+
+        assertEquals(2, g.V("0").repeat(__.out()).times(2).path().toList().size());
+        assertEquals(plain.V("0").repeat(__.out()).times(5).path().toList(),
+                g.V("0").repeat(__.out()).times(5).path().toList());
+        assertEquals(plain.withSack(1).V("0").repeat(__.out()).times(6).sack().toList(),
+                g.withSack(1).V("0").repeat(__.out()).times(6).sack().toList());
+    }
+
+    private GraphTraversalSource frontier(boolean visited) throws Exception {
+        BaseConfiguration configuration = new BaseConfiguration();
+        configuration.setProperty("repeat.frontier", true);
+        configuration.setProperty("repeat.frontier.visited", visited);
+        // levels are expanded in more than one bulk
+        configuration.setProperty("repeat.frontier.bulk", 1);
+        return h2.open(configuration, provider).traversal();
+    }
+
+    private void assertSame(GraphTraversalSource g, Function<GraphTraversalSource, Traversal<?, ?>> traversal) {
+        assertEquals(traversal.apply(plain).toString(), ids(traversal.apply(plain)), ids(traversal.apply(g)));
+    }
+
+    private static List<Object> ids(String... ids) {
+        return Arrays.asList((Object[]) ids).stream().sorted().collect(Collectors.toList());
+    }
+
+    private static List<Object> ids(Traversal<?, ?> traversal) {
+        return traversal.toList().stream().map(element -> ((Element) element).id()).sorted().collect(Collectors.toList());
+    }
+}
@@ -205,7 +205,7 @@ public class RestController implements SimpleController {
         Iterator<S> schemaIterator = schemas.keySet().iterator();
 
         return results.stream().flatMap(result ->
-                collector.parse.apply(schemaIterator.next(), result).stream()).iterator();
+                collector.parse.apply(schemaIterator.next(), result).stream()).distinct().iterator();
     }
 
     public class RestCollector<K, V, R> implements Collector<K, Map<K, V>, Map<K, V>> {
@@ -8,6 +8,7 @@ import org.apache.commons.lang.math.NumberUtils;
 import org.apache.tinkerpop.gremlin.structure.Element;
 import org.json.JSONArray;
 import org.json.JSONObject;
+import org.unipop.query.predicates.PredicateEvaluator;
 import org.unipop.query.predicates.PredicateQuery;
 import org.unipop.query.predicates.PredicatesHolder;
 import org.unipop.query.search.SearchQuery;
@@ -112,6 +113,7 @@ public abstract class AbstractRestSchema<E extends Element> extends AbstractElem
                 object = object.getJSONObject(path[i]);
         }
         List<E> elements = new ArrayList<>();
+        PredicateEvaluator evaluator = query.getEvaluator(getStaticProperties());
         for (int i = 0; i < results.length(); i++) {
             JSONObject jsonResult = results.getJSONObject(i);
 
@@ -136,7 +138,7 @@ public abstract class AbstractRestSchema<E extends Element> extends AbstractElem
                 }
             });
             E element = create(fieldsMap);
-            if (element != null && query.test(element, query.getPredicates()))
+            if (element != null && query.test(element, evaluator))
                 elements.add(element);
         }
         return elements;